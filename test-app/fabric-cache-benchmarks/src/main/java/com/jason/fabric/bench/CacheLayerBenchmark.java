@@ -0,0 +1,141 @@
+package com.jason.fabric.bench;
+
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.jason.fabric.pool.ConnectionMetrics;
+import com.jason.fabric.pool.api.FabricConnection;
+import com.jason.fabric.pool.cache.CacheEntry;
+import com.jason.fabric.pool.cache.QueryCache;
+import com.jason.fabric.pool.impl.FabricContractConnectCacheImpl;
+import com.jason.fabric.pool.impl.FabricContractConnectCacheProxyImpl;
+import com.jason.fabric.pool.impl.FabricContractConnectMetricsImpl;
+import com.jason.fabric.pool.impl.FabricContractConnectRetryImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 动态代理与装饰器链的缓存命中路径开销对比
+ * 连接和缓存均为内存桩，只测量调用分派和key/field拼接本身
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheLayerBenchmark {
+
+    private FabricConnection proxy;
+    private FabricConnection decorator;
+    private FabricConnection chain;
+
+    @Setup
+    @SuppressWarnings("deprecation")
+    public void setup() throws Exception {
+        FabricConnection stub = new StubConnection();
+        QueryCache cache = new MapQueryCache();
+        proxy = (FabricConnection) Proxy.newProxyInstance(FabricConnection.class.getClassLoader(), new Class[]{FabricConnection.class},
+                new FabricContractConnectCacheProxyImpl(stub, cache, "user", "mychannel"));
+        decorator = new FabricContractConnectCacheImpl(stub, cache, "user", "mychannel");
+        ConnectionMetrics metrics = new ConnectionMetrics();
+        chain = new FabricContractConnectMetricsImpl(new FabricContractConnectCacheImpl(
+                new FabricContractConnectRetryImpl(stub, 1, 100, metrics), cache, "user", "mychannel"), metrics);
+        //预先写入缓存，基准只走命中路径
+        decorator.queryBytes("hospital_recordInfo", "QueryRecord", "record1");
+    }
+
+    @Benchmark
+    public byte[] proxyQueryBytes() throws Exception {
+        return proxy.queryBytes("hospital_recordInfo", "QueryRecord", "record1");
+    }
+
+    @Benchmark
+    public byte[] decoratorQueryBytes() throws Exception {
+        return decorator.queryBytes("hospital_recordInfo", "QueryRecord", "record1");
+    }
+
+    @Benchmark
+    public byte[] chainQueryBytes() throws Exception {
+        return chain.queryBytes("hospital_recordInfo", "QueryRecord", "record1");
+    }
+
+    private static final class MapQueryCache implements QueryCache {
+        private final ConcurrentHashMap<String, ConcurrentHashMap<String, CacheEntry>> hashes = new ConcurrentHashMap<>();
+
+        @Override
+        public CacheEntry get(String key, String field) {
+            ConcurrentHashMap<String, CacheEntry> hash = hashes.get(key);
+            return hash == null ? null : hash.get(field);
+        }
+
+        @Override
+        public void put(String key, String field, CacheEntry entry) {
+            hashes.computeIfAbsent(key, k -> new ConcurrentHashMap<>()).put(field, entry);
+        }
+
+        @Override
+        public void delete(String key) {
+            hashes.remove(key);
+        }
+
+        @Override
+        public void delete(String key, String field) {
+            ConcurrentHashMap<String, CacheEntry> hash = hashes.get(key);
+            if (hash != null) {
+                hash.remove(field);
+            }
+        }
+    }
+
+    private static final class StubConnection implements FabricConnection {
+        private static final byte[] RESULT = "{\"name\":\"record1\"}".getBytes(StandardCharsets.UTF_8);
+
+        @Override
+        public String query(String chainCode, String fcn, String... arguments) {
+            return new String(RESULT, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String invoke(String chainCode, String fcn, String... arguments) {
+            return "";
+        }
+
+        @Override
+        public byte[] queryBytes(String chainCode, String fcn, String... arguments) {
+            return RESULT;
+        }
+
+        @Override
+        public byte[] invokeBytes(String chainCode, String fcn, String... arguments) {
+            return new byte[0];
+        }
+
+        @Override
+        public void queryTo(OutputStream out, String chainCode, String fcn, String... arguments) throws Exception {
+            out.write(RESULT);
+        }
+
+        @Override
+        public CompletableFuture<byte[]> queryAsync(String chainCode, String fcn, String... arguments) {
+            return CompletableFuture.completedFuture(RESULT);
+        }
+
+        @Override
+        public CompletableFuture<byte[]> invokeAsync(String chainCode, String fcn, String... arguments) {
+            return CompletableFuture.completedFuture(new byte[0]);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.jason.fabric.bench;
+
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.jason.fabric.pool.api.FabricConnection;
+import com.jason.fabric.pool.api.QueryResult;
+import com.jason.fabric.pool.api.QuerySpec;
+import com.jason.fabric.pool.cache.MappedQueryCache;
+import com.jason.fabric.pool.cache.MemoryQueryCache;
+import com.jason.fabric.pool.cache.NearQueryCache;
+import com.jason.fabric.pool.cache.RedisQueryCache;
+import com.jason.fabric.pool.conf.Global;
+import com.jason.fabric.pool.impl.FabricContractConnectCacheImpl;
+import com.jason.fabric.pool.impl.FabricContractConnectCacheProxyImpl;
+import com.jason.fabric.pool.impl.FabricContractConnectImpl;
+import com.jason.fabric.pool.utils.MiniRedisServer;
+import com.jason.fabric.pool.utils.RedisMultiplexer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 查询缓存的命中和未命中路径，经过jedis连接池和进程内的MiniRedisServer
+ * impl=proxy为原动态代理，impl=decorator为装饰器，impl=near为装饰器加本地一级缓存，
+ * impl=multiplexed为装饰器经过多路复用的redis连接，impl=memory和impl=mapped为装饰器使用进程内缓存和内存映射文件，不经过redis
+ * hitBatch为200条已缓存记录的批量查询，原动态代理不缓存批量查询
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheProxyBenchmark {
+    private static final String CHAIN_CODE = "hospital_recordInfo";
+    private static final String FCN = "QueryRecord";
+
+    @Param({"proxy", "decorator", "multiplexed", "near", "memory", "mapped"})
+    private String impl;
+
+    private static final int BATCH = 200;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final List<QuerySpec> batch = new ArrayList<>();
+    private MiniRedisServer redis;
+    private FabricConnection connection;
+
+    @Setup
+    @SuppressWarnings("deprecation")
+    public void setup() throws Exception {
+        redis = MiniRedisServer.startOnce(Integer.parseInt(Global.getInstance().getCachePort()));
+        FabricContractConnectImpl target = new FabricContractConnectImpl(new StubGateway(0).getNetwork("mychannel"));
+        if ("proxy".equals(impl)) {
+            connection = (FabricConnection) Proxy.newProxyInstance(FabricConnection.class.getClassLoader(), new Class[]{FabricConnection.class},
+                    new FabricContractConnectCacheProxyImpl(target, "bench", "mychannel"));
+        } else if ("near".equals(impl)) {
+            NearQueryCache near = new NearQueryCache(new RedisQueryCache(), 10000, 60000, Global.getInstance().getInvalidationChannel());
+            near.start();
+            while (!near.isSubscribed()) {
+                Thread.sleep(10);
+            }
+            connection = new FabricContractConnectCacheImpl(target, near, "bench", "mychannel");
+        } else if ("multiplexed".equals(impl)) {
+            connection = new FabricContractConnectCacheImpl(target, new RedisQueryCache(RedisMultiplexer.getInstance()), "bench", "mychannel");
+        } else if ("memory".equals(impl)) {
+            connection = new FabricContractConnectCacheImpl(target, new MemoryQueryCache(100000), "bench", "mychannel");
+        } else if ("mapped".equals(impl)) {
+            MappedQueryCache mapped = new MappedQueryCache(Files.createTempDirectory("bench").resolve("fabric-cache.dat"), 64 * 1024 * 1024);
+            connection = new FabricContractConnectCacheImpl(target, mapped, "bench", "mychannel");
+        } else {
+            connection = new FabricContractConnectCacheImpl(target, new RedisQueryCache(), "bench", "mychannel");
+        }
+        for (int i = 0; i < BATCH; i++) {
+            batch.add(QuerySpec.of(CHAIN_CODE, FCN, "record" + i));
+        }
+        connection.queryBytes(CHAIN_CODE, FCN, "record1");
+    }
+
+    /**
+     * 未命中路径每次使用新参数，每轮迭代前清空，避免替身内存无限增长
+     */
+    @Setup(Level.Iteration)
+    public void flush() throws Exception {
+        redis.flushAll();
+        connection.queryAll(batch);
+    }
+
+    @Benchmark
+    public byte[] hit() throws Exception {
+        return connection.queryBytes(CHAIN_CODE, FCN, "record1");
+    }
+
+    @Benchmark
+    public String hitString() throws Exception {
+        return connection.query(CHAIN_CODE, FCN, "record1");
+    }
+
+    @Benchmark
+    public List<QueryResult> hitBatch() throws Exception {
+        return connection.queryAll(batch);
+    }
+
+    @Benchmark
+    public byte[] miss() throws Exception {
+        return connection.queryBytes(CHAIN_CODE, FCN, "miss" + sequence.incrementAndGet());
+    }
+}
@@ -0,0 +1,66 @@
+package com.jason.fabric.bench;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import com.jason.fabric.pool.cache.CacheCodec;
+import com.jason.fabric.pool.cache.CacheEntry;
+import com.jason.fabric.pool.cache.ValueCodecs;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 缓存条目按各压缩算法编码和解码的开销，值为records条查询结果组成的JSON数组，模拟较长的历史记录查询
+ * 编码后的字节数在setup时打印
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+    @Param({"none", "snappy", "zstd"})
+    private String codec;
+
+    @Param({"1", "100"})
+    private int records;
+
+    private ValueCodecs codecs;
+    private CacheEntry entry;
+    private byte[] encoded;
+
+    @Setup
+    public void setup() {
+        StringBuilder builder = new StringBuilder("[");
+        String result = new String(StubGateway.RESULT, StandardCharsets.UTF_8);
+        for (int i = 0; i < records; i++) {
+            builder.append(i == 0 ? "" : ",").append(result.replace("record1", "record" + i));
+        }
+        byte[] value = builder.append(']').toString().getBytes(StandardCharsets.UTF_8);
+        codecs = new ValueCodecs(CacheCodec.parse(codec), 512, 3, null);
+        entry = CacheEntry.of(value, TimeUnit.HOURS.toMillis(1));
+        encoded = entry.encode(codecs);
+        System.out.println(codec + " records=" + records + ": " + value.length + " -> " + encoded.length + " bytes");
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return entry.encode(codecs);
+    }
+
+    @Benchmark
+    public CacheEntry decode() {
+        return CacheEntry.decode(encoded, codecs);
+    }
+}
@@ -0,0 +1,62 @@
+package com.jason.fabric.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import com.jason.fabric.pool.impl.FabricContractConnectCacheImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 缓存key和field的生成开销，legacy为旧版本直接拼接的方式，参数较多时field改为摘要
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeyFieldBenchmark {
+
+    @Param({"1", "4", "16"})
+    private int argCount;
+
+    private FabricContractConnectCacheImpl decorator;
+    private String[] arguments;
+
+    @Setup
+    public void setup() {
+        decorator = new FabricContractConnectCacheImpl(null, null, "bench", "mychannel");
+        arguments = new String[argCount];
+        for (int i = 0; i < argCount; i++) {
+            arguments[i] = "record" + i;
+        }
+    }
+
+    @Benchmark
+    public String genericKey() {
+        return decorator.genericKey("bench", "mychannel", "hospital_recordInfo");
+    }
+
+    @Benchmark
+    public String legacyGenericField() {
+        StringBuilder field = new StringBuilder("hospital_recordInfo").append("QueryRecord");
+        for (String argument : arguments) {
+            field.append(argument);
+        }
+        return field.toString();
+    }
+
+    @Benchmark
+    public String decoratorGenericField() {
+        return decorator.genericField("hospital_recordInfo", "QueryRecord", arguments);
+    }
+}
@@ -0,0 +1,62 @@
+package com.jason.fabric.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import com.jason.fabric.pool.FabricGatewayPool;
+import com.jason.fabric.pool.api.FabricConnection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * FabricGatewayPool借出归还在竞争下的开销
+ * 线程数多于maxTotal，work为持有连接期间消耗的CPU，模拟查询耗时
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(16)
+public class PoolBenchmark {
+
+    @Param({"0", "1000"})
+    private int work;
+
+    private FabricGatewayPool pool;
+
+    @Setup
+    public void setup() throws Exception {
+        pool = new FabricGatewayPool("bench", "mychannel", new StubGateway(0));
+        //非公平队列下个别线程可能等待超过maxWaitMillis，基准测试只关心吞吐，不设等待上限
+        pool.setMaxWaitMillis(-1);
+        pool.preparePool();
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Benchmark
+    public void borrowReturn() throws Exception {
+        FabricConnection connection = pool.borrowObject();
+        try {
+            Blackhole.consumeCPU(work);
+        } finally {
+            pool.returnObject(connection);
+        }
+    }
+}
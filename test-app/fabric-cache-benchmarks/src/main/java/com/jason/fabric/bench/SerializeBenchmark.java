@@ -0,0 +1,95 @@
+package com.jason.fabric.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.jason.fabric.pool.utils.SerializeUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * SerializeUtil序列化与反序列化开销，对象为一条查询结果和对应的字段Map
+ * java前缀的方法直接使用java序列化，作为二进制格式的对照
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializeBenchmark {
+
+    private String result;
+    private HashMap<String, String> record;
+    private byte[] serializedResult;
+    private byte[] serializedRecord;
+    private byte[] javaSerializedRecord;
+
+    @Setup
+    public void setup() {
+        result = new String(StubGateway.RESULT, StandardCharsets.UTF_8);
+        record = new HashMap<>();
+        record.put("key", "record1");
+        record.put("name", "Jason");
+        record.put("hospital", "hospital1");
+        record.put("diagnosis", "fever");
+        record.put("time", "2020-08-12 10:00:00");
+        serializedResult = SerializeUtil.serialize(result);
+        serializedRecord = SerializeUtil.serialize(record);
+        javaSerializedRecord = javaSerializeMap();
+    }
+
+    @Benchmark
+    public byte[] serializeString() {
+        return SerializeUtil.serialize(result);
+    }
+
+    @Benchmark
+    public Object unSerializeString() {
+        return SerializeUtil.unSerialize(serializedResult);
+    }
+
+    @Benchmark
+    public byte[] serializeMap() {
+        return SerializeUtil.serialize(record);
+    }
+
+    @Benchmark
+    public Object unSerializeMap() {
+        return SerializeUtil.unSerialize(serializedRecord);
+    }
+
+    @Benchmark
+    public byte[] javaSerializeMap() {
+        try (ByteArrayOutputStream out = new ByteArrayOutputStream(); ObjectOutputStream oos = new ObjectOutputStream(out)) {
+            oos.writeObject(record);
+            oos.flush();
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Benchmark
+    public Object javaUnSerializeMap() {
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(javaSerializedRecord))) {
+            return ois.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.jason.fabric.bench;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+import org.hyperledger.fabric.gateway.Contract;
+import org.hyperledger.fabric.gateway.ContractEvent;
+import org.hyperledger.fabric.gateway.Gateway;
+import org.hyperledger.fabric.gateway.Identity;
+import org.hyperledger.fabric.gateway.Network;
+import org.hyperledger.fabric.gateway.Transaction;
+import org.hyperledger.fabric.gateway.spi.Checkpointer;
+import org.hyperledger.fabric.gateway.spi.CommitListener;
+import org.hyperledger.fabric.sdk.BlockEvent;
+import org.hyperledger.fabric.sdk.Channel;
+import org.hyperledger.fabric.sdk.Peer;
+
+/**
+ * 不连接网络的Gateway/Network/Contract桩
+ * 查询返回固定结果，可设置每次查询的模拟延迟；事件相关方法不支持
+ */
+public class StubGateway implements Gateway {
+    public static final byte[] RESULT = ("{\"key\":\"record1\",\"name\":\"Jason\",\"hospital\":\"hospital1\","
+            + "\"diagnosis\":\"fever\",\"time\":\"2020-08-12 10:00:00\"}").getBytes(StandardCharsets.UTF_8);
+
+    private final long queryLatencyNanos;
+    private final ConcurrentHashMap<String, Network> networks = new ConcurrentHashMap<>();
+
+    public StubGateway(long queryLatencyNanos) {
+        this.queryLatencyNanos = queryLatencyNanos;
+    }
+
+    @Override
+    public Network getNetwork(String networkName) {
+        return networks.computeIfAbsent(networkName, name -> new StubNetwork());
+    }
+
+    @Override
+    public Identity getIdentity() {
+        return null;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private final class StubNetwork implements Network {
+        private final ConcurrentHashMap<String, Contract> contracts = new ConcurrentHashMap<>();
+
+        @Override
+        public Contract getContract(String chaincodeId) {
+            return contracts.computeIfAbsent(chaincodeId, id -> new StubContract());
+        }
+
+        @Override
+        public Contract getContract(String chaincodeId, String name) {
+            return getContract(chaincodeId);
+        }
+
+        @Override
+        public Gateway getGateway() {
+            return StubGateway.this;
+        }
+
+        @Override
+        public Channel getChannel() {
+            return null;
+        }
+
+        @Override
+        public Consumer<BlockEvent> addBlockListener(Consumer<BlockEvent> listener) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Consumer<BlockEvent> addBlockListener(Checkpointer checkpointer, Consumer<BlockEvent> listener) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Consumer<BlockEvent> addBlockListener(long startBlock, Consumer<BlockEvent> listener) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void removeBlockListener(Consumer<BlockEvent> listener) {
+        }
+
+        @Override
+        public CommitListener addCommitListener(CommitListener listener, Collection<Peer> peers, String transactionId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void removeCommitListener(CommitListener listener) {
+        }
+    }
+
+    private final class StubContract implements Contract {
+
+        @Override
+        public Transaction createTransaction(String name) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public byte[] submitTransaction(String name, String... args) {
+            return new byte[0];
+        }
+
+        @Override
+        public byte[] evaluateTransaction(String name, String... args) {
+            if (queryLatencyNanos > 0) {
+                LockSupport.parkNanos(queryLatencyNanos);
+            }
+            return RESULT;
+        }
+
+        @Override
+        public Consumer<ContractEvent> addContractListener(Consumer<ContractEvent> listener) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Consumer<ContractEvent> addContractListener(Consumer<ContractEvent> listener, String eventName) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Consumer<ContractEvent> addContractListener(Consumer<ContractEvent> listener, Pattern eventNamePattern) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Consumer<ContractEvent> addContractListener(Checkpointer checkpointer, Consumer<ContractEvent> listener) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Consumer<ContractEvent> addContractListener(Checkpointer checkpointer, Consumer<ContractEvent> listener, String eventName) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Consumer<ContractEvent> addContractListener(Checkpointer checkpointer, Consumer<ContractEvent> listener, Pattern eventNamePattern) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Consumer<ContractEvent> addContractListener(long startBlock, Consumer<ContractEvent> listener) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Consumer<ContractEvent> addContractListener(long startBlock, Consumer<ContractEvent> listener, String eventName) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Consumer<ContractEvent> addContractListener(long startBlock, Consumer<ContractEvent> listener, Pattern eventNamePattern) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void removeContractListener(Consumer<ContractEvent> listener) {
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.jason.fabric.pool;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import com.jason.fabric.pool.cache.AccessProfile;
+import com.jason.fabric.pool.cache.CacheSnapshot;
+import com.jason.fabric.pool.cache.ProfiledQuery;
+import com.jason.fabric.pool.cache.QueryCaches;
+import com.jason.fabric.pool.conf.Global;
+import com.jason.fabric.pool.utils.StringUtil;
+import org.apache.log4j.Logger;
+
+/**
+ * 启动预热，部署或redis清空后先填充缓存再对外服务，避免首批查询全部发往peer
+ * 先导入warmSnapshotFile快照，再按访问画像并行重放最热的warmProfileSize个查询；
+ * 重放经过连接池和查询缓存，已在缓存中的条目直接命中，只有未命中的查询发往peer；重放期间暂停记录访问画像，
+ * 预热不增加查询的访问次数，超时后仍在进行的查询可能被记录
+ * 同时进行的查询不超过warmConcurrency个，总耗时不超过warmTimeoutMillis，超时后不再提交新的查询
+ */
+public class CacheWarmer {
+    private static final Logger log = Logger.getLogger(CacheWarmer.class);
+
+    private final AccessProfile profile;
+    private final Function<ProfiledQuery, CompletableFuture<byte[]>> query;
+
+    private CacheWarmer() {
+        this(AccessProfile.getInstance(), q -> FabricPoolRegistry.getInstance().queryAsync(q.getUserName(), q.getChannelName(),
+                q.getChainCode(), q.getFcn(), q.getArguments()));
+    }
+
+    /**
+     * query执行一次重放的查询
+     */
+    public CacheWarmer(AccessProfile profile, Function<ProfiledQuery, CompletableFuture<byte[]>> query) {
+        this.profile = profile;
+        this.query = query;
+    }
+
+    public static CacheWarmer getInstance() {
+        return SingletonHolder.instance;
+    }
+
+    /**
+     * 按配置预热，未开启缓存或访问画像时不做任何事；应在服务就绪之前调用
+     */
+    public WarmUpResult warmUp() {
+        Global global = Global.getInstance();
+        if (!global.isUseCache() || !profile.isEnabled()) {
+            return new WarmUpResult(0, 0, 0, 0, false, 0);
+        }
+        long start = System.currentTimeMillis();
+        int restored = 0;
+        String snapshot = global.getWarmSnapshotFile();
+        if (!StringUtil.isBlank(snapshot) && Files.exists(Paths.get(snapshot))) {
+            try {
+                restored = importSnapshot(Paths.get(snapshot));
+            } catch (IOException | RuntimeException e) {
+                log.error("restore cache snapshot " + snapshot + " failed", e);
+            }
+        }
+        long remaining = global.getWarmTimeoutMillis() - (System.currentTimeMillis() - start);
+        WarmUpResult replayed = replay(profile.top(global.getWarmProfileSize()), global.getWarmConcurrency(), remaining);
+        WarmUpResult result = new WarmUpResult(restored, replayed.getReplayedCount(), replayed.getSuccessCount(),
+                replayed.getFailureCount(), replayed.isTimedOut(), System.currentTimeMillis() - start);
+        log.info("cache warm up: " + result);
+        return result;
+    }
+
+    /**
+     * 并行重放查询，失败的查询只计数
+     */
+    public WarmUpResult replay(List<ProfiledQuery> queries, int concurrency, long timeoutMillis) {
+        long start = System.currentTimeMillis();
+        long deadline = start + timeoutMillis;
+        int permits = Math.max(concurrency, 1);
+        Semaphore inFlight = new Semaphore(permits);
+        AtomicInteger success = new AtomicInteger();
+        AtomicInteger failure = new AtomicInteger();
+        int replayed = 0;
+        boolean timedOut = false;
+        profile.suspend();
+        try {
+            for (ProfiledQuery q : queries) {
+                if (!inFlight.tryAcquire(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS)) {
+                    timedOut = true;
+                    break;
+                }
+                CompletableFuture<byte[]> future;
+                try {
+                    future = query.apply(q);
+                } catch (RuntimeException e) {
+                    future = new CompletableFuture<>();
+                    future.completeExceptionally(e);
+                }
+                future.whenComplete((result, e) -> {
+                    if (e == null) {
+                        success.incrementAndGet();
+                    } else {
+                        failure.incrementAndGet();
+                        log.debug("replay " + q + " failed: " + e.getMessage());
+                    }
+                    inFlight.release();
+                });
+                replayed++;
+            }
+            //等待进行中的查询完成
+            if (!inFlight.tryAcquire(permits, Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS)) {
+                timedOut = true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            timedOut = true;
+        } finally {
+            profile.resume();
+        }
+        return new WarmUpResult(0, replayed, success.get(), failure.get(), timedOut, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 导出访问画像中最热查询的缓存条目，返回导出的条目数
+     */
+    public int exportSnapshot(Path path) throws IOException {
+        return CacheSnapshot.export(QueryCaches.getInstance().getCache(), profile.top(Global.getInstance().getWarmProfileSize()),
+                path);
+    }
+
+    /**
+     * 导入缓存快照，返回导入的条目数
+     */
+    public int importSnapshot(Path path) throws IOException {
+        QueryCaches caches = QueryCaches.getInstance();
+        return CacheSnapshot.restore(caches.getCache(), caches.getInvalidator(), path);
+    }
+
+    /**
+     * 保存访问画像，停止服务前调用
+     */
+    public void saveProfile() throws IOException {
+        profile.save();
+    }
+
+    private static class SingletonHolder {
+        private static final CacheWarmer instance = new CacheWarmer();  //静态初始化器，由JVM来保证线程安全
+    }
+}
@@ -0,0 +1,72 @@
+package com.jason.fabric.pool;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个连接池(用户, 通道)上的调用统计，由同一连接池的所有连接共享
+ */
+public class ConnectionMetrics {
+    private final LongAdder queryCount = new LongAdder();
+    private final LongAdder queryErrorCount = new LongAdder();
+    private final LongAdder queryNanos = new LongAdder();
+    private final LongAdder invokeCount = new LongAdder();
+    private final LongAdder invokeErrorCount = new LongAdder();
+    private final LongAdder invokeNanos = new LongAdder();
+    private final LongAdder retryCount = new LongAdder();
+
+    public void recordQuery(long nanos, boolean error) {
+        queryCount.increment();
+        queryNanos.add(nanos);
+        if (error) {
+            queryErrorCount.increment();
+        }
+    }
+
+    public void recordInvoke(long nanos, boolean error) {
+        invokeCount.increment();
+        invokeNanos.add(nanos);
+        if (error) {
+            invokeErrorCount.increment();
+        }
+    }
+
+    public void recordRetry() {
+        retryCount.increment();
+    }
+
+    public long getQueryCount() {
+        return queryCount.sum();
+    }
+
+    public long getQueryErrorCount() {
+        return queryErrorCount.sum();
+    }
+
+    /**
+     * 查询平均耗时，单位毫秒，包含命中缓存的查询
+     */
+    public double getQueryMeanMillis() {
+        long count = queryCount.sum();
+        return count == 0 ? 0 : queryNanos.sum() / 1e6 / count;
+    }
+
+    public long getInvokeCount() {
+        return invokeCount.sum();
+    }
+
+    public long getInvokeErrorCount() {
+        return invokeErrorCount.sum();
+    }
+
+    /**
+     * 提交交易平均耗时，单位毫秒，异步提交统计到提交事件到达为止
+     */
+    public double getInvokeMeanMillis() {
+        long count = invokeCount.sum();
+        return count == 0 ? 0 : invokeNanos.sum() / 1e6 / count;
+    }
+
+    public long getRetryCount() {
+        return retryCount.sum();
+    }
+}
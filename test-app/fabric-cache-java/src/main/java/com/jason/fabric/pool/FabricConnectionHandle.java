@@ -0,0 +1,107 @@
+package com.jason.fabric.pool;
+
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.jason.fabric.pool.api.FabricConnection;
+import com.jason.fabric.pool.api.QueryResult;
+import com.jason.fabric.pool.api.QuerySpec;
+import org.apache.commons.pool2.ObjectPool;
+import org.apache.log4j.Logger;
+
+/**
+ * 从连接池借出的连接，close()时自动归还，支持try-with-resources
+ * <pre>
+ * try (FabricConnectionHandle connection = FabricPoolRegistry.getInstance().borrow("test", "mychannel")) {
+ *     connection.query("hospital_recordInfo", "QueryRecord", "110121");
+ * }
+ * </pre>
+ */
+public class FabricConnectionHandle implements FabricConnection, AutoCloseable {
+    private static final Logger log = Logger.getLogger(FabricConnectionHandle.class);
+
+    private final ObjectPool<FabricConnection> pool;
+    private final FabricConnection connection;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private volatile boolean broken;
+
+    FabricConnectionHandle(ObjectPool<FabricConnection> pool, FabricConnection connection) {
+        this.pool = pool;
+        this.connection = connection;
+    }
+
+    @Override
+    public String query(String chainCode, String fcn, String... arguments) throws Exception {
+        return connection().query(chainCode, fcn, arguments);
+    }
+
+    @Override
+    public String invoke(String chainCode, String fcn, String... arguments) throws Exception {
+        return connection().invoke(chainCode, fcn, arguments);
+    }
+
+    @Override
+    public byte[] queryBytes(String chainCode, String fcn, String... arguments) throws Exception {
+        return connection().queryBytes(chainCode, fcn, arguments);
+    }
+
+    @Override
+    public byte[] invokeBytes(String chainCode, String fcn, String... arguments) throws Exception {
+        return connection().invokeBytes(chainCode, fcn, arguments);
+    }
+
+    @Override
+    public void queryTo(OutputStream out, String chainCode, String fcn, String... arguments) throws Exception {
+        connection().queryTo(out, chainCode, fcn, arguments);
+    }
+
+    @Override
+    public CompletableFuture<byte[]> queryAsync(String chainCode, String fcn, String... arguments) {
+        return connection().queryAsync(chainCode, fcn, arguments);
+    }
+
+    @Override
+    public CompletableFuture<byte[]> invokeAsync(String chainCode, String fcn, String... arguments) throws Exception {
+        return connection().invokeAsync(chainCode, fcn, arguments);
+    }
+
+    @Override
+    public List<QueryResult> queryAll(List<QuerySpec> specs) throws Exception {
+        return connection().queryAll(specs);
+    }
+
+    /**
+     * 标记连接已损坏，归还时将直接销毁而不是放回池中
+     */
+    public void invalidate() {
+        broken = true;
+    }
+
+    /**
+     * 归还连接，重复调用无副作用；归还或销毁失败时连接不再回到池中，只记录日志，不影响调用方的结果
+     */
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (broken) {
+                pool.invalidateObject(connection);
+            } else {
+                pool.returnObject(connection);
+            }
+        } catch (Exception e) {
+            log.warn("return fabric connection to pool failed: " + e.getMessage());
+        }
+    }
+
+    private FabricConnection connection() {
+        if (closed.get()) {
+            throw new IllegalStateException("fabric connection has been returned to pool");
+        }
+        return connection;
+    }
+}
@@ -1,48 +1,156 @@
 package com.jason.fabric.pool;
 
-import java.lang.reflect.Proxy;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
 
-import com.jason.fabric.pool.impl.FabricContractConnectCacheProxyImpl;
+import com.jason.fabric.pool.cache.CacheCoherence;
+import com.jason.fabric.pool.cache.QueryCaches;
+import com.jason.fabric.pool.cache.WriteSetInvalidator;
 import com.jason.fabric.pool.conf.Global;
 import com.jason.fabric.pool.api.FabricConnection;
+import com.jason.fabric.pool.impl.FabricContractConnectCacheImpl;
 import com.jason.fabric.pool.impl.FabricContractConnectImpl;
+import com.jason.fabric.pool.impl.FabricContractConnectMetricsImpl;
+import com.jason.fabric.pool.impl.FabricContractConnectRetryImpl;
+import com.jason.fabric.pool.impl.FabricGateways;
 import org.apache.commons.pool2.BasePooledObjectFactory;
 import org.apache.commons.pool2.PooledObject;
 import org.apache.commons.pool2.impl.DefaultPooledObject;
 import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 import org.hyperledger.fabric.gateway.Gateway;
-import org.hyperledger.fabric.gateway.Wallet;
-import org.hyperledger.fabric.gateway.Wallets;
+import org.hyperledger.fabric.gateway.Network;
 
 public class FabricGatewayPool extends GenericObjectPool<FabricConnection> {
     public FabricGatewayPool(String userName, String channel) {
-        super(new ContractPoolFactory(userName, channel), Global.getInstance());
+        super(new ContractPoolFactory(userName, channel, null), poolConfig());
+    }
+
+    /**
+     * 使用调用方提供的Gateway创建连接池，所有连接共享该Gateway，关闭连接池时不会关闭它
+     */
+    public FabricGatewayPool(String userName, String channel, Gateway gateway) {
+        super(new ContractPoolFactory(userName, channel, gateway), poolConfig());
+    }
+
+    /**
+     * 虚拟线程模式下等待连接的线程只是挂起，不占用平台线程，
+     * 因此使用公平队列按到达顺序分配连接，并允许更长的等待时间，由连接池数量限制并发而不是直接失败
+     */
+    private static GenericObjectPoolConfig<FabricConnection> poolConfig() {
+        Global global = Global.getInstance();
+        if (!global.isVirtualThreads()) {
+            return global;
+        }
+        GenericObjectPoolConfig<FabricConnection> config = global.clone();
+        config.setFairness(true);
+        config.setBlockWhenExhausted(true);
+        config.setMaxWaitMillis(global.getVirtualThreadMaxWaitMillis());
+        return config;
+    }
+
+    /**
+     * 本连接池所有连接共享的调用统计
+     */
+    public ConnectionMetrics getMetrics() {
+        return ((ContractPoolFactory) getFactory()).metrics;
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        ((ContractPoolFactory) getFactory()).releaseSharedGateway();
     }
 
     private static class ContractPoolFactory extends BasePooledObjectFactory<FabricConnection> {
         private final String userName;
         private final String channel;
+        private final boolean shareGateway;
+        private final Gateway providedGateway;
+        private final ConnectionMetrics metrics = new ConnectionMetrics();
+        //虚拟线程模式下不使用synchronized
+        private final ReentrantLock lock = new ReentrantLock();
+        private Gateway sharedGateway;
+        private boolean released;
+        //共享模式下登记到CacheCoherence的Network，关闭连接池时注销
+        private Network coherenceNetwork;
+        //非共享模式下每个连接独占的Gateway，销毁连接时一并关闭，按引用比较
+        private final Map<FabricConnection, Gateway> ownedGateways = Collections.synchronizedMap(new IdentityHashMap<>());
 
-        ContractPoolFactory(String userName, String channel){
+        ContractPoolFactory(String userName, String channel, Gateway providedGateway){
             this.userName = userName;
             this.channel = channel;
+            this.providedGateway = providedGateway;
+            this.shareGateway = providedGateway != null || Global.getInstance().isShareGateway();
         }
 
         @Override
         public FabricConnection create() throws Exception {
-            Path walletDirectory = Paths.get(Global.getInstance().getWalletDirPath());
-            Wallet wallet = Wallets.newFileSystemWallet(walletDirectory);
-            Path netConfigPath = Paths.get(Global.getInstance().getNetConfigFile());
-            Gateway.Builder builder = Gateway.createBuilder().identity(wallet, userName).networkConfig(netConfigPath);
-            Gateway gateway = builder.connect();
-            FabricContractConnectImpl fCCI = new FabricContractConnectImpl(gateway.getNetwork(channel));
-            if (Global.getInstance().isUseCache()) {
-                FabricContractConnectCacheProxyImpl proxy = new FabricContractConnectCacheProxyImpl(fCCI, userName, channel);
-                return (FabricConnection) Proxy.newProxyInstance(FabricContractConnectImpl.class.getClassLoader(), new Class[]{FabricConnection.class}, proxy);
-            } else {
-                return fCCI;
+            Gateway gateway = shareGateway ? sharedGateway() : FabricGateways.connect(userName);
+            FabricConnection connection;
+            try {
+                Network network = gateway.getNetwork(channel);
+                connection = decorate(new FabricContractConnectImpl(network));
+                registerCoherence(network);
+            } catch (RuntimeException e) {
+                if (!shareGateway) {
+                    gateway.close();
+                }
+                throw e;
+            }
+            if (!shareGateway) {
+                ownedGateways.put(connection, gateway);
+            }
+            return connection;
+        }
+
+        /**
+         * 组装装饰器链：统计 -> 缓存 -> 重试 -> 连接
+         * 重试在缓存之内，只作用于真正发往peer的查询；统计在最外层，包含命中缓存的查询
+         */
+        private FabricConnection decorate(FabricContractConnectImpl fCCI) {
+            Global global = Global.getInstance();
+            FabricConnection connection = fCCI;
+            if (global.getRetryTimes() > 0) {
+                connection = new FabricContractConnectRetryImpl(connection, global.getRetryTimes(), global.getRetryBackoffMillis(), metrics);
+            }
+            if (global.isUseCache()) {
+                QueryCaches caches = QueryCaches.getInstance();
+                connection = new FabricContractConnectCacheImpl(connection, caches.getCache(), invalidator(), caches.getMissLock(),
+                        userName, channel);
+            }
+            if (global.isUseMetrics()) {
+                connection = new FabricContractConnectMetricsImpl(connection, metrics);
+            }
+            return connection;
+        }
+
+        private static WriteSetInvalidator invalidator() {
+            return Global.getInstance().isUseCache() ? QueryCaches.getInstance().getInvalidator() : null;
+        }
+
+        /**
+         * 登记Network用于监听区块失效缓存，共享模式下每个连接池只登记一次
+         */
+        private void registerCoherence(Network network) {
+            WriteSetInvalidator invalidator = invalidator();
+            if (invalidator == null) {
+                return;
+            }
+            if (!shareGateway) {
+                CacheCoherence.getInstance().register(channel, network, invalidator);
+                return;
+            }
+            lock.lock();
+            try {
+                if (coherenceNetwork == null && !released) {
+                    CacheCoherence.getInstance().register(channel, network, invalidator);
+                    coherenceNetwork = network;
+                }
+            } finally {
+                lock.unlock();
             }
         }
 
@@ -51,5 +159,53 @@ public class FabricGatewayPool extends GenericObjectPool<FabricConnection> {
             return new DefaultPooledObject<>(obj);
         }
 
+        @Override
+        public void destroyObject(PooledObject<FabricConnection> p) {
+            Gateway gateway = ownedGateways.remove(p.getObject());
+            if (gateway != null) {
+                if (invalidator() != null) {
+                    CacheCoherence.getInstance().unregister(channel, gateway.getNetwork(channel));
+                }
+                gateway.close();
+            }
+        }
+
+        /**
+         * 共享模式下同一身份的所有连接复用一个Gateway，连接池只限制并发数
+         */
+        private Gateway sharedGateway() throws Exception {
+            lock.lock();
+            try {
+                if (released) {
+                    throw new IllegalStateException("Pool not open");
+                }
+                if (providedGateway != null) {
+                    return providedGateway;
+                }
+                if (sharedGateway == null) {
+                    sharedGateway = FabricGateways.getInstance().acquire(userName);
+                }
+                return sharedGateway;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void releaseSharedGateway() {
+            lock.lock();
+            try {
+                released = true;
+                if (coherenceNetwork != null) {
+                    CacheCoherence.getInstance().unregister(channel, coherenceNetwork);
+                    coherenceNetwork = null;
+                }
+                if (sharedGateway != null) {
+                    sharedGateway = null;
+                    FabricGateways.getInstance().release(userName);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
     }
 }
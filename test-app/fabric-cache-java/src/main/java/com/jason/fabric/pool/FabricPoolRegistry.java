@@ -0,0 +1,247 @@
+package com.jason.fabric.pool;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+import com.jason.fabric.pool.api.QueryResult;
+import com.jason.fabric.pool.api.QuerySpec;
+import com.jason.fabric.pool.conf.Global;
+import com.jason.fabric.pool.utils.ThreadPoolUtil;
+import org.apache.log4j.Logger;
+
+/**
+ * 进程内连接池注册表，按(用户, 通道)维度复用FabricGatewayPool
+ * 空闲超过poolIdleTimeout且没有借出连接的池会被后台线程关闭回收
+ */
+public class FabricPoolRegistry {
+    private static final Logger log = Logger.getLogger(FabricPoolRegistry.class);
+
+    private final ConcurrentHashMap<PoolKey, PoolEntry> pools = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService evictor;
+    private final BiFunction<String, String, FabricGatewayPool> poolFactory;
+    private final long idleTimeout;
+
+    private FabricPoolRegistry() {
+        this(FabricGatewayPool::new, Global.getInstance().getPoolIdleTimeout(), Global.getInstance().getPoolIdleCheckInterval());
+    }
+
+    /**
+     * poolFactory按(用户, 通道)创建连接池，idleCheckInterval不大于0时不在后台回收空闲的池
+     */
+    FabricPoolRegistry(BiFunction<String, String, FabricGatewayPool> poolFactory, long idleTimeout, long idleCheckInterval) {
+        this.poolFactory = poolFactory;
+        this.idleTimeout = idleTimeout;
+        evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "fabric-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (idleCheckInterval > 0) {
+            evictor.scheduleWithFixedDelay(this::evictIdlePools, idleCheckInterval, idleCheckInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public static FabricPoolRegistry getInstance() {
+        return SingletonHolder.instance;
+    }
+
+    /**
+     * 获取(用户, 通道)对应的连接池，不存在则创建
+     */
+    public FabricGatewayPool getPool(String userName, String channel) {
+        return entry(userName, channel).pool;
+    }
+
+    /**
+     * 借出一个连接，使用完毕后通过close()归还，推荐配合try-with-resources使用
+     */
+    public FabricConnectionHandle borrow(String userName, String channel) throws Exception {
+        PoolKey key = new PoolKey(userName, channel);
+        while (true) {
+            PoolEntry entry = pools.computeIfAbsent(key, this::newEntry);
+            entry.touch();
+            if (entry.pool.isClosed()) {
+                pools.remove(key, entry);
+                continue;
+            }
+            try {
+                return new FabricConnectionHandle(entry.pool, entry.pool.borrowObject());
+            } catch (IllegalStateException e) {
+                //池在借出过程中被回收，重新创建
+                if (!entry.pool.isClosed()) {
+                    throw e;
+                }
+                pools.remove(key, entry);
+            }
+        }
+    }
+
+    /**
+     * 异步查询，在异步线程池中借出连接，查询完成即归还
+     */
+    public CompletableFuture<byte[]> queryAsync(String userName, String channel, String chainCode, String fcn, String... arguments) {
+        return CompletableFuture.supplyAsync(() -> {
+            try (FabricConnectionHandle connection = borrow(userName, channel)) {
+                return connection.queryBytes(chainCode, fcn, arguments);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, ThreadPoolUtil.getInstance().getAsyncExecutor());
+    }
+
+    /**
+     * 批量查询，借出一个连接完成整批查询后归还
+     */
+    public List<QueryResult> queryAll(String userName, String channel, List<QuerySpec> specs) throws Exception {
+        try (FabricConnectionHandle connection = borrow(userName, channel)) {
+            return connection.queryAll(specs);
+        }
+    }
+
+    /**
+     * 异步提交交易，连接在交易发送给orderer后即归还，返回的future在收到提交事件后完成
+     */
+    public CompletableFuture<byte[]> invokeAsync(String userName, String channel, String chainCode, String fcn, String... arguments) {
+        return CompletableFuture.supplyAsync(() -> {
+            try (FabricConnectionHandle connection = borrow(userName, channel)) {
+                return connection.invokeAsync(chainCode, fcn, arguments);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, ThreadPoolUtil.getInstance().getAsyncExecutor()).thenCompose(committed -> committed);
+    }
+
+    /**
+     * 获取单个连接池的借出归还统计
+     */
+    public PoolStats getStats(String userName, String channel) {
+        PoolEntry entry = pools.get(new PoolKey(userName, channel));
+        return entry == null ? null : entry.stats();
+    }
+
+    /**
+     * 获取所有连接池的统计，key为 用户@通道
+     */
+    public Map<String, PoolStats> getAllStats() {
+        Map<String, PoolStats> stats = new LinkedHashMap<>();
+        for (PoolEntry entry : pools.values()) {
+            stats.put(entry.key.toString(), entry.stats());
+        }
+        return Collections.unmodifiableMap(stats);
+    }
+
+    /**
+     * 获取所有连接池的调用统计，key为 用户@通道
+     */
+    public Map<String, ConnectionMetrics> getAllMetrics() {
+        Map<String, ConnectionMetrics> metrics = new LinkedHashMap<>();
+        for (PoolEntry entry : pools.values()) {
+            metrics.put(entry.key.toString(), entry.pool.getMetrics());
+        }
+        return Collections.unmodifiableMap(metrics);
+    }
+
+    /**
+     * 关闭空闲超时且无借出连接的池
+     */
+    public void evictIdlePools() {
+        long now = System.currentTimeMillis();
+        for (PoolEntry entry : pools.values()) {
+            if (entry.pool.getNumActive() == 0 && now - entry.lastAccessMillis > idleTimeout
+                    && pools.remove(entry.key, entry)) {
+                log.info("evict idle fabric pool " + entry.key);
+                entry.pool.close();
+            }
+        }
+    }
+
+    /**
+     * 关闭所有连接池
+     */
+    public void close() {
+        evictor.shutdownNow();
+        for (PoolEntry entry : pools.values()) {
+            if (pools.remove(entry.key, entry)) {
+                entry.pool.close();
+            }
+        }
+    }
+
+    private PoolEntry entry(String userName, String channel) {
+        PoolEntry entry = pools.computeIfAbsent(new PoolKey(userName, channel), this::newEntry);
+        entry.touch();
+        return entry;
+    }
+
+    private PoolEntry newEntry(PoolKey key) {
+        return new PoolEntry(key, poolFactory.apply(key.userName, key.channel));
+    }
+
+    private static final class PoolKey {
+        private final String userName;
+        private final String channel;
+
+        PoolKey(String userName, String channel) {
+            this.userName = userName;
+            this.channel = channel;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof PoolKey)) {
+                return false;
+            }
+            PoolKey other = (PoolKey) o;
+            return Objects.equals(userName, other.userName) && Objects.equals(channel, other.channel);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userName, channel);
+        }
+
+        @Override
+        public String toString() {
+            return userName + "@" + channel;
+        }
+    }
+
+    private static final class PoolEntry {
+        private final PoolKey key;
+        private final FabricGatewayPool pool;
+        private volatile long lastAccessMillis;
+
+        PoolEntry(PoolKey key, FabricGatewayPool pool) {
+            this.key = key;
+            this.pool = pool;
+            this.lastAccessMillis = System.currentTimeMillis();
+        }
+
+        void touch() {
+            lastAccessMillis = System.currentTimeMillis();
+        }
+
+        PoolStats stats() {
+            return new PoolStats(pool.getNumActive(), pool.getNumIdle(), pool.getBorrowedCount(), pool.getReturnedCount(),
+                    pool.getCreatedCount(), pool.getDestroyedCount(), pool.getMeanBorrowWaitTimeMillis(),
+                    pool.getMaxBorrowWaitTimeMillis(), lastAccessMillis);
+        }
+    }
+
+    private static class SingletonHolder {
+        private static final FabricPoolRegistry instance = new FabricPoolRegistry();  //静态初始化器，由JVM来保证线程安全
+    }
+}
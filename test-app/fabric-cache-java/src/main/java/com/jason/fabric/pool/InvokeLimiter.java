@@ -0,0 +1,90 @@
+package com.jason.fabric.pool;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.jason.fabric.pool.conf.Global;
+
+/**
+ * 写入并发限制：同时背书发送的交易数不超过invokeParallelism，突发写入时排队而不是占满连接池和peer
+ * 不合并交易，每笔invoke仍是一笔独立的交易，分别背书、排序和提交；需要减少交易笔数时，应由chaincode提供一次写入多条记录的方法
+ * 交易通过invokeAsync发送，发送后即释放并发名额，不为每笔交易阻塞等待提交，每个调用方的future在该笔交易提交后单独完成或失败
+ * <pre>
+ * InvokeLimiter limiter = new InvokeLimiter("test", "mychannel");
+ * limiter.invoke("hospital_recordInfo", "Save", "110121", "zhangsan", "[\"110114\"]", "110114").get();
+ * </pre>
+ */
+public class InvokeLimiter implements AutoCloseable {
+
+    private final Submitter submitter;
+    private final ExecutorService sender;
+    private volatile boolean closed;
+
+    public InvokeLimiter(String userName, String channel) {
+        this((chainCode, fcn, arguments) -> {
+            try (FabricConnectionHandle connection = FabricPoolRegistry.getInstance().borrow(userName, channel)) {
+                return connection.invokeAsync(chainCode, fcn, arguments);
+            }
+        }, Global.getInstance().getInvokeParallelism());
+    }
+
+    InvokeLimiter(Submitter submitter, int parallelism) {
+        this.submitter = submitter;
+        AtomicInteger index = new AtomicInteger();
+        //invokeAsync在背书和发送期间阻塞，由固定数量的发送线程执行，调用方不阻塞
+        this.sender = Executors.newFixedThreadPool(Math.max(1, parallelism), r -> {
+            Thread thread = new Thread(r, "fabric-invoke-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 排队发送，返回的future在该笔交易提交后完成
+     */
+    public CompletableFuture<byte[]> invoke(String chainCode, String fcn, String... arguments) {
+        CompletableFuture<byte[]> future = new CompletableFuture<>();
+        if (closed) {
+            future.completeExceptionally(new IllegalStateException("limiter is closed"));
+            return future;
+        }
+        try {
+            sender.execute(() -> send(future, chainCode, fcn, arguments));
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * 不再接受新的交易，已排队和已发送的交易仍会正常完成
+     */
+    @Override
+    public void close() {
+        closed = true;
+        sender.shutdown();
+    }
+
+    private void send(CompletableFuture<byte[]> future, String chainCode, String fcn, String[] arguments) {
+        try {
+            submitter.submit(chainCode, fcn, arguments).whenComplete((result, e) -> {
+                if (e != null) {
+                    future.completeExceptionally(e);
+                } else {
+                    future.complete(result);
+                }
+            });
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    interface Submitter {
+        /**
+         * 发送一笔交易，返回提交完成的future
+         */
+        CompletableFuture<byte[]> submit(String chainCode, String fcn, String... arguments) throws Exception;
+    }
+}
@@ -0,0 +1,72 @@
+package com.jason.fabric.pool;
+
+/**
+ * 连接池统计快照
+ */
+public class PoolStats {
+    private final int numActive;            //当前借出数
+    private final int numIdle;              //当前空闲数
+    private final long borrowedCount;       //累计借出次数
+    private final long returnedCount;       //累计归还次数
+    private final long createdCount;        //累计创建连接数
+    private final long destroyedCount;      //累计销毁连接数
+    private final long meanBorrowWaitMillis; //平均借出等待时间
+    private final long maxBorrowWaitMillis;  //最大借出等待时间
+    private final long lastAccessMillis;    //最近访问时间
+
+    public PoolStats(int numActive, int numIdle, long borrowedCount, long returnedCount, long createdCount,
+                     long destroyedCount, long meanBorrowWaitMillis, long maxBorrowWaitMillis, long lastAccessMillis) {
+        this.numActive = numActive;
+        this.numIdle = numIdle;
+        this.borrowedCount = borrowedCount;
+        this.returnedCount = returnedCount;
+        this.createdCount = createdCount;
+        this.destroyedCount = destroyedCount;
+        this.meanBorrowWaitMillis = meanBorrowWaitMillis;
+        this.maxBorrowWaitMillis = maxBorrowWaitMillis;
+        this.lastAccessMillis = lastAccessMillis;
+    }
+
+    public int getNumActive() {
+        return numActive;
+    }
+
+    public int getNumIdle() {
+        return numIdle;
+    }
+
+    public long getBorrowedCount() {
+        return borrowedCount;
+    }
+
+    public long getReturnedCount() {
+        return returnedCount;
+    }
+
+    public long getCreatedCount() {
+        return createdCount;
+    }
+
+    public long getDestroyedCount() {
+        return destroyedCount;
+    }
+
+    public long getMeanBorrowWaitMillis() {
+        return meanBorrowWaitMillis;
+    }
+
+    public long getMaxBorrowWaitMillis() {
+        return maxBorrowWaitMillis;
+    }
+
+    public long getLastAccessMillis() {
+        return lastAccessMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "PoolStats{active=" + numActive + ", idle=" + numIdle + ", borrowed=" + borrowedCount
+                + ", returned=" + returnedCount + ", created=" + createdCount + ", destroyed=" + destroyedCount
+                + ", meanBorrowWait=" + meanBorrowWaitMillis + "ms, maxBorrowWait=" + maxBorrowWaitMillis + "ms}";
+    }
+}
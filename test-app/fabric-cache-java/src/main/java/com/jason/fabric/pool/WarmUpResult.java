@@ -0,0 +1,53 @@
+package com.jason.fabric.pool;
+
+/**
+ * 一次预热的结果
+ */
+public class WarmUpResult {
+    private final int restoredCount;        //从快照导入的条目数
+    private final int replayedCount;        //重放的查询数
+    private final int successCount;         //重放成功的查询数
+    private final int failureCount;         //重放失败的查询数
+    private final boolean timedOut;         //是否因超时未重放全部查询
+    private final long elapsedMillis;       //耗时
+
+    public WarmUpResult(int restoredCount, int replayedCount, int successCount, int failureCount, boolean timedOut,
+                        long elapsedMillis) {
+        this.restoredCount = restoredCount;
+        this.replayedCount = replayedCount;
+        this.successCount = successCount;
+        this.failureCount = failureCount;
+        this.timedOut = timedOut;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public int getRestoredCount() {
+        return restoredCount;
+    }
+
+    public int getReplayedCount() {
+        return replayedCount;
+    }
+
+    public int getSuccessCount() {
+        return successCount;
+    }
+
+    public int getFailureCount() {
+        return failureCount;
+    }
+
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "restored " + restoredCount + ", replayed " + replayedCount + " (" + successCount + " succeeded, " + failureCount
+                + " failed" + (timedOut ? ", timed out" : "") + ") in " + elapsedMillis + "ms";
+    }
+}
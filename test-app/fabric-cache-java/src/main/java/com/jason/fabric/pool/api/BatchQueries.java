@@ -0,0 +1,44 @@
+package com.jason.fabric.pool.api;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * 批量查询的公共实现，FabricConnection.queryAll的默认实现和各实现类共用
+ */
+public final class BatchQueries {
+
+    private BatchQueries() {
+    }
+
+    /**
+     * 每个查询调用一次queryAsync，全部完成后按顺序返回结果
+     */
+    public static List<QueryResult> fanOut(FabricConnection connection, List<QuerySpec> specs) {
+        List<CompletableFuture<byte[]>> futures = new ArrayList<>(specs.size());
+        for (QuerySpec spec : specs) {
+            futures.add(connection.queryAsync(spec.getChainCode(), spec.getFcn(), spec.getArguments()));
+        }
+        return await(futures);
+    }
+
+    /**
+     * 等待所有查询完成，失败的查询记录其原始异常
+     */
+    public static List<QueryResult> await(List<CompletableFuture<byte[]>> futures) {
+        List<QueryResult> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<byte[]> future : futures) {
+            try {
+                results.add(QueryResult.success(future.join()));
+            } catch (CompletionException e) {
+                results.add(QueryResult.failure(e.getCause() != null ? e.getCause() : e));
+            } catch (CancellationException e) {
+                results.add(QueryResult.failure(e));
+            }
+        }
+        return results;
+    }
+}
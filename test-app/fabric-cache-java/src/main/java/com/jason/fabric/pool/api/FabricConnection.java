@@ -1,9 +1,46 @@
 package com.jason.fabric.pool.api;
 
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 public interface FabricConnection {
 
     String query(String chainCode, String fcn, String... arguments) throws Exception;
 
     String invoke(String chainCode, String fcn, String... arguments) throws Exception;
 
+    /**
+     * 查询，直接返回chaincode的原始字节，不做字符串解码
+     */
+    byte[] queryBytes(String chainCode, String fcn, String... arguments) throws Exception;
+
+    /**
+     * 提交交易，直接返回chaincode的原始字节，不做字符串解码
+     */
+    byte[] invokeBytes(String chainCode, String fcn, String... arguments) throws Exception;
+
+    /**
+     * 查询，并将结果原样写入输出流，适用于直接写入http响应
+     */
+    void queryTo(OutputStream out, String chainCode, String fcn, String... arguments) throws Exception;
+
+    /**
+     * 异步查询，立即返回，查询在异步线程池中执行
+     */
+    CompletableFuture<byte[]> queryAsync(String chainCode, String fcn, String... arguments);
+
+    /**
+     * 异步提交交易，背书并发送给orderer后即返回，返回的future在收到提交事件后完成
+     */
+    CompletableFuture<byte[]> invokeAsync(String chainCode, String fcn, String... arguments) throws Exception;
+
+    /**
+     * 批量查询，各查询并行执行，结果与specs按顺序一一对应，单个查询失败不影响其他查询
+     * 默认每个查询调用一次queryAsync，重试等按查询生效的行为随之生效
+     */
+    default List<QueryResult> queryAll(List<QuerySpec> specs) throws Exception {
+        return BatchQueries.fanOut(this, specs);
+    }
+
 }
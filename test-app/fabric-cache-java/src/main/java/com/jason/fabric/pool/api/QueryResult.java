@@ -0,0 +1,46 @@
+package com.jason.fabric.pool.api;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 批量查询中一次查询的结果，成功时为chaincode返回的原始字节，失败时为异常
+ */
+public final class QueryResult {
+    private final byte[] value;
+    private final Throwable error;
+
+    private QueryResult(byte[] value, Throwable error) {
+        this.value = value;
+        this.error = error;
+    }
+
+    public static QueryResult success(byte[] value) {
+        return new QueryResult(value, null);
+    }
+
+    public static QueryResult failure(Throwable error) {
+        return new QueryResult(null, error);
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * 查询结果，失败时为null
+     */
+    public byte[] getValue() {
+        return value;
+    }
+
+    /**
+     * 按UTF-8解码的查询结果，失败时为null
+     */
+    public String getString() {
+        return value == null ? null : new String(value, StandardCharsets.UTF_8);
+    }
+
+    public Throwable getError() {
+        return error;
+    }
+}
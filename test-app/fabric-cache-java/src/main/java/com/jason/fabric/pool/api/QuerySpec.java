@@ -0,0 +1,32 @@
+package com.jason.fabric.pool.api;
+
+/**
+ * 批量查询中的一次查询
+ */
+public final class QuerySpec {
+    private final String chainCode;
+    private final String fcn;
+    private final String[] arguments;
+
+    public QuerySpec(String chainCode, String fcn, String... arguments) {
+        this.chainCode = chainCode;
+        this.fcn = fcn;
+        this.arguments = arguments == null ? new String[0] : arguments;
+    }
+
+    public static QuerySpec of(String chainCode, String fcn, String... arguments) {
+        return new QuerySpec(chainCode, fcn, arguments);
+    }
+
+    public String getChainCode() {
+        return chainCode;
+    }
+
+    public String getFcn() {
+        return fcn;
+    }
+
+    public String[] getArguments() {
+        return arguments;
+    }
+}
@@ -0,0 +1,291 @@
+package com.jason.fabric.pool.cache;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.jason.fabric.pool.conf.Global;
+import com.jason.fabric.pool.utils.StringUtil;
+import com.jason.fabric.pool.utils.ThreadPoolUtil;
+import org.apache.log4j.Logger;
+
+/**
+ * 查询访问画像，记录可缓存查询的(用户, 通道, chaincode, 方法, 参数)及访问次数，启动时按画像预热缓存
+ * 最多跟踪4倍size个查询，超出时只保留次数最多的size个并将其次数减半，近期的热点逐渐取代旧的热点
+ * 配置了文件时定期保存次数最多的size个查询，启动时读取并在原有次数上继续累计
+ * 文件每行为 次数\t用户\t通道\tchaincode\t方法\t参数...，各字段URL编码，参数为null时写~
+ */
+public class AccessProfile {
+    private static final Logger log = Logger.getLogger(AccessProfile.class);
+    private static final String HEADER = "# fabric-cache access profile";
+    private static final String NULL_ARGUMENT = "~";
+
+    private final int size;
+    private final int capacity;
+    private final Path file;
+    private final ConcurrentHashMap<CacheField, ProfiledQuery> queries = new ConcurrentHashMap<>();
+    private final ReentrantLock pruneLock = new ReentrantLock();
+    private final LongAdder modCount = new LongAdder();
+    private final ReentrantLock saveLock = new ReentrantLock();
+    //大于0时不记录，预热重放的查询不计入访问次数
+    private final AtomicInteger suspended = new AtomicInteger();
+    private long savedModCount;
+
+    private AccessProfile() {
+        this(Global.getInstance().getWarmProfileSize(), StringUtil.isBlank(Global.getInstance().getWarmProfileFile())
+                ? null : Paths.get(Global.getInstance().getWarmProfileFile()));
+        long interval = Global.getInstance().getWarmProfileSaveInterval();
+        if (file != null && size > 0 && interval > 0) {
+            ThreadPoolUtil.getInstance().getScheduler().scheduleWithFixedDelay(this::saveQuietly, interval, interval,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * size不大于0时不记录；file为null时只在内存中记录
+     */
+    public AccessProfile(int size, Path file) {
+        this.size = Math.max(size, 0);
+        this.capacity = this.size * 4;
+        this.file = file;
+        if (file != null && this.size > 0 && Files.exists(file)) {
+            try {
+                load(file);
+            } catch (IOException | RuntimeException e) {
+                log.error("load access profile " + file + " failed, start with an empty profile", e);
+            }
+        }
+    }
+
+    public static AccessProfile getInstance() {
+        return SingletonHolder.instance;
+    }
+
+    public boolean isEnabled() {
+        return size > 0;
+    }
+
+    /**
+     * 记录一次查询，slot为查询对应的缓存条目位置，已跟踪的查询只增加次数
+     */
+    public void record(String userName, String channelName, String chainCode, CacheField slot, String fcn, String... arguments) {
+        if (size <= 0 || suspended.get() > 0) {
+            return;
+        }
+        ProfiledQuery query = queries.get(slot);
+        if (query == null) {
+            if (queries.size() >= capacity) {
+                prune();
+            }
+            query = queries.computeIfAbsent(slot, s -> new ProfiledQuery(userName, channelName, chainCode, fcn, arguments));
+        }
+        query.increment();
+        modCount.increment();
+    }
+
+    /**
+     * 暂停记录，与resume成对调用；重放的查询在其他线程上执行，暂停期间所有线程的查询都不记录
+     */
+    public void suspend() {
+        suspended.incrementAndGet();
+    }
+
+    public void resume() {
+        suspended.decrementAndGet();
+    }
+
+    /**
+     * 访问次数最多的limit个查询，按次数从多到少排列
+     */
+    public List<ProfiledQuery> top(int limit) {
+        List<Ranked> ranked = ranked();
+        List<ProfiledQuery> top = new ArrayList<>(Math.min(limit, ranked.size()));
+        for (int i = 0; i < ranked.size() && i < limit; i++) {
+            top.add(ranked.get(i).query);
+        }
+        return top;
+    }
+
+    /**
+     * 排序前先取出次数，排序期间次数的变化不影响比较结果
+     */
+    private List<Ranked> ranked() {
+        List<Ranked> ranked = new ArrayList<>(queries.size());
+        for (Map.Entry<CacheField, ProfiledQuery> entry : queries.entrySet()) {
+            ranked.add(new Ranked(entry.getKey(), entry.getValue()));
+        }
+        ranked.sort(Comparator.comparingLong((Ranked r) -> r.count).reversed());
+        return ranked;
+    }
+
+    /**
+     * 当前跟踪的查询数
+     */
+    public int getTrackedCount() {
+        return queries.size();
+    }
+
+    /**
+     * 其他线程正在清理时直接返回，跟踪的查询数可能暂时略多于上限
+     */
+    private void prune() {
+        if (!pruneLock.tryLock()) {
+            return;
+        }
+        try {
+            if (queries.size() < capacity) {
+                return;
+            }
+            List<Ranked> ranked = ranked();
+            for (int i = 0; i < ranked.size(); i++) {
+                Ranked r = ranked.get(i);
+                if (i < size) {
+                    r.query.add(-r.count / 2);
+                } else {
+                    queries.remove(r.slot, r.query);
+                }
+            }
+        } finally {
+            pruneLock.unlock();
+        }
+    }
+
+    /**
+     * 保存到配置的文件，没有新的访问时不写入
+     */
+    public void save() throws IOException {
+        if (file == null) {
+            return;
+        }
+        saveLock.lock();
+        try {
+            long current = modCount.sum();
+            if (current == savedModCount) {
+                return;
+            }
+            save(file);
+            savedModCount = current;
+        } finally {
+            saveLock.unlock();
+        }
+    }
+
+    /**
+     * 先写入临时文件再替换，保存过程中进程退出不会损坏原有的文件
+     */
+    public void save(Path path) throws IOException {
+        saveLock.lock();
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Path temp = Paths.get(path + ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                writer.write(HEADER);
+                writer.newLine();
+                for (ProfiledQuery query : top(size)) {
+                    StringBuilder line = new StringBuilder().append(query.getCount())
+                            .append('\t').append(encode(query.getUserName()))
+                            .append('\t').append(encode(query.getChannelName()))
+                            .append('\t').append(encode(query.getChainCode()))
+                            .append('\t').append(encode(query.getFcn()));
+                    for (String argument : query.getArguments()) {
+                        line.append('\t').append(argument == null ? NULL_ARGUMENT : encode(argument));
+                    }
+                    writer.write(line.toString());
+                    writer.newLine();
+                }
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            saveLock.unlock();
+        }
+    }
+
+    /**
+     * 读取文件中的查询，次数累加到已跟踪的查询上
+     */
+    public void load(Path path) throws IOException {
+        int loaded = 0;
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\t", -1);
+                if (parts.length < 5) {
+                    throw new IllegalArgumentException("malformed access profile line: " + line);
+                }
+                String[] arguments = new String[parts.length - 5];
+                for (int i = 0; i < arguments.length; i++) {
+                    arguments[i] = NULL_ARGUMENT.equals(parts[i + 5]) ? null : decode(parts[i + 5]);
+                }
+                ProfiledQuery query = new ProfiledQuery(decode(parts[1]), decode(parts[2]), decode(parts[3]), decode(parts[4]),
+                        arguments);
+                queries.computeIfAbsent(query.slot(), s -> query).add(Long.parseLong(parts[0]));
+                loaded++;
+            }
+        }
+        log.info("load " + loaded + " queries from access profile " + path);
+    }
+
+    private void saveQuietly() {
+        try {
+            save();
+        } catch (IOException | RuntimeException e) {
+            log.warn("save access profile " + file + " failed: " + e.getMessage());
+        }
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static final class Ranked {
+        private final CacheField slot;
+        private final ProfiledQuery query;
+        private final long count;
+
+        Ranked(CacheField slot, ProfiledQuery query) {
+            this.slot = slot;
+            this.query = query;
+            this.count = query.getCount();
+        }
+    }
+
+    private static class SingletonHolder {
+        private static final AccessProfile instance = new AccessProfile();  //静态初始化器，由JVM来保证线程安全
+    }
+}
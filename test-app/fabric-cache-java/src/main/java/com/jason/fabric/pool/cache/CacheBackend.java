@@ -0,0 +1,35 @@
+package com.jason.fabric.pool.cache;
+
+/**
+ * 查询缓存的存储后端
+ */
+public enum CacheBackend {
+    /**
+     * redis，多个进程共享，支持本地一级缓存和跨进程的失效消息
+     */
+    REDIS("redis"),
+    /**
+     * 进程内有界缓存，不依赖redis，重启后为空
+     */
+    MEMORY("memory"),
+    /**
+     * 内存映射文件，不依赖redis，重启后保留未过期的缓存
+     */
+    MAPPED("mapped");
+
+    private final String configName;
+
+    CacheBackend(String configName) {
+        this.configName = configName;
+    }
+
+    public static CacheBackend parse(String value) {
+        String name = value.trim();
+        for (CacheBackend backend : values()) {
+            if (backend.configName.equalsIgnoreCase(name) || backend.name().equalsIgnoreCase(name)) {
+                return backend;
+            }
+        }
+        throw new IllegalArgumentException("unknown cache backend: " + value);
+    }
+}
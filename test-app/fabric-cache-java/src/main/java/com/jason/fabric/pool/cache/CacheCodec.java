@@ -0,0 +1,53 @@
+package com.jason.fabric.pool.cache;
+
+/**
+ * 缓存值的压缩算法，id写入条目头部，读取时按id解压，修改配置后已写入的条目仍可读取
+ */
+public enum CacheCodec {
+    /**
+     * 不压缩
+     */
+    NONE("none", 0),
+    /**
+     * snappy，压缩率较低，压缩和解压最快
+     */
+    SNAPPY("snappy", 1),
+    /**
+     * zstd，压缩率高，可使用按chaincode返回的JSON训练的字典进一步压缩较短的值
+     */
+    ZSTD("zstd", 2);
+
+    private final String configName;
+    private final int id;
+
+    CacheCodec(String configName, int id) {
+        this.configName = configName;
+        this.id = id;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * 按id查找，未知的id返回null
+     */
+    public static CacheCodec of(int id) {
+        for (CacheCodec codec : values()) {
+            if (codec.id == id) {
+                return codec;
+            }
+        }
+        return null;
+    }
+
+    public static CacheCodec parse(String value) {
+        String name = value.trim();
+        for (CacheCodec codec : values()) {
+            if (codec.configName.equalsIgnoreCase(name) || codec.name().equalsIgnoreCase(name)) {
+                return codec;
+            }
+        }
+        throw new IllegalArgumentException("unknown cache codec: " + value);
+    }
+}
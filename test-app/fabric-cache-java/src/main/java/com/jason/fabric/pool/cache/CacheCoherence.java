@@ -0,0 +1,277 @@
+package com.jason.fabric.pool.cache;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import com.jason.fabric.pool.conf.Global;
+import com.jason.fabric.pool.utils.StringUtil;
+import com.jason.fabric.pool.utils.ThreadPoolUtil;
+import org.apache.log4j.Logger;
+import org.hyperledger.fabric.gateway.DefaultCheckpointers;
+import org.hyperledger.fabric.gateway.Network;
+import org.hyperledger.fabric.gateway.spi.Checkpointer;
+import org.hyperledger.fabric.sdk.BlockEvent;
+
+/**
+ * 区块事件驱动的缓存一致性
+ * 每个通道只在一个Network上监听区块，连接池创建连接时登记其Network，关闭时注销，监听所在的Network被注销后转移到其他已登记的Network
+ * 配置了coherenceCheckpointDir时，已处理的区块号持久化到 目录/通道名.json，重启后从上次处理的区块继续，
+ * 处理失败的区块不会被跳过，稍后从该区块重新监听；未配置时从当前区块开始
+ */
+public class CacheCoherence {
+    private static final Logger log = Logger.getLogger(CacheCoherence.class);
+    private static final long MAX_RESTART_MILLIS = 30000;
+
+    private final Map<String, ChannelListener> channels = new HashMap<>();
+    private final Map<String, CoherenceMetrics> metrics = new LinkedHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private CacheCoherence() {
+        long interval = Global.getInstance().getCoherenceLagInterval();
+        if (interval > 0) {
+            ThreadPoolUtil.getInstance().getScheduler().scheduleWithFixedDelay(this::pollHeights, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public static CacheCoherence getInstance() {
+        return SingletonHolder.instance;
+    }
+
+    /**
+     * 登记通道上可用于监听区块的Network，同一Network可多次登记，按次数注销
+     */
+    public void register(String channel, Network network, WriteSetInvalidator invalidator) {
+        lock.lock();
+        try {
+            ChannelListener listener = channels.get(channel);
+            if (listener == null) {
+                listener = new ChannelListener(channel, invalidator, checkpointer(channel), metrics(channel));
+                channels.put(channel, listener);
+            }
+            if (listener.active == null) {
+                try {
+                    listener.activate(network);
+                } catch (RuntimeException e) {
+                    if (listener.candidates.isEmpty()) {
+                        channels.remove(channel);
+                        listener.close();
+                    }
+                    throw e;
+                }
+            }
+            listener.candidates.add(network);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 注销Network，需在关闭其Gateway之前调用
+     */
+    public void unregister(String channel, Network network) {
+        lock.lock();
+        try {
+            ChannelListener listener = channels.get(channel);
+            if (listener == null) {
+                return;
+            }
+            listener.candidates.remove(network);
+            if (listener.active == network && !listener.candidates.contains(network)) {
+                listener.deactivate();
+                promote(listener);
+            }
+            if (listener.candidates.isEmpty()) {
+                channels.remove(channel);
+                listener.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 各通道的区块失效统计，key为通道名
+     */
+    public Map<String, CoherenceMetrics> getMetrics() {
+        lock.lock();
+        try {
+            return Collections.unmodifiableMap(new LinkedHashMap<>(metrics));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private CoherenceMetrics metrics(String channel) {
+        return metrics.computeIfAbsent(channel, c -> new CoherenceMetrics());
+    }
+
+    /**
+     * 文件检查点，同一文件在一个进程内只能打开一次，通道的监听存在期间一直持有；
+     * 打开失败(目录不可写、文件损坏或被占用)时不使用检查点，从当前区块开始监听，不影响创建连接
+     */
+    private static Checkpointer checkpointer(String channel) {
+        String dir = Global.getInstance().getCoherenceCheckpointDir();
+        if (StringUtil.isBlank(dir)) {
+            return null;
+        }
+        try {
+            Path path = Paths.get(dir);
+            Files.createDirectories(path);
+            return DefaultCheckpointers.file(path.resolve(channel + ".json"));
+        } catch (IOException | RuntimeException e) {
+            log.error("open checkpoint of " + channel + " failed, listen blocks without checkpoint", e);
+            return null;
+        }
+    }
+
+    /**
+     * 依次尝试其余的Network，均失败时丢弃该通道的监听
+     */
+    private static void promote(ChannelListener listener) {
+        while (!listener.candidates.isEmpty()) {
+            Network next = listener.candidates.get(0);
+            try {
+                listener.activate(next);
+                return;
+            } catch (RuntimeException e) {
+                log.error("listen blocks of " + listener.channel + " failed", e);
+                listener.candidates.removeIf(candidate -> candidate == next);
+            }
+        }
+    }
+
+    /**
+     * 处理失败后从检查点重新监听，重放失败的区块
+     */
+    private void restart(ChannelListener listener, long backoff) {
+        ThreadPoolUtil.getInstance().getScheduler().schedule(() -> {
+            lock.lock();
+            try {
+                if (channels.get(listener.channel) != listener || listener.active == null) {
+                    return;
+                }
+                Network network = listener.active;
+                listener.deactivate();
+                listener.activate(network);
+            } catch (RuntimeException e) {
+                log.error("restart block listener of " + listener.channel + " failed", e);
+                promote(listener);
+            } finally {
+                lock.unlock();
+            }
+        }, backoff, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 查询peer上的区块高度用于计算落后块数，在锁外查询
+     */
+    private void pollHeights() {
+        List<ChannelListener> listeners;
+        lock.lock();
+        try {
+            listeners = new ArrayList<>(channels.values());
+        } finally {
+            lock.unlock();
+        }
+        for (ChannelListener listener : listeners) {
+            Network network = listener.active;
+            if (network == null) {
+                continue;
+            }
+            try {
+                listener.metrics.recordHeight(network.getChannel().queryBlockchainInfo().getHeight());
+            } catch (Exception e) {
+                log.warn("query block height of " + listener.channel + " failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private final class ChannelListener {
+        private final String channel;
+        private final WriteSetInvalidator invalidator;
+        private final Checkpointer checkpointer;
+        private final CoherenceMetrics metrics;
+        private final List<Network> candidates = new ArrayList<>();
+        private volatile Network active;
+        private Consumer<BlockEvent> consumer;
+        //重新监听后区块在新的事件线程上处理
+        private volatile long restartBackoff = 1000;
+
+        ChannelListener(String channel, WriteSetInvalidator invalidator, Checkpointer checkpointer, CoherenceMetrics metrics) {
+            this.channel = channel;
+            this.invalidator = invalidator;
+            this.checkpointer = checkpointer;
+            this.metrics = metrics;
+        }
+
+        /**
+         * 每次监听使用新的Consumer，注销时按它移除
+         */
+        void activate(Network network) {
+            Consumer<BlockEvent> listener = this::onBlock;
+            if (checkpointer == null) {
+                network.addBlockListener(listener);
+            } else {
+                try {
+                    network.addBlockListener(checkpointer, listener);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            consumer = listener;
+            active = network;
+            log.info("listen blocks of " + channel + " for cache invalidation");
+        }
+
+        void deactivate() {
+            active.removeBlockListener(consumer);
+            active = null;
+            consumer = null;
+        }
+
+        void close() {
+            if (checkpointer == null) {
+                return;
+            }
+            try {
+                checkpointer.close();
+            } catch (IOException e) {
+                log.warn("close checkpoint of " + channel + " failed: " + e.getMessage());
+            }
+        }
+
+        /**
+         * 有检查点时抛出异常，检查点不前进，之后的区块被忽略直到从检查点重新监听
+         */
+        private void onBlock(BlockEvent block) {
+            try {
+                metrics.recordBlock(block.getBlockNumber(), invalidator.onBlock(channel, block));
+                restartBackoff = 1000;
+            } catch (Exception e) {
+                metrics.recordFailure();
+                log.error("invalidate cache by block " + block.getBlockNumber() + " of " + channel + " failed", e);
+                if (checkpointer != null) {
+                    restart(this, restartBackoff);
+                    restartBackoff = Math.min(restartBackoff * 2, MAX_RESTART_MILLIS);
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+    }
+
+    private static class SingletonHolder {
+        private static final CacheCoherence instance = new CacheCoherence();  //静态初始化器，由JVM来保证线程安全
+    }
+}
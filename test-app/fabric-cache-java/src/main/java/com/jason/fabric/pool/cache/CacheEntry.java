@@ -0,0 +1,185 @@
+package com.jason.fabric.pool.cache;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 缓存条目，查询结果及其过期时间和刷新时间，到达刷新时间后仍可读取，由后台重新查询
+ * 否定条目记录查询失败的异常类名和消息，值为 类名\n消息
+ * 写入redis时编码为：魔数(1字节) 版本(1字节) 标志(1字节) 过期时间毫秒(8字节) 刷新时间毫秒(8字节) 值，
+ * 版本2没有标志，版本1也没有刷新时间
+ * 值压缩后为版本4，标志的高4位为压缩算法的id，刷新时间之后是压缩前的长度(4字节)，再之后是压缩后的值；
+ * 未压缩的条目仍写为版本3，升级过程中旧节点只把压缩的条目当作未命中
+ */
+public final class CacheEntry {
+    private static final byte MAGIC = 0;
+    private static final byte VERSION_1 = 1;
+    private static final byte VERSION_2 = 2;
+    private static final byte VERSION = 3;
+    private static final byte VERSION_COMPRESSED = 4;
+    private static final int HEADER_LENGTH_1 = 10;
+    private static final int HEADER_LENGTH_2 = 18;
+    private static final int HEADER_LENGTH = 19;
+    private static final int HEADER_LENGTH_COMPRESSED = 23;
+    private static final byte FLAG_NEGATIVE = 1;
+    private static final int CODEC_SHIFT = 4;
+    private static final int MAX_RAW_LENGTH = 128 << 20;    //解压后的上限，高于peer返回的查询结果大小，超过时视为数据损坏
+
+    private final byte[] value;
+    private final long expireAt;
+    private final long refreshAt;
+    private final boolean negative;
+
+    public CacheEntry(byte[] value, long expireAt) {
+        this(value, expireAt, expireAt);
+    }
+
+    public CacheEntry(byte[] value, long expireAt, long refreshAt) {
+        this(value, expireAt, refreshAt, false);
+    }
+
+    private CacheEntry(byte[] value, long expireAt, long refreshAt, boolean negative) {
+        this.value = value;
+        this.expireAt = expireAt;
+        this.refreshAt = Math.min(refreshAt, expireAt);
+        this.negative = negative;
+    }
+
+    /**
+     * 查询失败的否定条目，不刷新
+     */
+    public static CacheEntry negative(String errorClass, String message, long ttlMillis) {
+        long expireAt = System.currentTimeMillis() + ttlMillis;
+        byte[] value = (errorClass + '\n' + (message == null ? "" : message)).getBytes(StandardCharsets.UTF_8);
+        return new CacheEntry(value, expireAt, expireAt, true);
+    }
+
+    /**
+     * 从当前时间起ttlMillis毫秒后过期
+     */
+    public static CacheEntry of(byte[] value, long ttlMillis) {
+        return new CacheEntry(value, System.currentTimeMillis() + ttlMillis);
+    }
+
+    public byte[] getValue() {
+        return value;
+    }
+
+    public long getExpireAt() {
+        return expireAt;
+    }
+
+    public long getRefreshAt() {
+        return refreshAt;
+    }
+
+    public boolean isNegative() {
+        return negative;
+    }
+
+    /**
+     * 否定条目记录的异常类名
+     */
+    public String getErrorClass() {
+        String error = new String(value, StandardCharsets.UTF_8);
+        int newline = error.indexOf('\n');
+        return newline < 0 ? error : error.substring(0, newline);
+    }
+
+    /**
+     * 否定条目记录的异常消息
+     */
+    public String getErrorMessage() {
+        String error = new String(value, StandardCharsets.UTF_8);
+        int newline = error.indexOf('\n');
+        return newline < 0 ? "" : error.substring(newline + 1);
+    }
+
+    public boolean isExpired(long now) {
+        return now >= expireAt;
+    }
+
+    /**
+     * 是否需要后台刷新，未设置刷新时间的条目过期前不刷新
+     */
+    public boolean needsRefresh(long now) {
+        return now >= refreshAt;
+    }
+
+    public byte[] encode() {
+        return encode(ValueCodecs.getInstance());
+    }
+
+    /**
+     * 编码，值不小于压缩阈值且压缩后更短时写为压缩格式
+     */
+    public byte[] encode(ValueCodecs codecs) {
+        byte flags = negative ? FLAG_NEGATIVE : 0;
+        CacheCodec codec = codecs.writeCodec(value.length);
+        if (codec != CacheCodec.NONE) {
+            byte[] compressed = codecs.get(codec).compress(value);
+            if (compressed.length + 4 < value.length) {
+                return ByteBuffer.allocate(HEADER_LENGTH_COMPRESSED + compressed.length)
+                        .put(MAGIC).put(VERSION_COMPRESSED).put((byte) (flags | codec.getId() << CODEC_SHIFT))
+                        .putLong(expireAt).putLong(refreshAt).putInt(value.length).put(compressed)
+                        .array();
+            }
+        }
+        return ByteBuffer.allocate(HEADER_LENGTH + value.length)
+                .put(MAGIC).put(VERSION).put(flags).putLong(expireAt).putLong(refreshAt).put(value)
+                .array();
+    }
+
+    /**
+     * 解码，格式不符(如旧版本直接写入的查询结果)时返回null，按未命中处理
+     */
+    public static CacheEntry decode(byte[] bytes) {
+        return decode(bytes, ValueCodecs.getInstance());
+    }
+
+    /**
+     * 解码，压缩算法未知或解压失败(如各节点的zstd字典不一致)时同样返回null
+     */
+    public static CacheEntry decode(byte[] bytes, ValueCodecs codecs) {
+        if (bytes == null || bytes.length < HEADER_LENGTH_1 || bytes[0] != MAGIC) {
+            return null;
+        }
+        int headerLength;
+        if (bytes[1] == VERSION) {
+            headerLength = HEADER_LENGTH;
+        } else if (bytes[1] == VERSION_COMPRESSED) {
+            headerLength = HEADER_LENGTH_COMPRESSED;
+        } else if (bytes[1] == VERSION_2) {
+            headerLength = HEADER_LENGTH_2;
+        } else if (bytes[1] == VERSION_1) {
+            headerLength = HEADER_LENGTH_1;
+        } else {
+            return null;
+        }
+        if (bytes.length < headerLength) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.position(2);
+        byte flags = headerLength >= HEADER_LENGTH ? buffer.get() : 0;
+        long expireAt = buffer.getLong();
+        long refreshAt = headerLength == HEADER_LENGTH_1 ? expireAt : buffer.getLong();
+        byte[] value;
+        if (headerLength == HEADER_LENGTH_COMPRESSED) {
+            int rawLength = buffer.getInt();
+            ValueCodec codec = codecs.get(CacheCodec.of((flags & 0xff) >>> CODEC_SHIFT));
+            if (codec == null || rawLength < 0 || rawLength > MAX_RAW_LENGTH) {
+                return null;
+            }
+            try {
+                value = codec.decompress(bytes, headerLength, bytes.length - headerLength, rawLength);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        } else {
+            value = new byte[bytes.length - headerLength];
+            buffer.get(value);
+        }
+        return new CacheEntry(value, expireAt, refreshAt, (flags & FLAG_NEGATIVE) != 0);
+    }
+}
@@ -0,0 +1,55 @@
+package com.jason.fabric.pool.cache;
+
+/**
+ * 缓存中的一个条目位置，即hash的key和field
+ * 编码为 key长度:key+field，用于redis中的各类索引
+ */
+public final class CacheField {
+    private final String key;
+    private final String field;
+
+    public CacheField(String key, String field) {
+        this.key = key;
+        this.field = field;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    public String encode() {
+        return key.length() + ":" + key + field;
+    }
+
+    public static CacheField decode(String encoded) {
+        int colon = encoded.indexOf(':');
+        int keyEnd = colon + 1 + Integer.parseInt(encoded.substring(0, colon));
+        return new CacheField(encoded.substring(colon + 1, keyEnd), encoded.substring(keyEnd));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CacheField)) {
+            return false;
+        }
+        CacheField other = (CacheField) o;
+        return key.equals(other.key) && field.equals(other.field);
+    }
+
+    @Override
+    public int hashCode() {
+        return key.hashCode() * 31 + field.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return key + "/" + field;
+    }
+}
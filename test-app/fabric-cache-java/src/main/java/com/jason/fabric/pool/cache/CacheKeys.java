@@ -0,0 +1,189 @@
+package com.jason.fabric.pool.cache;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * 缓存key和field的编码
+ * key为 fc2:{通道长度:通道 chaincode}用户长度:用户，花括号内为redis集群的hash tag，同一chaincode的key位于同一个槽位，
+ * tag放在用户之前，用户名中的花括号不影响槽位；field为方法名和每个参数依次加上长度前缀，参数为null时写~，
+ * 不同的参数划分不会得到相同的编码。field较长时改为 #编码长度:编码的SHA-256前128位(base64url)，
+ * 保持redis hash的紧凑编码，编码长度作为附加的区分
+ * 编码过程复用线程内的缓冲区，不产生中间字符串
+ */
+public final class CacheKeys {
+    public static final String PREFIX = "fc2:";
+    private static final int MAX_PLAIN_FIELD = 40;
+    private static final int DIGEST_BYTES = 16;
+
+    private static final Base64.Encoder BASE64 = Base64.getUrlEncoder().withoutPadding();
+    private static final ThreadLocal<Encoder> ENCODER = ThreadLocal.withInitial(Encoder::new);
+
+    private CacheKeys() {
+    }
+
+    public static String key(String userName, String channelName, String chainCodeName) {
+        StringBuilder key = appendTag(ENCODER.get().reset().append(PREFIX), channelName, chainCodeName);
+        appendPrefixed(key, userName);
+        return key.toString();
+    }
+
+    /**
+     * 通道和chaincode对应的hash tag，与该chaincode缓存一起访问的其他key使用相同的tag
+     */
+    public static String tag(String channelName, String chainCodeName) {
+        return appendTag(ENCODER.get().reset(), channelName, chainCodeName).toString();
+    }
+
+    /**
+     * redis计算槽位时使用的部分，带花括号：key中第一个{和其后第一个}之间非空时为该部分，否则为整个key
+     */
+    public static String hashTag(String key) {
+        int open = key.indexOf('{');
+        int close = open < 0 ? -1 : key.indexOf('}', open + 1);
+        return close > open + 1 ? key.substring(open, close + 1) : "{" + key + "}";
+    }
+
+    public static String field(String fcn, String... arguments) {
+        Encoder encoder = ENCODER.get();
+        StringBuilder field = encoder.reset();
+        appendPrefixed(field, fcn);
+        if (arguments != null) {
+            for (String argument : arguments) {
+                appendPrefixed(field, argument);
+            }
+        }
+        return field.length() <= MAX_PLAIN_FIELD ? field.toString() : encoder.digest();
+    }
+
+    /**
+     * 解析key中的用户、通道和chaincode，不是本格式的key返回null
+     */
+    public static String[] parseKey(String key) {
+        if (!key.startsWith(PREFIX)) {
+            return null;
+        }
+        try {
+            int pos = PREFIX.length();
+            if (key.charAt(pos++) != '{') {
+                return null;
+            }
+            int colon = key.indexOf(':', pos);
+            int end = colon + 1 + Integer.parseInt(key.substring(pos, colon));
+            String channelName = key.substring(colon + 1, end);
+            int close = key.indexOf('}', end);
+            String chainCodeName = key.substring(end, close);
+            pos = close + 1;
+            colon = key.indexOf(':', pos);
+            end = colon + 1 + Integer.parseInt(key.substring(pos, colon));
+            if (end != key.length()) {
+                return null;
+            }
+            return new String[]{key.substring(colon + 1, end), channelName, chainCodeName};
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 解析field中的方法名和参数，返回 方法名 参数...；使用摘要的field和不是本格式的field返回null
+     */
+    public static String[] parseField(String field) {
+        try {
+            List<String> parts = new ArrayList<>();
+            int pos = 0;
+            while (pos < field.length()) {
+                if (field.charAt(pos) == '~') {
+                    parts.add(null);
+                    pos++;
+                    continue;
+                }
+                int colon = field.indexOf(':', pos);
+                int end = colon + 1 + Integer.parseInt(field.substring(pos, colon));
+                parts.add(field.substring(colon + 1, end));
+                pos = end;
+            }
+            return parts.isEmpty() ? null : parts.toArray(new String[0]);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 旧版本直接拼接的key，用于清除旧数据
+     */
+    public static String legacyKey(String userName, String channelName, String chainCodeName) {
+        return userName.concat(channelName).concat(chainCodeName);
+    }
+
+    private static StringBuilder appendTag(StringBuilder builder, String channelName, String chainCodeName) {
+        builder.append('{');
+        appendPrefixed(builder, channelName);
+        return builder.append(chainCodeName).append('}');
+    }
+
+    private static void appendPrefixed(StringBuilder builder, String value) {
+        if (value == null) {
+            builder.append('~');
+        } else {
+            builder.append(value.length()).append(':').append(value);
+        }
+    }
+
+    private static final class Encoder {
+        private final StringBuilder builder = new StringBuilder(128);
+        private final MessageDigest sha256;
+        private byte[] utf8 = new byte[256];
+
+        Encoder() {
+            try {
+                sha256 = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        StringBuilder reset() {
+            builder.setLength(0);
+            return builder;
+        }
+
+        /**
+         * builder中的内容按UTF-8写入复用的字节缓冲区后计算摘要
+         */
+        String digest() {
+            int length = builder.length();
+            if (utf8.length < length * 3) {
+                utf8 = new byte[length * 3];
+            }
+            int n = 0;
+            for (int i = 0; i < length; i++) {
+                char c = builder.charAt(i);
+                if (c < 0x80) {
+                    utf8[n++] = (byte) c;
+                } else if (c < 0x800) {
+                    utf8[n++] = (byte) (0xC0 | (c >> 6));
+                    utf8[n++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(builder.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, builder.charAt(++i));
+                    utf8[n++] = (byte) (0xF0 | (cp >> 18));
+                    utf8[n++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                    utf8[n++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                    utf8[n++] = (byte) (0x80 | (cp & 0x3F));
+                } else {
+                    utf8[n++] = (byte) (0xE0 | (c >> 12));
+                    utf8[n++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    utf8[n++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            sha256.update(utf8, 0, n);
+            byte[] hash = sha256.digest();
+            byte[] prefix = new byte[DIGEST_BYTES];
+            System.arraycopy(hash, 0, prefix, 0, DIGEST_BYTES);
+            return "#" + n + ":" + BASE64.encodeToString(prefix);
+        }
+    }
+}
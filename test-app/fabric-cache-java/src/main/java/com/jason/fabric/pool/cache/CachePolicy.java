@@ -0,0 +1,35 @@
+package com.jason.fabric.pool.cache;
+
+/**
+ * 查询的缓存策略，按chaincode和方法配置
+ */
+public enum CachePolicy {
+    /**
+     * 到期后删除，下一次查询访问peer
+     */
+    EXPIRE("expire"),
+    /**
+     * 到期后的cacheStaleTime秒内仍返回旧值，同时后台重新查询
+     */
+    STALE_WHILE_REVALIDATE("swr"),
+    /**
+     * 缓存时间过去refreshAheadRatio后被访问的条目提前在后台重新查询，访问越频繁的条目越不会过期
+     */
+    REFRESH_AHEAD("refresh");
+
+    private final String configName;
+
+    CachePolicy(String configName) {
+        this.configName = configName;
+    }
+
+    public static CachePolicy parse(String value) {
+        String name = value.trim();
+        for (CachePolicy policy : values()) {
+            if (policy.configName.equalsIgnoreCase(name) || policy.name().equalsIgnoreCase(name)) {
+                return policy;
+            }
+        }
+        throw new IllegalArgumentException("unknown cache policy: " + value);
+    }
+}
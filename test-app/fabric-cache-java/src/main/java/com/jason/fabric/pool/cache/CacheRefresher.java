@@ -0,0 +1,88 @@
+package com.jason.fabric.pool.cache;
+
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.jason.fabric.pool.conf.Global;
+import org.apache.log4j.Logger;
+
+/**
+ * 缓存条目的后台刷新，线程数和队列长度有限，队列满时放弃刷新，调用方继续使用缓存中的值
+ * 同一条目同时只有一个刷新任务
+ */
+public class CacheRefresher {
+    private static final Logger log = Logger.getLogger(CacheRefresher.class);
+
+    private final ThreadPoolExecutor executor;
+    private final Set<CacheField> refreshing = ConcurrentHashMap.newKeySet();
+    private final RefreshMetrics metrics = new RefreshMetrics();
+
+    private CacheRefresher() {
+        Global global = Global.getInstance();
+        AtomicInteger index = new AtomicInteger();
+        executor = new ThreadPoolExecutor(global.getRefreshThreads(), global.getRefreshThreads(), 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(global.getRefreshQueueSize()), r -> {
+                    Thread thread = new Thread(r, "fabric-cache-refresh-" + index.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    public static CacheRefresher getInstance() {
+        return SingletonHolder.instance;
+    }
+
+    /**
+     * 提交刷新任务，已在刷新或队列已满时返回false
+     * @param stale 返回给调用方的值是否已超过缓存时间
+     */
+    public boolean refresh(CacheField slot, boolean stale, Callable<?> loader) {
+        if (stale) {
+            metrics.recordStaleServed();
+        }
+        if (!refreshing.add(slot)) {
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    loader.call();
+                    metrics.recordResult(true);
+                } catch (Exception e) {
+                    metrics.recordResult(false);
+                    log.warn("refresh cache " + slot + " failed: " + e.getMessage());
+                } finally {
+                    refreshing.remove(slot);
+                }
+            });
+            metrics.recordScheduled();
+            return true;
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(slot);
+            metrics.recordRejected();
+            return false;
+        }
+    }
+
+    public RefreshMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 等待执行的刷新任务数
+     */
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    private static class SingletonHolder {
+        private static final CacheRefresher instance = new CacheRefresher();  //静态初始化器，由JVM来保证线程安全
+    }
+}
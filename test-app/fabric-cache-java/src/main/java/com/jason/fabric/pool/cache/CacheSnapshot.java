@@ -0,0 +1,157 @@
+package com.jason.fabric.pool.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+import com.jason.fabric.pool.conf.Global;
+import org.apache.log4j.Logger;
+
+/**
+ * 缓存快照，导出访问画像中各查询的缓存条目，部署或redis清空后导入，不需要查询peer
+ * 文件为魔数FCS1之后逐条写入 用户 通道 chaincode 方法 参数个数(4字节) 参数... 条目编码，
+ * 字符串和条目编码均为长度(4字节，-1表示null)加内容
+ * 导入时重新计算key和field，跳过已过期、缓存中已存在或已配置为不缓存的条目，否定条目不导出；
+ * 配置了invalidator时按cacheKeyArg登记依赖，导入后的写入照常失效；导出之后、导入之前的写入不会失效导入的条目，
+ * 这期间的旧值最多保留到条目过期
+ */
+public final class CacheSnapshot {
+    private static final Logger log = Logger.getLogger(CacheSnapshot.class);
+    private static final int MAGIC = 0x46435331;
+
+    private CacheSnapshot() {
+    }
+
+    /**
+     * 导出queries在cache中未过期的条目，返回导出的条目数
+     */
+    public static int export(QueryCache cache, List<ProfiledQuery> queries, Path path) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = Paths.get(path + ".tmp");
+        int exported = 0;
+        long now = System.currentTimeMillis();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            for (ProfiledQuery query : queries) {
+                CacheField slot = query.slot();
+                CacheEntry entry = cache.get(slot.getKey(), slot.getField());
+                if (entry == null || entry.isNegative() || entry.isExpired(now)) {
+                    continue;
+                }
+                writeString(out, query.getUserName());
+                writeString(out, query.getChannelName());
+                writeString(out, query.getChainCode());
+                writeString(out, query.getFcn());
+                String[] arguments = query.getArguments();
+                out.writeInt(arguments.length);
+                for (String argument : arguments) {
+                    writeString(out, argument);
+                }
+                writeBytes(out, entry.encode());
+                exported++;
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.info("export " + exported + " of " + queries.size() + " cache entries to " + path);
+        return exported;
+    }
+
+    /**
+     * 导入快照中的条目，返回导入的条目数
+     */
+    public static int restore(QueryCache cache, WriteSetInvalidator invalidator, Path path) throws IOException {
+        int total = 0;
+        int restored = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("not a cache snapshot: " + path);
+            }
+            while (true) {
+                String userName;
+                try {
+                    userName = readString(in);
+                } catch (EOFException e) {
+                    break;
+                }
+                String channelName = readString(in);
+                String chainCode = readString(in);
+                String fcn = readString(in);
+                String[] arguments = new String[in.readInt()];
+                for (int i = 0; i < arguments.length; i++) {
+                    arguments[i] = readString(in);
+                }
+                CacheEntry entry = CacheEntry.decode(readBytes(in));
+                total++;
+                if (restoreEntry(cache, invalidator, new ProfiledQuery(userName, channelName, chainCode, fcn, arguments), entry)) {
+                    restored++;
+                }
+            }
+        }
+        log.info("restore " + restored + " of " + total + " cache entries from " + path);
+        return restored;
+    }
+
+    private static boolean restoreEntry(QueryCache cache, WriteSetInvalidator invalidator, ProfiledQuery query, CacheEntry entry) {
+        Global global = Global.getInstance();
+        if (entry == null || entry.isExpired(System.currentTimeMillis())
+                || global.getCacheExpireTime(query.getChainCode(), query.getFcn()) <= 0) {
+            return false;
+        }
+        CacheField slot = query.slot();
+        if (cache.get(slot.getKey(), slot.getField()) != null) {
+            return false;
+        }
+        String ledgerKey = global.getLedgerKey(query.getChainCode(), query.getFcn(), query.getArguments());
+        String token = invalidator == null ? ""
+                : invalidator.getIndex().track(query.getChannelName(), query.getChainCode(), ledgerKey, slot);
+        if (token == null) {
+            return false;
+        }
+        cache.put(slot.getKey(), slot.getField(), entry);
+        if (invalidator != null && !invalidator.getIndex().confirm(query.getChannelName(), query.getChainCode(), ledgerKey, token)) {
+            cache.delete(slot.getKey(), slot.getField());
+            return false;
+        }
+        return true;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        writeBytes(out, value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = readBytes(in);
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        if (bytes == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
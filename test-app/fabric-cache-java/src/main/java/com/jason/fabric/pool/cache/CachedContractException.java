@@ -0,0 +1,21 @@
+package com.jason.fabric.pool.cache;
+
+import org.hyperledger.fabric.gateway.ContractException;
+
+/**
+ * 命中否定缓存时抛出，消息与原异常一致，原异常类名由getErrorClass获取
+ */
+public class CachedContractException extends ContractException {
+    private static final long serialVersionUID = 1L;
+
+    private final String errorClass;
+
+    public CachedContractException(String errorClass, String message) {
+        super(message);
+        this.errorClass = errorClass;
+    }
+
+    public String getErrorClass() {
+        return errorClass;
+    }
+}
@@ -0,0 +1,76 @@
+package com.jason.fabric.pool.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个通道的区块失效统计
+ */
+public class CoherenceMetrics {
+    private final LongAdder blockCount = new LongAdder();
+    private final LongAdder invalidatedCount = new LongAdder();
+    private final LongAdder failureCount = new LongAdder();
+    private final AtomicLong lastBlockNumber = new AtomicLong(-1);
+    private final AtomicLong headHeight = new AtomicLong(-1);
+    private volatile long lastBlockMillis;
+
+    public void recordBlock(long blockNumber, int invalidated) {
+        blockCount.increment();
+        invalidatedCount.add(invalidated);
+        lastBlockNumber.set(blockNumber);
+        headHeight.accumulateAndGet(blockNumber + 1, Math::max);
+        lastBlockMillis = System.currentTimeMillis();
+    }
+
+    public void recordFailure() {
+        failureCount.increment();
+    }
+
+    /**
+     * 记录peer上的区块高度，只增不减
+     */
+    public void recordHeight(long height) {
+        headHeight.accumulateAndGet(height, Math::max);
+    }
+
+    public long getBlockCount() {
+        return blockCount.sum();
+    }
+
+    public long getInvalidatedCount() {
+        return invalidatedCount.sum();
+    }
+
+    public long getFailureCount() {
+        return failureCount.sum();
+    }
+
+    /**
+     * 最后处理的区块号，未处理过时为-1
+     */
+    public long getLastBlockNumber() {
+        return lastBlockNumber.get();
+    }
+
+    /**
+     * 已知的peer区块高度，即最新区块号加一，未知时为-1
+     */
+    public long getHeadHeight() {
+        return headHeight.get();
+    }
+
+    /**
+     * 落后最新区块的块数，未知时为-1
+     */
+    public long getLag() {
+        long height = headHeight.get();
+        if (height < 0) {
+            return -1;
+        }
+        return Math.max(0, height - 1 - lastBlockNumber.get());
+    }
+
+    public long getLastBlockMillis() {
+        return lastBlockMillis;
+    }
+}
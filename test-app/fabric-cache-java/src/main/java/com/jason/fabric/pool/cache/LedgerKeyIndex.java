@@ -0,0 +1,27 @@
+package com.jason.fabric.pool.cache;
+
+import java.util.Collection;
+
+/**
+ * 账本key到缓存条目的反向索引，不区分用户
+ * 查询未命中时先登记依赖再查询peer，写入缓存后确认登记仍然有效；
+ * 期间依赖的key被写入时登记已被取出，此时删除刚写入的条目，避免缓存提交前读到的旧值
+ */
+public interface LedgerKeyIndex {
+
+    /**
+     * 登记缓存条目依赖的账本key，ledgerKey为null表示依赖整个chaincode
+     * @return 登记凭证，失败时返回null
+     */
+    String track(String channel, String chainCode, String ledgerKey, CacheField field);
+
+    /**
+     * 登记是否仍然有效，即登记之后依赖的账本key没有被写入
+     */
+    boolean confirm(String channel, String chainCode, String ledgerKey, String token);
+
+    /**
+     * 取出并删除依赖这些账本key或依赖整个chaincode的缓存条目
+     */
+    Collection<CacheField> drain(String channel, String chainCode, Collection<String> ledgerKeys);
+}
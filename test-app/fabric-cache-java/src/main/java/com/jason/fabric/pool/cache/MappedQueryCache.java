@@ -0,0 +1,476 @@
+package com.jason.fabric.pool.cache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+import org.apache.log4j.Logger;
+
+/**
+ * 基于内存映射文件的查询缓存，不依赖redis，重启后保留未过期的条目
+ * 文件为追加写入的日志：文件头(魔数4字节 版本4字节)后依次是记录，每条记录为 内容长度(4字节) CRC32(4字节) 内容，
+ * 内容为 类型(1字节) key长度(4字节) key field长度(4字节) field 条目编码，删除也追加一条记录；
+ * 内存中只保存每个条目的值在文件中的位置。写满时把仍有效的条目复制到新文件后原子替换，
+ * 启动时顺序读取日志重建索引，遇到长度为0或校验失败的记录即认为到达末尾
+ * 不主动刷盘，进程退出不丢数据，操作系统崩溃可能丢失最近的写入；单个文件不超过2GB
+ * 打开期间持有同目录下 文件名.lock 的排他锁，同一文件只能被一个实例使用；压缩会替换缓存文件，因此不锁缓存文件本身
+ */
+public class MappedQueryCache implements QueryCache, Closeable {
+    private static final Logger log = Logger.getLogger(MappedQueryCache.class);
+    private static final int MAGIC = 0x46434d31;  //FCM1
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER = 8;
+    private static final int RECORD_HEADER = 8;
+    private static final byte PUT = 0;
+    private static final byte DELETE_FIELD = 1;
+    private static final byte DELETE_KEY = 2;
+    private static final int ZERO_CHUNK = 64 * 1024;
+
+    private final Path path;
+    private final FileChannel lockChannel;
+    private final FileLock fileLock;
+    private final Map<CacheField, Slot> index = new ConcurrentHashMap<>();
+    //读取和追加持有读锁，替换文件持有写锁；追加之间由appendLock互斥，保证日志顺序与索引一致
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final Set<CacheField> restored;
+    private volatile MappedByteBuffer buffer;
+    private final int capacity;
+    private int position;
+
+    /**
+     * 打开或创建缓存文件，已有文件大于capacity时按文件大小映射；文件已被其他实例或进程打开时抛出IOException
+     */
+    public MappedQueryCache(Path path, int capacity) throws IOException {
+        this.path = path.toAbsolutePath();
+        Path parent = this.path.getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.lockChannel = FileChannel.open(this.path.resolveSibling(this.path.getFileName() + ".lock"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            this.fileLock = lock(lockChannel, this.path);
+            this.capacity = open(capacity);
+        } catch (IOException | RuntimeException e) {
+            lockChannel.close();
+            throw e;
+        }
+        this.restored = new HashSet<>(index.keySet());
+        log.info("open mapped cache " + this.path + ", " + restored.size() + " entries restored");
+    }
+
+    private static FileLock lock(FileChannel channel, Path path) throws IOException {
+        FileLock fileLock;
+        try {
+            fileLock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            fileLock = null;
+        }
+        if (fileLock == null) {
+            throw new IOException("mapped cache " + path + " is used by another instance");
+        }
+        return fileLock;
+    }
+
+    /**
+     * 映射文件并恢复索引，返回映射的大小
+     */
+    private int open(int capacity) throws IOException {
+        long existing = Files.exists(this.path) ? Files.size(this.path) : 0;
+        this.buffer = map(this.path, (int) Math.min(Integer.MAX_VALUE, Math.max(capacity, existing)));
+        int size = buffer.capacity();
+        if (buffer.getInt(0) == MAGIC && buffer.getInt(4) == VERSION) {
+            replay(size);
+        } else {
+            if (existing > 0) {
+                log.warn("discard unrecognized cache file " + this.path);
+            }
+            zero(buffer, 0, size);
+            buffer.putInt(0, MAGIC).putInt(4, VERSION);
+            position = FILE_HEADER;
+        }
+        return size;
+    }
+
+    @Override
+    public CacheEntry get(String key, String field) {
+        CacheField cacheField = new CacheField(key, field);
+        long now = System.currentTimeMillis();
+        byte[] value;
+        lock.readLock().lock();
+        try {
+            Slot slot = buffer == null ? null : index.get(cacheField);
+            if (slot == null) {
+                return null;
+            }
+            if (slot.expireAt <= now) {
+                index.remove(cacheField, slot);
+                return null;
+            }
+            value = new byte[slot.length];
+            ByteBuffer view = buffer.duplicate();
+            view.position(slot.offset);
+            view.get(value);
+        } finally {
+            lock.readLock().unlock();
+        }
+        CacheEntry entry = CacheEntry.decode(value);
+        return entry == null || entry.isExpired(now) ? null : entry;
+    }
+
+    @Override
+    public void put(String key, String field, CacheEntry entry) {
+        append(PUT, new CacheField(key, field), entry.encode(), entry.getExpireAt());
+    }
+
+    @Override
+    public void delete(String key) {
+        append(DELETE_KEY, new CacheField(key, ""), new byte[0], 0);
+    }
+
+    @Override
+    public void delete(String key, String field) {
+        append(DELETE_FIELD, new CacheField(key, field), new byte[0], 0);
+    }
+
+    /**
+     * 启动时从文件中恢复的条目，用于重新登记账本key依赖
+     */
+    public Set<CacheField> restored() {
+        return restored;
+    }
+
+    /**
+     * 当前条数，包含尚未清除的过期条目
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * 已写入的字节数
+     */
+    public int usedBytes() {
+        appendLock.lock();
+        try {
+            return position;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * 写回磁盘
+     */
+    public void flush() {
+        lock.readLock().lock();
+        try {
+            if (buffer != null) {
+                buffer.force();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 写回磁盘后解除映射并释放文件锁，之后读取均未命中，写入被忽略
+     */
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (buffer == null) {
+                return;
+            }
+            buffer.force();
+            unmap(buffer);
+            buffer = null;
+            index.clear();
+            fileLock.release();
+            lockChannel.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void append(byte type, CacheField field, byte[] value, long expireAt) {
+        byte[] body = body(type, field, value);
+        if (RECORD_HEADER + body.length > capacity - FILE_HEADER) {
+            log.warn("cache entry too large for mapped file: " + field);
+            if (type == PUT) {
+                delete(field.getKey(), field.getField());
+            }
+            return;
+        }
+        lock.readLock().lock();
+        try {
+            if (tryAppend(type, field, body, value.length, expireAt)) {
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        lock.writeLock().lock();
+        try {
+            if (tryAppend(type, field, body, value.length, expireAt)) {
+                return;
+            }
+            compact();
+            if (!tryAppend(type, field, body, value.length, expireAt)) {
+                //删除必须生效，压缩后仍写不下时清空
+                log.warn("mapped cache " + path + " full after compaction, clear all entries");
+                clear();
+                tryAppend(type, field, body, value.length, expireAt);
+            }
+        } catch (IOException e) {
+            log.warn("compact mapped cache failed, clear all entries: " + e.getMessage());
+            clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean tryAppend(byte type, CacheField field, byte[] body, int valueLength, long expireAt) {
+        appendLock.lock();
+        try {
+            if (buffer == null) {
+                return true;
+            }
+            if (position + RECORD_HEADER + body.length > capacity) {
+                return false;
+            }
+            int offset = write(buffer, position, body);
+            position += RECORD_HEADER + body.length;
+            apply(type, field, offset + body.length - valueLength, valueLength, expireAt);
+            return true;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void apply(byte type, CacheField field, int valueOffset, int valueLength, long expireAt) {
+        if (type == PUT) {
+            if (expireAt <= System.currentTimeMillis()) {
+                index.remove(field);
+            } else {
+                index.put(field, new Slot(valueOffset, valueLength, expireAt));
+            }
+        } else if (type == DELETE_FIELD) {
+            index.remove(field);
+        } else {
+            String key = field.getKey();
+            index.keySet().removeIf(cacheField -> cacheField.getKey().equals(key));
+        }
+    }
+
+    /**
+     * 顺序读取日志重建索引
+     */
+    private void replay(int capacity) {
+        int pos = FILE_HEADER;
+        while (pos + RECORD_HEADER <= capacity) {
+            int length = buffer.getInt(pos);
+            if (length <= 0 || length > capacity - pos - RECORD_HEADER) {
+                break;
+            }
+            byte[] body = new byte[length];
+            ByteBuffer view = buffer.duplicate();
+            view.position(pos + RECORD_HEADER);
+            view.get(body);
+            if (crc(body) != buffer.getInt(pos + 4)) {
+                break;
+            }
+            ByteBuffer record = ByteBuffer.wrap(body);
+            byte type = record.get();
+            CacheField field = new CacheField(readString(record), readString(record));
+            int valueOffset = pos + RECORD_HEADER + record.position();
+            byte[] value = new byte[record.remaining()];
+            record.get(value);
+            CacheEntry entry = type == PUT ? CacheEntry.decode(value) : null;
+            apply(type, field, valueOffset, value.length, entry == null ? 0 : entry.getExpireAt());
+            pos += RECORD_HEADER + length;
+        }
+        if (pos + RECORD_HEADER <= capacity && buffer.getLong(pos) != 0) {
+            log.warn("mapped cache " + path + " truncated at " + pos);
+            zero(buffer, pos, capacity);
+        }
+        position = pos;
+    }
+
+    /**
+     * 把未过期的条目复制到新文件，写完后切换到新文件的映射，解除旧文件的映射后替换原文件
+     * 替换失败时删除原文件，避免重启后恢复已失效的条目
+     */
+    private void compact() throws IOException {
+        Path target = path.resolveSibling(path.getFileName() + ".compact");
+        Files.deleteIfExists(target);
+        MappedByteBuffer compacted = map(target, capacity);
+        compacted.putInt(0, MAGIC).putInt(4, VERSION);
+        Map<CacheField, Slot> live = new HashMap<>();
+        long now = System.currentTimeMillis();
+        int pos = FILE_HEADER;
+        int dropped = 0;
+        for (Map.Entry<CacheField, Slot> e : index.entrySet()) {
+            Slot slot = e.getValue();
+            if (slot.expireAt <= now) {
+                continue;
+            }
+            byte[] value = new byte[slot.length];
+            ByteBuffer view = buffer.duplicate();
+            view.position(slot.offset);
+            view.get(value);
+            byte[] body = body(PUT, e.getKey(), value);
+            if (pos + RECORD_HEADER + body.length > capacity) {
+                dropped++;
+                continue;
+            }
+            int offset = write(compacted, pos, body);
+            live.put(e.getKey(), new Slot(offset + body.length - value.length, value.length, slot.expireAt));
+            pos += RECORD_HEADER + body.length;
+        }
+        compacted.force();
+        MappedByteBuffer old = buffer;
+        appendLock.lock();
+        try {
+            buffer = compacted;
+            position = pos;
+            index.clear();
+            index.putAll(live);
+        } finally {
+            appendLock.unlock();
+        }
+        //持有写锁，没有读取在使用旧的映射；Windows上仍被映射的文件不能被替换
+        unmap(old);
+        try {
+            Files.move(target, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        log.info("compact mapped cache " + path + ": " + live.size() + " live, " + dropped + " dropped, " + pos + " bytes");
+    }
+
+    private void clear() {
+        appendLock.lock();
+        try {
+            zero(buffer, FILE_HEADER, capacity);
+            position = FILE_HEADER;
+            index.clear();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * 在pos处写入一条记录，先写内容和校验，最后写长度，返回内容的起始位置
+     */
+    private static int write(MappedByteBuffer target, int pos, byte[] body) {
+        ByteBuffer view = target.duplicate();
+        view.position(pos + RECORD_HEADER);
+        view.put(body);
+        target.putInt(pos + 4, crc(body));
+        target.putInt(pos, body.length);
+        return pos + RECORD_HEADER;
+    }
+
+    private static byte[] body(byte type, CacheField field, byte[] value) {
+        byte[] key = field.getKey().getBytes(StandardCharsets.UTF_8);
+        byte[] name = field.getField().getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(1 + 4 + key.length + 4 + name.length + value.length)
+                .put(type).putInt(key.length).put(key).putInt(name.length).put(name).put(value)
+                .array();
+    }
+
+    private static String readString(ByteBuffer record) {
+        byte[] bytes = new byte[record.getInt()];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int crc(byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+        return (int) crc.getValue();
+    }
+
+    private static void zero(MappedByteBuffer target, int from, int to) {
+        byte[] zeros = new byte[Math.min(ZERO_CHUNK, Math.max(0, to - from))];
+        ByteBuffer view = target.duplicate();
+        view.position(from);
+        while (view.position() < to) {
+            view.put(zeros, 0, Math.min(zeros.length, to - view.position()));
+        }
+    }
+
+    private static MappedByteBuffer map(Path file, int size) throws IOException {
+        //映射在通道关闭后仍然有效
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    /**
+     * 立即解除映射，之后不能再访问该buffer；Java 9以上使用Unsafe.invokeCleaner，Java 8调用DirectByteBuffer的cleaner，
+     * 都不可用时等待回收
+     */
+    private static void unmap(MappedByteBuffer target) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            try {
+                Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                invokeCleaner.invoke(theUnsafe.get(null), target);
+            } catch (NoSuchMethodException e) {
+                Method cleanerMethod = target.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(target);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.warn("unmap mapped cache failed, released after gc: " + e);
+        }
+    }
+
+    /**
+     * 条目的值在文件中的位置和过期时间
+     */
+    private static final class Slot {
+        private final int offset;
+        private final int length;
+        private final long expireAt;
+
+        Slot(int offset, int length, long expireAt) {
+            this.offset = offset;
+            this.length = length;
+            this.expireAt = expireAt;
+        }
+    }
+}
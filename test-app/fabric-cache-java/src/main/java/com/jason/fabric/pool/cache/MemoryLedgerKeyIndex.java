@@ -0,0 +1,71 @@
+package com.jason.fabric.pool.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * 进程内的反向索引，语义与RedisLedgerKeyIndex一致，用于不使用redis的缓存后端
+ * 每个集合为 缓存条目编码 -> 本次登记的序号，重复登记只覆盖序号；每次登记重新计算集合的存活时间，在最长的缓存时间内没有登记时整体清除
+ */
+public class MemoryLedgerKeyIndex implements LedgerKeyIndex {
+    private final AtomicLong nonce = new AtomicLong();
+    private final Cache<String, Map<String, String>> sets;
+
+    public MemoryLedgerKeyIndex(long expireMillis) {
+        this.sets = Caffeine.newBuilder()
+                .expireAfterWrite(expireMillis, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    @Override
+    public String track(String channel, String chainCode, String ledgerKey, CacheField field) {
+        String serial = Long.toHexString(nonce.incrementAndGet());
+        String encoded = field.encode();
+        sets.asMap().compute(setKey(channel, chainCode, ledgerKey), (setKey, tokens) -> {
+            Map<String, String> result = tokens == null ? new ConcurrentHashMap<>() : tokens;
+            result.put(encoded, serial);
+            return result;
+        });
+        return serial + "/" + encoded;
+    }
+
+    @Override
+    public boolean confirm(String channel, String chainCode, String ledgerKey, String token) {
+        Map<String, String> tokens = sets.getIfPresent(setKey(channel, chainCode, ledgerKey));
+        int slash = token.indexOf('/');
+        return tokens != null && token.substring(0, slash).equals(tokens.get(token.substring(slash + 1)));
+    }
+
+    @Override
+    public Collection<CacheField> drain(String channel, String chainCode, Collection<String> ledgerKeys) {
+        List<String> setKeys = new ArrayList<>(ledgerKeys.size() + 1);
+        for (String ledgerKey : ledgerKeys) {
+            setKeys.add(setKey(channel, chainCode, ledgerKey));
+        }
+        setKeys.add(setKey(channel, chainCode, null));
+        Set<CacheField> fields = new LinkedHashSet<>();
+        for (String setKey : setKeys) {
+            Map<String, String> tokens = sets.asMap().remove(setKey);
+            if (tokens != null) {
+                for (String encoded : tokens.keySet()) {
+                    fields.add(CacheField.decode(encoded));
+                }
+            }
+        }
+        return fields;
+    }
+
+    private static String setKey(String channel, String chainCode, String ledgerKey) {
+        return new CacheField(channel, chainCode).encode() + (ledgerKey == null ? "*" : "=" + ledgerKey);
+    }
+}
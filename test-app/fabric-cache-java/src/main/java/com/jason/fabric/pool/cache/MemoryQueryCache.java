@@ -0,0 +1,75 @@
+package com.jason.fabric.pool.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+/**
+ * 进程内的查询缓存(Caffeine, W-TinyLFU淘汰)，按条数限制大小，每个条目在自身的过期时间被清除
+ * 不依赖redis，只对本进程有效，多个进程部署时提交交易引起的失效只作用于本进程，需开启keyInvalidation由区块失效各自的缓存
+ */
+public class MemoryQueryCache implements QueryCache {
+    private final Cache<CacheField, CacheEntry> cache;
+
+    public MemoryQueryCache(long maximumSize) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new EntryExpiry())
+                .build();
+    }
+
+    @Override
+    public CacheEntry get(String key, String field) {
+        CacheEntry entry = cache.getIfPresent(new CacheField(key, field));
+        return entry == null || entry.isExpired(System.currentTimeMillis()) ? null : entry;
+    }
+
+    @Override
+    public void put(String key, String field, CacheEntry entry) {
+        cache.put(new CacheField(key, field), entry);
+    }
+
+    /**
+     * 遍历所有条目删除，提交交易频繁时应开启keyInvalidation按条目删除
+     */
+    @Override
+    public void delete(String key) {
+        cache.asMap().keySet().removeIf(field -> field.getKey().equals(key));
+    }
+
+    @Override
+    public void delete(String key, String field) {
+        cache.invalidate(new CacheField(key, field));
+    }
+
+    /**
+     * 当前条数，近似值
+     */
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * 存活时间取条目的过期时间，读取不延长
+     */
+    private static final class EntryExpiry implements Expiry<CacheField, CacheEntry> {
+        @Override
+        public long expireAfterCreate(CacheField field, CacheEntry entry, long currentTime) {
+            return remainingNanos(entry);
+        }
+
+        @Override
+        public long expireAfterUpdate(CacheField field, CacheEntry entry, long currentTime, long currentDuration) {
+            return remainingNanos(entry);
+        }
+
+        @Override
+        public long expireAfterRead(CacheField field, CacheEntry entry, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        private static long remainingNanos(CacheEntry entry) {
+            return Math.max(0, entry.getExpireAt() - System.currentTimeMillis()) * 1_000_000L;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.jason.fabric.pool.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.jason.fabric.pool.utils.RedisUtil;
+import org.apache.log4j.Logger;
+import redis.clients.jedis.JedisPubSub;
+
+/**
+ * 两级查询缓存：进程内的一级缓存(Caffeine, W-TinyLFU淘汰)在前，二级缓存(redis)在后
+ * 一级缓存中的条目保留二级缓存的过期时间，nearCacheExpireMillis只是额外的上限
+ * 删除key时通过redis频道通知其他节点清除本地缓存；订阅断开期间本地缓存不可用，重新订阅后整体清空
+ */
+public class NearQueryCache implements QueryCache {
+    private static final Logger log = Logger.getLogger(NearQueryCache.class);
+    private static final String NODE_ID = UUID.randomUUID().toString();   //区分本节点发出的失效消息
+    private static final char SEPARATOR = '|';
+    private static final long MAX_RESUBSCRIBE_MILLIS = 30000;
+
+    private final QueryCache backend;
+    private final Cache<NearKey, CacheEntry> near;
+    private final String channel;
+    //每次失效加一，读二级缓存前后不一致时不回填一级缓存，避免把失效前读到的旧值放回去
+    private final AtomicLong generation = new AtomicLong();
+    private volatile boolean subscribed;
+
+    public NearQueryCache(QueryCache backend, long maximumSize, long expireMillis, String channel) {
+        this.backend = backend;
+        this.channel = channel;
+        this.near = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireMillis, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * 启动后台订阅线程，订阅成功前只使用二级缓存
+     */
+    public void start() {
+        Thread subscriber = new Thread(this::subscribeLoop, "fabric-cache-invalidation");
+        subscriber.setDaemon(true);
+        subscriber.start();
+    }
+
+    @Override
+    public CacheEntry get(String key, String field) {
+        NearKey nearKey = new NearKey(key, field);
+        if (subscribed) {
+            CacheEntry entry = near.getIfPresent(nearKey);
+            if (entry != null) {
+                if (!entry.isExpired(System.currentTimeMillis())) {
+                    return entry;
+                }
+                near.invalidate(nearKey);
+            }
+        }
+        long before = generation.get();
+        CacheEntry entry = backend.get(key, field);
+        if (entry != null) {
+            fill(nearKey, entry, before);
+        }
+        return entry;
+    }
+
+    /**
+     * 一级缓存未命中的条目一次从二级缓存批量读取
+     */
+    @Override
+    public List<CacheEntry> getAll(List<CacheField> fields) {
+        List<CacheEntry> entries = new ArrayList<>(fields.size());
+        List<CacheField> misses = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < fields.size(); i++) {
+            CacheField field = fields.get(i);
+            CacheEntry entry = null;
+            if (subscribed) {
+                NearKey nearKey = new NearKey(field.getKey(), field.getField());
+                entry = near.getIfPresent(nearKey);
+                if (entry != null && entry.isExpired(now)) {
+                    near.invalidate(nearKey);
+                    entry = null;
+                }
+            }
+            entries.add(entry);
+            if (entry == null) {
+                misses.add(field);
+                positions.add(i);
+            }
+        }
+        if (misses.isEmpty()) {
+            return entries;
+        }
+        long before = generation.get();
+        List<CacheEntry> loaded = backend.getAll(misses);
+        for (int j = 0; j < misses.size(); j++) {
+            CacheEntry entry = loaded.get(j);
+            if (entry != null) {
+                CacheField field = misses.get(j);
+                fill(new NearKey(field.getKey(), field.getField()), entry, before);
+                entries.set(positions.get(j), entry);
+            }
+        }
+        return entries;
+    }
+
+    @Override
+    public void put(String key, String field, CacheEntry entry) {
+        long before = generation.get();
+        backend.put(key, field, entry);
+        fill(new NearKey(key, field), entry, before);
+    }
+
+    @Override
+    public void delete(String key) {
+        backend.delete(key);
+        invalidateLocal(key);
+        publish(new CacheField(key, ""));
+    }
+
+    @Override
+    public void delete(String key, String field) {
+        backend.delete(key, field);
+        invalidateLocal(key, field);
+        publish(new CacheField(key, field));
+    }
+
+    /**
+     * 是否已订阅失效消息，即一级缓存是否可用
+     */
+    public boolean isSubscribed() {
+        return subscribed;
+    }
+
+    /**
+     * 一级缓存当前条数，近似值
+     */
+    public long nearSize() {
+        return near.estimatedSize();
+    }
+
+    /**
+     * 读取二级缓存之后有失效时不写入；失效先增加代数再清除，写入后代数变化说明清除可能早于写入，撤销本次写入
+     */
+    private void fill(NearKey nearKey, CacheEntry entry, long before) {
+        if (!subscribed || generation.get() != before) {
+            return;
+        }
+        near.put(nearKey, entry);
+        if (generation.get() != before) {
+            near.asMap().remove(nearKey, entry);
+        }
+    }
+
+    void invalidateLocal(String key) {
+        generation.incrementAndGet();
+        near.asMap().keySet().removeIf(nearKey -> nearKey.key.equals(key));
+    }
+
+    void invalidateLocal(String key, String field) {
+        generation.incrementAndGet();
+        near.invalidate(new NearKey(key, field));
+    }
+
+    void invalidateAll() {
+        generation.incrementAndGet();
+        near.invalidateAll();
+    }
+
+    /**
+     * 订阅成功，断开期间可能错过失效消息，先清空再启用一级缓存
+     */
+    void onSubscribed() {
+        invalidateAll();
+        subscribed = true;
+    }
+
+    void onUnsubscribed() {
+        subscribed = false;
+        invalidateAll();
+    }
+
+    /**
+     * 失效消息格式为 节点ID|key长度:key+field，field为空表示整个key
+     */
+    private void publish(CacheField field) {
+        RedisUtil.publish(channel, NODE_ID + SEPARATOR + field.encode());
+    }
+
+    /**
+     * 处理失效消息，本节点发出的消息已在本地处理过，无法解析的消息清空整个一级缓存
+     */
+    void onInvalidation(String message) {
+        int index = message.indexOf(SEPARATOR);
+        if (index < 0) {
+            invalidateAll();
+            return;
+        }
+        if (NODE_ID.equals(message.substring(0, index))) {
+            return;
+        }
+        CacheField field;
+        try {
+            field = CacheField.decode(message.substring(index + 1));
+        } catch (RuntimeException e) {
+            invalidateAll();
+            return;
+        }
+        if (field.getField().isEmpty()) {
+            invalidateLocal(field.getKey());
+        } else {
+            invalidateLocal(field.getKey(), field.getField());
+        }
+    }
+
+    private void subscribeLoop() {
+        long backoff = 1000;
+        while (true) {
+            try {
+                RedisUtil.subscribe(new JedisPubSub() {
+                    @Override
+                    public void onSubscribe(String channel, int subscribedChannels) {
+                        onSubscribed();
+                    }
+
+                    @Override
+                    public void onMessage(String channel, String message) {
+                        onInvalidation(message);
+                    }
+                }, channel);
+                backoff = 1000;
+            } catch (Exception e) {
+                log.warn("subscribe " + channel + " failed, near cache disabled: " + e.getMessage());
+            }
+            onUnsubscribed();
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                return;
+            }
+            backoff = Math.min(backoff * 2, MAX_RESUBSCRIBE_MILLIS);
+        }
+    }
+
+    private static final class NearKey {
+        private final String key;
+        private final String field;
+        private final int hash;
+
+        NearKey(String key, String field) {
+            this.key = key;
+            this.field = field;
+            this.hash = key.hashCode() * 31 + field.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof NearKey)) {
+                return false;
+            }
+            NearKey other = (NearKey) o;
+            return key.equals(other.key) && field.equals(other.field);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
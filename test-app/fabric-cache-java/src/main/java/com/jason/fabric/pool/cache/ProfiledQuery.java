@@ -0,0 +1,67 @@
+package com.jason.fabric.pool.cache;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 访问画像中的一个查询及其访问次数
+ */
+public final class ProfiledQuery {
+    private final String userName;
+    private final String channelName;
+    private final String chainCode;
+    private final String fcn;
+    private final String[] arguments;
+    private final LongAdder count = new LongAdder();
+
+    public ProfiledQuery(String userName, String channelName, String chainCode, String fcn, String[] arguments) {
+        this.userName = userName;
+        this.channelName = channelName;
+        this.chainCode = chainCode;
+        this.fcn = fcn;
+        this.arguments = arguments == null ? new String[0] : arguments.clone();
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public String getChannelName() {
+        return channelName;
+    }
+
+    public String getChainCode() {
+        return chainCode;
+    }
+
+    public String getFcn() {
+        return fcn;
+    }
+
+    public String[] getArguments() {
+        return arguments.clone();
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * 缓存中对应的条目位置
+     */
+    public CacheField slot() {
+        return new CacheField(CacheKeys.key(userName, channelName, chainCode), CacheKeys.field(fcn, arguments));
+    }
+
+    void increment() {
+        count.increment();
+    }
+
+    void add(long delta) {
+        count.add(delta);
+    }
+
+    @Override
+    public String toString() {
+        return userName + "@" + channelName + "/" + chainCode + "." + fcn + "(" + String.join(",", arguments) + ") x" + getCount();
+    }
+}
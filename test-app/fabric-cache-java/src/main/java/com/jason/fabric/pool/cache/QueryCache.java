@@ -0,0 +1,40 @@
+package com.jason.fabric.pool.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 查询结果缓存
+ * key对应一个(用户, 通道, chaincode)，field对应一次查询的方法名和参数
+ */
+public interface QueryCache {
+
+    /**
+     * 获取缓存条目，不存在或已过期时返回null
+     */
+    CacheEntry get(String key, String field);
+
+    /**
+     * 批量获取，结果与fields按顺序一一对应，不存在或已过期的为null
+     * 默认逐个读取，远程实现应在一次往返内完成
+     */
+    default List<CacheEntry> getAll(List<CacheField> fields) {
+        List<CacheEntry> entries = new ArrayList<>(fields.size());
+        for (CacheField field : fields) {
+            entries.add(get(field.getKey(), field.getField()));
+        }
+        return entries;
+    }
+
+    void put(String key, String field, CacheEntry entry);
+
+    /**
+     * 删除key下的所有缓存
+     */
+    void delete(String key);
+
+    /**
+     * 删除单个缓存条目
+     */
+    void delete(String key, String field);
+}
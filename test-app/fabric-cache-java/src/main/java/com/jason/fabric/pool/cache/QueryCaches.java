@@ -0,0 +1,128 @@
+package com.jason.fabric.pool.cache;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import com.jason.fabric.pool.conf.Global;
+import com.jason.fabric.pool.utils.RedisMode;
+import com.jason.fabric.pool.utils.RedisMultiplexer;
+import org.apache.log4j.Logger;
+
+/**
+ * 进程内共享的查询缓存，按配置组装，所有连接池共用一个实例
+ * 存储后端由cacheBackend选择，本地一级缓存、跨进程的失效消息和未命中锁只在redis后端下使用
+ */
+public class QueryCaches {
+    private static final Logger log = Logger.getLogger(QueryCaches.class);
+
+    private final QueryCache cache;
+    private final WriteSetInvalidator invalidator;
+    private final RedisMissLock missLock;
+
+    private QueryCaches() {
+        Global global = Global.getInstance();
+        CacheBackend backend = global.getCacheBackend();
+        long indexExpireMillis = (global.getMaxCacheExpireTime() + global.getCacheStaleTime()) * 1000L;
+        if (backend == CacheBackend.REDIS) {
+            cache = redisCache(global);
+            invalidator = global.isKeyInvalidation() ? new WriteSetInvalidator(cache, new RedisLedgerKeyIndex(indexExpireMillis)) : null;
+            missLock = global.getMissLockMillis() > 0 ? new RedisMissLock(global.getMissLockMillis()) : null;
+            return;
+        }
+        if (backend == CacheBackend.MAPPED) {
+            cache = mappedCache(global);
+        } else {
+            cache = new MemoryQueryCache(global.getMemoryCacheSize());
+        }
+        if (global.isKeyInvalidation()) {
+            LedgerKeyIndex index = new MemoryLedgerKeyIndex(indexExpireMillis);
+            invalidator = new WriteSetInvalidator(cache, index);
+            if (cache instanceof MappedQueryCache) {
+                trackRestored((MappedQueryCache) cache, index);
+            }
+        } else {
+            invalidator = null;
+        }
+        missLock = null;
+    }
+
+    public static QueryCaches getInstance() {
+        return SingletonHolder.instance;
+    }
+
+    public QueryCache getCache() {
+        return cache;
+    }
+
+    /**
+     * 按账本key失效缓存，未开启keyInvalidation时为null
+     */
+    public WriteSetInvalidator getInvalidator() {
+        return invalidator;
+    }
+
+    /**
+     * 跨进程合并未命中查询的锁，未配置missLockMillis或不使用redis后端时为null
+     */
+    public RedisMissLock getMissLock() {
+        return missLock;
+    }
+
+    /**
+     * 集群模式下命令按槽位发往不同节点，不能共用一个多路复用连接，改用连接池
+     */
+    private static QueryCache redisCache(Global global) {
+        boolean multiplexed = global.isRedisMultiplexed();
+        if (multiplexed && global.getRedisMode() == RedisMode.CLUSTER) {
+            log.warn("redisMultiplexed is not supported in redis cluster mode, use pooled connections");
+            multiplexed = false;
+        }
+        RedisQueryCache redis = multiplexed ? new RedisQueryCache(RedisMultiplexer.getInstance()) : new RedisQueryCache();
+        if (global.getCacheReapInterval() > 0) {
+            redis.startReaper(global.getCacheReapInterval());
+        }
+        if (global.getNearCacheSize() <= 0) {
+            return redis;
+        }
+        NearQueryCache near = new NearQueryCache(redis, global.getNearCacheSize(), global.getNearCacheExpireMillis(),
+                global.getInvalidationChannel());
+        near.start();
+        return near;
+    }
+
+    private static MappedQueryCache mappedCache(Global global) {
+        try {
+            return new MappedQueryCache(Paths.get(global.getMappedCacheFile()), global.getMappedCacheSize() * 1024 * 1024);
+        } catch (IOException e) {
+            throw new UncheckedIOException("open mapped cache " + global.getMappedCacheFile() + " failed", e);
+        }
+    }
+
+    /**
+     * 重启前写入的条目从field中解析出方法名和参数，按cacheKeyArg登记依赖的账本key；
+     * field使用摘要时无法还原参数，按依赖整个chaincode登记，该chaincode有写入时失效；无法解析的旧格式条目直接删除
+     */
+    private static void trackRestored(MappedQueryCache cache, LedgerKeyIndex index) {
+        Global global = Global.getInstance();
+        int dropped = 0;
+        for (CacheField field : cache.restored()) {
+            String[] parts = CacheKeys.parseKey(field.getKey());
+            if (parts == null) {
+                cache.delete(field.getKey(), field.getField());
+                dropped++;
+                continue;
+            }
+            String[] call = CacheKeys.parseField(field.getField());
+            String ledgerKey = call == null ? null
+                    : global.getLedgerKey(parts[2], call[0], Arrays.copyOfRange(call, 1, call.length));
+            index.track(parts[1], parts[2], ledgerKey, field);
+        }
+        log.info("track " + (cache.restored().size() - dropped) + " restored cache entries, " + dropped + " dropped");
+    }
+
+    private static class SingletonHolder {
+        private static final QueryCaches instance = new QueryCaches();  //静态初始化器，由JVM来保证线程安全
+    }
+}
@@ -0,0 +1,99 @@
+package com.jason.fabric.pool.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.jason.fabric.pool.utils.RedisUtil;
+import org.apache.log4j.Logger;
+import redis.clients.jedis.Response;
+
+/**
+ * 基于redis hash的反向索引，每个(通道, chaincode, 账本key)一个hash，field为缓存条目编码，值为本次登记的随机数
+ * 同一缓存条目重复登记只覆盖随机数，hash的大小不超过依赖该key的缓存条目数；每次登记重置存活时间为最长的缓存时间
+ * 取出为同一pipeline中的HGETALL和DEL，两者之间的登记会被一并删除，对应的确认失败，条目按未缓存处理；
+ * 并发登记同一条目时先登记者的确认失败，只多一次未命中
+ * hash的key带有与缓存key相同的hash tag，集群模式下一个chaincode的hash与其缓存位于同一个槽位；取出属于失效操作，熔断期间仍然执行
+ */
+public class RedisLedgerKeyIndex implements LedgerKeyIndex {
+    private static final Logger log = Logger.getLogger(RedisLedgerKeyIndex.class);
+    private static final String PREFIX = "fabric-cache:deps:";
+
+    private final long expireMillis;
+
+    public RedisLedgerKeyIndex(long expireMillis) {
+        this.expireMillis = expireMillis;
+    }
+
+    @Override
+    public String track(String channel, String chainCode, String ledgerKey, CacheField field) {
+        String setKey = setKey(channel, chainCode, ledgerKey);
+        String nonce = Long.toHexString(ThreadLocalRandom.current().nextLong());
+        String encoded = field.encode();
+        try {
+            RedisUtil.execute(setKey, pipeline -> {
+                pipeline.hset(setKey, encoded, nonce);
+                return pipeline.pexpire(setKey, expireMillis)::get;
+            });
+            return nonce + "/" + encoded;
+        } catch (Exception e) {
+            RedisUtil.logFailure(log, "track ledger key failed", e);
+            return null;
+        }
+    }
+
+    @Override
+    public boolean confirm(String channel, String chainCode, String ledgerKey, String token) {
+        String setKey = setKey(channel, chainCode, ledgerKey);
+        try {
+            int slash = token.indexOf('/');
+            String nonce = RedisUtil.execute(setKey, pipeline -> pipeline.hget(setKey, token.substring(slash + 1))::get);
+            return token.substring(0, slash).equals(nonce);
+        } catch (Exception e) {
+            RedisUtil.logFailure(log, "confirm ledger key failed", e);
+            return false;
+        }
+    }
+
+    @Override
+    public Collection<CacheField> drain(String channel, String chainCode, Collection<String> ledgerKeys) {
+        List<String> setKeys = new ArrayList<>(ledgerKeys.size() + 1);
+        for (String ledgerKey : ledgerKeys) {
+            setKeys.add(setKey(channel, chainCode, ledgerKey));
+        }
+        setKeys.add(setKey(channel, chainCode, null));
+        List<Map<String, String>> drained = RedisUtil.executeInvalidation(setKeys.get(0), setKeys.size() * 2, pipeline -> {
+            List<Response<Map<String, String>>> responses = new ArrayList<>(setKeys.size());
+            for (String setKey : setKeys) {
+                responses.add(pipeline.hgetAll(setKey));
+                pipeline.del(setKey);
+            }
+            return () -> {
+                List<Map<String, String>> result = new ArrayList<>(responses.size());
+                for (Response<Map<String, String>> response : responses) {
+                    result.add(response.get());
+                }
+                return result;
+            };
+        });
+        Set<CacheField> fields = new LinkedHashSet<>();
+        for (Map<String, String> hash : drained) {
+            for (String encoded : hash.keySet()) {
+                fields.add(CacheField.decode(encoded));
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * 前缀与旧版本的set不同，升级后旧的set按存活时间过期；通道和chaincode为缓存key中的hash tag，账本key放在最后，依赖整个chaincode时以*结尾
+     */
+    private static String setKey(String channel, String chainCode, String ledgerKey) {
+        StringBuilder setKey = new StringBuilder(PREFIX).append(CacheKeys.tag(channel, chainCode));
+        return ledgerKey == null ? setKey.append('*').toString() : setKey.append('=').append(ledgerKey).toString();
+    }
+}
@@ -0,0 +1,58 @@
+package com.jason.fabric.pool.cache;
+
+import java.util.Collections;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.jason.fabric.pool.utils.RedisUtil;
+import org.apache.log4j.Logger;
+import redis.clients.jedis.params.SetParams;
+
+/**
+ * 跨进程合并未命中查询的租约锁，SET NX PX获取，持有者查询peer并写入缓存，其他进程等待缓存出现
+ * 持有者异常退出时租约到期自动释放；锁的key包含缓存key，与缓存位于同一个槽位
+ */
+public class RedisMissLock {
+    private static final Logger log = Logger.getLogger(RedisMissLock.class);
+    private static final String PREFIX = "fabric-cache:lock:";
+    //只删除自己持有的锁，租约到期后被其他进程获取的锁不受影响
+    private static final String RELEASE_SCRIPT =
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end";
+
+    private final long leaseMillis;
+
+    public RedisMissLock(long leaseMillis) {
+        this.leaseMillis = leaseMillis;
+    }
+
+    public long getLeaseMillis() {
+        return leaseMillis;
+    }
+
+    /**
+     * 获取锁，成功返回持有凭证，已被其他进程持有时返回null；redis不可用时返回空字符串，按获取成功处理，不阻塞查询
+     */
+    public String tryAcquire(CacheField field) {
+        String token = Long.toHexString(ThreadLocalRandom.current().nextLong());
+        String lockKey = PREFIX + field.encode();
+        try {
+            String reply = RedisUtil.execute(lockKey, pipeline -> pipeline.set(lockKey, token, SetParams.setParams().nx().px(leaseMillis))::get);
+            return "OK".equals(reply) ? token : null;
+        } catch (Exception e) {
+            RedisUtil.logFailure(log, "acquire miss lock failed", e);
+            return "";
+        }
+    }
+
+    public void release(CacheField field, String token) {
+        if (token == null || token.isEmpty()) {
+            return;
+        }
+        String lockKey = PREFIX + field.encode();
+        try {
+            RedisUtil.execute(lockKey, pipeline -> pipeline.eval(RELEASE_SCRIPT, Collections.singletonList(lockKey),
+                    Collections.singletonList(token))::get);
+        } catch (Exception e) {
+            RedisUtil.logFailure(log, "release miss lock failed", e);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.jason.fabric.pool.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.jason.fabric.pool.utils.RedisCommand;
+import com.jason.fabric.pool.utils.RedisMultiplexer;
+import com.jason.fabric.pool.utils.RedisUtil;
+import com.jason.fabric.pool.utils.ThreadPoolUtil;
+import org.apache.log4j.Logger;
+import redis.clients.jedis.Response;
+
+/**
+ * 基于redis hash的查询缓存，一个key对应一个hash
+ * 每个field的过期时间写在条目头部，读取时判断；另有有序集合按过期时间索引field，由后台任务定期删除过期条目。
+ * 过期索引按key的hash tag分开，与所索引的hash位于同一个槽位，集群模式下写入和清理都只访问一个节点；
+ * 所有过期索引的名称登记在EXPIRY_INDEXES中
+ */
+public class RedisQueryCache implements QueryCache {
+    private static final Logger log = Logger.getLogger(RedisQueryCache.class);
+    public static final String EXPIRY_INDEX = "fabric-cache:expiry";   //加上hash tag为过期索引，成员为 key长度:key+field，分值为过期时间
+    public static final String EXPIRY_INDEXES = "fabric-cache:expiry-indexes";
+    private static final int REAP_BATCH = 500;
+
+    private final RedisMultiplexer multiplexer;
+    //本进程已登记的过期索引，每次清理时去掉redis中已不存在的，FLUSHALL或主从切换丢失登记后由下次写入重新登记
+    private final Set<String> registeredIndexes = ConcurrentHashMap.newKeySet();
+
+    public RedisQueryCache() {
+        this(null);
+    }
+
+    /**
+     * multiplexer不为null时读写通过多路复用连接发送，否则每次从连接池借出连接
+     */
+    public RedisQueryCache(RedisMultiplexer multiplexer) {
+        this.multiplexer = multiplexer;
+    }
+
+    @Override
+    public CacheEntry get(String key, String field) {
+        byte[] value;
+        try {
+            value = execute(key, pipeline -> pipeline.hget(key.getBytes(StandardCharsets.UTF_8), field.getBytes(StandardCharsets.UTF_8))::get);
+        } catch (Exception e) {
+            RedisUtil.logFailure(log, "cache get failed", e);
+            return null;
+        }
+        CacheEntry entry = CacheEntry.decode(value);
+        return entry == null || entry.isExpired(System.currentTimeMillis()) ? null : entry;
+    }
+
+    /**
+     * 同一key的field合并为一条HMGET，同一槽位的key在一个pipeline中发送，非集群模式下只需一次往返；
+     * redis不可用时按未命中处理
+     */
+    @Override
+    public List<CacheEntry> getAll(List<CacheField> fields) {
+        CacheEntry[] entries = new CacheEntry[fields.size()];
+        Map<Integer, Map<String, List<Integer>>> slots = new LinkedHashMap<>();
+        for (int i = 0; i < fields.size(); i++) {
+            String key = fields.get(i).getKey();
+            slots.computeIfAbsent(RedisUtil.slot(key), s -> new LinkedHashMap<>()).computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+        }
+        long now = System.currentTimeMillis();
+        for (Map<String, List<Integer>> positions : slots.values()) {
+            getAll(fields, positions, entries, now);
+        }
+        return Arrays.asList(entries);
+    }
+
+    private void getAll(List<CacheField> fields, Map<String, List<Integer>> positions, CacheEntry[] entries, long now) {
+        int commands = 0;
+        for (List<Integer> indexes : positions.values()) {
+            commands += indexes.size();
+        }
+        List<List<byte[]>> values;
+        try {
+            values = execute(positions.keySet().iterator().next(), commands, pipeline -> {
+                List<Response<List<byte[]>>> responses = new ArrayList<>(positions.size());
+                for (Map.Entry<String, List<Integer>> e : positions.entrySet()) {
+                    byte[][] names = new byte[e.getValue().size()][];
+                    for (int j = 0; j < names.length; j++) {
+                        names[j] = fields.get(e.getValue().get(j)).getField().getBytes(StandardCharsets.UTF_8);
+                    }
+                    responses.add(pipeline.hmget(e.getKey().getBytes(StandardCharsets.UTF_8), names));
+                }
+                return () -> {
+                    List<List<byte[]>> result = new ArrayList<>(responses.size());
+                    for (Response<List<byte[]>> response : responses) {
+                        result.add(response.get());
+                    }
+                    return result;
+                };
+            });
+        } catch (Exception e) {
+            RedisUtil.logFailure(log, "cache getAll failed", e);
+            return;
+        }
+        int n = 0;
+        for (List<Integer> indexes : positions.values()) {
+            List<byte[]> hash = values.get(n++);
+            for (int j = 0; j < indexes.size(); j++) {
+                CacheEntry entry = CacheEntry.decode(hash.get(j));
+                entries[indexes.get(j)] = entry == null || entry.isExpired(now) ? null : entry;
+            }
+        }
+    }
+
+    @Override
+    public void put(String key, String field, CacheEntry entry) {
+        String index = expiryIndex(key);
+        try {
+            execute(key, pipeline -> {
+                pipeline.hset(key.getBytes(StandardCharsets.UTF_8), field.getBytes(StandardCharsets.UTF_8), entry.encode());
+                return pipeline.zadd(index, entry.getExpireAt(), indexMember(key, field))::get;
+            });
+        } catch (Exception e) {
+            RedisUtil.logFailure(log, "cache put failed", e);
+            return;
+        }
+        register(index);
+    }
+
+    @Override
+    public void delete(String key) {
+        //索引中的成员留给后台任务清理
+        try {
+            invalidate(key, pipeline -> pipeline.del(key)::get);
+        } catch (Exception e) {
+            RedisUtil.logFailure(log, "cache delete failed", e);
+        }
+    }
+
+    @Override
+    public void delete(String key, String field) {
+        try {
+            invalidate(key, pipeline -> pipeline.hdel(key, field)::get);
+        } catch (Exception e) {
+            RedisUtil.logFailure(log, "cache delete failed", e);
+        }
+    }
+
+    private <T> T execute(String key, RedisCommand<T> command) throws Exception {
+        return execute(key, 1, command);
+    }
+
+    /**
+     * 批量读取按field数计算平均耗时，见RedisUtil#execute(String, int, RedisCommand)
+     */
+    private <T> T execute(String key, int commands, RedisCommand<T> command) throws Exception {
+        return multiplexer != null ? multiplexer.execute(commands, command) : RedisUtil.execute(key, commands, command);
+    }
+
+    private <T> T invalidate(String key, RedisCommand<T> command) throws Exception {
+        return multiplexer != null ? multiplexer.executeInvalidation(command) : RedisUtil.executeInvalidation(key, command);
+    }
+
+    /**
+     * 过期索引第一次写入时登记，由于登记的key在另一个槽位，与写入缓存分开发送；登记失败时下次写入重试
+     */
+    private void register(String index) {
+        if (!registeredIndexes.add(index)) {
+            return;
+        }
+        try {
+            execute(EXPIRY_INDEXES, pipeline -> pipeline.sadd(EXPIRY_INDEXES, index)::get);
+        } catch (Exception e) {
+            registeredIndexes.remove(index);
+            RedisUtil.logFailure(log, "register expiry index failed", e);
+        }
+    }
+
+    /**
+     * 定期删除过期条目，多个节点同时清理也没有问题
+     */
+    public void startReaper(long intervalMillis) {
+        ThreadPoolUtil.getInstance().getScheduler().scheduleWithFixedDelay(() -> {
+            try {
+                reapExpired(System.currentTimeMillis());
+            } catch (Exception e) {
+                RedisUtil.logFailure(log, "reap expired cache failed", e);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 删除过期时间不晚于now的条目，返回删除数
+     * 条目在读取索引后被重新写入时可能被误删，只会导致一次未命中，不会读到旧值；
+     * 非集群模式下同时清理升级前所有key共用的过期索引
+     */
+    public int reapExpired(long now) {
+        Set<String> registered = RedisUtil.execute(EXPIRY_INDEXES, pipeline -> pipeline.smembers(EXPIRY_INDEXES)::get);
+        //读取之后的登记也可能被去掉，只会多一次SADD
+        registeredIndexes.retainAll(registered);
+        List<String> indexes = new ArrayList<>(registered);
+        if (!RedisUtil.isCluster()) {
+            indexes.add(EXPIRY_INDEX);
+        }
+        int reaped = 0;
+        for (String index : indexes) {
+            reaped += reapExpired(index, now);
+        }
+        return reaped;
+    }
+
+    private int reapExpired(String index, long now) {
+        int reaped = 0;
+        while (true) {
+            Set<String> members = RedisUtil.execute(index, pipeline -> pipeline.zrangeByScore(index, 0, now, 0, REAP_BATCH)::get);
+            if (members.isEmpty()) {
+                return reaped;
+            }
+            RedisUtil.execute(index, members.size() + 1, pipeline -> {
+                for (String member : members) {
+                    CacheField field = CacheField.decode(member);
+                    pipeline.hdel(field.getKey(), field.getField());
+                }
+                return pipeline.zrem(index, members.toArray(new String[0]))::get;
+            });
+            reaped += members.size();
+            if (members.size() < REAP_BATCH) {
+                return reaped;
+            }
+        }
+    }
+
+    static String expiryIndex(String key) {
+        return EXPIRY_INDEX + ":" + CacheKeys.hashTag(key);
+    }
+
+    static String indexMember(String key, String field) {
+        return new CacheField(key, field).encode();
+    }
+}
@@ -0,0 +1,60 @@
+package com.jason.fabric.pool.cache;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 后台刷新统计
+ */
+public class RefreshMetrics {
+    private final LongAdder staleServedCount = new LongAdder();
+    private final LongAdder scheduledCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder successCount = new LongAdder();
+    private final LongAdder failureCount = new LongAdder();
+
+    void recordStaleServed() {
+        staleServedCount.increment();
+    }
+
+    void recordScheduled() {
+        scheduledCount.increment();
+    }
+
+    void recordRejected() {
+        rejectedCount.increment();
+    }
+
+    void recordResult(boolean success) {
+        if (success) {
+            successCount.increment();
+        } else {
+            failureCount.increment();
+        }
+    }
+
+    /**
+     * 超过缓存时间后仍返回旧值的次数
+     */
+    public long getStaleServedCount() {
+        return staleServedCount.sum();
+    }
+
+    public long getScheduledCount() {
+        return scheduledCount.sum();
+    }
+
+    /**
+     * 刷新队列已满被放弃的次数
+     */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    public long getSuccessCount() {
+        return successCount.sum();
+    }
+
+    public long getFailureCount() {
+        return failureCount.sum();
+    }
+}
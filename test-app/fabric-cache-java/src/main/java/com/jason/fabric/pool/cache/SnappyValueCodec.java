@@ -0,0 +1,38 @@
+package com.jason.fabric.pool.cache;
+
+import org.iq80.snappy.CorruptionException;
+import org.iq80.snappy.Snappy;
+
+/**
+ * snappy压缩，纯java实现
+ */
+public class SnappyValueCodec implements ValueCodec {
+
+    public SnappyValueCodec() {
+        //提前加载snappy的类，缺少依赖时在创建时失败而不是在读写缓存时
+        Snappy.maxCompressedLength(0);
+    }
+
+    @Override
+    public byte[] compress(byte[] value) {
+        return Snappy.compress(value);
+    }
+
+    @Override
+    public byte[] decompress(byte[] data, int offset, int length, int rawLength) {
+        try {
+            //先核对数据头中的原始长度，损坏的长度不会导致分配过大的数组
+            int uncompressedLength = Snappy.getUncompressedLength(data, offset);
+            if (uncompressedLength != rawLength) {
+                throw new IllegalArgumentException("snappy length mismatch: " + uncompressedLength + " != " + rawLength);
+            }
+            byte[] value = Snappy.uncompress(data, offset, length);
+            if (value.length != rawLength) {
+                throw new IllegalArgumentException("snappy length mismatch: " + value.length + " != " + rawLength);
+            }
+            return value;
+        } catch (CorruptionException e) {
+            throw new IllegalArgumentException("corrupted snappy value", e);
+        }
+    }
+}
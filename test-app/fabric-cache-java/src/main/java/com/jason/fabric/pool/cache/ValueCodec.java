@@ -0,0 +1,14 @@
+package com.jason.fabric.pool.cache;
+
+/**
+ * 缓存值的压缩与解压，实现需线程安全
+ */
+public interface ValueCodec {
+
+    byte[] compress(byte[] value);
+
+    /**
+     * 解压data中offset起length字节，rawLength为压缩前的长度；数据损坏或字典不符时抛出IllegalArgumentException
+     */
+    byte[] decompress(byte[] data, int offset, int length, int rawLength);
+}
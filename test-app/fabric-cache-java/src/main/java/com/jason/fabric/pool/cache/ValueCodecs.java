@@ -0,0 +1,87 @@
+package com.jason.fabric.pool.cache;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.Map;
+
+import com.jason.fabric.pool.conf.Global;
+import org.apache.log4j.Logger;
+
+/**
+ * 缓存值的压缩配置：写入时使用cacheCodec，不小于cacheCompressThreshold字节的值才压缩；读取时按条目头部记录的算法解压
+ * zstd字典从cacheZstdDictionary文件加载，加载失败时记录错误并不使用字典
+ * zstd不可用(缺少依赖或本地库)时改用snappy，snappy也不可用时不压缩；不可用算法写入的条目按未命中处理
+ */
+public class ValueCodecs {
+    private static final Logger log = Logger.getLogger(ValueCodecs.class);
+
+    private final CacheCodec codec;
+    private final int threshold;
+    private final Map<CacheCodec, ValueCodec> codecs = new EnumMap<>(CacheCodec.class);
+
+    private ValueCodecs() {
+        this(Global.getInstance().getCacheCodec(), Global.getInstance().getCacheCompressThreshold(),
+                Global.getInstance().getCacheZstdLevel(), loadDictionary(Global.getInstance().getCacheZstdDictionary()));
+    }
+
+    public ValueCodecs(CacheCodec codec, int threshold, int zstdLevel, byte[] zstdDictionary) {
+        this.threshold = threshold;
+        try {
+            codecs.put(CacheCodec.SNAPPY, new SnappyValueCodec());
+        } catch (LinkageError e) {
+            log.error("snappy is not available, add org.iq80.snappy:snappy to the classpath", e);
+        }
+        try {
+            codecs.put(CacheCodec.ZSTD, new ZstdValueCodec(zstdLevel, zstdDictionary));
+        } catch (LinkageError e) {
+            log.error("zstd is not available, add com.github.luben:zstd-jni for this platform to the classpath", e);
+        }
+        CacheCodec available = codec;
+        if (available == CacheCodec.ZSTD && !codecs.containsKey(CacheCodec.ZSTD)) {
+            available = CacheCodec.SNAPPY;
+        }
+        if (available == CacheCodec.SNAPPY && !codecs.containsKey(CacheCodec.SNAPPY)) {
+            available = CacheCodec.NONE;
+        }
+        if (available != codec) {
+            log.warn("cacheCodec " + codec + " is not available, use " + available + " instead");
+        }
+        this.codec = available;
+    }
+
+    public static ValueCodecs getInstance() {
+        return SingletonHolder.instance;
+    }
+
+    /**
+     * 写入时使用的算法，值小于阈值时返回NONE
+     */
+    public CacheCodec writeCodec(int length) {
+        return length < threshold ? CacheCodec.NONE : codec;
+    }
+
+    /**
+     * 算法的实现，NONE和未知算法返回null
+     */
+    public ValueCodec get(CacheCodec codec) {
+        return codec == null ? null : codecs.get(codec);
+    }
+
+    private static byte[] loadDictionary(String path) {
+        if (path == null || path.isEmpty()) {
+            return null;
+        }
+        try {
+            return Files.readAllBytes(Paths.get(path));
+        } catch (IOException e) {
+            log.error("load zstd dictionary " + path + " failed, compress without dictionary", e);
+            return null;
+        }
+    }
+
+    private static class SingletonHolder {
+        private static final ValueCodecs instance = new ValueCodecs();  //静态初始化器，由JVM来保证线程安全
+    }
+}
@@ -0,0 +1,82 @@
+package com.jason.fabric.pool.cache;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.hyperledger.fabric.protos.ledger.rwset.kvrwset.KvRwset;
+import org.hyperledger.fabric.sdk.BlockEvent;
+import org.hyperledger.fabric.sdk.BlockInfo;
+import org.hyperledger.fabric.sdk.TxReadWriteSetInfo;
+
+/**
+ * 按账本key失效缓存
+ * 区块中每个有效交易写入的key，通过反向索引找到所有用户依赖它的缓存条目并逐条删除，其他客户端写入的key同样生效
+ */
+public class WriteSetInvalidator {
+    private final QueryCache cache;
+    private final LedgerKeyIndex index;
+
+    public WriteSetInvalidator(QueryCache cache, LedgerKeyIndex index) {
+        this.cache = cache;
+        this.index = index;
+    }
+
+    public LedgerKeyIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * 删除依赖这些账本key的缓存条目，返回删除数
+     */
+    public int invalidate(String channel, String chainCode, Collection<String> ledgerKeys) {
+        Collection<CacheField> fields = index.drain(channel, chainCode, ledgerKeys);
+        for (CacheField field : fields) {
+            cache.delete(field.getKey(), field.getField());
+        }
+        return fields.size();
+    }
+
+    /**
+     * 处理一个区块，返回删除的缓存条目数
+     */
+    public int onBlock(String channel, BlockEvent block) throws InvalidProtocolBufferException {
+        int invalidated = 0;
+        for (Map.Entry<String, Set<String>> writes : writeSets(block).entrySet()) {
+            invalidated += invalidate(channel, writes.getKey(), writes.getValue());
+        }
+        return invalidated;
+    }
+
+    /**
+     * 区块中有效交易写入的key，按chaincode分组
+     */
+    static Map<String, Set<String>> writeSets(BlockEvent block) throws InvalidProtocolBufferException {
+        Map<String, Set<String>> writeSets = new HashMap<>();
+        for (BlockEvent.TransactionEvent transaction : block.getTransactionEvents()) {
+            if (!transaction.isValid()) {
+                continue;
+            }
+            for (BlockInfo.TransactionEnvelopeInfo.TransactionActionInfo action : transaction.getTransactionActionInfos()) {
+                TxReadWriteSetInfo rwSet = action.getTxReadWriteSet();
+                if (rwSet == null) {
+                    continue;
+                }
+                for (TxReadWriteSetInfo.NsRwsetInfo nsRwSet : rwSet.getNsRwsetInfos()) {
+                    KvRwset.KVRWSet kvRwSet = nsRwSet.getRwset();
+                    if (kvRwSet.getWritesCount() == 0) {
+                        continue;
+                    }
+                    Set<String> keys = writeSets.computeIfAbsent(nsRwSet.getNamespace(), k -> new LinkedHashSet<>());
+                    for (KvRwset.KVWrite write : kvRwSet.getWritesList()) {
+                        keys.add(write.getKey());
+                    }
+                }
+            }
+        }
+        return writeSets;
+    }
+}
@@ -0,0 +1,43 @@
+package com.jason.fabric.pool.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 从查询结果样本训练zstd字典，结果写入文件后配置为cacheZstdDictionary
+ * 用法：ZstdDictionaryTool 输出文件 字典字节数 样本文件或目录...，每个文件为一个样本，目录下的文件递归读取
+ */
+public class ZstdDictionaryTool {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("usage: ZstdDictionaryTool <output> <dictionarySize> <sample file or directory>...");
+            System.exit(1);
+        }
+        List<byte[]> samples = new ArrayList<>();
+        for (int i = 2; i < args.length; i++) {
+            collect(new File(args[i]), samples);
+        }
+        if (samples.isEmpty()) {
+            System.err.println("no samples found");
+            System.exit(1);
+        }
+        byte[] dictionary = ZstdValueCodec.trainDictionary(samples, Integer.parseInt(args[1]));
+        Files.write(new File(args[0]).toPath(), dictionary);
+        System.out.println("trained " + dictionary.length + " bytes dictionary from " + samples.size() + " samples");
+    }
+
+    private static void collect(File file, List<byte[]> samples) throws IOException {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                collect(child, samples);
+            }
+        } else if (file.isFile()) {
+            samples.add(Files.readAllBytes(file.toPath()));
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.jason.fabric.pool.cache;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdDictTrainer;
+import com.github.luben.zstd.ZstdException;
+
+/**
+ * zstd压缩，可选使用预先训练的字典
+ * 字典的id写在压缩帧中，用其他字典或不用字典写入的值无法解压，按未命中处理；各节点应使用同一个字典文件
+ */
+public class ZstdValueCodec implements ValueCodec {
+    private final int level;
+    private final ZstdDictCompress dictCompress;
+    private final ZstdDictDecompress dictDecompress;
+
+    public ZstdValueCodec(int level, byte[] dictionary) {
+        this.level = level;
+        //提前加载本地库，不可用时在创建时失败而不是在读写缓存时
+        Zstd.compressBound(0);
+        boolean hasDictionary = dictionary != null && dictionary.length > 0;
+        this.dictCompress = hasDictionary ? new ZstdDictCompress(dictionary, level) : null;
+        this.dictDecompress = hasDictionary ? new ZstdDictDecompress(dictionary) : null;
+    }
+
+    @Override
+    public byte[] compress(byte[] value) {
+        byte[] compressed = new byte[(int) Zstd.compressBound(value.length)];
+        long size = dictCompress == null
+                ? Zstd.compressByteArray(compressed, 0, compressed.length, value, 0, value.length, level)
+                : Zstd.compressFastDict(compressed, 0, value, 0, value.length, dictCompress);
+        if (Zstd.isError(size)) {
+            throw new IllegalStateException("zstd compress failed: " + Zstd.getErrorName(size));
+        }
+        return Arrays.copyOf(compressed, (int) size);
+    }
+
+    @Override
+    public byte[] decompress(byte[] data, int offset, int length, int rawLength) {
+        //先与帧头中的原始长度核对，损坏的长度不会导致分配过大的数组
+        long contentSize = Zstd.getFrameContentSize(data, offset, length);
+        if (contentSize != rawLength) {
+            throw new IllegalArgumentException("zstd content size mismatch: " + contentSize + " != " + rawLength);
+        }
+        byte[] value = new byte[rawLength];
+        long size;
+        try {
+            size = dictDecompress == null
+                    ? Zstd.decompressByteArray(value, 0, rawLength, data, offset, length)
+                    : Zstd.decompressFastDict(value, 0, data, offset, length, dictDecompress);
+        } catch (ZstdException e) {
+            throw new IllegalArgumentException("zstd decompress failed", e);
+        }
+        if (Zstd.isError(size)) {
+            throw new IllegalArgumentException("zstd decompress failed: " + Zstd.getErrorName(size));
+        }
+        if (size != rawLength) {
+            throw new IllegalArgumentException("zstd length mismatch: " + size + " != " + rawLength);
+        }
+        return value;
+    }
+
+    /**
+     * 用查询结果样本训练字典，样本应覆盖各chaincode常见的返回结构，总量一般为字典大小的100倍左右
+     */
+    public static byte[] trainDictionary(List<byte[]> samples, int dictionarySize) {
+        long total = 0;
+        for (byte[] sample : samples) {
+            total += sample.length;
+        }
+        ZstdDictTrainer trainer = new ZstdDictTrainer((int) Math.min(Integer.MAX_VALUE, total), dictionarySize);
+        for (byte[] sample : samples) {
+            trainer.addSample(sample);
+        }
+        return trainer.trainSamples();
+    }
+}
@@ -3,10 +3,20 @@ package com.jason.fabric.pool.conf;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.function.Function;
 
 import com.jason.fabric.pool.api.FabricConnection;
+import com.jason.fabric.pool.cache.CacheBackend;
+import com.jason.fabric.pool.cache.CacheCodec;
+import com.jason.fabric.pool.cache.CachePolicy;
 import com.jason.fabric.pool.utils.OSinfoUtil;
+import com.jason.fabric.pool.utils.RedisMode;
 import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 
 public class Global extends GenericObjectPoolConfig<FabricConnection> {
@@ -16,8 +26,77 @@ public class Global extends GenericObjectPoolConfig<FabricConnection> {
     private String cachePwd;        //缓存数据库密码
     private String netConfigFile;   //fabric网络配置文件
     private String walletDirPath;   //存放钱包的路径
-    private int cacheTimeout;       //创建连接超时等待
+    private int cacheTimeout;       //redis读写超时
     private int cacheExpireTime;     //key有效时间
+    private long poolIdleTimeout;    //连接池空闲回收时间
+    private long poolIdleCheckInterval; //连接池空闲检查间隔
+    private boolean shareGateway;   //同一身份是否共享一个Gateway
+    private int asyncThreads;       //异步调用线程数
+    private long asyncCommitTimeout; //异步提交等待提交事件的超时时间
+    private boolean virtualThreads; //是否使用虚拟线程执行阻塞调用
+    private long virtualThreadMaxWaitMillis; //虚拟线程模式下获取连接的最大等待毫秒数
+    private int invokeParallelism;  //InvokeLimiter同时背书发送的交易数
+    private boolean useMetrics;     //是否统计调用次数和耗时
+    private int retryTimes;         //查询通信失败时的重试次数
+    private long retryBackoffMillis; //首次重试前的等待毫秒数，之后每次翻倍
+    private int nearCacheSize;      //本地一级缓存最大条数，0为不使用
+    private long nearCacheExpireMillis; //本地缓存写入后的最长存活时间
+    private String invalidationChannel; //缓存失效消息的redis频道
+    private long cacheReapInterval; //清理过期缓存的间隔
+    private Map<String, Integer> chainCodeExpireTimes = Collections.emptyMap();            //按chaincode设置的缓存时间
+    private Map<String, Map<String, Integer>> functionExpireTimes = Collections.emptyMap(); //按chaincode和方法设置的缓存时间
+    private Map<String, Integer> chainCodeKeyArgs = Collections.emptyMap();                //按chaincode设置的账本key参数下标
+    private Map<String, Map<String, Integer>> functionKeyArgs = Collections.emptyMap();    //按chaincode和方法设置的账本key参数下标
+    private int negativeCacheTime;    //查询失败结果的缓存时间，0为不缓存
+    private Map<String, Integer> chainCodeNegativeTimes = Collections.emptyMap();            //按chaincode设置的失败结果缓存时间
+    private Map<String, Map<String, Integer>> functionNegativeTimes = Collections.emptyMap(); //按chaincode和方法设置的失败结果缓存时间
+    private CachePolicy cachePolicy;  //默认缓存策略
+    private Map<String, CachePolicy> chainCodePolicies = Collections.emptyMap();             //按chaincode设置的缓存策略
+    private Map<String, Map<String, CachePolicy>> functionPolicies = Collections.emptyMap(); //按chaincode和方法设置的缓存策略
+    private boolean keyInvalidation; //是否按账本key失效缓存
+    private String coherenceCheckpointDir; //区块失效检查点目录，为空时不持久化
+    private long coherenceLagInterval; //查询区块高度计算落后块数的间隔
+    private boolean purgeLegacyKeys; //是否删除旧版本格式的缓存key
+    private long missLockMillis;    //跨进程合并未命中查询的锁租期
+    private int cacheStaleTime;     //swr策略下过期后仍返回旧值的秒数
+    private double refreshAheadRatio; //refresh策略下开始提前刷新的缓存时间比例
+    private int refreshThreads;     //后台刷新线程数
+    private int refreshQueueSize;   //后台刷新等待队列长度
+    private CacheBackend cacheBackend; //查询缓存的存储后端
+    private long memoryCacheSize;   //memory后端最大条数
+    private String mappedCacheFile; //mapped后端的缓存文件
+    private int mappedCacheSize;    //mapped后端的文件大小，单位MB
+    private int redisMaxTotal;      //redis连接池最大连接数
+    private int redisMaxIdle;       //redis连接池最大空闲连接数
+    private int redisMinIdle;       //redis连接池最小空闲连接数
+    private long redisMaxWaitMillis; //获取redis连接的最大等待毫秒数
+    private long redisIdleCheckInterval; //检查空闲redis连接的间隔
+    private boolean redisMultiplexed; //查询缓存是否使用多路复用连接
+    private RedisMode redisMode;    //redis的部署方式
+    private List<String> redisSentinels; //哨兵地址
+    private String redisMasterName; //哨兵监控的主节点名称
+    private List<String> redisClusterNodes; //集群的种子节点
+    private int redisConnectTimeout; //建立redis连接的超时毫秒数
+    private int redisMaxRedirects;  //集群模式下槽位迁移后的最大重定向次数
+    private boolean cacheBreaker;   //是否对redis访问熔断
+    private int cacheBreakerWindow; //熔断统计的调用次数
+    private int cacheBreakerMinimumCalls; //熔断统计的最少调用次数
+    private int cacheBreakerFailureRate; //熔断的失败率百分比
+    private int cacheBreakerLatencyPercentile; //熔断判断的延迟分位
+    private long cacheBreakerSlowMillis; //熔断判断的延迟毫秒数
+    private long cacheBreakerOpenMillis; //熔断打开的持续毫秒数
+    private int cacheBreakerHalfOpenCalls; //熔断半开状态的探测次数
+    private CacheCodec cacheCodec;  //缓存值的压缩算法
+    private int cacheCompressThreshold; //不小于该字节数的值才压缩
+    private int cacheZstdLevel;     //zstd的压缩级别
+    private String cacheZstdDictionary; //zstd字典文件
+    private int warmProfileSize;    //访问画像保留的查询数
+    private String warmProfileFile; //访问画像文件
+    private long warmProfileSaveInterval; //保存访问画像的间隔毫秒数
+    private int warmConcurrency;    //预热时同时重放的查询数
+    private long warmTimeoutMillis; //预热的最长毫秒数
+    private String warmSnapshotFile; //预热时导入的缓存快照
+    private List<String> warmChainCodes = Collections.emptyList(); //创建连接时预先加载的chaincode
 
 
 
@@ -53,6 +132,286 @@ public class Global extends GenericObjectPoolConfig<FabricConnection> {
         return cacheExpireTime;
     }
 
+    public long getPoolIdleTimeout() {
+        return poolIdleTimeout;
+    }
+
+    public long getPoolIdleCheckInterval() {
+        return poolIdleCheckInterval;
+    }
+
+    public boolean isShareGateway() {
+        return shareGateway;
+    }
+
+    public int getAsyncThreads() {
+        return asyncThreads;
+    }
+
+    public long getAsyncCommitTimeout() {
+        return asyncCommitTimeout;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public long getVirtualThreadMaxWaitMillis() {
+        return virtualThreadMaxWaitMillis;
+    }
+
+    public int getInvokeParallelism() {
+        return invokeParallelism;
+    }
+
+    public boolean isUseMetrics() {
+        return useMetrics;
+    }
+
+    public int getRetryTimes() {
+        return retryTimes;
+    }
+
+    public long getRetryBackoffMillis() {
+        return retryBackoffMillis;
+    }
+
+    public int getNearCacheSize() {
+        return nearCacheSize;
+    }
+
+    public long getNearCacheExpireMillis() {
+        return nearCacheExpireMillis;
+    }
+
+    public String getInvalidationChannel() {
+        return invalidationChannel;
+    }
+
+    public long getCacheReapInterval() {
+        return cacheReapInterval;
+    }
+
+    /**
+     * 获取查询的缓存时间，单位秒，依次取 cacheExpireTime.chaincode.方法、cacheExpireTime.chaincode、cacheExpireTime
+     */
+    public int getCacheExpireTime(String chainCode, String fcn) {
+        return lookup(chainCodeExpireTimes, functionExpireTimes, chainCode, fcn, cacheExpireTime);
+    }
+
+    /**
+     * 所有配置中最长的缓存时间，包括失败结果的缓存时间，单位秒
+     */
+    public int getMaxCacheExpireTime() {
+        return Math.max(max(cacheExpireTime, chainCodeExpireTimes, functionExpireTimes),
+                max(negativeCacheTime, chainCodeNegativeTimes, functionNegativeTimes));
+    }
+
+    /**
+     * 获取查询失败结果的缓存时间，单位秒，依次取 negativeCacheTime.chaincode.方法、negativeCacheTime.chaincode、negativeCacheTime
+     */
+    public int getNegativeCacheTime(String chainCode, String fcn) {
+        return lookup(chainCodeNegativeTimes, functionNegativeTimes, chainCode, fcn, negativeCacheTime);
+    }
+
+    /**
+     * 获取查询或交易参数中账本key的下标，依次取 cacheKeyArg.chaincode.方法、cacheKeyArg.chaincode，未配置时返回-1
+     */
+    public int getCacheKeyArg(String chainCode, String fcn) {
+        return lookup(chainCodeKeyArgs, functionKeyArgs, chainCode, fcn, -1);
+    }
+
+    /**
+     * 获取cacheKeyArg指定的参数，即查询或交易读写的账本key，未配置或参数不足时返回null
+     */
+    public String getLedgerKey(String chainCode, String fcn, String... arguments) {
+        int index = getCacheKeyArg(chainCode, fcn);
+        return index >= 0 && arguments != null && index < arguments.length ? arguments[index] : null;
+    }
+
+    /**
+     * 获取查询的缓存策略，依次取 cachePolicy.chaincode.方法、cachePolicy.chaincode、cachePolicy
+     */
+    public CachePolicy getCachePolicy(String chainCode, String fcn) {
+        return lookup(chainCodePolicies, functionPolicies, chainCode, fcn, cachePolicy);
+    }
+
+    public boolean isKeyInvalidation() {
+        return keyInvalidation;
+    }
+
+    public String getCoherenceCheckpointDir() {
+        return coherenceCheckpointDir;
+    }
+
+    public long getCoherenceLagInterval() {
+        return coherenceLagInterval;
+    }
+
+    public boolean isPurgeLegacyKeys() {
+        return purgeLegacyKeys;
+    }
+
+    public long getMissLockMillis() {
+        return missLockMillis;
+    }
+
+    public int getCacheStaleTime() {
+        return cacheStaleTime;
+    }
+
+    public double getRefreshAheadRatio() {
+        return refreshAheadRatio;
+    }
+
+    public int getRefreshThreads() {
+        return refreshThreads;
+    }
+
+    public int getRefreshQueueSize() {
+        return refreshQueueSize;
+    }
+
+    public CacheBackend getCacheBackend() {
+        return cacheBackend;
+    }
+
+    public long getMemoryCacheSize() {
+        return memoryCacheSize;
+    }
+
+    public String getMappedCacheFile() {
+        return mappedCacheFile;
+    }
+
+    public int getMappedCacheSize() {
+        return mappedCacheSize;
+    }
+
+    public int getRedisMaxTotal() {
+        return redisMaxTotal;
+    }
+
+    public int getRedisMaxIdle() {
+        return redisMaxIdle;
+    }
+
+    public int getRedisMinIdle() {
+        return redisMinIdle;
+    }
+
+    public long getRedisMaxWaitMillis() {
+        return redisMaxWaitMillis;
+    }
+
+    public long getRedisIdleCheckInterval() {
+        return redisIdleCheckInterval;
+    }
+
+    public boolean isRedisMultiplexed() {
+        return redisMultiplexed;
+    }
+
+    public RedisMode getRedisMode() {
+        return redisMode;
+    }
+
+    public List<String> getRedisSentinels() {
+        return redisSentinels;
+    }
+
+    public String getRedisMasterName() {
+        return redisMasterName;
+    }
+
+    public List<String> getRedisClusterNodes() {
+        return redisClusterNodes;
+    }
+
+    public int getRedisConnectTimeout() {
+        return redisConnectTimeout;
+    }
+
+    public int getRedisMaxRedirects() {
+        return redisMaxRedirects;
+    }
+
+    public boolean isCacheBreaker() {
+        return cacheBreaker;
+    }
+
+    public int getCacheBreakerWindow() {
+        return cacheBreakerWindow;
+    }
+
+    public int getCacheBreakerMinimumCalls() {
+        return cacheBreakerMinimumCalls;
+    }
+
+    public int getCacheBreakerFailureRate() {
+        return cacheBreakerFailureRate;
+    }
+
+    public int getCacheBreakerLatencyPercentile() {
+        return cacheBreakerLatencyPercentile;
+    }
+
+    public long getCacheBreakerSlowMillis() {
+        return cacheBreakerSlowMillis;
+    }
+
+    public long getCacheBreakerOpenMillis() {
+        return cacheBreakerOpenMillis;
+    }
+
+    public int getCacheBreakerHalfOpenCalls() {
+        return cacheBreakerHalfOpenCalls;
+    }
+
+    public CacheCodec getCacheCodec() {
+        return cacheCodec;
+    }
+
+    public int getCacheCompressThreshold() {
+        return cacheCompressThreshold;
+    }
+
+    public int getCacheZstdLevel() {
+        return cacheZstdLevel;
+    }
+
+    public String getCacheZstdDictionary() {
+        return cacheZstdDictionary;
+    }
+
+    public int getWarmProfileSize() {
+        return warmProfileSize;
+    }
+
+    public String getWarmProfileFile() {
+        return warmProfileFile;
+    }
+
+    public long getWarmProfileSaveInterval() {
+        return warmProfileSaveInterval;
+    }
+
+    public int getWarmConcurrency() {
+        return warmConcurrency;
+    }
+
+    public long getWarmTimeoutMillis() {
+        return warmTimeoutMillis;
+    }
+
+    public String getWarmSnapshotFile() {
+        return warmSnapshotFile;
+    }
+
+    public List<String> getWarmChainCodes() {
+        return warmChainCodes;
+    }
+
     public String getNetConfigFile() {
         return netConfigFile;
     }
@@ -86,11 +445,149 @@ public class Global extends GenericObjectPoolConfig<FabricConnection> {
             cachePort = properties.getProperty("cachePort","6379");
             cacheExpireTime = Integer.parseInt(properties.getProperty("cacheExpireTime","1000"));
             cacheTimeout = Integer.parseInt(properties.getProperty("cacheTimeout","1000"));
+            poolIdleTimeout = Long.parseLong(properties.getProperty("poolIdleTimeout","600000"));
+            poolIdleCheckInterval = Long.parseLong(properties.getProperty("poolIdleCheckInterval","60000"));
+            shareGateway = Boolean.parseBoolean(properties.getProperty("shareGateway","true"));
+            asyncThreads = Integer.parseInt(properties.getProperty("asyncThreads",String.valueOf(Runtime.getRuntime().availableProcessors()*2)));
+            asyncCommitTimeout = Long.parseLong(properties.getProperty("asyncCommitTimeout","300000"));
+            virtualThreads = Boolean.parseBoolean(properties.getProperty("virtualThreads","false"));
+            virtualThreadMaxWaitMillis = Long.parseLong(properties.getProperty("virtualThreadMaxWaitMillis","30000"));
+            invokeParallelism = Integer.parseInt(properties.getProperty("invokeParallelism","8"));
+            useMetrics = Boolean.parseBoolean(properties.getProperty("UseMetrics","true"));
+            retryTimes = Integer.parseInt(properties.getProperty("retryTimes","1"));
+            retryBackoffMillis = Long.parseLong(properties.getProperty("retryBackoffMillis","100"));
+            nearCacheSize = Integer.parseInt(properties.getProperty("nearCacheSize","10000"));
+            nearCacheExpireMillis = Long.parseLong(properties.getProperty("nearCacheExpireMillis","60000"));
+            invalidationChannel = properties.getProperty("invalidationChannel","fabric-cache:invalidate");
+            cacheReapInterval = Long.parseLong(properties.getProperty("cacheReapInterval","5000"));
+            keyInvalidation = Boolean.parseBoolean(properties.getProperty("keyInvalidation","true"));
+            coherenceCheckpointDir = properties.getProperty("coherenceCheckpointDir","").trim();
+            coherenceLagInterval = Long.parseLong(properties.getProperty("coherenceLagInterval","10000"));
+            purgeLegacyKeys = Boolean.parseBoolean(properties.getProperty("purgeLegacyKeys","true"));
+            missLockMillis = Long.parseLong(properties.getProperty("missLockMillis","0"));
+            negativeCacheTime = Integer.parseInt(properties.getProperty("negativeCacheTime","0"));
+            cachePolicy = CachePolicy.parse(properties.getProperty("cachePolicy","expire"));
+            cacheStaleTime = Integer.parseInt(properties.getProperty("cacheStaleTime","60"));
+            refreshAheadRatio = Double.parseDouble(properties.getProperty("refreshAheadRatio","0.8"));
+            refreshThreads = Integer.parseInt(properties.getProperty("refreshThreads","4"));
+            refreshQueueSize = Integer.parseInt(properties.getProperty("refreshQueueSize","256"));
+            cacheBackend = CacheBackend.parse(properties.getProperty("cacheBackend","redis"));
+            memoryCacheSize = Long.parseLong(properties.getProperty("memoryCacheSize","100000"));
+            mappedCacheFile = properties.getProperty("mappedCacheFile","./mapped-cache/fabric-cache.dat").trim();
+            mappedCacheSize = Integer.parseInt(properties.getProperty("mappedCacheSize","64"));
+            redisMaxTotal = Integer.parseInt(properties.getProperty("redisMaxTotal","16"));
+            redisMaxIdle = Integer.parseInt(properties.getProperty("redisMaxIdle","16"));
+            redisMinIdle = Integer.parseInt(properties.getProperty("redisMinIdle","2"));
+            redisMaxWaitMillis = Long.parseLong(properties.getProperty("redisMaxWaitMillis","1000"));
+            redisIdleCheckInterval = Long.parseLong(properties.getProperty("redisIdleCheckInterval","30000"));
+            redisMultiplexed = Boolean.parseBoolean(properties.getProperty("redisMultiplexed","false"));
+            redisMode = RedisMode.parse(properties.getProperty("redisMode","standalone"));
+            redisSentinels = splitList(properties.getProperty("redisSentinels",""));
+            redisMasterName = properties.getProperty("redisMasterName","mymaster");
+            redisClusterNodes = splitList(properties.getProperty("redisClusterNodes",""));
+            redisConnectTimeout = Integer.parseInt(properties.getProperty("redisConnectTimeout","200"));
+            redisMaxRedirects = Integer.parseInt(properties.getProperty("redisMaxRedirects","2"));
+            cacheBreaker = Boolean.parseBoolean(properties.getProperty("cacheBreaker","true"));
+            cacheBreakerWindow = Integer.parseInt(properties.getProperty("cacheBreakerWindow","100"));
+            cacheBreakerMinimumCalls = Integer.parseInt(properties.getProperty("cacheBreakerMinimumCalls","20"));
+            cacheBreakerFailureRate = Integer.parseInt(properties.getProperty("cacheBreakerFailureRate","50"));
+            cacheBreakerLatencyPercentile = Integer.parseInt(properties.getProperty("cacheBreakerLatencyPercentile","95"));
+            cacheBreakerSlowMillis = Long.parseLong(properties.getProperty("cacheBreakerSlowMillis","100"));
+            cacheBreakerOpenMillis = Long.parseLong(properties.getProperty("cacheBreakerOpenMillis","5000"));
+            cacheBreakerHalfOpenCalls = Integer.parseInt(properties.getProperty("cacheBreakerHalfOpenCalls","3"));
+            cacheCodec = CacheCodec.parse(properties.getProperty("cacheCodec","zstd"));
+            cacheCompressThreshold = Integer.parseInt(properties.getProperty("cacheCompressThreshold","512"));
+            cacheZstdLevel = Integer.parseInt(properties.getProperty("cacheZstdLevel","3"));
+            cacheZstdDictionary = properties.getProperty("cacheZstdDictionary","").trim();
+            warmProfileSize = Integer.parseInt(properties.getProperty("warmProfileSize","1000"));
+            warmProfileFile = properties.getProperty("warmProfileFile","").trim();
+            warmProfileSaveInterval = Long.parseLong(properties.getProperty("warmProfileSaveInterval","60000"));
+            warmConcurrency = Integer.parseInt(properties.getProperty("warmConcurrency","8"));
+            warmTimeoutMillis = Long.parseLong(properties.getProperty("warmTimeoutMillis","60000"));
+            warmSnapshotFile = properties.getProperty("warmSnapshotFile","").trim();
+            warmChainCodes = splitList(properties.getProperty("warmChainCodes",""));
+            loadExpireTimes(properties);
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * 解析 cacheExpireTime.chaincode[.方法]=秒、cacheKeyArg.chaincode[.方法]=下标、negativeCacheTime.chaincode[.方法]=秒
+     * 和 cachePolicy.chaincode[.方法]=策略，
+     * chaincode名称中不含"."
+     */
+    private void loadExpireTimes(Properties properties) {
+        chainCodeExpireTimes = new HashMap<>();
+        functionExpireTimes = new HashMap<>();
+        loadChainCodeSettings(properties, "cacheExpireTime.", Integer::parseInt, chainCodeExpireTimes, functionExpireTimes);
+        chainCodeKeyArgs = new HashMap<>();
+        functionKeyArgs = new HashMap<>();
+        loadChainCodeSettings(properties, "cacheKeyArg.", Integer::parseInt, chainCodeKeyArgs, functionKeyArgs);
+        chainCodeNegativeTimes = new HashMap<>();
+        functionNegativeTimes = new HashMap<>();
+        loadChainCodeSettings(properties, "negativeCacheTime.", Integer::parseInt, chainCodeNegativeTimes, functionNegativeTimes);
+        chainCodePolicies = new HashMap<>();
+        functionPolicies = new HashMap<>();
+        loadChainCodeSettings(properties, "cachePolicy.", CachePolicy::parse, chainCodePolicies, functionPolicies);
+    }
+
+    /**
+     * 解析 前缀chaincode[.方法]=值 形式的配置
+     */
+    private static <T> void loadChainCodeSettings(Properties properties, String prefix, Function<String, T> parser,
+                                                  Map<String, T> chainCodes, Map<String, Map<String, T>> functions) {
+        for (String name : properties.stringPropertyNames()) {
+            if (!name.startsWith(prefix)) {
+                continue;
+            }
+            String target = name.substring(prefix.length());
+            T value = parser.apply(properties.getProperty(name).trim());
+            int dot = target.indexOf('.');
+            if (dot < 0) {
+                chainCodes.put(target, value);
+            } else {
+                functions.computeIfAbsent(target.substring(0, dot), k -> new HashMap<>()).put(target.substring(dot + 1), value);
+            }
+        }
+    }
+
+    private static int max(int defaultValue, Map<String, Integer> chainCodes, Map<String, Map<String, Integer>> functions) {
+        int max = defaultValue;
+        for (int value : chainCodes.values()) {
+            max = Math.max(max, value);
+        }
+        for (Map<String, Integer> byFunction : functions.values()) {
+            for (int value : byFunction.values()) {
+                max = Math.max(max, value);
+            }
+        }
+        return max;
+    }
+
+    private static <T> T lookup(Map<String, T> chainCodes, Map<String, Map<String, T>> functions,
+                                String chainCode, String fcn, T defaultValue) {
+        Map<String, T> byFunction = functions.get(chainCode);
+        T value = byFunction == null ? null : byFunction.get(fcn);
+        if (value == null) {
+            value = chainCodes.get(chainCode);
+        }
+        return value == null ? defaultValue : value;
+    }
+
+    /**
+     * 解析逗号分隔的配置项
+     */
+    private static List<String> splitList(String value) {
+        List<String> list = new ArrayList<>();
+        for (String item : value.split(",")) {
+            if (!item.trim().isEmpty()) {
+                list.add(item.trim());
+            }
+        }
+        return Collections.unmodifiableList(list);
+    }
+
     private static class SingletonHolder{
         private static final Global instance = new Global();  //静态初始化器，由JVM来保证线程安全
     }
@@ -0,0 +1,104 @@
+package com.jason.fabric.pool.impl;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.jason.fabric.pool.conf.Global;
+import com.jason.fabric.pool.utils.ThreadPoolUtil;
+import org.hyperledger.fabric.gateway.ContractException;
+import org.hyperledger.fabric.gateway.Network;
+import org.hyperledger.fabric.gateway.spi.CommitHandler;
+import org.hyperledger.fabric.gateway.spi.CommitHandlerFactory;
+import org.hyperledger.fabric.gateway.spi.CommitListener;
+import org.hyperledger.fabric.gateway.spi.PeerDisconnectEvent;
+import org.hyperledger.fabric.sdk.BlockEvent;
+import org.hyperledger.fabric.sdk.Peer;
+
+/**
+ * 不阻塞等待提交的CommitHandler
+ * 交易发送给orderer后submit立即返回，由任一事件节点的提交事件完成commitFuture，
+ * 每个交易使用一个新的实例
+ */
+public class AsyncCommitHandlerFactory implements CommitHandlerFactory {
+
+    private final CompletableFuture<Void> commitFuture = new CompletableFuture<>();
+
+    /**
+     * 交易提交后完成，交易无效、事件节点全部断开或超时时异常结束
+     */
+    public CompletableFuture<Void> commitFuture() {
+        return commitFuture;
+    }
+
+    @Override
+    public CommitHandler create(String transactionId, Network network) {
+        return new AsyncCommitHandler(transactionId, network);
+    }
+
+    private class AsyncCommitHandler implements CommitHandler, CommitListener {
+        private final String transactionId;
+        private final Network network;
+        private final Set<Peer> peers = ConcurrentHashMap.newKeySet();
+
+        AsyncCommitHandler(String transactionId, Network network) {
+            this.transactionId = transactionId;
+            this.network = network;
+        }
+
+        @Override
+        public void startListening() {
+            Collection<Peer> eventPeers = network.getChannel().getPeers(EnumSet.of(Peer.PeerRole.EVENT_SOURCE));
+            if (eventPeers.isEmpty()) {
+                commitFuture.complete(null);
+                return;
+            }
+            peers.addAll(eventPeers);
+            network.addCommitListener(this, eventPeers, transactionId);
+            long timeout = Global.getInstance().getAsyncCommitTimeout();
+            ScheduledFuture<?> timer = ThreadPoolUtil.getInstance().getScheduler().schedule(() -> fail(new TimeoutException(
+                    "Timeout waiting for commit of transaction " + transactionId)), timeout, TimeUnit.MILLISECONDS);
+            commitFuture.whenComplete((v, e) -> timer.cancel(false));
+        }
+
+        @Override
+        public void waitForEvents(long timeout, TimeUnit timeUnit) {
+            //不等待，提交结果通过commitFuture通知
+        }
+
+        @Override
+        public void cancelListening() {
+            fail(new ContractException("Transaction " + transactionId + " was not sent to orderer"));
+        }
+
+        @Override
+        public void acceptCommit(BlockEvent.TransactionEvent transactionEvent) {
+            if (transactionEvent.isValid()) {
+                network.removeCommitListener(this);
+                commitFuture.complete(null);
+            } else {
+                fail(new ContractException("Transaction " + transactionId + " commit failed with validation code "
+                        + transactionEvent.getValidationCode() + " from peer " + transactionEvent.getPeer().getName()));
+            }
+        }
+
+        @Override
+        public void acceptDisconnect(PeerDisconnectEvent disconnectEvent) {
+            peers.remove(disconnectEvent.getPeer());
+            if (peers.isEmpty()) {
+                fail(new ContractException("All event peers disconnected waiting for commit of transaction " + transactionId,
+                        disconnectEvent.getCause()));
+            }
+        }
+
+        private void fail(Throwable cause) {
+            network.removeCommitListener(this);
+            commitFuture.completeExceptionally(cause);
+        }
+    }
+}
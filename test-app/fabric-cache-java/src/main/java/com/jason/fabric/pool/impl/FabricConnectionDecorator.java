@@ -0,0 +1,62 @@
+package com.jason.fabric.pool.impl;
+
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import com.jason.fabric.pool.api.FabricConnection;
+import com.jason.fabric.pool.api.QueryResult;
+import com.jason.fabric.pool.api.QuerySpec;
+
+/**
+ * FabricConnection装饰器基类，默认直接转发给下一层
+ * 连接池创建连接时按 统计 -> 缓存 -> 重试 -> FabricContractConnectImpl 的顺序组装，调用过程中没有反射
+ */
+public abstract class FabricConnectionDecorator implements FabricConnection {
+
+    protected final FabricConnection delegate;
+
+    protected FabricConnectionDecorator(FabricConnection delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public String query(String chainCode, String fcn, String... arguments) throws Exception {
+        return delegate.query(chainCode, fcn, arguments);
+    }
+
+    @Override
+    public String invoke(String chainCode, String fcn, String... arguments) throws Exception {
+        return delegate.invoke(chainCode, fcn, arguments);
+    }
+
+    @Override
+    public byte[] queryBytes(String chainCode, String fcn, String... arguments) throws Exception {
+        return delegate.queryBytes(chainCode, fcn, arguments);
+    }
+
+    @Override
+    public byte[] invokeBytes(String chainCode, String fcn, String... arguments) throws Exception {
+        return delegate.invokeBytes(chainCode, fcn, arguments);
+    }
+
+    @Override
+    public void queryTo(OutputStream out, String chainCode, String fcn, String... arguments) throws Exception {
+        delegate.queryTo(out, chainCode, fcn, arguments);
+    }
+
+    @Override
+    public CompletableFuture<byte[]> queryAsync(String chainCode, String fcn, String... arguments) {
+        return delegate.queryAsync(chainCode, fcn, arguments);
+    }
+
+    @Override
+    public CompletableFuture<byte[]> invokeAsync(String chainCode, String fcn, String... arguments) throws Exception {
+        return delegate.invokeAsync(chainCode, fcn, arguments);
+    }
+
+    @Override
+    public List<QueryResult> queryAll(List<QuerySpec> specs) throws Exception {
+        return delegate.queryAll(specs);
+    }
+}
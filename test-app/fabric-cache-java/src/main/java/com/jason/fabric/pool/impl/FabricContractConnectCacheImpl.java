@@ -0,0 +1,422 @@
+package com.jason.fabric.pool.impl;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.jason.fabric.pool.api.BatchQueries;
+import com.jason.fabric.pool.api.FabricConnection;
+import com.jason.fabric.pool.api.QueryResult;
+import com.jason.fabric.pool.api.QuerySpec;
+import com.jason.fabric.pool.cache.AccessProfile;
+import com.jason.fabric.pool.cache.CacheEntry;
+import com.jason.fabric.pool.cache.CacheField;
+import com.jason.fabric.pool.cache.CacheKeys;
+import com.jason.fabric.pool.cache.CachePolicy;
+import com.jason.fabric.pool.cache.CacheRefresher;
+import com.jason.fabric.pool.cache.CachedContractException;
+import com.jason.fabric.pool.cache.QueryCache;
+import com.jason.fabric.pool.cache.RedisMissLock;
+import com.jason.fabric.pool.cache.SingleFlight;
+import com.jason.fabric.pool.cache.WriteSetInvalidator;
+import com.jason.fabric.pool.conf.Global;
+import com.jason.fabric.pool.utils.StringUtil;
+import com.jason.fabric.pool.utils.ThreadPoolUtil;
+import org.apache.log4j.Logger;
+import org.hyperledger.fabric.gateway.ContractException;
+import org.hyperledger.fabric.sdk.ProposalResponse;
+
+/**
+ * 查询缓存装饰器
+ * 查询先读缓存，未命中时查询并写入缓存，缓存时间按chaincode和方法配置；提交交易后清除该chaincode的缓存
+ * 配置了invalidator时，未命中的查询登记其依赖的账本key(由cacheKeyArg指定的参数，未配置时依赖整个chaincode)，
+ * 提交交易后只失效依赖被写入key的条目，所有用户共享这一失效
+ * 同一条目的并发未命中在进程内合并为一次查询；配置了missLock时跨进程也只有持锁者查询peer，其他进程等待缓存写入
+ * swr和refresh策略下，到达刷新时间的条目照常返回，同时在后台刷新
+ * 配置了negativeCacheTime时，chaincode返回的错误也会短时间缓存，命中时抛出CachedContractException
+ * 批量查询一次读取所有条目，只有未命中的查询并行发往peer
+ * 可缓存的查询记入访问画像，用于启动时预热
+ */
+public class FabricContractConnectCacheImpl extends FabricConnectionDecorator {
+    private static final Logger log = Logger.getLogger(FabricContractConnectCacheImpl.class);
+    private static final Set<String> PURGED_LEGACY_KEYS = ConcurrentHashMap.newKeySet();
+    //进程内所有连接共享，按缓存条目合并
+    private static final SingleFlight<CacheField, byte[]> LOADS = new SingleFlight<>();
+    private static final long MAX_POLL_MILLIS = 50;
+
+    private final QueryCache cache;
+    private final WriteSetInvalidator invalidator;
+    private final RedisMissLock missLock;
+    private final String userName;
+    private final String channelName;
+
+    public FabricContractConnectCacheImpl(FabricConnection delegate, QueryCache cache, String userName, String channelName) {
+        this(delegate, cache, null, null, userName, channelName);
+    }
+
+    public FabricContractConnectCacheImpl(FabricConnection delegate, QueryCache cache, WriteSetInvalidator invalidator,
+                                          String userName, String channelName) {
+        this(delegate, cache, invalidator, null, userName, channelName);
+    }
+
+    public FabricContractConnectCacheImpl(FabricConnection delegate, QueryCache cache, WriteSetInvalidator invalidator,
+                                          RedisMissLock missLock, String userName, String channelName) {
+        super(delegate);
+        this.cache = cache;
+        this.invalidator = invalidator;
+        this.missLock = missLock;
+        this.userName = userName;
+        this.channelName = channelName;
+    }
+
+    /**
+     * 进程内被合并的未命中查询次数
+     */
+    public static long getCoalescedCount() {
+        return LOADS.getCoalescedCount();
+    }
+
+    /**
+     * 生成缓存key
+     * @return
+     */
+    public String genericKey(String userName, String channelName, String chainCodeName) {
+        return CacheKeys.key(userName, channelName, chainCodeName);
+    }
+
+    /**
+     * 生成缓存field，chaincode已包含在key中
+     * @return
+     */
+    public String genericField(String chainCodeName, String fcn, String... arguments) {
+        return CacheKeys.field(fcn, arguments);
+    }
+
+    @Override
+    public String query(String chainCode, String fcn, String... arguments) throws Exception {
+        return new String(queryBytes(chainCode, fcn, arguments), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public byte[] queryBytes(String chainCode, String fcn, String... arguments) throws Exception {
+        String key = key(chainCode);
+        long ttl = ttlMillis(chainCode, fcn);
+        if (ttl <= 0) {
+            return delegate.queryBytes(chainCode, fcn, arguments);
+        }
+        String field = genericField(chainCode, fcn, arguments);
+        CacheEntry cached = cache.get(key, field);
+        CacheField slot = new CacheField(key, field);
+        AccessProfile.getInstance().record(userName, channelName, chainCode, slot, fcn, arguments);
+        if (cached != null && cached.isNegative()) {
+            throw new CachedContractException(cached.getErrorClass(), cached.getErrorMessage());
+        }
+        //空结果也缓存，存在的条目都算命中
+        if (cached != null) {
+            refreshIfDue(cached, slot, chainCode, fcn, ttl, arguments);
+            return cached.getValue();
+        }
+        //若不存在，则加入缓存
+        return LOADS.execute(slot, () -> load(slot, chainCode, fcn, ttl, arguments));
+    }
+
+    private byte[] load(CacheField slot, String chainCode, String fcn, long ttl, String... arguments) throws Exception {
+        String lockToken = null;
+        if (missLock != null) {
+            lockToken = missLock.tryAcquire(slot);
+            if (lockToken == null) {
+                CacheEntry loaded = awaitLoaded(slot);
+                if (loaded != null && loaded.isNegative()) {
+                    throw new CachedContractException(loaded.getErrorClass(), loaded.getErrorMessage());
+                }
+                if (loaded != null) {
+                    return loaded.getValue();
+                }
+            }
+        }
+        try {
+            String ledgerKey = Global.getInstance().getLedgerKey(chainCode, fcn, arguments);
+            String token = track(chainCode, ledgerKey, slot.getKey(), slot.getField());
+            byte[] result;
+            try {
+                result = delegate.queryBytes(chainCode, fcn, arguments);
+            } catch (Exception e) {
+                storeNegative(chainCode, fcn, ledgerKey, token, slot.getKey(), slot.getField(), e);
+                throw e;
+            }
+            if (result == null) {
+                result = new byte[0];
+            }
+            store(chainCode, ledgerKey, token, slot.getKey(), slot.getField(), entry(chainCode, fcn, result, ttl));
+            return result;
+        } finally {
+            if (missLock != null) {
+                missLock.release(slot, lockToken);
+            }
+        }
+    }
+
+    /**
+     * 条目到达刷新时间后提交后台刷新，刷新与未命中共用合并，不会重复查询peer
+     */
+    private void refreshIfDue(CacheEntry cached, CacheField slot, String chainCode, String fcn, long ttl, String... arguments) {
+        long now = System.currentTimeMillis();
+        if (!cached.needsRefresh(now)) {
+            return;
+        }
+        boolean stale = Global.getInstance().getCachePolicy(chainCode, fcn) == CachePolicy.STALE_WHILE_REVALIDATE;
+        CacheRefresher.getInstance().refresh(slot, stale, () -> LOADS.execute(slot, () -> load(slot, chainCode, fcn, ttl, arguments)));
+    }
+
+    /**
+     * 按缓存策略设置过期时间和刷新时间
+     */
+    private static CacheEntry entry(String chainCode, String fcn, byte[] result, long ttl) {
+        Global global = Global.getInstance();
+        long now = System.currentTimeMillis();
+        switch (global.getCachePolicy(chainCode, fcn)) {
+            case STALE_WHILE_REVALIDATE:
+                return new CacheEntry(result, now + ttl + global.getCacheStaleTime() * 1000L, now + ttl);
+            case REFRESH_AHEAD:
+                return new CacheEntry(result, now + ttl, now + (long) (ttl * global.getRefreshAheadRatio()));
+            default:
+                return new CacheEntry(result, now + ttl);
+        }
+    }
+
+    /**
+     * 其他进程持有锁时轮询缓存，租约到期仍未写入时返回null，由本进程自己查询
+     */
+    private CacheEntry awaitLoaded(CacheField slot) throws InterruptedException {
+        long lease = missLock.getLeaseMillis();
+        long poll = Math.max(1, Math.min(MAX_POLL_MILLIS, lease / 20));
+        long deadline = System.currentTimeMillis() + lease;
+        while (System.currentTimeMillis() < deadline) {
+            Thread.sleep(poll);
+            CacheEntry cached = cache.get(slot.getKey(), slot.getField());
+            if (cached != null) {
+                return cached;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void queryTo(OutputStream out, String chainCode, String fcn, String... arguments) throws Exception {
+        out.write(queryBytes(chainCode, fcn, arguments));
+    }
+
+    @Override
+    public CompletableFuture<byte[]> queryAsync(String chainCode, String fcn, String... arguments) {
+        String key;
+        try {
+            key = key(chainCode);
+        } catch (Exception e) {
+            return failed(e);
+        }
+        long ttl = ttlMillis(chainCode, fcn);
+        if (ttl <= 0) {
+            return delegate.queryAsync(chainCode, fcn, arguments);
+        }
+        String field = genericField(chainCode, fcn, arguments);
+        return completeAsync(cache.get(key, field), key, field, chainCode, fcn, ttl, arguments);
+    }
+
+    /**
+     * 查询不缓存的方法直接发往peer；其余先一次读取全部缓存条目，未命中的查询并行加载
+     */
+    @Override
+    public List<QueryResult> queryAll(List<QuerySpec> specs) throws Exception {
+        List<CompletableFuture<byte[]>> futures = new ArrayList<>(Collections.nCopies(specs.size(), null));
+        List<CacheField> slots = new ArrayList<>(specs.size());
+        List<Integer> positions = new ArrayList<>(specs.size());
+        for (int i = 0; i < specs.size(); i++) {
+            QuerySpec spec = specs.get(i);
+            String key;
+            try {
+                key = key(spec.getChainCode());
+            } catch (Exception e) {
+                futures.set(i, failed(e));
+                continue;
+            }
+            if (ttlMillis(spec.getChainCode(), spec.getFcn()) <= 0) {
+                futures.set(i, delegate.queryAsync(spec.getChainCode(), spec.getFcn(), spec.getArguments()));
+                continue;
+            }
+            slots.add(new CacheField(key, genericField(spec.getChainCode(), spec.getFcn(), spec.getArguments())));
+            positions.add(i);
+        }
+        List<CacheEntry> entries = slots.isEmpty() ? Collections.emptyList() : cache.getAll(slots);
+        for (int j = 0; j < slots.size(); j++) {
+            int i = positions.get(j);
+            QuerySpec spec = specs.get(i);
+            CacheField slot = slots.get(j);
+            futures.set(i, completeAsync(entries.get(j), slot.getKey(), slot.getField(), spec.getChainCode(), spec.getFcn(),
+                    ttlMillis(spec.getChainCode(), spec.getFcn()), spec.getArguments()));
+        }
+        return BatchQueries.await(futures);
+    }
+
+    /**
+     * 按读到的缓存条目返回结果，未命中时异步加载
+     */
+    private CompletableFuture<byte[]> completeAsync(CacheEntry cached, String key, String field, String chainCode, String fcn,
+                                                    long ttl, String... arguments) {
+        CacheField slot = new CacheField(key, field);
+        AccessProfile.getInstance().record(userName, channelName, chainCode, slot, fcn, arguments);
+        if (cached != null && cached.isNegative()) {
+            return failed(new CachedContractException(cached.getErrorClass(), cached.getErrorMessage()));
+        }
+        if (cached != null) {
+            refreshIfDue(cached, slot, chainCode, fcn, ttl, arguments);
+            return CompletableFuture.completedFuture(cached.getValue());
+        }
+        //异步查询只在进程内合并，不等待跨进程的锁
+        return LOADS.executeAsync(slot, () -> {
+            String ledgerKey = Global.getInstance().getLedgerKey(chainCode, fcn, arguments);
+            String token = track(chainCode, ledgerKey, key, field);
+            return delegate.queryAsync(chainCode, fcn, arguments).handle((result, e) -> {
+                if (e != null) {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    storeNegative(chainCode, fcn, ledgerKey, token, key, field, cause);
+                    throw e instanceof CompletionException ? (CompletionException) e : new CompletionException(e);
+                }
+                byte[] value = result == null ? new byte[0] : result;
+                store(chainCode, ledgerKey, token, key, field, entry(chainCode, fcn, value, ttl));
+                return value;
+            });
+        });
+    }
+
+    private static <T> CompletableFuture<T> failed(Throwable e) {
+        CompletableFuture<T> failed = new CompletableFuture<>();
+        failed.completeExceptionally(e);
+        return failed;
+    }
+
+    @Override
+    public String invoke(String chainCode, String fcn, String... arguments) throws Exception {
+        return new String(invokeBytes(chainCode, fcn, arguments), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public byte[] invokeBytes(String chainCode, String fcn, String... arguments) throws Exception {
+        String key = key(chainCode);
+        byte[] result = delegate.invokeBytes(chainCode, fcn, arguments);
+        invalidate(chainCode, fcn, key, arguments);
+        return result;
+    }
+
+    @Override
+    public CompletableFuture<byte[]> invokeAsync(String chainCode, String fcn, String... arguments) throws Exception {
+        String key = key(chainCode);
+        //提交事件到达后再清除缓存，避免提交前的查询重新缓存旧值
+        return delegate.invokeAsync(chainCode, fcn, arguments).whenComplete((v, e) -> invalidate(chainCode, fcn, key, arguments));
+    }
+
+    /**
+     * 在查询peer之前登记依赖，返回null表示不写入缓存
+     */
+    private String track(String chainCode, String ledgerKey, String key, String field) {
+        if (invalidator == null) {
+            return "";
+        }
+        return invalidator.getIndex().track(channelName, chainCode, ledgerKey, new CacheField(key, field));
+    }
+
+    /**
+     * 写入缓存后确认登记仍然有效，查询期间依赖被写入时删除刚写入的条目
+     */
+    private void store(String chainCode, String ledgerKey, String token, String key, String field, CacheEntry entry) {
+        if (token == null) {
+            return;
+        }
+        cache.put(key, field, entry);
+        if (invalidator != null && !invalidator.getIndex().confirm(channelName, chainCode, ledgerKey, token)) {
+            cache.delete(key, field);
+        }
+    }
+
+    /**
+     * 开启了否定缓存时记录chaincode返回的错误，超时和通信失败不记录
+     */
+    private void storeNegative(String chainCode, String fcn, String ledgerKey, String token, String key, String field, Throwable e) {
+        long negativeTtl = Global.getInstance().getNegativeCacheTime(chainCode, fcn) * 1000L;
+        if (negativeTtl <= 0 || !isChaincodeError(e)) {
+            return;
+        }
+        store(chainCode, ledgerKey, token, key, field, CacheEntry.negative(e.getClass().getName(), e.getMessage(), negativeTtl));
+    }
+
+    /**
+     * 是否为peer执行chaincode后返回的错误：此时异常带有peer的ProposalResponse；
+     * 所有peer都不可达时gateway抛出的ContractException(No successful responses received)只含没有ProposalResponse的失败响应
+     */
+    static boolean isChaincodeError(Throwable e) {
+        if (!(e instanceof ContractException) || FabricContractConnectRetryImpl.isRetryable(e)) {
+            return false;
+        }
+        Collection<ProposalResponse> responses = ((ContractException) e).getProposalResponses();
+        if (responses == null) {
+            return false;
+        }
+        for (ProposalResponse response : responses) {
+            if (response != null && response.getProposalResponse() != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 提交交易后本节点立即失效，保证随后的查询读到自己的写入；其他客户端的写入由区块事件失效
+     */
+    private void invalidate(String chainCode, String fcn, String key, String... arguments) {
+        String ledgerKey = Global.getInstance().getLedgerKey(chainCode, fcn, arguments);
+        if (invalidator != null && ledgerKey != null) {
+            try {
+                invalidator.invalidate(channelName, chainCode, Collections.singleton(ledgerKey));
+                return;
+            } catch (RuntimeException e) {
+                log.warn("invalidate ledger key " + ledgerKey + " failed: " + e.getMessage());
+            }
+        }
+        cache.delete(key);
+    }
+
+    /**
+     * 缓存时间，0表示该方法不缓存
+     */
+    private static long ttlMillis(String chainCode, String fcn) {
+        return Global.getInstance().getCacheExpireTime(chainCode, fcn) * 1000L;
+    }
+
+    private String key(String chainCodeName) throws Exception {
+        if (StringUtil.isBlank(chainCodeName)) {
+            throw new Exception("chaincode name is error!");
+        }
+        String key = genericKey(userName, channelName, chainCodeName);
+        purgeLegacy(chainCodeName);
+        return key;
+    }
+
+    /**
+     * 旧版本的key没有过期时间，每个进程对每个(用户, 通道, chaincode)删除一次
+     */
+    private void purgeLegacy(String chainCodeName) {
+        if (!Global.getInstance().isPurgeLegacyKeys()) {
+            return;
+        }
+        String legacyKey = CacheKeys.legacyKey(userName, channelName, chainCodeName);
+        if (PURGED_LEGACY_KEYS.add(legacyKey)) {
+            ThreadPoolUtil.getInstance().getAsyncExecutor().execute(() -> cache.delete(legacyKey));
+        }
+    }
+}
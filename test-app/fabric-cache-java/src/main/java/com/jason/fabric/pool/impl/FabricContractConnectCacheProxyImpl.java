@@ -1,23 +1,47 @@
 package com.jason.fabric.pool.impl;
 
+import java.io.OutputStream;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
 
-import com.jason.fabric.pool.utils.RedisUtil;
+import com.jason.fabric.pool.api.FabricConnection;
+import com.jason.fabric.pool.cache.CacheEntry;
+import com.jason.fabric.pool.cache.CacheKeys;
+import com.jason.fabric.pool.cache.QueryCache;
+import com.jason.fabric.pool.cache.RedisQueryCache;
+import com.jason.fabric.pool.conf.Global;
 import com.jason.fabric.pool.utils.StringUtil;
 
+/**
+ * 基于JDK动态代理的查询缓存
+ * @deprecated 每次调用都经过反射和按方法名分派，已由{@link FabricContractConnectCacheImpl}装饰器取代
+ */
+@Deprecated
 public class FabricContractConnectCacheProxyImpl implements InvocationHandler {
 
     private final Object obj;
+    private final QueryCache cache;
     private final String userName;
     private final String channelName;
     private static final String METHOD_QUERY = "query";
     private static final String METHOD_INVOKE = "invoke";
+    private static final String METHOD_QUERY_BYTES = "queryBytes";
+    private static final String METHOD_INVOKE_BYTES = "invokeBytes";
+    private static final String METHOD_QUERY_TO = "queryTo";
+    private static final String METHOD_QUERY_ASYNC = "queryAsync";
+    private static final String METHOD_INVOKE_ASYNC = "invokeAsync";
 
     public FabricContractConnectCacheProxyImpl(Object obj, String userName, String channelName) {
+        this(obj, new RedisQueryCache(), userName, channelName);
+    }
+
+    public FabricContractConnectCacheProxyImpl(Object obj, QueryCache cache, String userName, String channelName) {
         this.channelName = channelName;
         this.userName = userName;
         this.obj = obj;
+        this.cache = cache;
     }
 
     /**
@@ -25,20 +49,22 @@ public class FabricContractConnectCacheProxyImpl implements InvocationHandler {
      * @return
      */
     public String genericKey(String userName,String channelName,String chainCodeName){
-        return userName.concat(channelName).concat(chainCodeName);
+        return CacheKeys.key(userName, channelName, chainCodeName);
     }
 
+    /**
+     * 与FabricContractConnectCacheImpl的field一致，两者可共用缓存
+     */
     public String genericField(Object[] args) {
-        String field = "";
-        field = field.concat(args[0].toString());
-        field = field.concat(args[1].toString());
-        if (args.length > 2) {
-            String[] list = (String[]) args[2];
-            for (Object l : list) {
-                field = field.concat(l.toString());
-            }
-        }
-        return field;
+        String[] arguments = args.length > 2 ? (String[]) args[2] : new String[0];
+        return CacheKeys.field(args[1].toString(), arguments);
+    }
+
+    /**
+     * 代理不区分方法，统一使用默认缓存时间
+     */
+    private static long ttlMillis() {
+        return Global.getInstance().getCacheExpireTime() * 1000L;
     }
 
     @Override
@@ -52,28 +78,92 @@ public class FabricContractConnectCacheProxyImpl implements InvocationHandler {
                     throw new Exception("chaincode name is error!");
                 }
                 String key = genericKey(userName,channelName,chainCodeName);
-                String r = RedisUtil.hget(key,field);
-                if(!StringUtil.isBlank(r)){
-                    return r;
+                CacheEntry r = cache.get(key,field);
+                if(r!=null && r.getValue().length>0){
+                    return new String(r.getValue(), StandardCharsets.UTF_8);
                 }
                 //若不存在，则加入缓存
                 result = method.invoke(obj, args);
                 if(result==null){
                     result="";
                 }
-                RedisUtil.hset(key,field, (String) result);
+                cache.put(key,field, CacheEntry.of(((String) result).getBytes(StandardCharsets.UTF_8), ttlMillis()));
+                break;
+            case METHOD_QUERY_BYTES:
+                result = queryBytes(args);
+                break;
+            case METHOD_QUERY_TO:
+                //args[0]为输出流，其余参数与queryBytes一致
+                Object[] queryArgs = new Object[args.length - 1];
+                System.arraycopy(args, 1, queryArgs, 0, queryArgs.length);
+                ((OutputStream) args[0]).write(queryBytes(queryArgs));
+                break;
+            case METHOD_QUERY_ASYNC:
+                result = queryAsync(args);
+                break;
+            case METHOD_INVOKE_ASYNC:
+                String asyncChainCodeName = (String) args[0];  //args[0]为chainCode名称
+                if(StringUtil.isBlank(asyncChainCodeName)){
+                    throw new Exception("chaincode name is error!");
+                }
+                //提交事件到达后再清除缓存，避免提交前的查询重新缓存旧值
+                result = ((CompletableFuture<?>) method.invoke(obj, args)).whenComplete((v, e) ->
+                        cache.delete(genericKey(userName,channelName,asyncChainCodeName)));
                 break;
             case METHOD_INVOKE:
+            case METHOD_INVOKE_BYTES:
                 result = method.invoke(obj, args);
                 String invokChainCodeName = (String) args[0];  //args[0]为chainCode名称
                 if(StringUtil.isBlank(invokChainCodeName)){
                     throw new Exception("chaincode name is error!");
                 }
-                RedisUtil.del(genericKey(userName,channelName,invokChainCodeName));
+                cache.delete(genericKey(userName,channelName,invokChainCodeName));
                 break;
             default:
                 result = method.invoke(obj, args);
         }
         return result;
     }
-}
\ No newline at end of file
+
+    /**
+     * 异步查询，命中缓存时直接返回已完成的future
+     */
+    private CompletableFuture<byte[]> queryAsync(Object[] args) throws Exception {
+        String chainCodeName = (String) args[0];  //args[0]为chainCode名称
+        if(StringUtil.isBlank(chainCodeName)){
+            throw new Exception("chaincode name is error!");
+        }
+        String key = genericKey(userName,channelName,chainCodeName);
+        String field = genericField(args);
+        CacheEntry r = cache.get(key,field);
+        if(r!=null && r.getValue().length>0){
+            return CompletableFuture.completedFuture(r.getValue());
+        }
+        return ((FabricConnection) obj).queryAsync(chainCodeName, (String) args[1], (String[]) args[2]).thenApply(result -> {
+            cache.put(key,field,CacheEntry.of(result, ttlMillis()));
+            return result;
+        });
+    }
+
+    /**
+     * 字节查询，缓存中的值与字符串查询共用，直接读写原始字节
+     */
+    private byte[] queryBytes(Object[] args) throws Throwable {
+        String chainCodeName = (String) args[0];  //args[0]为chainCode名称
+        if(StringUtil.isBlank(chainCodeName)){
+            throw new Exception("chaincode name is error!");
+        }
+        String key = genericKey(userName,channelName,chainCodeName);
+        String field = genericField(args);
+        CacheEntry r = cache.get(key,field);
+        if(r!=null && r.getValue().length>0){
+            return r.getValue();
+        }
+        byte[] result = ((FabricConnection) obj).queryBytes(chainCodeName, (String) args[1], (String[]) args[2]);
+        if(result==null){
+            result=new byte[0];
+        }
+        cache.put(key,field,CacheEntry.of(result, ttlMillis()));
+        return result;
+    }
+}
@@ -1,31 +1,83 @@
 package com.jason.fabric.pool.impl;
 
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.jason.fabric.pool.api.FabricConnection;
+import com.jason.fabric.pool.conf.Global;
+import com.jason.fabric.pool.utils.ThreadPoolUtil;
 import org.hyperledger.fabric.gateway.Contract;
 import org.hyperledger.fabric.gateway.Network;
+import org.hyperledger.fabric.gateway.Transaction;
 
 
 public class FabricContractConnectImpl implements FabricConnection {
 
     private Network network;
+    //chaincode名称 -> Contract，Contract线程安全可复用
+    private final ConcurrentHashMap<String, Contract> contracts = new ConcurrentHashMap<>();
 
     public FabricContractConnectImpl(Network network) {
         this.network = network;
+        for (String chainCode : Global.getInstance().getWarmChainCodes()) {
+            contract(chainCode);
+        }
     }
 
     @Override
     public String query(String chainCode, String fcn, String... arguments) throws Exception {
-        Contract contract = network.getContract(chainCode);
-        byte[] queryAllResult = contract.evaluateTransaction(fcn, arguments);
-        return new String(queryAllResult, StandardCharsets.UTF_8);
+        return new String(queryBytes(chainCode, fcn, arguments), StandardCharsets.UTF_8);
     }
 
     @Override
     public String invoke(String chainCode, String fcn, String... arguments) throws Exception {
-        Contract contract = network.getContract(chainCode);
-        byte[] invokeAllResult = contract.submitTransaction(fcn, arguments);
-        return new String(invokeAllResult, StandardCharsets.UTF_8);
+        return new String(invokeBytes(chainCode, fcn, arguments), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public byte[] queryBytes(String chainCode, String fcn, String... arguments) throws Exception {
+        Contract contract = contract(chainCode);
+        return contract.evaluateTransaction(fcn, arguments);
+    }
+
+    @Override
+    public byte[] invokeBytes(String chainCode, String fcn, String... arguments) throws Exception {
+        Contract contract = contract(chainCode);
+        return contract.submitTransaction(fcn, arguments);
+    }
+
+    @Override
+    public void queryTo(OutputStream out, String chainCode, String fcn, String... arguments) throws Exception {
+        out.write(queryBytes(chainCode, fcn, arguments));
+    }
+
+    @Override
+    public CompletableFuture<byte[]> queryAsync(String chainCode, String fcn, String... arguments) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return queryBytes(chainCode, fcn, arguments);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, ThreadPoolUtil.getInstance().getAsyncExecutor());
+    }
+
+    @Override
+    public CompletableFuture<byte[]> invokeAsync(String chainCode, String fcn, String... arguments) throws Exception {
+        AsyncCommitHandlerFactory commitHandler = new AsyncCommitHandlerFactory();
+        Transaction transaction = contract(chainCode).createTransaction(fcn).setCommitHandler(commitHandler);
+        byte[] result = transaction.submit(arguments);
+        return commitHandler.commitFuture().thenApply(v -> result);
+    }
+
+    private Contract contract(String chainCode) {
+        Contract contract = contracts.get(chainCode);
+        if (contract == null) {
+            contract = contracts.computeIfAbsent(chainCode, network::getContract);
+        }
+        return contract;
     }
 }
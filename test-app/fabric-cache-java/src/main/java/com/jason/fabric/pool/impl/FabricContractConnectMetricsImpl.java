@@ -0,0 +1,132 @@
+package com.jason.fabric.pool.impl;
+
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import com.jason.fabric.pool.ConnectionMetrics;
+import com.jason.fabric.pool.api.FabricConnection;
+import com.jason.fabric.pool.api.QueryResult;
+import com.jason.fabric.pool.api.QuerySpec;
+
+/**
+ * 调用统计装饰器，记录查询和提交的次数、失败数和耗时
+ */
+public class FabricContractConnectMetricsImpl extends FabricConnectionDecorator {
+
+    private final ConnectionMetrics metrics;
+
+    public FabricContractConnectMetricsImpl(FabricConnection delegate, ConnectionMetrics metrics) {
+        super(delegate);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public String query(String chainCode, String fcn, String... arguments) throws Exception {
+        long start = System.nanoTime();
+        boolean error = true;
+        try {
+            String result = delegate.query(chainCode, fcn, arguments);
+            error = false;
+            return result;
+        } finally {
+            metrics.recordQuery(System.nanoTime() - start, error);
+        }
+    }
+
+    @Override
+    public byte[] queryBytes(String chainCode, String fcn, String... arguments) throws Exception {
+        long start = System.nanoTime();
+        boolean error = true;
+        try {
+            byte[] result = delegate.queryBytes(chainCode, fcn, arguments);
+            error = false;
+            return result;
+        } finally {
+            metrics.recordQuery(System.nanoTime() - start, error);
+        }
+    }
+
+    @Override
+    public void queryTo(OutputStream out, String chainCode, String fcn, String... arguments) throws Exception {
+        long start = System.nanoTime();
+        boolean error = true;
+        try {
+            delegate.queryTo(out, chainCode, fcn, arguments);
+            error = false;
+        } finally {
+            metrics.recordQuery(System.nanoTime() - start, error);
+        }
+    }
+
+    @Override
+    public CompletableFuture<byte[]> queryAsync(String chainCode, String fcn, String... arguments) {
+        long start = System.nanoTime();
+        return delegate.queryAsync(chainCode, fcn, arguments)
+                .whenComplete((v, e) -> metrics.recordQuery(System.nanoTime() - start, e != null));
+    }
+
+    /**
+     * 批量查询按平均耗时计入每次查询
+     */
+    @Override
+    public List<QueryResult> queryAll(List<QuerySpec> specs) throws Exception {
+        if (specs.isEmpty()) {
+            return delegate.queryAll(specs);
+        }
+        long start = System.nanoTime();
+        List<QueryResult> results;
+        try {
+            results = delegate.queryAll(specs);
+        } catch (Exception e) {
+            long nanos = (System.nanoTime() - start) / specs.size();
+            for (int i = 0; i < specs.size(); i++) {
+                metrics.recordQuery(nanos, true);
+            }
+            throw e;
+        }
+        long nanos = (System.nanoTime() - start) / specs.size();
+        for (QueryResult result : results) {
+            metrics.recordQuery(nanos, !result.isSuccess());
+        }
+        return results;
+    }
+
+    @Override
+    public String invoke(String chainCode, String fcn, String... arguments) throws Exception {
+        long start = System.nanoTime();
+        boolean error = true;
+        try {
+            String result = delegate.invoke(chainCode, fcn, arguments);
+            error = false;
+            return result;
+        } finally {
+            metrics.recordInvoke(System.nanoTime() - start, error);
+        }
+    }
+
+    @Override
+    public byte[] invokeBytes(String chainCode, String fcn, String... arguments) throws Exception {
+        long start = System.nanoTime();
+        boolean error = true;
+        try {
+            byte[] result = delegate.invokeBytes(chainCode, fcn, arguments);
+            error = false;
+            return result;
+        } finally {
+            metrics.recordInvoke(System.nanoTime() - start, error);
+        }
+    }
+
+    @Override
+    public CompletableFuture<byte[]> invokeAsync(String chainCode, String fcn, String... arguments) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return delegate.invokeAsync(chainCode, fcn, arguments)
+                    .whenComplete((v, e) -> metrics.recordInvoke(System.nanoTime() - start, e != null));
+        } catch (Exception e) {
+            metrics.recordInvoke(System.nanoTime() - start, true);
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.jason.fabric.pool.impl;
+
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.jason.fabric.pool.ConnectionMetrics;
+import com.jason.fabric.pool.api.FabricConnection;
+import com.jason.fabric.pool.utils.ThreadPoolUtil;
+import io.grpc.StatusRuntimeException;
+
+/**
+ * 查询重试装饰器
+ * 只重试超时和gRPC通信失败的查询，chaincode返回的业务错误不重试；提交交易不是幂等的，不重试
+ */
+public class FabricContractConnectRetryImpl extends FabricConnectionDecorator {
+
+    private final int retryTimes;
+    private final long backoffMillis;
+    private final ConnectionMetrics metrics;
+
+    public FabricContractConnectRetryImpl(FabricConnection delegate, int retryTimes, long backoffMillis, ConnectionMetrics metrics) {
+        super(delegate);
+        this.retryTimes = retryTimes;
+        this.backoffMillis = backoffMillis;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public String query(String chainCode, String fcn, String... arguments) throws Exception {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return delegate.query(chainCode, fcn, arguments);
+            } catch (Exception e) {
+                backoff(e, attempt);
+            }
+        }
+    }
+
+    @Override
+    public byte[] queryBytes(String chainCode, String fcn, String... arguments) throws Exception {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return delegate.queryBytes(chainCode, fcn, arguments);
+            } catch (Exception e) {
+                backoff(e, attempt);
+            }
+        }
+    }
+
+    @Override
+    public void queryTo(OutputStream out, String chainCode, String fcn, String... arguments) throws Exception {
+        //先取完整结果再写出，重试时不会重复写入
+        out.write(queryBytes(chainCode, fcn, arguments));
+    }
+
+    @Override
+    public CompletableFuture<byte[]> queryAsync(String chainCode, String fcn, String... arguments) {
+        return queryAsync(0, chainCode, fcn, arguments);
+    }
+
+    private CompletableFuture<byte[]> queryAsync(int attempt, String chainCode, String fcn, String... arguments) {
+        CompletableFuture<byte[]> result = new CompletableFuture<>();
+        delegate.queryAsync(chainCode, fcn, arguments).whenComplete((value, e) -> {
+            if (e == null) {
+                result.complete(value);
+                return;
+            }
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (attempt >= retryTimes || !isRetryable(cause)) {
+                result.completeExceptionally(cause);
+                return;
+            }
+            metrics.recordRetry();
+            ThreadPoolUtil.getInstance().getScheduler().schedule(() ->
+                    queryAsync(attempt + 1, chainCode, fcn, arguments).whenComplete((v, ex) -> {
+                        if (ex != null) {
+                            result.completeExceptionally(ex);
+                        } else {
+                            result.complete(v);
+                        }
+                    }), backoffMillis << attempt, TimeUnit.MILLISECONDS);
+        });
+        return result;
+    }
+
+    private void backoff(Exception e, int attempt) throws Exception {
+        if (attempt >= retryTimes || !isRetryable(e)) {
+            throw e;
+        }
+        metrics.recordRetry();
+        Thread.sleep(backoffMillis << attempt);
+    }
+
+    /**
+     * 超时或原因链中有gRPC异常时认为是通信问题，可以重试
+     */
+    static boolean isRetryable(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TimeoutException || cause instanceof StatusRuntimeException) {
+                return true;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+}
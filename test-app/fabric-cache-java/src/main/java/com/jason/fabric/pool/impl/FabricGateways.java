@@ -0,0 +1,143 @@
+package com.jason.fabric.pool.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.jason.fabric.pool.utils.FabricResourceCache;
+import org.apache.log4j.Logger;
+import org.hyperledger.fabric.gateway.Gateway;
+
+/**
+ * Gateway的创建与共享
+ * 共享模式下每个身份只建立一个Gateway，多个连接池/连接复用其gRPC通道和事件服务，
+ * 通过引用计数管理，最后一个使用者释放时关闭Gateway
+ */
+public class FabricGateways {
+    private static final Logger log = Logger.getLogger(FabricGateways.class);
+
+    private final Map<String, SharedGateway> gateways = new HashMap<>();
+    //使用ReentrantLock而不是synchronized，不会钉住虚拟线程的载体线程；只保护gateways和引用计数，
+    //建立和关闭Gateway在锁外进行，一个身份连接缓慢不阻塞其他身份
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Connector connector;
+
+    private FabricGateways() {
+        this(FabricGateways::connect);
+    }
+
+    FabricGateways(Connector connector) {
+        this.connector = connector;
+    }
+
+    public static FabricGateways getInstance() {
+        return SingletonHolder.instance;
+    }
+
+    /**
+     * 新建一个独占的Gateway，网络配置和身份取自FabricResourceCache，不重复读盘
+     */
+    public static Gateway connect(String userName) throws IOException {
+        FabricResourceCache resources = FabricResourceCache.getInstance();
+        Gateway.Builder builder = Gateway.createBuilder().identity(resources.identity(userName));
+        try (InputStream netConfig = resources.networkConfig()) {
+            builder.networkConfig(netConfig);
+        }
+        return builder.connect();
+    }
+
+    /**
+     * 获取身份对应的共享Gateway，引用计数加一，使用完毕后需调用release
+     * 第一个调用方在锁外建立Gateway，同一身份的其他调用方等待其结果；建立失败时所有等待者都失败，下次调用重新建立
+     */
+    public Gateway acquire(String userName) throws IOException {
+        SharedGateway shared;
+        boolean creator = false;
+        lock.lock();
+        try {
+            shared = gateways.get(userName);
+            if (shared == null) {
+                shared = new SharedGateway();
+                gateways.put(userName, shared);
+                creator = true;
+            }
+            shared.references++;
+        } finally {
+            lock.unlock();
+        }
+        if (creator) {
+            try {
+                shared.gateway.complete(connector.connect(userName));
+            } catch (IOException | RuntimeException e) {
+                remove(userName, shared);
+                shared.gateway.completeExceptionally(e);
+                throw e;
+            }
+        }
+        try {
+            return shared.gateway.join();
+        } catch (CompletionException e) {
+            throw new IOException("connect gateway of " + userName + " failed", e.getCause());
+        }
+    }
+
+    /**
+     * 释放共享Gateway，引用计数归零时在锁外关闭
+     */
+    public void release(String userName) {
+        SharedGateway shared;
+        lock.lock();
+        try {
+            shared = gateways.get(userName);
+            if (shared == null || --shared.references > 0) {
+                return;
+            }
+            gateways.remove(userName);
+        } finally {
+            lock.unlock();
+        }
+        log.info("close shared gateway of " + userName);
+        shared.gateway.join().close();
+    }
+
+    /**
+     * 当前共享的Gateway数量，包含正在建立的
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return gateways.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void remove(String userName, SharedGateway shared) {
+        lock.lock();
+        try {
+            gateways.remove(userName, shared);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 建立Gateway，默认为connect
+     */
+    interface Connector {
+        Gateway connect(String userName) throws IOException;
+    }
+
+    private static final class SharedGateway {
+        private final CompletableFuture<Gateway> gateway = new CompletableFuture<>();
+        private int references;
+    }
+
+    private static class SingletonHolder {
+        private static final FabricGateways instance = new FabricGateways();  //静态初始化器，由JVM来保证线程安全
+    }
+}
@@ -0,0 +1,254 @@
+package com.jason.fabric.pool.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 紧凑的二进制序列化，支持查询结果常用的类型：null、String、byte[]、Integer、Long、Double、Boolean及其组成的ArrayList、LinkedHashSet、LinkedHashMap
+ * 格式为 魔数(1字节) 值，每个值以1字节类型开头，长度和整数使用变长编码；不支持的类型抛出IllegalArgumentException
+ * 集合只接受上述三个类本身，反序列化后类型和迭代顺序不变；HashMap、TreeMap、LinkedList等及其子类不支持，由调用方改用java序列化
+ */
+public final class BinarySerializer {
+    /**
+     * 与java序列化的首字节0xAC区分
+     */
+    public static final byte MAGIC = (byte) 0xFB;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte BYTES = 2;
+    private static final byte INT = 3;
+    private static final byte LONG = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte TRUE = 6;
+    private static final byte FALSE = 7;
+    private static final byte LIST = 8;
+    private static final byte SET = 9;
+    private static final byte MAP = 10;
+
+    private BinarySerializer() {
+    }
+
+    public static boolean isBinary(byte[] bytes) {
+        return bytes != null && bytes.length > 0 && bytes[0] == MAGIC;
+    }
+
+    public static byte[] serialize(Object obj) {
+        Output out = new Output();
+        out.write(MAGIC);
+        write(out, obj);
+        return out.toByteArray();
+    }
+
+    public static Object deserialize(byte[] bytes) {
+        if (!isBinary(bytes)) {
+            throw new IllegalArgumentException("not a binary serialized value");
+        }
+        Input in = new Input(bytes);
+        Object value = read(in);
+        if (in.position != bytes.length) {
+            throw new IllegalArgumentException("trailing bytes after binary serialized value");
+        }
+        return value;
+    }
+
+    private static void write(Output out, Object obj) {
+        if (obj == null) {
+            out.write(NULL);
+        } else if (obj instanceof String) {
+            out.write(STRING);
+            out.writeBytes(((String) obj).getBytes(StandardCharsets.UTF_8));
+        } else if (obj instanceof byte[]) {
+            out.write(BYTES);
+            out.writeBytes((byte[]) obj);
+        } else if (obj instanceof Integer) {
+            out.write(INT);
+            out.writeVarLong(zigZag((Integer) obj));
+        } else if (obj instanceof Long) {
+            out.write(LONG);
+            out.writeVarLong(zigZag((Long) obj));
+        } else if (obj instanceof Double) {
+            out.write(DOUBLE);
+            out.writeLong(Double.doubleToRawLongBits((Double) obj));
+        } else if (obj instanceof Boolean) {
+            out.write((Boolean) obj ? TRUE : FALSE);
+        } else if (obj.getClass() == ArrayList.class || obj.getClass() == LinkedHashSet.class) {
+            Collection<?> collection = (Collection<?>) obj;
+            out.write(obj instanceof List ? LIST : SET);
+            out.writeVarLong(collection.size());
+            for (Object element : collection) {
+                write(out, element);
+            }
+        } else if (obj.getClass() == LinkedHashMap.class) {
+            Map<?, ?> map = (Map<?, ?>) obj;
+            out.write(MAP);
+            out.writeVarLong(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                write(out, entry.getKey());
+                write(out, entry.getValue());
+            }
+        } else {
+            throw new IllegalArgumentException("unsupported type: " + obj.getClass().getName());
+        }
+    }
+
+    private static Object read(Input in) {
+        byte type = in.read();
+        switch (type) {
+            case NULL:
+                return null;
+            case STRING:
+                return new String(in.readBytes(), StandardCharsets.UTF_8);
+            case BYTES:
+                return in.readBytes();
+            case INT:
+                return (int) unZigZag(in.readVarLong());
+            case LONG:
+                return unZigZag(in.readVarLong());
+            case DOUBLE:
+                return Double.longBitsToDouble(in.readLong());
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case LIST: {
+                int size = in.readLength();
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(read(in));
+                }
+                return list;
+            }
+            case SET: {
+                int size = in.readLength();
+                Set<Object> set = new LinkedHashSet<>(size * 4 / 3 + 1);
+                for (int i = 0; i < size; i++) {
+                    set.add(read(in));
+                }
+                return set;
+            }
+            case MAP: {
+                int size = in.readLength();
+                Map<Object, Object> map = new LinkedHashMap<>(size * 4 / 3 + 1);
+                for (int i = 0; i < size; i++) {
+                    map.put(read(in), read(in));
+                }
+                return map;
+            }
+            default:
+                throw new IllegalArgumentException("unknown type " + type + " at " + (in.position - 1));
+        }
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static final class Output {
+        private byte[] buffer = new byte[64];
+        private int size;
+
+        void write(byte b) {
+            ensure(1);
+            buffer[size++] = b;
+        }
+
+        void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        void writeLong(long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[size++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeBytes(byte[] bytes) {
+            writeVarLong(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        private void ensure(int length) {
+            if (size + length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + length));
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+    }
+
+    private static final class Input {
+        private final byte[] bytes;
+        private int position = 1;
+
+        Input(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        byte read() {
+            if (position >= bytes.length) {
+                throw new IllegalArgumentException("truncated binary serialized value");
+            }
+            return bytes[position++];
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = read();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("malformed varint at " + position);
+        }
+
+        long readLong() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = value << 8 | (read() & 0xFF);
+            }
+            return value;
+        }
+
+        /**
+         * 长度不超过剩余字节数，避免损坏的数据分配过大的数组
+         */
+        int readLength() {
+            long length = readVarLong();
+            if (length < 0 || length > bytes.length - position) {
+                throw new IllegalArgumentException("invalid length " + length + " at " + position);
+            }
+            return (int) length;
+        }
+
+        byte[] readBytes() {
+            int length = readLength();
+            byte[] value = Arrays.copyOfRange(bytes, position, position + length);
+            position += length;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.jason.fabric.pool.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.log4j.Logger;
+
+/**
+ * 熔断器，按最近window次调用的失败率和慢调用比例判断下游是否可用
+ * 关闭状态下失败率达到failureRate%，或慢于slowMillis的调用超过(100 - latencyPercentile)%，即该分位的延迟超过slowMillis时打开；
+ * 打开状态下直接拒绝调用，openMillis后进入半开状态放行halfOpenCalls次探测，全部成功且不慢时关闭，否则重新打开
+ * 关闭状态下判断是否放行和记录结果都不加锁，窗口内的计数为近似值；状态变化和半开状态下的记录加锁
+ */
+public class CircuitBreaker {
+    private static final Logger log = Logger.getLogger(CircuitBreaker.class);
+    private static final int EMPTY = 0;
+    private static final int SUCCESS = 1;
+    private static final int SLOW = 2;
+    private static final int FAILURE = 3;
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final int minimumCalls;
+    private final int failureRate;
+    private final int latencyPercentile;
+    private final long slowNanos;
+    private final long openMillis;
+    private final int halfOpenCalls;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final int windowSize;
+    //关闭后重新计数时整体替换，之前放行的调用的结果记入旧窗口
+    private volatile Window window;
+    private volatile State state = State.CLOSED;
+    private volatile long stateSinceMillis = System.currentTimeMillis();
+    private long openUntilMillis;
+    private int probesIssued;
+    private int probesSucceeded;
+
+    private final LongAdder openCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+
+    public CircuitBreaker(String name, int window, int minimumCalls, int failureRate, int latencyPercentile, long slowMillis,
+                          long openMillis, int halfOpenCalls) {
+        this.name = name;
+        this.windowSize = Math.max(window, 1);
+        this.window = new Window(windowSize);
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, windowSize));
+        this.failureRate = failureRate;
+        this.latencyPercentile = latencyPercentile;
+        this.slowNanos = TimeUnit.MILLISECONDS.toNanos(slowMillis);
+        this.openMillis = openMillis;
+        this.halfOpenCalls = Math.max(halfOpenCalls, 1);
+    }
+
+    /**
+     * 是否放行本次调用，放行后必须调用onSuccess或onFailure
+     */
+    public boolean tryAcquire() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        lock.lock();
+        try {
+            if (state == State.OPEN) {
+                if (System.currentTimeMillis() < openUntilMillis) {
+                    rejectedCount.increment();
+                    return false;
+                }
+                transition(State.HALF_OPEN);
+                probesIssued = 0;
+                probesSucceeded = 0;
+            }
+            if (state == State.HALF_OPEN) {
+                if (probesIssued >= halfOpenCalls) {
+                    rejectedCount.increment();
+                    return false;
+                }
+                probesIssued++;
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 调用成功，耗时超过slowMillis时记为慢调用
+     */
+    public void onSuccess(long elapsedNanos) {
+        record(elapsedNanos > slowNanos ? SLOW : SUCCESS);
+    }
+
+    public void onFailure() {
+        record(FAILURE);
+    }
+
+    private void record(int outcome) {
+        if (state == State.CLOSED) {
+            Window current = window;
+            current.add(outcome);
+            if (current.exceeds()) {
+                lock.lock();
+                try {
+                    if (state == State.CLOSED && window == current) {
+                        open();
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+            return;
+        }
+        lock.lock();
+        try {
+            if (state == State.HALF_OPEN) {
+                if (outcome != SUCCESS) {
+                    open();
+                } else if (++probesSucceeded >= halfOpenCalls) {
+                    window = new Window(windowSize);
+                    transition(State.CLOSED);
+                }
+            }
+            //打开前已放行的调用，结果不再计入
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void open() {
+        openUntilMillis = System.currentTimeMillis() + openMillis;
+        openCount.increment();
+        transition(State.OPEN);
+    }
+
+    private void transition(State to) {
+        if (state != to) {
+            log.warn(name + " circuit breaker " + state + " -> " + to);
+            state = to;
+            stateSinceMillis = System.currentTimeMillis();
+        }
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * 进入当前状态的时间
+     */
+    public long getStateSinceMillis() {
+        return stateSinceMillis;
+    }
+
+    /**
+     * 打开的次数
+     */
+    public long getOpenCount() {
+        return openCount.sum();
+    }
+
+    /**
+     * 打开和半开期间被拒绝的调用数
+     */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    /**
+     * 当前窗口内的失败率，百分比
+     */
+    public int getFailureRate() {
+        Window current = window;
+        int calls = current.calls();
+        return calls == 0 ? 0 : current.failedCalls.get() * 100 / calls;
+    }
+
+    /**
+     * 当前窗口内的慢调用比例，百分比
+     */
+    public int getSlowRate() {
+        Window current = window;
+        int calls = current.calls();
+        return calls == 0 ? 0 : current.slowCalls.get() * 100 / calls;
+    }
+
+    /**
+     * 最近的调用结果，环形覆盖；先占位再替换旧结果，计数与数组内容在并发写入结束后一致
+     */
+    private final class Window {
+        private final AtomicIntegerArray outcomes;
+        private final AtomicLong next = new AtomicLong();
+        private final AtomicInteger slowCalls = new AtomicInteger();
+        private final AtomicInteger failedCalls = new AtomicInteger();
+
+        Window(int size) {
+            this.outcomes = new AtomicIntegerArray(size);
+        }
+
+        void add(int outcome) {
+            int old = outcomes.getAndSet((int) (next.getAndIncrement() % outcomes.length()), outcome);
+            count(old, -1);
+            count(outcome, 1);
+        }
+
+        private void count(int outcome, int delta) {
+            if (outcome == SLOW) {
+                slowCalls.addAndGet(delta);
+            } else if (outcome == FAILURE) {
+                failedCalls.addAndGet(delta);
+            }
+        }
+
+        int calls() {
+            return (int) Math.min(next.get(), outcomes.length());
+        }
+
+        boolean exceeds() {
+            int calls = calls();
+            return calls >= minimumCalls && (failedCalls.get() * 100 >= failureRate * calls
+                    || slowCalls.get() * 100 > (100 - latencyPercentile) * calls);
+        }
+    }
+}
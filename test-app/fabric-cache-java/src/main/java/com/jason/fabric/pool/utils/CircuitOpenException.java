@@ -0,0 +1,19 @@
+package com.jason.fabric.pool.utils;
+
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+/**
+ * 熔断器打开期间拒绝访问redis，不建立连接，不记录调用栈
+ */
+public class CircuitOpenException extends JedisConnectionException {
+    private static final long serialVersionUID = 1L;
+
+    public CircuitOpenException(String message) {
+        super(message);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
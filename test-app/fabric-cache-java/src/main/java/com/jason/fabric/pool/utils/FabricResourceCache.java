@@ -0,0 +1,135 @@
+package com.jason.fabric.pool.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.jason.fabric.pool.conf.Global;
+import org.hyperledger.fabric.gateway.Identity;
+import org.hyperledger.fabric.gateway.Wallet;
+import org.hyperledger.fabric.gateway.Wallets;
+
+/**
+ * 网络配置文件和钱包身份的内存缓存
+ * 每次获取只比较文件的修改时间和大小，文件变化后自动重新加载，避免重复读盘和解析PEM
+ */
+public final class FabricResourceCache {
+    private static final String ID_FILE_EXTENSION = ".id";   //FileSystemWallet中身份文件的后缀
+
+    private volatile Cached<byte[]> networkConfig;
+    private final ConcurrentHashMap<String, Cached<Identity>> identities = new ConcurrentHashMap<>();
+
+    private FabricResourceCache() {
+    }
+
+    public static FabricResourceCache getInstance() {
+        return SingletonHolder.instance;
+    }
+
+    /**
+     * 获取网络配置文件内容，json和yaml均可直接交给Gateway.Builder#networkConfig(InputStream)
+     */
+    public InputStream networkConfig() throws IOException {
+        Path path = Paths.get(Global.getInstance().getNetConfigFile());
+        FileStamp stamp = FileStamp.of(path);
+        Cached<byte[]> cached = networkConfig;
+        if (cached == null || !cached.stamp.equals(stamp)) {
+            cached = new Cached<>(Files.readAllBytes(path), stamp);
+            networkConfig = cached;
+        }
+        return new ByteArrayInputStream(cached.value);
+    }
+
+    /**
+     * 获取钱包中的身份，不存在时抛出IllegalArgumentException，与Gateway.Builder#identity(Wallet, String)一致
+     */
+    public Identity identity(String userName) throws IOException {
+        Path walletDirectory = Paths.get(Global.getInstance().getWalletDirPath());
+        FileStamp stamp = FileStamp.of(walletDirectory.resolve(userName + ID_FILE_EXTENSION));
+        Cached<Identity> cached = identities.get(userName);
+        if (cached != null && cached.stamp.equals(stamp)) {
+            return cached.value;
+        }
+        Wallet wallet = Wallets.newFileSystemWallet(walletDirectory);
+        Identity identity = wallet.get(userName);
+        if (identity == null) {
+            identities.remove(userName);
+            throw new IllegalArgumentException("Identity not found in wallet: " + userName);
+        }
+        identities.put(userName, new Cached<>(identity, stamp));
+        return identity;
+    }
+
+    /**
+     * 钱包中的身份被修改后调用，使缓存立即失效
+     */
+    public void invalidateIdentity(String userName) {
+        identities.remove(userName);
+    }
+
+    public void invalidateAll() {
+        networkConfig = null;
+        identities.clear();
+    }
+
+    private static final class Cached<T> {
+        private final T value;
+        private final FileStamp stamp;
+
+        Cached(T value, FileStamp stamp) {
+            this.value = value;
+            this.stamp = stamp;
+        }
+    }
+
+    /**
+     * 文件的修改时间和大小，文件不存在时为MISSING
+     */
+    private static final class FileStamp {
+        private static final FileStamp MISSING = new FileStamp(-1, -1);
+
+        private final long lastModified;
+        private final long size;
+
+        private FileStamp(long lastModified, long size) {
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+
+        static FileStamp of(Path path) throws IOException {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                return new FileStamp(attributes.lastModifiedTime().toMillis(), attributes.size());
+            } catch (NoSuchFileException e) {
+                return MISSING;
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof FileStamp)) {
+                return false;
+            }
+            FileStamp other = (FileStamp) o;
+            return lastModified == other.lastModified && size == other.size;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(lastModified) * 31 + Long.hashCode(size);
+        }
+    }
+
+    private static class SingletonHolder {
+        private static final FabricResourceCache instance = new FabricResourceCache();  //静态初始化器，由JVM来保证线程安全
+    }
+}
@@ -0,0 +1,14 @@
+package com.jason.fabric.pool.utils;
+
+import java.util.function.Supplier;
+
+import redis.clients.jedis.Pipeline;
+
+/**
+ * 在同一个pipeline中发送的一组redis命令，pipeline同步之后通过返回的Supplier读取结果
+ * 连接池模式下每组命令借出一个连接发送，多路复用模式下多组命令合并在一个连接上发送
+ */
+public interface RedisCommand<T> {
+
+    Supplier<T> enqueue(Pipeline pipeline);
+}
@@ -0,0 +1,35 @@
+package com.jason.fabric.pool.utils;
+
+/**
+ * redis的部署方式
+ */
+public enum RedisMode {
+    /**
+     * 单节点，连接cacheURL和cachePort
+     */
+    STANDALONE("standalone"),
+    /**
+     * 哨兵，从redisSentinels查询redisMasterName当前的主节点，主从切换后自动连接新的主节点
+     */
+    SENTINEL("sentinel"),
+    /**
+     * 集群，从redisClusterNodes发现所有节点，按key的槽位路由
+     */
+    CLUSTER("cluster");
+
+    private final String configName;
+
+    RedisMode(String configName) {
+        this.configName = configName;
+    }
+
+    public static RedisMode parse(String value) {
+        String name = value.trim();
+        for (RedisMode mode : values()) {
+            if (mode.configName.equalsIgnoreCase(name) || mode.name().equalsIgnoreCase(name)) {
+                return mode;
+            }
+        }
+        throw new IllegalArgumentException("unknown redis mode: " + value);
+    }
+}
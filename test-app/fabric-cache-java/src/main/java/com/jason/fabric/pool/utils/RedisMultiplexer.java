@@ -0,0 +1,197 @@
+package com.jason.fabric.pool.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import com.jason.fabric.pool.conf.Global;
+import org.apache.log4j.Logger;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.exceptions.JedisRedirectionException;
+
+/**
+ * 多路复用的redis连接，所有线程共用一个连接
+ * 调用方只把命令放入队列，由后台线程把排队的命令合并到一个pipeline中发送，一次往返完成一批命令，
+ * 不需要借出和归还连接；连接断开后下一批命令重新连接，失败的一批命令全部以异常完成
+ * 哨兵模式下重新连接时连接当前的主节点；集群模式下命令分布在不同节点，不能使用
+ */
+public class RedisMultiplexer {
+    private static final Logger log = Logger.getLogger(RedisMultiplexer.class);
+    private static final int MAX_BATCH = 512;
+
+    private final BlockingQueue<Pending<?>> queue = new LinkedBlockingQueue<>();
+    private final int connectTimeout;
+    private final int timeout;
+    private final String password;
+    private Jedis jedis;    //只由后台线程访问
+
+    /**
+     * 除单例外只在测试中创建，每个实例有自己的连接和后台线程
+     */
+    RedisMultiplexer() {
+        Global global = Global.getInstance();
+        this.connectTimeout = global.getRedisConnectTimeout();
+        this.timeout = global.getCacheTimeout();
+        this.password = global.getCachePwd();
+        Thread worker = new Thread(this::loop, "fabric-cache-redis-mux");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public static RedisMultiplexer getInstance() {
+        return SingletonHolder.instance;
+    }
+
+    /**
+     * 异步执行，future在所在批次返回后完成
+     */
+    public <T> CompletableFuture<T> submit(RedisCommand<T> command) {
+        Pending<T> pending = new Pending<>(command);
+        queue.add(pending);
+        return pending.future;
+    }
+
+    /**
+     * 同步执行，排队和往返最多等待cacheTimeout的两倍；与连接池共用熔断器，熔断期间不排队
+     */
+    public <T> T execute(RedisCommand<T> command) throws Exception {
+        return execute(1, command, true);
+    }
+
+    /**
+     * command中有commands条命令，按平均每条的耗时判断慢调用，见RedisUtil#execute(String, int, RedisCommand)
+     */
+    public <T> T execute(int commands, RedisCommand<T> command) throws Exception {
+        return execute(commands, command, true);
+    }
+
+    /**
+     * 执行失效缓存的命令，熔断期间仍然发送，见RedisUtil#executeInvalidation
+     */
+    public <T> T executeInvalidation(RedisCommand<T> command) throws Exception {
+        return execute(1, command, false);
+    }
+
+    private <T> T execute(int commands, RedisCommand<T> command, boolean guarded) throws Exception {
+        long start = guarded ? RedisUtil.acquire() : System.nanoTime();
+        boolean failed = true;
+        try {
+            T result = submit(command).get(timeout * 2L, TimeUnit.MILLISECONDS);
+            failed = false;
+            return result;
+        } catch (ExecutionException e) {
+            failed = !(e.getCause() instanceof JedisDataException) || e.getCause() instanceof JedisRedirectionException;
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        } finally {
+            RedisUtil.release(start, commands, failed, guarded);
+        }
+    }
+
+    /**
+     * 排队等待发送的命令数
+     */
+    public int queued() {
+        return queue.size();
+    }
+
+    private void loop() {
+        List<Pending<?>> batch = new ArrayList<>(MAX_BATCH);
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, MAX_BATCH - 1);
+            try {
+                send(batch);
+            } catch (Throwable e) {
+                //后台线程退出后所有调用都会超时，任何错误只让本批命令失败
+                log.error("redis multiplexed batch failed", e);
+                disconnect();
+                for (Pending<?> pending : batch) {
+                    pending.future.completeExceptionally(e);
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    private void send(List<Pending<?>> batch) {
+        List<Supplier<?>> results = new ArrayList<>(batch.size());
+        try {
+            Pipeline pipeline = connection().pipelined();
+            for (Pending<?> pending : batch) {
+                results.add(pending.command.enqueue(pipeline));
+            }
+            pipeline.sync();
+        } catch (Exception e) {
+            log.warn("redis multiplexed batch failed: " + e.getMessage());
+            disconnect();
+            for (Pending<?> pending : batch) {
+                pending.future.completeExceptionally(e);
+            }
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).complete(results.get(i));
+        }
+    }
+
+    private Jedis connection() {
+        if (jedis == null || !jedis.isConnected()) {
+            disconnect();
+            HostAndPort node = RedisUtil.currentNode();
+            Jedis connected = new Jedis(node.getHost(), node.getPort(), connectTimeout, timeout);
+            if (!StringUtil.isBlank(password)) {
+                connected.auth(password);
+            }
+            jedis = connected;
+        }
+        return jedis;
+    }
+
+    private void disconnect() {
+        if (jedis != null) {
+            try {
+                jedis.close();
+            } catch (Exception e) {
+                //连接已断开
+            }
+            jedis = null;
+        }
+    }
+
+    private static final class Pending<T> {
+        private final RedisCommand<T> command;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        Pending(RedisCommand<T> command) {
+            this.command = command;
+        }
+
+        /**
+         * 单条命令的错误只影响所在的一组命令
+         */
+        @SuppressWarnings("unchecked")
+        void complete(Supplier<?> result) {
+            try {
+                future.complete((T) result.get());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static class SingletonHolder {
+        private static final RedisMultiplexer instance = new RedisMultiplexer();  //静态初始化器，由JVM来保证线程安全
+    }
+}
@@ -1,15 +1,29 @@
 package com.jason.fabric.pool.utils;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
 import com.jason.fabric.pool.conf.Global;
 import org.apache.log4j.Logger;
 
 import redis.clients.jedis.*;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.jedis.exceptions.JedisRedirectionException;
 import redis.clients.jedis.params.SetParams;
 import redis.clients.jedis.params.ZAddParams;
 import redis.clients.jedis.params.ZIncrByParams;
+import redis.clients.jedis.util.JedisClusterCRC16;
+import redis.clients.jedis.util.Pool;
 
 /**
  * @ClassName RedisUtil
@@ -21,39 +35,336 @@ import redis.clients.jedis.params.ZIncrByParams;
  **/
 public class RedisUtil {
     private static final Logger log = Logger.getLogger(RedisUtil.class);
+    private static final long RECONNECT_INTERVAL_MILLIS = 1000;  //重新发现哨兵主节点和刷新集群槽位的最小间隔
 
-    public static JedisPool jedisPool;
+    /**
+     * 单节点和哨兵模式下的连接池，哨兵模式下启动时没有发现主节点为null；集群模式下只连接redisClusterNodes中的第一个节点。
+     * 不要直接使用，本类中按key操作的方法通过resource(key)借出连接：哨兵模式下重新发现主节点，集群模式下按第一个key的槽位路由，
+     * 不处理槽位迁移期间的MOVED/ASK，多key命令要求所有key使用相同的hash tag，keys只返回一个节点上的key；
+     * 查询缓存通过execute(key, command)访问，带重定向重试和熔断
+     */
+    public static volatile Pool<Jedis> jedisPool;
     public static int maxTotal;
     public static int maxIdle;
     public static long maxWaitMillis;
 
+    private static volatile RedisMode mode;
+    private static volatile Set<HostAndPort> nodes;     //单节点地址、哨兵地址或集群的初始节点
+    private static volatile JedisSlotBasedConnectionHandler cluster;     //集群模式下按槽位路由的连接
+    private static final ReentrantLock discoverLock = new ReentrantLock();
+    private static volatile long discoverAt;
+    private static final AtomicLong slotsRenewedAt = new AtomicLong();
+    private static CircuitBreaker breaker;      //未开启cacheBreaker时为null
+
 
     static{
-            maxTotal = Global.getInstance().getMaxTotal();
-            maxIdle = Global.getInstance().getMaxIdle();
-            maxWaitMillis = Global.getInstance().getMaxWaitMillis();
-            JedisPoolConfig jedisPoolConfig = initPoolConfig();
-            jedisPool = new JedisPool(jedisPoolConfig, Global.getInstance().getCacheURL(), Integer.parseInt(Global.getInstance().getCachePort()),Global.getInstance().getCacheTimeout(),Global.getInstance().getCachePwd(),0,false);;    //配置Jedis的配置，端口，服务器地址
+            Global global = Global.getInstance();
+            maxTotal = global.getRedisMaxTotal();
+            maxIdle = global.getRedisMaxIdle();
+            maxWaitMillis = global.getRedisMaxWaitMillis();
+            if (global.isCacheBreaker()) {
+                breaker = new CircuitBreaker("redis", global.getCacheBreakerWindow(), global.getCacheBreakerMinimumCalls(),
+                        global.getCacheBreakerFailureRate(), global.getCacheBreakerLatencyPercentile(), global.getCacheBreakerSlowMillis(),
+                        global.getCacheBreakerOpenMillis(), global.getCacheBreakerHalfOpenCalls());
+            }
+            switch (global.getRedisMode()) {
+                case SENTINEL:
+                    connect(RedisMode.SENTINEL, hostAndPorts(global.getRedisSentinels(), "redisSentinels"));
+                    break;
+                case CLUSTER:
+                    connect(RedisMode.CLUSTER, hostAndPorts(global.getRedisClusterNodes(), "redisClusterNodes"));
+                    break;
+                default:
+                    connect(RedisMode.STANDALONE, Collections.singleton(new HostAndPort(global.getCacheURL(), Integer.parseInt(global.getCachePort()))));    //配置Jedis的配置，端口，服务器地址
+            }
         }
 
+    /**
+     * 按部署方式建立连接并关闭之前的连接，启动时按配置调用，测试中用于切换部署方式
+     */
+    static void connect(RedisMode redisMode, Set<HostAndPort> addresses) {
+        Global global = Global.getInstance();
+        Pool<Jedis> oldPool = jedisPool;
+        JedisSlotBasedConnectionHandler oldCluster = cluster;
+        JedisPoolConfig jedisPoolConfig = initPoolConfig();
+        HostAndPort first = addresses.iterator().next();
+        mode = redisMode;
+        nodes = addresses;
+        discoverAt = 0;
+        switch (redisMode) {
+            case SENTINEL:
+                cluster = null;
+                jedisPool = sentinelPool(jedisPoolConfig);
+                break;
+            case CLUSTER:
+                cluster = new JedisSlotBasedConnectionHandler(addresses, jedisPoolConfig, global.getRedisConnectTimeout(),
+                        global.getCacheTimeout(), global.getCachePwd());
+                jedisPool = new JedisPool(jedisPoolConfig, first.getHost(), first.getPort(), global.getRedisConnectTimeout(),
+                        global.getCacheTimeout(), global.getCachePwd(), 0, null);
+                break;
+            default:
+                cluster = null;
+                jedisPool = new JedisPool(jedisPoolConfig, first.getHost(), first.getPort(), global.getRedisConnectTimeout(),
+                        global.getCacheTimeout(), global.getCachePwd(), 0, null);
+        }
+        if (oldPool != null) {
+            oldPool.close();
+        }
+        if (oldCluster != null) {
+            oldCluster.close();
+        }
+    }
+
     /**
      * 初始化Jedis
+     * redis连接池的大小单独配置，与Fabric连接池无关；借出和归还时不检查连接，
+     * 由后台线程每redisIdleCheckInterval毫秒PING一次空闲连接，避免每次访问缓存多两次往返
      * @return
      */
     private static JedisPoolConfig initPoolConfig() {
+        Global global = Global.getInstance();
         JedisPoolConfig jedisPoolConfig = new JedisPoolConfig();
         // 最大分配的对象数
         jedisPoolConfig.setMaxTotal(maxTotal);
         // jedis实例
         jedisPoolConfig.setMaxIdle(maxIdle);
+        jedisPoolConfig.setMinIdle(Math.min(global.getRedisMinIdle(), maxIdle));
         // 最大等待时间
         jedisPoolConfig.setMaxWaitMillis(maxWaitMillis);
-        jedisPoolConfig.setTestOnBorrow(true);
-        // 是否进行有效性检查
-        jedisPoolConfig.setTestOnReturn(true);
+        jedisPoolConfig.setTestOnBorrow(false);
+        jedisPoolConfig.setTestOnReturn(false);
+        // 空闲连接的有效性检查
+        jedisPoolConfig.setTestWhileIdle(global.getRedisIdleCheckInterval() > 0);
+        jedisPoolConfig.setTimeBetweenEvictionRunsMillis(global.getRedisIdleCheckInterval() > 0 ? global.getRedisIdleCheckInterval() : -1);
+        jedisPoolConfig.setNumTestsPerEvictionRun(-1);
         return jedisPoolConfig;
     }
 
+    /**
+     * 借出一个连接，在一个pipeline中发送一组命令，集群模式下发往任一节点
+     */
+    public static <T> T execute(RedisCommand<T> command) {
+        return execute(null, command);
+    }
+
+    /**
+     * 借出key所在节点的连接，在一个pipeline中发送一组命令，命令涉及的其他key应与key使用相同的hash tag
+     * 集群模式下收到MOVED/ASK说明槽位已迁移、命令未执行，刷新槽位后重试，最多redisMaxRedirects次；
+     * 连接失败不重试，由调用方按缓存不可用处理，直接查询peer；熔断期间直接抛出CircuitOpenException
+     */
+    public static <T> T execute(String key, RedisCommand<T> command) {
+        return execute(key, 1, command, true);
+    }
+
+    /**
+     * 同execute(key, command)，command中有commands条命令，按平均每条的耗时判断慢调用，
+     * 批量读取和清理不会因为命令多而被熔断器当作慢调用
+     */
+    public static <T> T execute(String key, int commands, RedisCommand<T> command) {
+        return execute(key, commands, command, true);
+    }
+
+    /**
+     * 执行失效缓存的命令，熔断期间仍然发送，否则熔断期间跳过的删除会在恢复后读到旧值
+     */
+    public static <T> T executeInvalidation(String key, RedisCommand<T> command) {
+        return execute(key, 1, command, false);
+    }
+
+    public static <T> T executeInvalidation(String key, int commands, RedisCommand<T> command) {
+        return execute(key, commands, command, false);
+    }
+
+    private static <T> T execute(String key, int commands, RedisCommand<T> command, boolean guarded) {
+        long start = guarded ? acquire() : System.nanoTime();
+        boolean failed = true;
+        try {
+            T result = route(key, command);
+            failed = false;
+            return result;
+        } catch (JedisRedirectionException e) {
+            //重定向次数用完，集群槽位不稳定，按失败计入
+            throw e;
+        } catch (JedisDataException e) {
+            //redis返回的错误，redis本身可用
+            failed = false;
+            throw e;
+        } finally {
+            release(start, commands, failed, guarded);
+        }
+    }
+
+    private static <T> T route(String key, RedisCommand<T> command) {
+        for (int redirects = 0; ; redirects++) {
+            try (Jedis jedis = resource(key)) {
+                Pipeline pipeline = jedis.pipelined();
+                Supplier<T> result = command.enqueue(pipeline);
+                pipeline.sync();
+                return result.get();
+            } catch (JedisRedirectionException e) {
+                if (cluster == null || redirects >= Global.getInstance().getRedisMaxRedirects()) {
+                    throw e;
+                }
+                renewSlots(true);
+            } catch (JedisConnectionException e) {
+                if (cluster != null) {
+                    renewSlots(false);
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 熔断器放行时返回开始时间，否则抛出CircuitOpenException
+     */
+    static long acquire() {
+        if (breaker != null && !breaker.tryAcquire()) {
+            throw new CircuitOpenException("redis circuit breaker is " + breaker.getState());
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * 记录调用结果，耗时按commands条命令平均；不经过熔断器放行的调用只在关闭状态下计入
+     */
+    static void release(long start, int commands, boolean failed, boolean guarded) {
+        if (breaker == null || !guarded && breaker.getState() != CircuitBreaker.State.CLOSED) {
+            return;
+        }
+        if (failed) {
+            breaker.onFailure();
+        } else {
+            breaker.onSuccess((System.nanoTime() - start) / Math.max(commands, 1));
+        }
+    }
+
+    /**
+     * redis访问的熔断器，未开启cacheBreaker时为null
+     */
+    public static CircuitBreaker getBreaker() {
+        return breaker;
+    }
+
+    /**
+     * 记录访问redis失败，熔断期间被拒绝的访问不记录，状态变化由熔断器记录
+     */
+    public static void logFailure(Logger logger, String message, Exception e) {
+        if (!(e instanceof CircuitOpenException)) {
+            logger.warn(message + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * key所在的槽位，非集群模式下所有key都在同一个节点，返回0
+     */
+    public static int slot(String key) {
+        return cluster == null ? 0 : JedisClusterCRC16.getSlot(key);
+    }
+
+    public static boolean isCluster() {
+        return cluster != null;
+    }
+
+    /**
+     * 当前应连接的节点：单节点模式为cacheURL，哨兵模式为当前的主节点，集群模式为任一已知节点
+     */
+    public static HostAndPort currentNode() {
+        JedisSlotBasedConnectionHandler handler = cluster;
+        if (handler != null) {
+            List<String> known = new ArrayList<>(handler.getNodes().keySet());
+            return known.isEmpty() ? nodes.iterator().next()
+                    : HostAndPort.parseString(known.get(ThreadLocalRandom.current().nextInt(known.size())));
+        }
+        if (mode == RedisMode.SENTINEL) {
+            return ((JedisSentinelPool) pool()).getCurrentHostMaster();
+        }
+        return nodes.iterator().next();
+    }
+
+    /**
+     * 借出key所在节点的连接，key为null时为任一节点
+     */
+    private static Jedis resource(String key) {
+        JedisSlotBasedConnectionHandler handler = cluster;
+        if (handler == null) {
+            return pool().getResource();
+        }
+        return key == null ? handler.getConnection() : handler.getConnectionFromSlot(JedisClusterCRC16.getSlot(key));
+    }
+
+    private static Jedis resource(byte[] key) {
+        JedisSlotBasedConnectionHandler handler = cluster;
+        return handler == null ? pool().getResource() : handler.getConnectionFromSlot(JedisClusterCRC16.getSlot(key));
+    }
+
+    /**
+     * 哨兵模式下启动时没有发现主节点，访问时重新发现，间隔RECONNECT_INTERVAL_MILLIS；
+     * 其他线程正在发现或未到间隔时直接失败，不阻塞查询
+     */
+    private static Pool<Jedis> pool() {
+        Pool<Jedis> pool = jedisPool;
+        if (pool != null) {
+            return pool;
+        }
+        if (System.currentTimeMillis() < discoverAt || !discoverLock.tryLock()) {
+            throw new JedisConnectionException("redis master " + Global.getInstance().getRedisMasterName() + " not discovered");
+        }
+        try {
+            if (jedisPool == null) {
+                discoverAt = System.currentTimeMillis() + RECONNECT_INTERVAL_MILLIS;
+                jedisPool = sentinelPool(initPoolConfig());
+            }
+            if (jedisPool == null) {
+                throw new JedisConnectionException("redis master " + Global.getInstance().getRedisMasterName() + " not discovered");
+            }
+            return jedisPool;
+        } finally {
+            discoverLock.unlock();
+        }
+    }
+
+    private static Pool<Jedis> sentinelPool(JedisPoolConfig jedisPoolConfig) {
+        Global global = Global.getInstance();
+        Set<String> sentinels = new HashSet<>();
+        for (HostAndPort sentinel : nodes) {
+            sentinels.add(sentinel.toString());
+        }
+        try {
+            return new JedisSentinelPool(global.getRedisMasterName(), sentinels, jedisPoolConfig, global.getRedisConnectTimeout(),
+                    global.getCacheTimeout(), global.getCachePwd(), 0);
+        } catch (JedisException e) {
+            log.error("discover redis master " + global.getRedisMasterName() + " failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 刷新集群槽位，收到重定向时立即刷新，连接失败时最多每RECONNECT_INTERVAL_MILLIS刷新一次
+     */
+    private static void renewSlots(boolean redirected) {
+        long last = slotsRenewedAt.get();
+        long now = System.currentTimeMillis();
+        if ((redirected || now - last >= RECONNECT_INTERVAL_MILLIS) && slotsRenewedAt.compareAndSet(last, now)) {
+            try {
+                cluster.renewSlotCache();
+            } catch (JedisException e) {
+                log.warn("renew redis cluster slots failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private static Set<HostAndPort> hostAndPorts(List<String> addresses, String configName) {
+        if (addresses.isEmpty()) {
+            throw new IllegalArgumentException(configName + " is empty");
+        }
+        Set<HostAndPort> nodes = new LinkedHashSet<>();
+        for (String address : addresses) {
+            nodes.add(HostAndPort.parseString(address));
+        }
+        return nodes;
+    }
+
     /************************************************************* key 操作 开始 *************************************************************/
     /**
      * 根据key删除缓存
@@ -67,34 +378,35 @@ public class RedisUtil {
     public static boolean del(String key) {
         Jedis jedis = null;
         try {
-            jedis = jedisPool.getResource();
+            jedis = resource(key);
             jedis.del(key);
             return true;
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Redis缓存del 出错！", e);
             return false;
         } finally {
-            assert jedis != null;
-            jedis.close();
+            if (jedis != null) {
+                jedis.close();
+            }
         }
     }
 
     public static Long del(byte[] key) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.del(key);
         jedis.close();
         return index;
     }
 
     public static Long del(byte[]... key) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key[0]);
         Long index = jedis.del(key);
         jedis.close();
         return index;
     }
 
     public static long xdel(String key, StreamEntryID... ids) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         long index = jedis.xdel(key, ids);
         jedis.close();
         return index;
@@ -111,14 +423,14 @@ public class RedisUtil {
      * @Param key
      **/
     public static byte[] dump(String key) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         byte[] index = jedis.dump(key);
         jedis.close();
         return index;
     }
 
     public static byte[] dump(byte[] key) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         byte[] index = jedis.dump(key);
         jedis.close();
         return index;
@@ -136,7 +448,7 @@ public class RedisUtil {
     public static boolean exists(String key) {
         Jedis jedis = null;
         try {
-            jedis = jedisPool.getResource();
+            jedis = resource(key);
             if (jedis == null) {
                 return false;
             } else {
@@ -146,27 +458,28 @@ public class RedisUtil {
             log.error("Redis缓存判断key是否存在 出错！", e);
             return false;
         } finally {
-            assert jedis != null;
-            jedis.close();
+            if (jedis != null) {
+                jedis.close();
+            }
         }
     }
 
     public static Long exists(String... key) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key[0]);
         Long index = jedis.exists(key);
         jedis.close();
         return index;
     }
 
     public static boolean exists(byte[] key) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         boolean index = jedis.exists(key);
         jedis.close();
         return index;
     }
 
     public static Long exists(byte[]... key) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key[0]);
         Long index = jedis.exists(key);
         jedis.close();
         return index;
@@ -184,14 +497,14 @@ public class RedisUtil {
      * @Param seconds 单位以秒计
      **/
     public static Long expire(String key, int seconds) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.expire(key, seconds);
         jedis.close();
         return index;
     }
 
     public static Long expire(byte[] key, int seconds) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.expire(key, seconds);
         jedis.close();
         return index;
@@ -210,14 +523,14 @@ public class RedisUtil {
      * @Param unixTime  UNIX 时间戳
      **/
     public static Long expireAt(String key, int unixTime) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.expireAt(key, unixTime);
         jedis.close();
         return index;
     }
 
     public static Long expireAt(byte[] key, int unixTime) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.expireAt(key, unixTime);
         jedis.close();
         return index;
@@ -234,14 +547,14 @@ public class RedisUtil {
      * @Param milliseconds 毫秒
      **/
     public static Long pexpire(String key, int milliseconds) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.pexpire(key, milliseconds);
         jedis.close();
         return index;
     }
 
     public static Long pexpire(byte[] key, int milliseconds) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.pexpire(key, milliseconds);
         jedis.close();
         return index;
@@ -258,14 +571,14 @@ public class RedisUtil {
      * @Param millisecondsUnixTime
      **/
     public static Long pexpireAt(String key, int millisecondsUnixTime) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.pexpireAt(key, millisecondsUnixTime);
         jedis.close();
         return index;
     }
 
     public static Long pexpireAt(byte[] key, int millisecondsUnixTime) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.pexpireAt(key, millisecondsUnixTime);
         jedis.close();
         return index;
@@ -281,21 +594,21 @@ public class RedisUtil {
      * @Param 赛选所有key为 key* 的值
      **/
     public static Set<String> keys(String key) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource((String) null);
         Set<String> set = jedis.keys(key);
         jedis.close();
         return set;
     }
 
     public static Set<byte[]> keys(byte[] key) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource((String) null);
         Set<byte[]> set = jedis.keys(key);
         jedis.close();
         return set;
     }
 
     public static Set<String> getAllkeys() {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource((String) null);
         Set<String> set = jedis.keys("*");
         jedis.close();
         return set;
@@ -312,14 +625,14 @@ public class RedisUtil {
      * @Param
      **/
     public static Long persist(String key) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.persist(key);
         jedis.close();
         return index;
     }
 
     public static Long persist(byte[] key) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.persist(key);
         jedis.close();
         return index;
@@ -338,14 +651,14 @@ public class RedisUtil {
      * @Param
      **/
     public static Long pttl(String key) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.pttl(key);
         jedis.close();
         return index;
     }
 
     public static Long pttl(byte[] key) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.pttl(key);
         jedis.close();
         return index;
@@ -364,14 +677,14 @@ public class RedisUtil {
      * @Param
      **/
     public static Long ttl(String key) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.ttl(key);
         jedis.close();
         return index;
     }
 
     public static Long ttl(byte[] key) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.ttl(key);
         jedis.close();
         return index;
@@ -388,14 +701,14 @@ public class RedisUtil {
      * @Param
      **/
     public static String type(String key) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         String keyName = jedis.type(key);
         jedis.close();
         return keyName;
     }
 
     public static String type(byte[] key) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         String keyName = jedis.type(key);
         jedis.close();
         return keyName;
@@ -413,7 +726,7 @@ public class RedisUtil {
     public static boolean set(String key, String value) {
         Jedis jedis = null;
         try {
-            jedis = jedisPool.getResource();
+            jedis = resource(key);
             if (jedis != null) {
                 jedis.set(key, value);
             }
@@ -422,24 +735,26 @@ public class RedisUtil {
             log.error("Redis缓存设置key值 出错！", e);
             return false;
         } finally {
-            jedis.close();
+            if (jedis != null) {
+                jedis.close();
+            }
         }
     }
 
     public static void set(String key, String value, SetParams setParams) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         jedis.set(key, value, setParams);
         jedis.close();
     }
 
     public static void set(byte[] key, byte[] value) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         jedis.set(key, value);
         jedis.close();
     }
 
     public static void set(byte[] key, byte[] value, SetParams setParams) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         jedis.set(key, value, setParams);
         jedis.close();
     }
@@ -454,7 +769,7 @@ public class RedisUtil {
      * @Param
      **/
     public static byte[] get(byte[] key) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         byte[] value = jedis.get(key);
         jedis.close();
         return value;
@@ -471,14 +786,14 @@ public class RedisUtil {
      * @Param
      **/
     public static String getrange(String key, int start, int end) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         String value = jedis.getrange(key, start, end);
         jedis.close();
         return value;
     }
 
     public static byte[] getrange(byte[] key, int start, int end) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         byte[] value = jedis.getrange(key, start, end);
         jedis.close();
         return value;
@@ -495,14 +810,14 @@ public class RedisUtil {
      * @Param
      **/
     public static String getSet(String key, String value) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         String oldValue = jedis.getSet(key, value);
         jedis.close();
         return oldValue;
     }
 
     public static byte[] getSet(byte[] key, byte[] value) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         byte[] oldValue = jedis.getSet(key, value);
         jedis.close();
         return oldValue;
@@ -519,14 +834,14 @@ public class RedisUtil {
      * @Param
      **/
     public static boolean getbit(String key, int OFFSET) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         boolean index = jedis.getbit(key, OFFSET);
         jedis.close();
         return index;
     }
 
     public static boolean getbit(byte[] key, int OFFSET) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         boolean index = jedis.getbit(key, OFFSET);
         jedis.close();
         return index;
@@ -542,14 +857,14 @@ public class RedisUtil {
      * @Param
      **/
     public static List<String> mget(String... key) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key[0]);
         List<String> stringList = jedis.mget(key);
         jedis.close();
         return stringList;
     }
 
     public static List<byte[]> mget(byte[]... key) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key[0]);
         List<byte[]> stringList = jedis.mget(key);
         jedis.close();
         return stringList;
@@ -565,28 +880,28 @@ public class RedisUtil {
      * @Param
      **/
     public static boolean setbit(String key, Long OFFSET, String value) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         boolean index = jedis.setbit(key, OFFSET, value);
         jedis.close();
         return index;
     }
 
     public static boolean setbit(byte[] key, Long OFFSET, byte[] value) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         boolean index = jedis.setbit(key, OFFSET, value);
         jedis.close();
         return index;
     }
 
     public static boolean setbit(String key, Long OFFSET, boolean value) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         boolean index = jedis.setbit(key, OFFSET, value);
         jedis.close();
         return index;
     }
 
     public static boolean setbit(byte[] key, Long OFFSET, boolean value) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         boolean index = jedis.setbit(key, OFFSET, value);
         jedis.close();
         return index;
@@ -602,14 +917,14 @@ public class RedisUtil {
      * @Param
      **/
     public static String setex(String key, int TIMEOUT, String value) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         String index = jedis.setex(key, TIMEOUT, value);
         jedis.close();
         return index;
     }
 
     public static String setex(byte[] key, int TIMEOUT, byte[] value) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         String index = jedis.setex(key, TIMEOUT, value);
         jedis.close();
         return index;
@@ -625,14 +940,14 @@ public class RedisUtil {
      * @Param
      **/
     public static Long setnx(String key, String value) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.setnx(key, value);
         jedis.close();
         return index;
     }
 
     public static Long setnx(byte[] key, byte[] value) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.setnx(key, value);
         jedis.close();
         return index;
@@ -648,14 +963,14 @@ public class RedisUtil {
      * @Param
      **/
     public static Long strlen(String key) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.strlen(key);
         jedis.close();
         return index;
     }
 
     public static Long strlen(byte[] key) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.strlen(key);
         jedis.close();
         return index;
@@ -673,19 +988,21 @@ public class RedisUtil {
     public static boolean incrBy(String key, int value) {
         Jedis jedis = null;
         try {
-            jedis = jedisPool.getResource();
+            jedis = resource(key);
             jedis.incrBy(key, value);
             return true;
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Redis缓存incrBy 出错！", e);
             return false;
         } finally {
-            jedis.close();
+            if (jedis != null) {
+                jedis.close();
+            }
         }
     }
 
     public static Long incrBy(byte[] key, int amount) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.incrBy(key, amount);
         jedis.close();
         return index;
@@ -697,19 +1014,21 @@ public class RedisUtil {
     public static boolean decrBy(String key, int value) {
         Jedis jedis = null;
         try {
-            jedis = jedisPool.getResource();
+            jedis = resource(key);
             jedis.decrBy(key, value);
             return true;
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Redis缓存decrBy 出错！", e);
             return false;
         } finally {
-            jedis.close();
+            if (jedis != null) {
+                jedis.close();
+            }
         }
     }
 
     public static Long decrBy(byte[] key, int amount) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.decrBy(key, amount);
         jedis.close();
         return index;
@@ -725,14 +1044,14 @@ public class RedisUtil {
      * @Param
      **/
     public static Long append(String key, String value) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.append(key, value);
         jedis.close();
         return index;
     }
 
     public static Long append(byte[] key, byte[] value) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.append(key, value);
         jedis.close();
         return index;
@@ -751,26 +1070,28 @@ public class RedisUtil {
     public static boolean delMapKey(String key, String mapKey) {
         Jedis jedis = null;
         try {
-            jedis = jedisPool.getResource();
+            jedis = resource(key);
             jedis.hdel(key, mapKey);
             return true;
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Redis缓存delMapKey 出错！", e);
             return false;
         } finally {
-            jedis.close();
+            if (jedis != null) {
+                jedis.close();
+            }
         }
     }
 
     public static Long hdel(String key, String... fields) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.hdel(key, fields);
         jedis.close();
         return index;
     }
 
     public static Long hdel(byte[] key, byte[]... fields) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.hdel(key, fields);
         jedis.close();
         return index;
@@ -789,10 +1110,10 @@ public class RedisUtil {
     public static boolean hexists(String key, String mapKey) {
         Jedis jedis = null;
         try {
-            jedis = jedisPool.getResource();
+            jedis = resource(key);
             return jedis.hexists(key, mapKey);
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Redis缓存hexists 出错！", e);
             return false;
         } finally {
             //shardedJedisPool.jedis.close();
@@ -800,7 +1121,7 @@ public class RedisUtil {
     }
 
     public static boolean hexists(byte[] key, byte[] value) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         boolean index = jedis.hexists(key, value);
         jedis.close();
         return index;
@@ -819,10 +1140,10 @@ public class RedisUtil {
         Jedis jedis = null;
         String index=null;
         try{
-            jedis = jedisPool.getResource();
+            jedis = resource(key);
             index = jedis.hget(key, value);
         }catch (Exception e){
-            e.printStackTrace();
+            log.error("Redis缓存hget 出错！", e);
         }finally {
             if(jedis!=null){
                 jedis.close();
@@ -832,9 +1153,18 @@ public class RedisUtil {
     }
 
     public static byte[] hget(byte[] key, byte[] value) {
-        Jedis jedis = jedisPool.getResource();
-        byte[] index = jedis.hget(key, value);
-        jedis.close();
+        Jedis jedis = null;
+        byte[] index=null;
+        try{
+            jedis = resource(key);
+            index = jedis.hget(key, value);
+        }catch (Exception e){
+            log.error("Redis缓存hget 出错！", e);
+        }finally {
+            if(jedis!=null){
+                jedis.close();
+            }
+        }
         return index;
     }
 
@@ -848,14 +1178,14 @@ public class RedisUtil {
      * @Param
      **/
     public static Map<String, String> hgetall(String key) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Map<String, String> index = jedis.hgetAll(key);
         jedis.close();
         return index;
     }
 
     public static Map<byte[], byte[]> hgetall(byte[] key) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Map<byte[], byte[]> index = jedis.hgetAll(key);
         jedis.close();
         return index;
@@ -871,14 +1201,14 @@ public class RedisUtil {
      * @Param
      **/
     public static Long hincrby(String key, String field, int value) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.hincrBy(key, field, value);
         jedis.close();
         return index;
     }
 
     public Double hincrByFloat(String key, String field, double value) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Double index = jedis.hincrByFloat(key, field, value);
         jedis.close();
         return index;
@@ -895,14 +1225,14 @@ public class RedisUtil {
      * @Param
      **/
     public static Set<String> hkeys(String key) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Set<String> index = jedis.hkeys(key);
         jedis.close();
         return index;
     }
 
     public static Set<byte[]> hkeys(byte[] key) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Set<byte[]> index = jedis.hkeys(key);
         jedis.close();
         return index;
@@ -918,7 +1248,7 @@ public class RedisUtil {
      * @Param
      **/
     public static Long hlen(String key) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.hlen(key);
         jedis.close();
         return index;
@@ -934,7 +1264,7 @@ public class RedisUtil {
      * @Param
      **/
     public static List<String> hmget(String key, String... fields) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         List<String> index = jedis.hmget(key, fields);
         jedis.close();
         return index;
@@ -952,7 +1282,7 @@ public class RedisUtil {
      * @Param
      **/
     public static String hmset(String key, Map<String, String> map) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         String index = jedis.hmset(key, map);
         jedis.close();
         return index;
@@ -971,7 +1301,7 @@ public class RedisUtil {
      * @Param
      **/
     public static Long hset(String key, Map<String, String> map) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.hset(key, map);
         jedis.close();
         return index;
@@ -981,10 +1311,10 @@ public class RedisUtil {
         Jedis jedis = null;
         Long index=null;
         try{
-            jedis = jedisPool.getResource();
+            jedis = resource(key);
             index = jedis.hset(key, field, value);
         }catch (Exception e){
-            e.printStackTrace();
+            log.error("Redis缓存hset 出错！", e);
         }finally {
             if(jedis!=null){
                 jedis.close();
@@ -994,14 +1324,23 @@ public class RedisUtil {
     }
 
     public static Long hset(byte[] key, byte[] field, byte[] value) {
-        Jedis jedis = jedisPool.getResource();
-        Long index = jedis.hset(key, field, value);
-        jedis.close();
+        Jedis jedis = null;
+        Long index=null;
+        try{
+            jedis = resource(key);
+            index = jedis.hset(key, field, value);
+        }catch (Exception e){
+            log.error("Redis缓存hset 出错！", e);
+        }finally {
+            if(jedis!=null){
+                jedis.close();
+            }
+        }
         return index;
     }
 
     public static Long hset(byte[] key, Map<byte[], byte[]> field) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.hset(key, field);
         jedis.close();
         return index;
@@ -1017,7 +1356,7 @@ public class RedisUtil {
      * @Param
      **/
     public static List<String> hvals(String key) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         List<String> index = jedis.hvals(key);
         jedis.close();
         return index;
@@ -1035,21 +1374,21 @@ public class RedisUtil {
      * @Param
      **/
     public static List<String> blpop(String... key) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key[0]);
         List<String> index = jedis.blpop(key);
         jedis.close();
         return index;
     }
 
     public static List<String> blpop(int timeout, String... key) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key[0]);
         List<String> index = jedis.blpop(timeout, key);
         jedis.close();
         return index;
     }
 
     public static List<String> blpop(int timeout, String key) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         List<String> index = jedis.blpop(timeout, key);
         jedis.close();
         return index;
@@ -1066,21 +1405,21 @@ public class RedisUtil {
      * @Param
      **/
     public static List<String> brpop(String... key) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key[0]);
         List<String> index = jedis.brpop(key);
         jedis.close();
         return index;
     }
 
     public static List<String> brpop(int timeout, String... key) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key[0]);
         List<String> index = jedis.brpop(timeout, key);
         jedis.close();
         return index;
     }
 
     public static List<String> brpop(int timeout, String key) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         List<String> index = jedis.brpop(timeout, key);
         jedis.close();
         return index;
@@ -1098,7 +1437,7 @@ public class RedisUtil {
      * @Param
      **/
     public static String brpoplpush(String source, String desc, int timeout) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(source);
         String index = jedis.brpoplpush(source, desc, timeout);
         jedis.close();
         return index;
@@ -1116,7 +1455,7 @@ public class RedisUtil {
      * @Param
      **/
     public static String lindex(String key, Long indexs) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         String index = jedis.lindex(key, indexs);
         jedis.close();
         return index;
@@ -1137,7 +1476,7 @@ public class RedisUtil {
      * @Param
      **/
     public static Long linsert(String key, ListPosition where, String pivot, String value) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.linsert(key, where, pivot, value);
         jedis.close();
         return index;
@@ -1154,7 +1493,7 @@ public class RedisUtil {
      * @Param
      **/
     public static Long llen(String key) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.llen(key);
         jedis.close();
         return index;
@@ -1170,7 +1509,7 @@ public class RedisUtil {
      * @Param
      **/
     public static String lpop(String key) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         String index = jedis.lpop(key);
         jedis.close();
         return index;
@@ -1186,7 +1525,7 @@ public class RedisUtil {
      * @Param
      **/
     public static Long lpush(String key, String... value) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.lpush(key, value);
         jedis.close();
         return index;
@@ -1202,7 +1541,7 @@ public class RedisUtil {
      * @Param
      **/
     public static Long lpushx(String key, String... value) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.lpushx(key, value);
         jedis.close();
         return index;
@@ -1211,17 +1550,19 @@ public class RedisUtil {
     public static List<String> getListString(String key) {
         Jedis jedis = null;
         try {
-            jedis = jedisPool.getResource();
+            jedis = resource(key);
             if (jedis != null) {
                 return jedis.lrange(key, 0, -1);
             } else {
                 return null;
             }
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Redis缓存getListString 出错！", e);
             return null;
         } finally {
-            jedis.close();
+            if (jedis != null) {
+                jedis.close();
+            }
         }
     }
 
@@ -1238,7 +1579,7 @@ public class RedisUtil {
      * @Param
      **/
     public static Long lrem(String key, long count, String value) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.lrem(key, count, value);
         jedis.close();
         return index;
@@ -1255,7 +1596,7 @@ public class RedisUtil {
      * @Param
      **/
     public static String lset(String key, long count, String value) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         String index = jedis.lset(key, count, value);
         jedis.close();
         return index;
@@ -1273,7 +1614,7 @@ public class RedisUtil {
      * @Param
      **/
     public static String ltrim(String key, long start, int end) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         String index = jedis.ltrim(key, start, end);
         jedis.close();
         return index;
@@ -1290,7 +1631,7 @@ public class RedisUtil {
      * @Param
      **/
     public static String rpop(String key) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         String index = jedis.rpop(key);
         jedis.close();
         return index;
@@ -1306,7 +1647,7 @@ public class RedisUtil {
      * @Param
      **/
     public static String rpoplpush(String srcKey, String dstKey) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(srcKey);
         String index = jedis.rpoplpush(srcKey, dstKey);
         jedis.close();
         return index;
@@ -1324,7 +1665,7 @@ public class RedisUtil {
      * @Param
      **/
     public static Long rpush(String key, String... value) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.rpush(key, value);
         jedis.close();
         return index;
@@ -1341,7 +1682,7 @@ public class RedisUtil {
      * @Param
      **/
     public static Long rpushx(String key, String... value) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.rpushx(key, value);
         jedis.close();
         return index;
@@ -1363,14 +1704,16 @@ public class RedisUtil {
     public static boolean sadd(String key, String value) {
         Jedis jedis = null;
         try {
-            jedis = jedisPool.getResource();
+            jedis = resource(key);
             jedis.sadd(key, value);
             return true;
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Redis缓存sadd 出错！", e);
             return false;
         } finally {
-            jedis.close();
+            if (jedis != null) {
+                jedis.close();
+            }
         }
     }
 
@@ -1384,7 +1727,7 @@ public class RedisUtil {
      * @Param
      **/
     public static Long scard(String key) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.scard(key);
         jedis.close();
         return index;
@@ -1401,12 +1744,14 @@ public class RedisUtil {
         Jedis jedis = null;
         Set<String> diffList = null;
         try {
-            jedis = jedisPool.getResource();
+            jedis = resource(key1);
             diffList = jedis.sdiff(key1, key2);
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Redis缓存sdiff 出错！", e);
         } finally {
-            jedis.close();
+            if (jedis != null) {
+                jedis.close();
+            }
         }
         return diffList;
     }
@@ -1422,7 +1767,7 @@ public class RedisUtil {
      * @Param
      **/
     public static Set<String> sdiff(String... key) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key[0]);
         Set<String> index = jedis.sdiff(key);
         jedis.close();
         return index;
@@ -1439,7 +1784,7 @@ public class RedisUtil {
      * @Param
      **/
     public static Long sdiffstore(String key, String... value) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.sdiffstore(key, value);
         jedis.close();
         return index;
@@ -1457,7 +1802,7 @@ public class RedisUtil {
      * @Param
      **/
     public static Set<String> sinter(String... key) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key[0]);
         Set<String> index = jedis.sinter(key);
         jedis.close();
         return index;
@@ -1474,7 +1819,7 @@ public class RedisUtil {
      * @Param
      **/
     public static Long sinterstore(String key, String... value) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.sinterstore(key, value);
         jedis.close();
         return index;
@@ -1493,13 +1838,15 @@ public class RedisUtil {
     public static boolean sismember(String key, String value) {
         Jedis jedis = null;
         try {
-            jedis = jedisPool.getResource();
+            jedis = resource(key);
             return jedis.sismember(key, value);
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Redis缓存sismember 出错！", e);
             return false;
         } finally {
-            jedis.close();
+            if (jedis != null) {
+                jedis.close();
+            }
         }
     }
 
@@ -1513,12 +1860,14 @@ public class RedisUtil {
         Jedis jedis = null;
         Set<String> list = null;
         try {
-            jedis = jedisPool.getResource();
+            jedis = resource(key);
             list = jedis.smembers(key);
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Redis缓存smembers 出错！", e);
         } finally {
-            jedis.close();
+            if (jedis != null) {
+                jedis.close();
+            }
         }
         return list;
     }
@@ -1537,7 +1886,7 @@ public class RedisUtil {
      * @Param
      **/
     public static Long smove(String srckey, String dstkey, String member) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(srckey);
         Long index = jedis.smove(srckey, dstkey, member);
         jedis.close();
         return index;
@@ -1554,14 +1903,14 @@ public class RedisUtil {
      * @Param
      **/
     public static String spop(String key) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         String index = jedis.spop(key);
         jedis.close();
         return index;
     }
 
     public static Set<String> spop(String key, long count) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Set<String> index = jedis.spop(key, count);
         jedis.close();
         return index;
@@ -1578,14 +1927,14 @@ public class RedisUtil {
      * @Param
      **/
     public static String srandmember(String key) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         String index = jedis.srandmember(key);
         jedis.close();
         return index;
     }
 
     public static List<String> srandmember(String key, int count) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         List<String> index = jedis.srandmember(key, count);
         jedis.close();
         return index;
@@ -1604,14 +1953,16 @@ public class RedisUtil {
     public static boolean srem(String key, String value) {
         Jedis jedis = null;
         try {
-            jedis = jedisPool.getResource();
+            jedis = resource(key);
             jedis.srem(key, value);
             return true;
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Redis缓存srem 出错！", e);
             return false;
         } finally {
-            jedis.close();
+            if (jedis != null) {
+                jedis.close();
+            }
         }
     }
 
@@ -1625,7 +1976,7 @@ public class RedisUtil {
      * @Param
      **/
     public static Set<String> sunion(String... keys) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(keys[0]);
         Set<String> index = jedis.sunion(keys);
         jedis.close();
         return index;
@@ -1641,7 +1992,7 @@ public class RedisUtil {
      * @Param
      **/
     public static Long sunionstore(String dstkey, String... keys) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(dstkey);
         Long index = jedis.sunionstore(dstkey, keys);
         jedis.close();
         return index;
@@ -1657,14 +2008,14 @@ public class RedisUtil {
      * @Param
      **/
     public static ScanResult<String> sscan(String key, String cursor) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         ScanResult<String> index = jedis.sscan(key, cursor);
         jedis.close();
         return index;
     }
 
     public static ScanResult<String> sscan(String key, String cursor, ScanParams params) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         ScanResult<String> index = jedis.sscan(key, cursor, params);
         jedis.close();
         return index;
@@ -1687,33 +2038,35 @@ public class RedisUtil {
     public static boolean zadd(String key, double score, String member) {
         Jedis jedis = null;
         try {
-            jedis = jedisPool.getResource();
+            jedis = resource(key);
             jedis.zadd(key, score, member);
             return true;
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Redis缓存zadd 出错！", e);
             return false;
         } finally {
-            jedis.close();
+            if (jedis != null) {
+                jedis.close();
+            }
         }
     }
 
     public static Long zadd(String key, double score, String member, ZAddParams params) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.zadd(key, score, member, params);
         jedis.close();
         return index;
     }
 
     public static Long zadd(String key, Map<String, Double> scoreMembers) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.zadd(key, scoreMembers);
         jedis.close();
         return index;
     }
 
     public static Long zadd(String key, Map<String, Double> scoreMembers, ZAddParams params) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.zadd(key, scoreMembers, params);
         jedis.close();
         return index;
@@ -1731,13 +2084,15 @@ public class RedisUtil {
     public static long zcard(String key) {
         Jedis jedis = null;
         try {
-            jedis = jedisPool.getResource();
+            jedis = resource(key);
             return jedis.zcard(key);
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Redis缓存zcard 出错！", e);
             return 0;
         } finally {
-            jedis.close();
+            if (jedis != null) {
+                jedis.close();
+            }
         }
     }
 
@@ -1753,18 +2108,20 @@ public class RedisUtil {
     public static long zcount(String key, double min, double max) {
         Jedis jedis = null;
         try {
-            jedis = jedisPool.getResource();
+            jedis = resource(key);
             return jedis.zcount(key, min, max);
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Redis缓存zcount 出错！", e);
             return 0;
         } finally {
-            jedis.close();
+            if (jedis != null) {
+                jedis.close();
+            }
         }
     }
 
     public static Long zcount(String key, String min, String max) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.zcount(key, min, max);
         jedis.close();
         return index;
@@ -1784,14 +2141,14 @@ public class RedisUtil {
      * @Param
      **/
     public static Double zincrby(String key, double increment, String member) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Double index = jedis.zincrby(key, increment, member);
         jedis.close();
         return index;
     }
 
     public static Double zincrby(String key, double increment, String member, ZIncrByParams params) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Double index = jedis.zincrby(key, increment, member, params);
         jedis.close();
         return index;
@@ -1808,14 +2165,14 @@ public class RedisUtil {
      * @Param
      **/
     public static Long zinterstore(String dstkey, String... sets) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(dstkey);
         Long index = jedis.zinterstore(dstkey, sets);
         jedis.close();
         return index;
     }
 
     public static Long zinterstore(String dstkey, ZParams params, String... sets) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(dstkey);
         Long index = jedis.zinterstore(dstkey, params, sets);
         jedis.close();
         return index;
@@ -1831,7 +2188,7 @@ public class RedisUtil {
      * @Param
      **/
     public static Long zlexcount(String key, String min, String max) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.zlexcount(key, min, max);
         jedis.close();
         return index;
@@ -1853,7 +2210,7 @@ public class RedisUtil {
      * @Param
      **/
     public static Set<String> zrange(String key, long start, long stop) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Set<String> index = jedis.zrange(key, start, stop);
         jedis.close();
         return index;
@@ -1869,14 +2226,14 @@ public class RedisUtil {
      * @Param
      **/
     public static Set<String> zrangeByLex(String key, String min, String max) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Set<String> index = jedis.zrangeByLex(key, min, max);
         jedis.close();
         return index;
     }
 
     public Set<String> zrangeByLex(String key, String min, String max, int offset, int count) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Set<String> index = jedis.zrangeByLex(key, min, max, offset, count);
         jedis.close();
         return index;
@@ -1888,32 +2245,34 @@ public class RedisUtil {
     public static Set<String> zrangeByScore(String key, double min, double max) {
         Jedis jedis = null;
         try {
-            jedis = jedisPool.getResource();
+            jedis = resource(key);
             return jedis.zrangeByScore(key, min, max);
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Redis缓存zrangeByScore 出错！", e);
             return null;
         } finally {
-            jedis.close();
+            if (jedis != null) {
+                jedis.close();
+            }
         }
     }
 
     public static Set<String> zrangeByScore(String key, String min, String max) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Set<String> index = jedis.zrangeByScore(key, min, max);
         jedis.close();
         return index;
     }
 
     public static Set<String> zrangeByScore(String key, double min, double max, int offset, int count) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Set<String> index = jedis.zrangeByScore(key, min, max, offset, count);
         jedis.close();
         return index;
     }
 
     public static Set<String> zrangeByScore(String key, String min, String max, int offset, int count) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Set<String> index = jedis.zrangeByScore(key, min, max, offset, count);
         jedis.close();
         return index;
@@ -1929,7 +2288,7 @@ public class RedisUtil {
      * @Param
      **/
     public static Long zrank(String key, String member) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.zrank(key, member);
         jedis.close();
         return index;
@@ -1949,14 +2308,16 @@ public class RedisUtil {
     public static boolean zrem(String key, String... members) {
         Jedis jedis = null;
         try {
-            jedis = jedisPool.getResource();
+            jedis = resource(key);
             jedis.zrem(key, members);
             return true;
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Redis缓存zrem 出错！", e);
             return false;
         } finally {
-            jedis.close();
+            if (jedis != null) {
+                jedis.close();
+            }
         }
     }
 
@@ -1970,7 +2331,7 @@ public class RedisUtil {
      * @Param
      **/
     public static Long zremrangeByLex(String key, String min, String max) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.zremrangeByLex(key, min, max);
         jedis.close();
         return index;
@@ -1986,7 +2347,7 @@ public class RedisUtil {
      * @Param
      **/
     public static Long zremrangeByRank(String key, long start, long stop) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.zremrangeByRank(key, start, stop);
         jedis.close();
         return index;
@@ -2002,14 +2363,14 @@ public class RedisUtil {
      * @Param
      **/
     public static Long zremrangeByScore(String key, double min, double max) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.zremrangeByScore(key, min, max);
         jedis.close();
         return index;
     }
 
     public static Long zremrangeByScore(String key, String min, String max) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.zremrangeByScore(key, min, max);
         jedis.close();
         return index;
@@ -2028,7 +2389,7 @@ public class RedisUtil {
      * @Param
      **/
     public static Set<String> zrevrange(String key, long start, long stop) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Set<String> index = jedis.zrevrange(key, start, stop);
         jedis.close();
         return index;
@@ -2046,21 +2407,21 @@ public class RedisUtil {
      * @Param
      **/
     public static Set<String> zrevrangeByScore(String key, double max, double min) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Set<String> index = jedis.zrevrangeByScore(key, max, min);
         jedis.close();
         return index;
     }
 
     public static Set<String> zrevrangeByScore(String key, String max, String min) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Set<String> index = jedis.zrevrangeByScore(key, max, min);
         jedis.close();
         return index;
     }
 
     public static Set<String> zrevrangeByScore(String key, double max, double min, int offset, int count) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Set<String> index = jedis.zrevrangeByScore(key, max, min, offset, count);
         jedis.close();
         return index;
@@ -2078,7 +2439,7 @@ public class RedisUtil {
      * @Param
      **/
     public static Long zrevrank(String key, String member) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         Long index = jedis.zrevrank(key, member);
         jedis.close();
         return index;
@@ -2096,14 +2457,14 @@ public class RedisUtil {
      * @Param
      **/
     public static Long zunionstore(String dstkey, String... sets) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(dstkey);
         Long index = jedis.zunionstore(dstkey, sets);
         jedis.close();
         return index;
     }
 
     public static Long zunionstore(String dstkey, ZParams params, String... sets) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(dstkey);
         Long index = jedis.zunionstore(dstkey, params, sets);
         jedis.close();
         return index;
@@ -2119,17 +2480,53 @@ public class RedisUtil {
      * @Param
      **/
     public static ScanResult<Tuple> zscan(String key, String cursor) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         ScanResult<Tuple> index = jedis.zscan(key, cursor);
         jedis.close();
         return index;
     }
 
     public static ScanResult<Tuple> zscan(String key, String cursor, ScanParams params) {
-        Jedis jedis = jedisPool.getResource();
+        Jedis jedis = resource(key);
         ScanResult<Tuple> index = jedis.zscan(key, cursor, params);
         jedis.close();
         return index;
     }
     /************************************************************* Set 操作 结束 *************************************************************/
-}
\ No newline at end of file
+
+    /************************************************************* 发布订阅 操作 开始 *************************************************************/
+    /**
+     * 将信息发送到指定的频道
+     *
+     * @return 接收到信息的订阅者数量，失败时返回-1
+     **/
+    public static long publish(String channel, String message) {
+        try {
+            return executeInvalidation(null, pipeline -> pipeline.publish(channel, message)::get);
+        } catch (Exception e) {
+            logFailure(log, "publish to " + channel + " failed", e);
+            return -1;
+        }
+    }
+
+    /**
+     * 订阅频道，阻塞直到取消订阅或连接断开
+     * 使用独立连接且不设读超时，不占用连接池中的连接；哨兵模式下连接当前主节点，集群模式下任一节点都能收到整个集群的消息
+     **/
+    public static void subscribe(JedisPubSub pubSub, String... channels) {
+        Global global = Global.getInstance();
+        HostAndPort node = currentNode();
+        Jedis jedis = new Jedis(node.getHost(), node.getPort(), global.getRedisConnectTimeout(), 0);
+        try {
+            if (!StringUtil.isBlank(global.getCachePwd())) {
+                jedis.auth(global.getCachePwd());
+            }
+            jedis.subscribe(pubSub, channels);
+        } finally {
+            if (jedis != null) {
+                jedis.close();
+            }
+        }
+    }
+    /************************************************************* 发布订阅 操作 结束 *************************************************************/
+}
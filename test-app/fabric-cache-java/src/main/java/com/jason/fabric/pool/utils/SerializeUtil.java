@@ -6,12 +6,25 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 
+import org.apache.log4j.Logger;
+
+/**
+ * 对象序列化，BinarySerializer支持的类型使用紧凑的二进制格式，其他类型使用java序列化
+ * 反序列化时按首字节区分两种格式，以前用java序列化写入的数据仍可读取
+ */
 public class SerializeUtil {
+    private static final Logger log = Logger.getLogger(SerializeUtil.class);
+
     /**
      *
      * 序列化
      */
     public static byte[] serialize(Object obj) {
+        try {
+            return BinarySerializer.serialize(obj);
+        } catch (IllegalArgumentException e) {
+            //含有不支持的类型，整体使用java序列化
+        }
 
         ObjectOutputStream oos = null;
         ByteArrayOutputStream baos = null;
@@ -26,7 +39,7 @@ public class SerializeUtil {
             return byteArray;
 
         } catch (IOException e) {
-            e.printStackTrace();
+            log.warn("serialize " + obj.getClass().getName() + " failed: " + e.getMessage());
         }
         return null;
     }
@@ -39,6 +52,14 @@ public class SerializeUtil {
      * @return
      */
     public static Object unSerialize(byte[] bytes) {
+        if (BinarySerializer.isBinary(bytes)) {
+            try {
+                return BinarySerializer.deserialize(bytes);
+            } catch (IllegalArgumentException e) {
+                log.warn("binary deserialize failed: " + e.getMessage());
+                return null;
+            }
+        }
 
         ByteArrayInputStream bais = null;
 
@@ -49,7 +70,7 @@ public class SerializeUtil {
             return ois.readObject();
 
         } catch (Exception e) {
-            e.printStackTrace();
+            log.warn("deserialize failed: " + e.getMessage());
         }
         return null;
     }
@@ -0,0 +1,80 @@
+package com.jason.fabric.pool.utils;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.jason.fabric.pool.conf.Global;
+import org.apache.log4j.Logger;
+
+/**
+ * 异步调用使用的线程池
+ */
+public final class ThreadPoolUtil {
+    private static final Logger log = Logger.getLogger(ThreadPoolUtil.class);
+
+    private final ExecutorService asyncExecutor;
+    private final ScheduledExecutorService scheduler;
+
+    private ThreadPoolUtil() {
+        ExecutorService virtualExecutor = Global.getInstance().isVirtualThreads() ? newVirtualThreadExecutor() : null;
+        if (virtualExecutor != null) {
+            asyncExecutor = virtualExecutor;
+        } else {
+            asyncExecutor = Executors.newFixedThreadPool(Global.getInstance().getAsyncThreads(), daemonFactory("fabric-async-"));
+        }
+        ScheduledThreadPoolExecutor scheduledExecutor = new ScheduledThreadPoolExecutor(1, daemonFactory("fabric-scheduler-"));
+        //超时任务大多会被提前取消，取消后立即移出队列
+        scheduledExecutor.setRemoveOnCancelPolicy(true);
+        scheduler = scheduledExecutor;
+    }
+
+    public static ThreadPoolUtil getInstance() {
+        return SingletonHolder.instance;
+    }
+
+    /**
+     * 执行背书、查询等阻塞调用的线程池
+     */
+    public ExecutorService getAsyncExecutor() {
+        return asyncExecutor;
+    }
+
+    /**
+     * 超时等定时任务
+     */
+    public ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * 每个任务一个虚拟线程的线程池，需要JDK 21及以上，低版本返回null
+     * 项目以1.8编译，故通过反射获取
+     */
+    public static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.warn("virtual threads are not supported by java " + System.getProperty("java.version") + ", use platform threads");
+            return null;
+        }
+    }
+
+    private static ThreadFactory daemonFactory(String prefix) {
+        AtomicInteger index = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, prefix + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static class SingletonHolder {
+        private static final ThreadPoolUtil instance = new ThreadPoolUtil();  //静态初始化器，由JVM来保证线程安全
+    }
+}
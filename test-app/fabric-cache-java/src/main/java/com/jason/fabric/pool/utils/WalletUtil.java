@@ -34,6 +34,7 @@ public final class WalletUtil {
         Wallet wallet = Wallets.newFileSystemWallet(walletDirectory);
         Identity identity = Identities.newX509Identity(mspId, credentials.getCertificate(), credentials.getPrivateKey());
         wallet.put(walletName,identity);
+        FabricResourceCache.getInstance().invalidateIdentity(walletName);
         return identity;
     }
 
@@ -53,6 +54,7 @@ public final class WalletUtil {
         Wallet wallet = Wallets.newFileSystemWallet(walletDirectory);
         Identity identity = Identities.newX509Identity(mspId, credentials.getCertificate(), credentials.getPrivateKey());
         wallet.put(walletName, identity);
+        FabricResourceCache.getInstance().invalidateIdentity(walletName);
         return identity;
     }
 
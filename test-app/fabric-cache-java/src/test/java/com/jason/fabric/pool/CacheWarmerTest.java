@@ -0,0 +1,93 @@
+package com.jason.fabric.pool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.jason.fabric.pool.cache.AccessProfile;
+import com.jason.fabric.pool.cache.ProfiledQuery;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CacheWarmerTest {
+
+    private static List<ProfiledQuery> queries(int count) {
+        List<ProfiledQuery> queries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            queries.add(new ProfiledQuery("Jason", "mychannel", "hospital_recordInfo", "QueryRecord", new String[]{"" + i}));
+        }
+        return queries;
+    }
+
+    /**
+     * 同时进行的查询不超过并发数，失败的查询只计数
+     */
+    @Test
+    public void replayBoundsConcurrency() {
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CacheWarmer warmer = new CacheWarmer(new AccessProfile(0, null), q -> CompletableFuture.supplyAsync(() -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                TimeUnit.MILLISECONDS.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            if (q.getArguments()[0].equals("7")) {
+                throw new IllegalStateException("record 7 does not exist");
+            }
+            return new byte[0];
+        }, executor));
+        WarmUpResult result = warmer.replay(queries(40), 4, 10000);
+        executor.shutdown();
+        Assert.assertEquals(40, result.getReplayedCount());
+        Assert.assertEquals(39, result.getSuccessCount());
+        Assert.assertEquals(1, result.getFailureCount());
+        Assert.assertFalse(result.isTimedOut());
+        Assert.assertTrue(maxRunning.get() <= 4);
+    }
+
+    /**
+     * 超时后不再提交新的查询
+     */
+    @Test
+    public void replayStopsAtTimeout() {
+        CacheWarmer warmer = new CacheWarmer(new AccessProfile(0, null), q -> new CompletableFuture<>());
+        WarmUpResult result = warmer.replay(queries(10), 2, 50);
+        Assert.assertTrue(result.isTimedOut());
+        Assert.assertEquals(2, result.getReplayedCount());
+        Assert.assertEquals(0, result.getSuccessCount());
+    }
+
+    /**
+     * 重放经过缓存层时不增加访问画像中的次数，重放结束后恢复记录
+     */
+    @Test
+    public void replayNotRecorded() {
+        AccessProfile profile = new AccessProfile(10, null);
+        List<ProfiledQuery> queries = queries(3);
+        for (ProfiledQuery q : queries) {
+            record(profile, q);
+        }
+        CacheWarmer warmer = new CacheWarmer(profile, q -> CompletableFuture.supplyAsync(() -> {
+            record(profile, q);
+            return new byte[0];
+        }));
+        Assert.assertEquals(3, warmer.replay(profile.top(10), 2, 10000).getSuccessCount());
+        for (ProfiledQuery q : profile.top(10)) {
+            Assert.assertEquals(1, q.getCount());
+        }
+        record(profile, queries.get(0));
+        Assert.assertEquals(2, profile.top(1).get(0).getCount());
+    }
+
+    private static void record(AccessProfile profile, ProfiledQuery q) {
+        profile.record(q.getUserName(), q.getChannelName(), q.getChainCode(), q.slot(), q.getFcn(), q.getArguments());
+    }
+}
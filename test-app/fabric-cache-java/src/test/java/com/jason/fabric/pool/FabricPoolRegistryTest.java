@@ -0,0 +1,137 @@
+package com.jason.fabric.pool;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+
+import com.jason.fabric.pool.conf.Global;
+import org.hyperledger.fabric.gateway.Gateway;
+import org.hyperledger.fabric.gateway.Network;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FabricPoolRegistryTest {
+    private final List<String> channels = new ArrayList<>();
+    private FabricPoolRegistry registry;
+
+    @After
+    public void tearDown() throws IOException {
+        if (registry != null) {
+            registry.close();
+        }
+        for (String channel : channels) {
+            Files.deleteIfExists(Paths.get(Global.getInstance().getCoherenceCheckpointDir()).resolve(channel + ".json"));
+        }
+    }
+
+    /**
+     * 不访问peer的Gateway，所有连接共享它
+     */
+    private static Gateway gateway() {
+        Network network = stub(Network.class, (method, args) -> method.getName().equals("addBlockListener") ? args[args.length - 1] : null);
+        return stub(Gateway.class, (method, args) -> method.getName().equals("getNetwork") ? network : null);
+    }
+
+    /**
+     * equals和hashCode按引用比较，其余方法由answer返回
+     */
+    private static <T> T stub(Class<T> type, BiFunction<Method, Object[], Object> answer) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return type.getSimpleName();
+                default:
+                    return answer.apply(method, args);
+            }
+        }));
+    }
+
+    private String channel() {
+        String channel = "registry-" + System.nanoTime();
+        channels.add(channel);
+        return channel;
+    }
+
+    private FabricPoolRegistry registry(long idleTimeout) {
+        Gateway gateway = gateway();
+        registry = new FabricPoolRegistry((userName, channel) -> new FabricGatewayPool(userName, channel, gateway), idleTimeout, 0);
+        return registry;
+    }
+
+    /**
+     * 同一(用户, 通道)复用一个池，close()归还连接，重复close没有副作用
+     */
+    @Test
+    public void borrowAndReturn() throws Exception {
+        FabricPoolRegistry registry = registry(600000);
+        String channel = channel();
+        Assert.assertSame(registry.getPool("Jason", channel), registry.getPool("Jason", channel));
+        Assert.assertNotSame(registry.getPool("Jason", channel), registry.getPool("Alice", channel));
+
+        FabricConnectionHandle first = registry.borrow("Jason", channel);
+        try (FabricConnectionHandle second = registry.borrow("Jason", channel)) {
+            Assert.assertNotSame(first, second);
+            Assert.assertEquals(2, registry.getStats("Jason", channel).getNumActive());
+        }
+        first.close();
+        first.close();
+        PoolStats stats = registry.getStats("Jason", channel);
+        Assert.assertEquals(0, stats.getNumActive());
+        Assert.assertEquals(2, stats.getNumIdle());
+        Assert.assertEquals(2, stats.getBorrowedCount());
+        Assert.assertEquals(2, stats.getReturnedCount());
+        try {
+            first.queryBytes("hospital_recordInfo", "QueryRecord", "110121");
+            Assert.fail();
+        } catch (IllegalStateException expected) {
+        }
+        Assert.assertEquals(2, registry.getAllStats().size());
+    }
+
+    /**
+     * 标记损坏的连接归还时销毁，不放回池中
+     */
+    @Test
+    public void invalidatedConnectionDestroyed() throws Exception {
+        FabricPoolRegistry registry = registry(600000);
+        String channel = channel();
+        try (FabricConnectionHandle connection = registry.borrow("Jason", channel)) {
+            connection.invalidate();
+        }
+        PoolStats stats = registry.getStats("Jason", channel);
+        Assert.assertEquals(0, stats.getNumIdle());
+        Assert.assertEquals(1, stats.getDestroyedCount());
+    }
+
+    /**
+     * 只回收空闲超时且没有借出连接的池，回收后再借出时重新创建
+     */
+    @Test
+    @SuppressWarnings("try")    //借出的连接只用于占用池
+    public void evictIdlePools() throws Exception {
+        FabricPoolRegistry registry = registry(0);
+        String idle = channel();
+        String busy = channel();
+        FabricGatewayPool idlePool = registry.getPool("Jason", idle);
+        try (FabricConnectionHandle connection = registry.borrow("Jason", busy)) {
+            Thread.sleep(5);
+            registry.evictIdlePools();
+            Assert.assertTrue(idlePool.isClosed());
+            Assert.assertNull(registry.getStats("Jason", idle));
+            Assert.assertEquals(1, registry.getStats("Jason", busy).getNumActive());
+        }
+        try (FabricConnectionHandle connection = registry.borrow("Jason", idle)) {
+            Assert.assertNotSame(idlePool, registry.getPool("Jason", idle));
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.jason.fabric.pool;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+
+import com.jason.fabric.pool.conf.Global;
+import com.jason.fabric.pool.utils.FabricResourceCache;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FabricResourceCacheTest {
+
+    /**
+     * 网络配置从缓存读取，内容与文件一致
+     * @throws IOException
+     */
+    @Test
+    public void networkConfig() throws IOException {
+        byte[] expected = Files.readAllBytes(Paths.get(Global.getInstance().getNetConfigFile()));
+        Assert.assertArrayEquals(expected, read(FabricResourceCache.getInstance().networkConfig()));
+        Assert.assertArrayEquals(expected, read(FabricResourceCache.getInstance().networkConfig()));
+    }
+
+    /**
+     * 网络配置文件的大小或修改时间变化后重新读取
+     * @throws IOException
+     */
+    @Test
+    public void networkConfigReloaded() throws IOException {
+        Path path = Paths.get(Global.getInstance().getNetConfigFile());
+        byte[] original = Files.readAllBytes(path);
+        FileTime modified = Files.getLastModifiedTime(path);
+        try {
+            Assert.assertArrayEquals(original, read(FabricResourceCache.getInstance().networkConfig()));
+            byte[] changed = (new String(original, StandardCharsets.UTF_8) + "\n").getBytes(StandardCharsets.UTF_8);
+            Files.write(path, changed);
+            Assert.assertArrayEquals(changed, read(FabricResourceCache.getInstance().networkConfig()));
+        } finally {
+            Files.write(path, original);
+            Files.setLastModifiedTime(path, modified);
+        }
+        Assert.assertArrayEquals(original, read(FabricResourceCache.getInstance().networkConfig()));
+    }
+
+    /**
+     * 钱包中的身份文件被改写后重新加载
+     * @throws IOException
+     */
+    @Test
+    public void identityReloaded() throws IOException {
+        Path wallet = Paths.get(Global.getInstance().getWalletDirPath());
+        String userName = "reload-" + System.nanoTime();
+        Path path = wallet.resolve(userName + ".id");
+        String identity = new String(Files.readAllBytes(wallet.resolve("test.id")), StandardCharsets.UTF_8);
+        try {
+            Files.write(path, identity.getBytes(StandardCharsets.UTF_8));
+            Assert.assertEquals("Org1MSP", FabricResourceCache.getInstance().identity(userName).getMspId());
+            Files.write(path, identity.replace("\"Org1MSP\"", "\"Org12MSP\"").getBytes(StandardCharsets.UTF_8));
+            Assert.assertEquals("Org12MSP", FabricResourceCache.getInstance().identity(userName).getMspId());
+        } finally {
+            Files.deleteIfExists(path);
+            FabricResourceCache.getInstance().invalidateIdentity(userName);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void identityNotFound() throws IOException {
+        FabricResourceCache.getInstance().identity("not-exist-user");
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
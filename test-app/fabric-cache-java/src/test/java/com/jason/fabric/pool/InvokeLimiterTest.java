@@ -0,0 +1,94 @@
+package com.jason.fabric.pool;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class InvokeLimiterTest {
+
+    /**
+     * 每笔交易的future单独完成，失败的交易不影响其他交易
+     * @throws Exception
+     */
+    @Test
+    public void completeEachItem() throws Exception {
+        AtomicInteger submitted = new AtomicInteger();
+        InvokeLimiter limiter = new InvokeLimiter((chainCode, fcn, arguments) -> {
+            submitted.incrementAndGet();
+            if ("bad".equals(arguments[0])) {
+                throw new IllegalArgumentException("bad key");
+            }
+            return CompletableFuture.completedFuture(arguments[0].getBytes(StandardCharsets.UTF_8));
+        }, 2);
+
+        List<CompletableFuture<byte[]>> futures = new ArrayList<>();
+        futures.add(limiter.invoke("hospital_recordInfo", "Save", "110121"));
+        futures.add(limiter.invoke("hospital_recordInfo", "Save", "bad"));
+        futures.add(limiter.invoke("hospital_recordInfo", "Save", "110122"));
+
+        Assert.assertEquals("110121", new String(futures.get(0).get(5, TimeUnit.SECONDS), StandardCharsets.UTF_8));
+        Assert.assertEquals("110122", new String(futures.get(2).get(5, TimeUnit.SECONDS), StandardCharsets.UTF_8));
+        try {
+            futures.get(1).get(5, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+        Assert.assertEquals(3, submitted.get());
+        limiter.close();
+    }
+
+    /**
+     * 同时发送的交易数不超过并发数，其余排队；发送后即释放名额，不等待提交
+     * @throws Exception
+     */
+    @Test
+    public void boundedParallelism() throws Exception {
+        CountDownLatch sending = new CountDownLatch(2);
+        CountDownLatch proceed = new CountDownLatch(1);
+        CountDownLatch queuedSent = new CountDownLatch(1);
+        AtomicInteger submitted = new AtomicInteger();
+        CompletableFuture<byte[]> commit = new CompletableFuture<>();
+        InvokeLimiter limiter = new InvokeLimiter((chainCode, fcn, arguments) -> {
+            submitted.incrementAndGet();
+            if ("queued".equals(arguments[0])) {
+                queuedSent.countDown();
+            } else {
+                sending.countDown();
+                proceed.await();
+            }
+            return commit;
+        }, 2);
+        try {
+            limiter.invoke("hospital_recordInfo", "Save", "1");
+            limiter.invoke("hospital_recordInfo", "Save", "2");
+            Assert.assertTrue(sending.await(5, TimeUnit.SECONDS));
+            CompletableFuture<byte[]> queued = limiter.invoke("hospital_recordInfo", "Save", "queued");
+            Assert.assertEquals(2, submitted.get());
+
+            proceed.countDown();
+            Assert.assertTrue(queuedSent.await(5, TimeUnit.SECONDS));
+            Assert.assertFalse(queued.isDone());
+            commit.complete(new byte[0]);
+            Assert.assertEquals(0, queued.get(5, TimeUnit.SECONDS).length);
+        } finally {
+            proceed.countDown();
+            limiter.close();
+        }
+    }
+
+    @Test(expected = ExecutionException.class)
+    public void rejectAfterClose() throws Exception {
+        InvokeLimiter limiter = new InvokeLimiter((chainCode, fcn, arguments) -> CompletableFuture.completedFuture(new byte[0]), 1);
+        limiter.close();
+        limiter.invoke("hospital_recordInfo", "Save", "1").get(5, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,248 @@
+package com.jason.fabric.pool.cache;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import com.jason.fabric.pool.conf.Global;
+import org.hyperledger.fabric.gateway.Contract;
+import org.hyperledger.fabric.gateway.DefaultCheckpointers;
+import org.hyperledger.fabric.gateway.Gateway;
+import org.hyperledger.fabric.gateway.Network;
+import org.hyperledger.fabric.gateway.spi.Checkpointer;
+import org.hyperledger.fabric.gateway.spi.CommitListener;
+import org.hyperledger.fabric.protos.common.Common;
+import org.hyperledger.fabric.protos.peer.EventsPackage;
+import org.hyperledger.fabric.sdk.BlockEvent;
+import org.hyperledger.fabric.sdk.Channel;
+import org.hyperledger.fabric.sdk.Peer;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CacheCoherenceTest {
+
+    /**
+     * 已知高度和已处理的区块号计算落后块数，高度只增不减
+     */
+    @Test
+    public void lag() {
+        CoherenceMetrics metrics = new CoherenceMetrics();
+        Assert.assertEquals(-1, metrics.getLag());
+        metrics.recordHeight(10);
+        Assert.assertEquals(10, metrics.getLag());
+        metrics.recordBlock(7, 0);
+        Assert.assertEquals(2, metrics.getLag());
+        metrics.recordHeight(5);
+        Assert.assertEquals(10, metrics.getHeadHeight());
+        metrics.recordBlock(12, 3);
+        Assert.assertEquals(13, metrics.getHeadHeight());
+        Assert.assertEquals(0, metrics.getLag());
+        Assert.assertEquals(3, metrics.getInvalidatedCount());
+    }
+
+    /**
+     * 处理失败的区块不前进检查点，退避后从检查点重新监听并重放；连续失败时退避加倍，成功后恢复
+     */
+    @Test
+    public void replayFromCheckpointWithBackoff() throws Exception {
+        String channel = "coherence-replay-" + System.nanoTime();
+        FakeNetwork network = new FakeNetwork(4);
+        FailingInvalidator invalidator = new FailingInvalidator();
+        invalidator.failures.put(1L, 2);
+        invalidator.failures.put(3L, 1);
+        CacheCoherence coherence = CacheCoherence.getInstance();
+        coherence.register(channel, network, invalidator);
+        try {
+            Assert.assertNotNull(network.checkpointer);
+            long restartedAfter = network.deliverAndAwaitRestart();
+            Assert.assertTrue(String.valueOf(restartedAfter), restartedAfter >= 900 && restartedAfter < 1900);
+            restartedAfter = network.deliverAndAwaitRestart();
+            Assert.assertTrue(String.valueOf(restartedAfter), restartedAfter >= 1900);
+            restartedAfter = network.deliverAndAwaitRestart();
+            Assert.assertTrue(String.valueOf(restartedAfter), restartedAfter >= 900 && restartedAfter < 1900);
+            network.deliver();
+
+            Assert.assertEquals(Arrays.asList(0L, 1L, 1L, 1L, 2L, 3L, 3L), invalidator.processed);
+            CoherenceMetrics metrics = coherence.getMetrics().get(channel);
+            Assert.assertEquals(4, metrics.getBlockCount());
+            Assert.assertEquals(3, metrics.getFailureCount());
+            Assert.assertEquals(3, metrics.getLastBlockNumber());
+            Assert.assertEquals(4, network.checkpointer.getBlockNumber());
+        } finally {
+            coherence.unregister(channel, network);
+            Files.deleteIfExists(checkpointPath(channel));
+        }
+    }
+
+    /**
+     * 检查点文件被占用时不使用检查点监听，不影响登记
+     */
+    @Test
+    @SuppressWarnings("try")    //held只用于占用检查点文件
+    public void listenWithoutCheckpointWhenOpenFails() throws Exception {
+        String channel = "coherence-locked-" + System.nanoTime();
+        Path path = checkpointPath(channel);
+        Files.createDirectories(path.getParent());
+        FakeNetwork network = new FakeNetwork(1);
+        try (Checkpointer held = DefaultCheckpointers.file(path)) {
+            CacheCoherence.getInstance().register(channel, network, new FailingInvalidator());
+            Assert.assertNull(network.checkpointer);
+            Assert.assertNotNull(network.listener);
+        } finally {
+            CacheCoherence.getInstance().unregister(channel, network);
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private static Path checkpointPath(String channel) {
+        return Paths.get(Global.getInstance().getCoherenceCheckpointDir()).resolve(channel + ".json");
+    }
+
+    /**
+     * 只有区块号的区块
+     */
+    static BlockEvent block(long number) throws Exception {
+        EventsPackage.DeliverResponse response = EventsPackage.DeliverResponse.newBuilder()
+                .setBlock(Common.Block.newBuilder()
+                        .setHeader(Common.BlockHeader.newBuilder().setNumber(number))
+                        .setData(Common.BlockData.getDefaultInstance())
+                        .setMetadata(Common.BlockMetadata.getDefaultInstance()))
+                .build();
+        Constructor<BlockEvent> constructor = BlockEvent.class.getDeclaredConstructor(Peer.class, EventsPackage.DeliverResponse.class);
+        constructor.setAccessible(true);
+        return constructor.newInstance(null, response);
+    }
+
+    /**
+     * 指定区块失败指定次数，记录处理过的区块号
+     */
+    private static final class FailingInvalidator extends WriteSetInvalidator {
+        private final Map<Long, Integer> failures = new HashMap<>();
+        private final List<Long> processed = Collections.synchronizedList(new ArrayList<>());
+
+        FailingInvalidator() {
+            super(new MapQueryCache(), new MemoryLedgerKeyIndex(60000));
+        }
+
+        @Override
+        public int onBlock(String channel, BlockEvent block) {
+            processed.add(block.getBlockNumber());
+            Integer remaining = failures.get(block.getBlockNumber());
+            if (remaining != null && remaining > 0) {
+                failures.put(block.getBlockNumber(), remaining - 1);
+                throw new IllegalStateException("invalidate block " + block.getBlockNumber() + " failed");
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * 与gateway的检查点语义一致：从检查点的区块开始投递，处理成功后检查点前进，处理失败后不再投递
+     */
+    private static final class FakeNetwork implements Network {
+        private final List<BlockEvent> blocks = new ArrayList<>();
+        private volatile Checkpointer checkpointer;
+        private volatile Consumer<BlockEvent> listener;
+        private volatile long listenedAt;
+
+        FakeNetwork(int height) throws Exception {
+            for (int i = 0; i < height; i++) {
+                blocks.add(block(i));
+            }
+        }
+
+        /**
+         * 投递直到失败，返回失败到重新监听的毫秒数
+         */
+        long deliverAndAwaitRestart() throws Exception {
+            Consumer<BlockEvent> current = listener;
+            deliver();
+            long failedAt = System.currentTimeMillis();
+            long deadline = failedAt + 10000;
+            while (listener == current || listener == null) {
+                Assert.assertTrue("block listener not restarted", System.currentTimeMillis() < deadline);
+                Thread.sleep(10);
+            }
+            return listenedAt - failedAt;
+        }
+
+        void deliver() throws IOException {
+            long next = Math.max(checkpointer.getBlockNumber(), 0);
+            for (long number = next; number < blocks.size(); number++) {
+                try {
+                    listener.accept(blocks.get((int) number));
+                } catch (RuntimeException e) {
+                    return;
+                }
+                checkpointer.setBlockNumber(number + 1);
+            }
+        }
+
+        @Override
+        public Consumer<BlockEvent> addBlockListener(Consumer<BlockEvent> listener) {
+            this.checkpointer = null;
+            this.listener = listener;
+            return listener;
+        }
+
+        @Override
+        public Consumer<BlockEvent> addBlockListener(Checkpointer checkpointer, Consumer<BlockEvent> listener) {
+            this.checkpointer = checkpointer;
+            this.listenedAt = System.currentTimeMillis();
+            this.listener = listener;
+            return listener;
+        }
+
+        @Override
+        public Consumer<BlockEvent> addBlockListener(long startBlock, Consumer<BlockEvent> listener) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void removeBlockListener(Consumer<BlockEvent> listener) {
+            if (this.listener == listener) {
+                this.listener = null;
+            }
+        }
+
+        @Override
+        public Contract getContract(String chaincodeId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Contract getContract(String chaincodeId, String name) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Gateway getGateway() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Channel getChannel() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CommitListener addCommitListener(CommitListener listener, Collection<Peer> peers, String transactionId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void removeCommitListener(CommitListener listener) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
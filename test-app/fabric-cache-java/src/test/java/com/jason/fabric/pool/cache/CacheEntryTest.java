@@ -0,0 +1,91 @@
+package com.jason.fabric.pool.cache;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CacheEntryTest {
+
+    private static byte[] json(int records) {
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < records; i++) {
+            builder.append(i == 0 ? "" : ",").append("{\"key\":\"record").append(i)
+                    .append("\",\"name\":\"Jason\",\"hospital\":\"hospital1\",\"diagnosis\":\"fever\",\"time\":\"2020-08-12 10:00:0")
+                    .append(i % 10).append("\"}");
+        }
+        return builder.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 各压缩算法编码后更短且解码一致，小于阈值的值不压缩
+     */
+    @Test
+    public void compressAboveThreshold() {
+        byte[] value = json(50);
+        for (CacheCodec codec : CacheCodec.values()) {
+            ValueCodecs codecs = new ValueCodecs(codec, 512, 3, null);
+            CacheEntry entry = new CacheEntry(value, 2000, 1000);
+            byte[] encoded = entry.encode(codecs);
+            if (codec == CacheCodec.NONE) {
+                Assert.assertEquals(value.length + 19, encoded.length);
+            } else {
+                Assert.assertTrue(codec + " " + encoded.length, encoded.length < value.length / 2);
+            }
+            CacheEntry decoded = CacheEntry.decode(encoded, codecs);
+            Assert.assertArrayEquals(value, decoded.getValue());
+            Assert.assertEquals(2000, decoded.getExpireAt());
+            Assert.assertEquals(1000, decoded.getRefreshAt());
+
+            byte[] small = json(1);
+            Assert.assertEquals(small.length + 19, new CacheEntry(small, 2000).encode(codecs).length);
+        }
+        CacheEntry negative = CacheEntry.decode(
+                CacheEntry.negative("java.lang.IllegalStateException", new String(value, StandardCharsets.UTF_8), 1000)
+                        .encode(new ValueCodecs(CacheCodec.SNAPPY, 0, 3, null)),
+                new ValueCodecs(CacheCodec.NONE, 0, 3, null));
+        Assert.assertTrue(negative.isNegative());
+        Assert.assertEquals("java.lang.IllegalStateException", negative.getErrorClass());
+    }
+
+    /**
+     * 字典提高小值的压缩率，字典不一致时按未命中处理
+     */
+    @Test
+    public void zstdDictionary() {
+        List<byte[]> samples = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            samples.add(json(1 + i % 5));
+        }
+        byte[] dictionary = ZstdValueCodec.trainDictionary(samples, 4096);
+        ValueCodecs plain = new ValueCodecs(CacheCodec.ZSTD, 0, 3, null);
+        ValueCodecs trained = new ValueCodecs(CacheCodec.ZSTD, 0, 3, dictionary);
+
+        byte[] value = json(3);
+        byte[] withDictionary = new CacheEntry(value, 2000).encode(trained);
+        Assert.assertTrue(withDictionary.length < new CacheEntry(value, 2000).encode(plain).length);
+        Assert.assertArrayEquals(value, CacheEntry.decode(withDictionary, trained).getValue());
+        Assert.assertNull(CacheEntry.decode(withDictionary, plain));
+        Assert.assertNull(CacheEntry.decode(Arrays.copyOf(withDictionary, withDictionary.length - 1), trained));
+    }
+
+    /**
+     * 头部的原始长度损坏时按未命中处理，不按损坏的长度分配数组
+     */
+    @Test
+    public void corruptRawLength() {
+        byte[] value = json(50);
+        for (CacheCodec codec : Arrays.asList(CacheCodec.SNAPPY, CacheCodec.ZSTD)) {
+            ValueCodecs codecs = new ValueCodecs(codec, 0, 3, null);
+            byte[] encoded = new CacheEntry(value, 2000).encode(codecs);
+            for (int rawLength : new int[]{Integer.MAX_VALUE, 1 << 30, value.length + 1, value.length - 1}) {
+                ByteBuffer.wrap(encoded).putInt(19, rawLength);
+                Assert.assertNull(codec + " " + rawLength, CacheEntry.decode(encoded, codecs));
+            }
+        }
+    }
+}
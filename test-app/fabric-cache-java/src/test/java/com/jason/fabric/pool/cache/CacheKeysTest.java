@@ -0,0 +1,77 @@
+package com.jason.fabric.pool.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+import redis.clients.jedis.util.JedisClusterCRC16;
+
+public class CacheKeysTest {
+
+    /**
+     * 直接拼接时相同的参数划分，编码后不同
+     */
+    @Test
+    public void noCollision() {
+        Assert.assertNotEquals(CacheKeys.field("Query", "ab", "c"), CacheKeys.field("Query", "a", "bc"));
+        Assert.assertNotEquals(CacheKeys.field("Query", "a"), CacheKeys.field("Querya"));
+        Assert.assertNotEquals(CacheKeys.field("Query", (String) null), CacheKeys.field("Query", "~"));
+        Assert.assertNotEquals(CacheKeys.key("ab", "c", "cc"), CacheKeys.key("a", "bc", "cc"));
+        Assert.assertEquals("fc2:{9:mychannelhospital_recordInfo}5:Jason", CacheKeys.key("Jason", "mychannel", "hospital_recordInfo"));
+    }
+
+    /**
+     * 较长的field使用摘要，相同输入结果稳定
+     */
+    @Test
+    public void longFieldDigested() {
+        StringBuilder argument = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            argument.append("记录").append(i);
+        }
+        String field = CacheKeys.field("QueryRecord", argument.toString(), "😀");
+        Assert.assertTrue(field.startsWith("#"));
+        Assert.assertTrue(field.length() < 40);
+        Assert.assertEquals(field, CacheKeys.field("QueryRecord", argument.toString(), "😀"));
+        Assert.assertNotEquals(field, CacheKeys.field("QueryRecord", argument.toString(), "😁"));
+        Assert.assertEquals("11:QueryRecord1:1", CacheKeys.field("QueryRecord", "1"));
+    }
+
+    /**
+     * 同一chaincode的key使用相同的hash tag，集群模式下位于同一个槽位
+     */
+    @Test
+    public void chainCodeKeysShareSlot() {
+        String alice = CacheKeys.key("alice", "mychannel", "hospital_recordInfo");
+        String bob = CacheKeys.key("b{o}b", "mychannel", "hospital_recordInfo");
+        String tag = CacheKeys.tag("mychannel", "hospital_recordInfo");
+        Assert.assertEquals(tag, CacheKeys.hashTag(alice));
+        Assert.assertEquals(JedisClusterCRC16.getSlot(alice), JedisClusterCRC16.getSlot(bob));
+        Assert.assertEquals(JedisClusterCRC16.getSlot(alice), JedisClusterCRC16.getSlot("fabric-cache:deps:" + tag + "=k1"));
+        Assert.assertArrayEquals(new String[]{"b{o}b", "mychannel", "hospital_recordInfo"}, CacheKeys.parseKey(bob));
+        Assert.assertEquals("{legacy}", CacheKeys.hashTag("legacy"));
+    }
+
+    /**
+     * 从key中解析出用户、通道和chaincode，旧格式的key返回null
+     */
+    @Test
+    public void parseKey() {
+        Assert.assertArrayEquals(new String[]{"user:1", "my:channel", "cc"},
+                CacheKeys.parseKey(CacheKeys.key("user:1", "my:channel", "cc")));
+        Assert.assertNull(CacheKeys.parseKey("user1mychannelcc"));
+    }
+
+    /**
+     * 从field中还原方法名和参数，使用摘要的field无法还原
+     */
+    @Test
+    public void parseField() {
+        Assert.assertArrayEquals(new String[]{"Query", "a:1", null, ""}, CacheKeys.parseField(CacheKeys.field("Query", "a:1", null, "")));
+        Assert.assertArrayEquals(new String[]{"Query"}, CacheKeys.parseField(CacheKeys.field("Query")));
+        StringBuilder argument = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            argument.append("record").append(i);
+        }
+        Assert.assertNull(CacheKeys.parseField(CacheKeys.field("Query", argument.toString())));
+        Assert.assertNull(CacheKeys.parseField("5:Query3:ab"));
+    }
+}
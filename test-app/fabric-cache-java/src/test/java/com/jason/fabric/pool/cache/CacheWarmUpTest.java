@@ -0,0 +1,75 @@
+package com.jason.fabric.pool.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CacheWarmUpTest {
+
+    private static void record(AccessProfile profile, int times, String fcn, String... arguments) {
+        CacheField slot = new CacheField(CacheKeys.key("Jason", "mychannel", "hospital_recordInfo"), CacheKeys.field(fcn, arguments));
+        for (int i = 0; i < times; i++) {
+            profile.record("Jason", "mychannel", "hospital_recordInfo", slot, fcn, arguments);
+        }
+    }
+
+    /**
+     * 按次数排序，超出跟踪上限时保留最热的查询，保存后重新读取次数和参数不变
+     */
+    @Test
+    public void profileKeepsHottestQueries() throws Exception {
+        Path file = Files.createTempDirectory("warm").resolve("profile");
+        AccessProfile profile = new AccessProfile(2, file);
+        record(profile, 5, "QueryRecord", "1");
+        record(profile, 9, "QueryRecord", "2\t二", null);
+        for (int i = 0; i < 10; i++) {
+            record(profile, 1, "QueryRecord", "cold" + i);
+        }
+        Assert.assertTrue(profile.getTrackedCount() <= 8);
+        List<ProfiledQuery> top = profile.top(2);
+        Assert.assertArrayEquals(new String[]{"2\t二", null}, top.get(0).getArguments());
+        Assert.assertArrayEquals(new String[]{"1"}, top.get(1).getArguments());
+
+        profile.save();
+        AccessProfile loaded = new AccessProfile(2, file);
+        List<ProfiledQuery> restored = loaded.top(2);
+        Assert.assertEquals(top.get(0).getCount(), restored.get(0).getCount());
+        Assert.assertArrayEquals(top.get(0).getArguments(), restored.get(0).getArguments());
+        Assert.assertEquals(top.get(0).slot(), restored.get(0).slot());
+    }
+
+    /**
+     * 快照只导出未过期的条目，导入时跳过缓存中已有的条目并登记依赖，之后的写入照常失效
+     */
+    @Test
+    public void snapshotRoundTrip() throws Exception {
+        AccessProfile profile = new AccessProfile(10, null);
+        record(profile, 3, "QueryRecord", "1");
+        record(profile, 2, "QueryRecord", "2");
+        record(profile, 1, "QueryRecord", "3");
+        List<ProfiledQuery> queries = profile.top(10);
+        MapQueryCache source = new MapQueryCache();
+        CacheField first = queries.get(0).slot();
+        CacheField second = queries.get(1).slot();
+        source.put(first.getKey(), first.getField(), CacheEntry.of("r1".getBytes(StandardCharsets.UTF_8), 60000));
+        source.put(second.getKey(), second.getField(), CacheEntry.of("r2".getBytes(StandardCharsets.UTF_8), 60000));
+
+        Path file = Files.createTempDirectory("warm").resolve("snapshot");
+        Assert.assertEquals(2, CacheSnapshot.export(source, queries, file));
+
+        MapQueryCache target = new MapQueryCache();
+        target.put(second.getKey(), second.getField(), CacheEntry.of("new".getBytes(StandardCharsets.UTF_8), 60000));
+        WriteSetInvalidator invalidator = new WriteSetInvalidator(target, new MemoryLedgerKeyIndex(60000));
+        Assert.assertEquals(1, CacheSnapshot.restore(target, invalidator, file));
+        Assert.assertEquals("r1", new String(target.get(first.getKey(), first.getField()).getValue(), StandardCharsets.UTF_8));
+        Assert.assertEquals("new", new String(target.get(second.getKey(), second.getField()).getValue(), StandardCharsets.UTF_8));
+
+        invalidator.invalidate("mychannel", "hospital_recordInfo", Arrays.asList("1"));
+        Assert.assertNull(target.get(first.getKey(), first.getField()));
+    }
+}
@@ -0,0 +1,106 @@
+package com.jason.fabric.pool.cache;
+
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.jason.fabric.pool.api.FabricConnection;
+import org.hyperledger.fabric.gateway.ContractException;
+import org.hyperledger.fabric.protos.peer.ProposalResponsePackage;
+import org.hyperledger.fabric.sdk.ProposalResponse;
+
+/**
+ * 测试用的连接，查询结果依次为r1、r2...，记录查询次数
+ */
+class CountingConnection implements FabricConnection {
+    final AtomicInteger queries = new AtomicInteger();
+    //每次查询peer时执行，用于模拟查询期间提交的交易
+    Runnable onQuery = () -> { };
+    //不为null时查询抛出该异常，模拟chaincode返回错误
+    volatile ContractException failure;
+    //不为null时查询返回该值，模拟chaincode返回空结果
+    volatile byte[] value;
+
+    @Override
+    public String query(String chainCode, String fcn, String... arguments) throws ContractException {
+        return new String(queryBytes(chainCode, fcn, arguments), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String invoke(String chainCode, String fcn, String... arguments) {
+        return "";
+    }
+
+    @Override
+    public byte[] queryBytes(String chainCode, String fcn, String... arguments) throws ContractException {
+        onQuery.run();
+        if (failure != null) {
+            queries.incrementAndGet();
+            throw failure;
+        }
+        int count = queries.incrementAndGet();
+        return value != null ? value : ("r" + count).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public byte[] invokeBytes(String chainCode, String fcn, String... arguments) {
+        return new byte[0];
+    }
+
+    @Override
+    public void queryTo(OutputStream out, String chainCode, String fcn, String... arguments) throws Exception {
+        out.write(queryBytes(chainCode, fcn, arguments));
+    }
+
+    @Override
+    public CompletableFuture<byte[]> queryAsync(String chainCode, String fcn, String... arguments) {
+        CompletableFuture<byte[]> result = new CompletableFuture<>();
+        try {
+            result.complete(queryBytes(chainCode, fcn, arguments));
+        } catch (ContractException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    @Override
+    public CompletableFuture<byte[]> invokeAsync(String chainCode, String fcn, String... arguments) {
+        return CompletableFuture.completedFuture(new byte[0]);
+    }
+
+    /**
+     * peer执行chaincode后返回的错误，与gateway一致，带有peer的ProposalResponse
+     */
+    static ContractException chaincodeError(String message) {
+        ProposalResponse response = proposalResponse();
+        response.setProposalResponse(ProposalResponsePackage.ProposalResponse.getDefaultInstance());
+        return new ContractException(message, Collections.singletonList(response));
+    }
+
+    /**
+     * 所有peer都不可达时gateway抛出的异常，失败响应中没有peer的ProposalResponse，也没有gRPC原因
+     */
+    static ContractException peersDown() {
+        return new ContractException("No successful responses received. Errors: UNAVAILABLE: io exception",
+                Arrays.asList(proposalResponse(), proposalResponse()));
+    }
+
+    /**
+     * ProposalResponse的构造器不公开且依赖交易上下文，测试中跳过构造器创建
+     */
+    private static ProposalResponse proposalResponse() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return (ProposalResponse) unsafeClass.getMethod("allocateInstance", Class.class)
+                    .invoke(field.get(null), ProposalResponse.class);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
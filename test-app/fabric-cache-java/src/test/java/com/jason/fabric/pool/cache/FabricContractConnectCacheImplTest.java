@@ -0,0 +1,198 @@
+package com.jason.fabric.pool.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.jason.fabric.pool.api.QueryResult;
+import com.jason.fabric.pool.api.QuerySpec;
+import com.jason.fabric.pool.impl.FabricContractConnectCacheImpl;
+import com.jason.fabric.pool.utils.MiniRedisServer;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FabricContractConnectCacheImplTest {
+
+    /**
+     * 第二次查询命中缓存，提交交易后缓存被清除
+     */
+    @Test
+    public void queryCachedUntilInvoke() throws Exception {
+        CountingConnection connection = new CountingConnection();
+        FabricContractConnectCacheImpl cached = new FabricContractConnectCacheImpl(connection, new MapQueryCache(), "Jason", "mychannel");
+
+        Assert.assertEquals("r1", cached.query("hospital_recordInfo", "QueryRecord", "1"));
+        Assert.assertEquals("r1", cached.query("hospital_recordInfo", "QueryRecord", "1"));
+        Assert.assertEquals(1, connection.queries.get());
+
+        cached.invoke("hospital_recordInfo", "Save", "1");
+        Assert.assertEquals("r2", cached.query("hospital_recordInfo", "QueryRecord", "1"));
+        Assert.assertEquals(2, connection.queries.get());
+    }
+
+    /**
+     * 批量查询一次读取缓存，只有未命中的查询访问peer，失败的查询不影响其他结果
+     */
+    @Test
+    public void queryAllLoadsOnlyMisses() throws Exception {
+        CountingConnection connection = new CountingConnection();
+        MapQueryCache cache = new MapQueryCache();
+        FabricContractConnectCacheImpl cached = new FabricContractConnectCacheImpl(connection, cache, "Jason", "mychannel");
+        cached.query("hospital_recordInfo", "QueryRecord", "1");
+
+        List<QueryResult> results = cached.queryAll(Arrays.asList(
+                QuerySpec.of("hospital_recordInfo", "QueryRecord", "1"),
+                QuerySpec.of("hospital_recordInfo", "QueryRecord", "2"),
+                QuerySpec.of("", "QueryRecord", "3")));
+        Assert.assertEquals("r1", results.get(0).getString());
+        Assert.assertEquals("r2", results.get(1).getString());
+        Assert.assertFalse(results.get(2).isSuccess());
+        Assert.assertEquals(2, connection.queries.get());
+
+        results = cached.queryAll(Arrays.asList(
+                QuerySpec.of("hospital_recordInfo", "QueryRecord", "2"),
+                QuerySpec.of("hospital_recordInfo", "QueryRecord", "1")));
+        Assert.assertEquals("r2", results.get(0).getString());
+        Assert.assertEquals("r1", results.get(1).getString());
+        Assert.assertEquals(2, connection.queries.get());
+    }
+
+    /**
+     * 缓存时间按方法配置，测试配置中QueryHistoryRecord为60秒，其他方法为cacheExpireTime
+     */
+    @Test
+    public void ttlPerFunction() throws Exception {
+        MapQueryCache cache = new MapQueryCache();
+        FabricContractConnectCacheImpl cached = new FabricContractConnectCacheImpl(new CountingConnection(), cache, "Jason", "mychannel");
+        long now = System.currentTimeMillis();
+        cached.queryBytes("hospital_recordInfo", "QueryHistoryRecord", "1");
+        cached.queryBytes("hospital_recordInfo", "QueryRecord", "1");
+
+        String key = cached.genericKey("Jason", "mychannel", "hospital_recordInfo");
+        long history = cache.get(key, cached.genericField("hospital_recordInfo", "QueryHistoryRecord", "1")).getExpireAt() - now;
+        long record = cache.get(key, cached.genericField("hospital_recordInfo", "QueryRecord", "1")).getExpireAt() - now;
+        Assert.assertTrue(history >= 60000 && history < 61000);
+        Assert.assertTrue(record >= 3600000 && record < 3601000);
+    }
+
+    /**
+     * 并发的相同未命中只查询peer一次；第一个查询阻塞到其余7个调用都加入等待后才返回
+     */
+    @Test
+    public void concurrentMissesCoalesced() throws Exception {
+        CountingConnection connection = new CountingConnection();
+        FabricContractConnectCacheImpl cached = new FabricContractConnectCacheImpl(connection, new MapQueryCache(), "Jason", "mychannel");
+        long coalesced = FabricContractConnectCacheImpl.getCoalescedCount();
+        CountDownLatch querying = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        connection.onQuery = () -> {
+            querying.countDown();
+            try {
+                proceed.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> cached.query("hospital_recordInfo", "QueryRecord", "coalesced")));
+            }
+            Assert.assertTrue(querying.await(5, TimeUnit.SECONDS));
+            long deadline = System.currentTimeMillis() + 5000;
+            while (FabricContractConnectCacheImpl.getCoalescedCount() - coalesced < 7) {
+                Assert.assertTrue("misses not coalesced", System.currentTimeMillis() < deadline);
+                Thread.yield();
+            }
+            proceed.countDown();
+            for (Future<String> result : results) {
+                Assert.assertEquals("r1", result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            proceed.countDown();
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(1, connection.queries.get());
+        Assert.assertEquals(7, FabricContractConnectCacheImpl.getCoalescedCount() - coalesced);
+    }
+
+    /**
+     * 空结果也缓存：命中、批量查询和等待其他进程加载时都不再查询peer
+     */
+    @Test
+    public void emptyResultCached() throws Exception {
+        CountingConnection connection = new CountingConnection();
+        connection.value = new byte[0];
+        AtomicBoolean hideOnce = new AtomicBoolean();
+        MapQueryCache cache = new MapQueryCache() {
+            @Override
+            public CacheEntry get(String key, String field) {
+                return hideOnce.getAndSet(false) ? null : super.get(key, field);
+            }
+        };
+        MiniRedisServer server = MiniRedisServer.start();
+        server.connectRedisUtil();
+        try {
+            RedisMissLock lock = new RedisMissLock(60000);
+            FabricContractConnectCacheImpl cached = new FabricContractConnectCacheImpl(connection, cache, null, lock, "Jason", "mychannel");
+            Assert.assertEquals("", cached.query("hospital_recordInfo", "QueryRecord", "empty"));
+            Assert.assertEquals("", cached.query("hospital_recordInfo", "QueryRecord", "empty"));
+            Assert.assertEquals("", cached.queryAll(Collections.singletonList(
+                    QuerySpec.of("hospital_recordInfo", "QueryRecord", "empty"))).get(0).getString());
+            Assert.assertEquals(1, connection.queries.get());
+
+            //其他进程持有锁，本进程读不到条目后等待，第一次轮询就读到空结果
+            CacheField slot = new CacheField(cached.genericKey("Jason", "mychannel", "hospital_recordInfo"),
+                    cached.genericField("hospital_recordInfo", "QueryRecord", "empty"));
+            Assert.assertNotNull(lock.tryAcquire(slot));
+            hideOnce.set(true);
+            long start = System.currentTimeMillis();
+            Assert.assertEquals("", cached.query("hospital_recordInfo", "QueryRecord", "empty"));
+            Assert.assertTrue(System.currentTimeMillis() - start < 30000);
+            Assert.assertEquals(1, connection.queries.get());
+        } finally {
+            MiniRedisServer.reconnectRedisUtil();
+            server.close();
+        }
+    }
+
+    /**
+     * 到达刷新时间的条目直接返回旧值，后台刷新后返回新值
+     */
+    @Test
+    public void dueEntryRefreshedInBackground() throws Exception {
+        MapQueryCache cache = new MapQueryCache();
+        CountingConnection connection = new CountingConnection();
+        FabricContractConnectCacheImpl cached = new FabricContractConnectCacheImpl(connection, cache, "Jason", "mychannel");
+        String key = cached.genericKey("Jason", "mychannel", "hospital_basicInfo");
+        String field = cached.genericField("hospital_basicInfo", "QueryInfo", "1");
+        long now = System.currentTimeMillis();
+        cache.put(key, field, new CacheEntry("old".getBytes(StandardCharsets.UTF_8), now + 60000, now - 1));
+
+        Assert.assertEquals("old", cached.query("hospital_basicInfo", "QueryInfo", "1"));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (connection.queries.get() == 0 || cache.get(key, field).needsRefresh(System.currentTimeMillis())) {
+            Assert.assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        Assert.assertEquals("r1", cached.query("hospital_basicInfo", "QueryInfo", "1"));
+        Assert.assertEquals(1, connection.queries.get());
+        //refresh策略下刷新时间为缓存时间的refreshAheadRatio
+        CacheEntry refreshed = cache.get(key, field);
+        Assert.assertTrue(refreshed.getRefreshAt() < refreshed.getExpireAt());
+    }
+
+    @Test(expected = Exception.class)
+    public void blankChainCode() throws Exception {
+        new FabricContractConnectCacheImpl(new CountingConnection(), new MapQueryCache(), "Jason", "mychannel").queryBytes("", "QueryRecord", "1");
+    }
+}
@@ -25,7 +25,7 @@ public class FabricContractConnectCacheProxyImplTest {
     public void genericKey() throws Throwable{
         FabricContractConnectCacheProxyImpl test = new FabricContractConnectCacheProxyImpl("test", "test", "test");
         String rs = test.genericKey("user", "mychannel","hospital_record");
-        Assert.assertEquals("usermychannelhospital_record", rs);
+        Assert.assertEquals("fc2:{9:mychannelhospital_record}4:user", rs);
     }
 
     @Test
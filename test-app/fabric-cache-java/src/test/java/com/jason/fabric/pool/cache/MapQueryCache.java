@@ -0,0 +1,39 @@
+package com.jason.fabric.pool.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测试用的内存缓存，记录get次数，过期条目按未命中处理
+ */
+class MapQueryCache implements QueryCache {
+    final AtomicInteger gets = new AtomicInteger();
+    private final Map<String, Map<String, CacheEntry>> hashes = new ConcurrentHashMap<>();
+
+    @Override
+    public CacheEntry get(String key, String field) {
+        gets.incrementAndGet();
+        Map<String, CacheEntry> hash = hashes.get(key);
+        CacheEntry entry = hash == null ? null : hash.get(field);
+        return entry == null || entry.isExpired(System.currentTimeMillis()) ? null : entry;
+    }
+
+    @Override
+    public void put(String key, String field, CacheEntry entry) {
+        hashes.computeIfAbsent(key, k -> new ConcurrentHashMap<>()).put(field, entry);
+    }
+
+    @Override
+    public void delete(String key) {
+        hashes.remove(key);
+    }
+
+    @Override
+    public void delete(String key, String field) {
+        Map<String, CacheEntry> hash = hashes.get(key);
+        if (hash != null) {
+            hash.remove(field);
+        }
+    }
+}
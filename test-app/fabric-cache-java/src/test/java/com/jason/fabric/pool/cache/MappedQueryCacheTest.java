@@ -0,0 +1,120 @@
+package com.jason.fabric.pool.cache;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedQueryCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static CacheEntry entry(String value) {
+        return CacheEntry.of(bytes(value), 60000);
+    }
+
+    /**
+     * 重新打开文件后保留未过期的条目，删除和过期的条目不恢复
+     */
+    @Test
+    public void survivesRestart() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("cache/fabric-cache.dat");
+        MappedQueryCache cache = new MappedQueryCache(file, 64 * 1024);
+        cache.put("k1", "f1", entry("v1"));
+        cache.put("k1", "f2", entry("v2"));
+        cache.put("k2", "f1", entry("v3"));
+        cache.put("k2", "f2", CacheEntry.of(bytes("expired"), -1));
+        cache.put("k1", "f1", entry("v1'"));
+        cache.delete("k1", "f2");
+        cache.put("k3", "f1", entry("gone"));
+        cache.delete("k3");
+        cache.close();
+
+        MappedQueryCache reopened = new MappedQueryCache(file, 64 * 1024);
+        Assert.assertArrayEquals(bytes("v1'"), reopened.get("k1", "f1").getValue());
+        Assert.assertNull(reopened.get("k1", "f2"));
+        Assert.assertArrayEquals(bytes("v3"), reopened.get("k2", "f1").getValue());
+        Assert.assertNull(reopened.get("k2", "f2"));
+        Assert.assertNull(reopened.get("k3", "f1"));
+        Assert.assertEquals(2, reopened.restored().size());
+    }
+
+    /**
+     * 写满时压缩，仍有效的条目保留
+     */
+    @Test
+    public void compactsWhenFull() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("fabric-cache.dat");
+        MappedQueryCache cache = new MappedQueryCache(file, 4096);
+        cache.put("k", "live", entry("kept"));
+        for (int i = 0; i < 200; i++) {
+            cache.put("k", "hot", entry("value" + i));
+        }
+        Assert.assertArrayEquals(bytes("kept"), cache.get("k", "live").getValue());
+        Assert.assertArrayEquals(bytes("value199"), cache.get("k", "hot").getValue());
+        Assert.assertEquals(2, cache.size());
+        Assert.assertTrue(cache.usedBytes() < 4096);
+        cache.close();
+        Assert.assertFalse(Files.exists(file.resolveSibling("fabric-cache.dat.compact")));
+
+        MappedQueryCache reopened = new MappedQueryCache(file, 4096);
+        Assert.assertArrayEquals(bytes("value199"), reopened.get("k", "hot").getValue());
+        Assert.assertEquals(2, reopened.size());
+    }
+
+    /**
+     * 末尾写坏的记录被丢弃，之前的条目正常恢复
+     */
+    @Test
+    public void truncatesCorruptTail() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("fabric-cache.dat");
+        MappedQueryCache cache = new MappedQueryCache(file, 4096);
+        cache.put("k", "f1", entry("v1"));
+        int end = cache.usedBytes();
+        cache.put("k", "f2", entry("v2"));
+        cache.close();
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(end + 12);
+            raf.write(0x7f);
+        }
+
+        MappedQueryCache reopened = new MappedQueryCache(file, 4096);
+        Assert.assertArrayEquals(bytes("v1"), reopened.get("k", "f1").getValue());
+        Assert.assertNull(reopened.get("k", "f2"));
+        reopened.put("k", "f3", entry("v3"));
+        reopened.close();
+        Assert.assertArrayEquals(bytes("v3"), new MappedQueryCache(file, 4096).get("k", "f3").getValue());
+    }
+
+    /**
+     * 同一文件不能同时被两个实例打开，关闭后释放文件锁，关闭的实例不再读写
+     */
+    @Test
+    public void lockedWhileOpen() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("fabric-cache.dat");
+        MappedQueryCache cache = new MappedQueryCache(file, 4096);
+        cache.put("k", "f", entry("v"));
+        try {
+            new MappedQueryCache(file, 4096);
+            Assert.fail();
+        } catch (IOException expected) {
+        }
+        cache.close();
+        cache.put("k", "f", entry("ignored"));
+        Assert.assertNull(cache.get("k", "f"));
+
+        try (MappedQueryCache reopened = new MappedQueryCache(file, 4096)) {
+            Assert.assertArrayEquals(bytes("v"), reopened.get("k", "f").getValue());
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.jason.fabric.pool.cache;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MemoryQueryCacheTest {
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 按条目的过期时间清除，删除key清除其下所有条目
+     */
+    @Test
+    public void expireAndDeleteKey() {
+        MemoryQueryCache cache = new MemoryQueryCache(100);
+        cache.put("k1", "f1", CacheEntry.of(bytes("v1"), 60000));
+        cache.put("k1", "f2", CacheEntry.of(bytes("v2"), 60000));
+        cache.put("k2", "f1", CacheEntry.of(bytes("v3"), 60000));
+        cache.put("k2", "f2", CacheEntry.of(bytes("expired"), -1));
+
+        Assert.assertNull(cache.get("k2", "f2"));
+        cache.delete("k1");
+        Assert.assertNull(cache.get("k1", "f1"));
+        Assert.assertNull(cache.get("k1", "f2"));
+        Assert.assertArrayEquals(bytes("v3"), cache.get("k2", "f1").getValue());
+    }
+}
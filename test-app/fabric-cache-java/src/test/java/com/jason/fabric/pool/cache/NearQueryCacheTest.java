@@ -0,0 +1,133 @@
+package com.jason.fabric.pool.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class NearQueryCacheTest {
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static CacheEntry entry(String value) {
+        return CacheEntry.of(bytes(value), 60000);
+    }
+
+    /**
+     * 订阅成功后命中一级缓存，不再访问二级缓存
+     */
+    @Test
+    public void servedFromNearCache() {
+        MapQueryCache redis = new MapQueryCache();
+        NearQueryCache cache = new NearQueryCache(redis, 100, 60000, "test");
+        cache.onSubscribed();
+        redis.put("k", "f", entry("v1"));
+
+        Assert.assertArrayEquals(bytes("v1"), cache.get("k", "f").getValue());
+        Assert.assertArrayEquals(bytes("v1"), cache.get("k", "f").getValue());
+        Assert.assertEquals(1, redis.gets.get());
+    }
+
+    /**
+     * 批量读取时一级缓存命中的条目不再访问二级缓存
+     */
+    @Test
+    public void getAllReadsBackendForMissesOnly() {
+        MapQueryCache redis = new MapQueryCache();
+        NearQueryCache cache = new NearQueryCache(redis, 100, 60000, "test");
+        cache.onSubscribed();
+        cache.put("k", "f1", entry("v1"));
+        redis.put("k", "f2", entry("v2"));
+
+        List<CacheEntry> entries = cache.getAll(Arrays.asList(new CacheField("k", "f1"), new CacheField("k", "f2"), new CacheField("k", "f3")));
+        Assert.assertArrayEquals(bytes("v1"), entries.get(0).getValue());
+        Assert.assertArrayEquals(bytes("v2"), entries.get(1).getValue());
+        Assert.assertNull(entries.get(2));
+        Assert.assertEquals(2, redis.gets.get());
+        Assert.assertArrayEquals(bytes("v2"), cache.get("k", "f2").getValue());
+        Assert.assertEquals(2, redis.gets.get());
+    }
+
+    /**
+     * 未订阅时不使用一级缓存
+     */
+    @Test
+    public void bypassedWhenNotSubscribed() {
+        MapQueryCache redis = new MapQueryCache();
+        NearQueryCache cache = new NearQueryCache(redis, 100, 60000, "test");
+        cache.put("k", "f", entry("v1"));
+
+        cache.get("k", "f");
+        cache.get("k", "f");
+        Assert.assertEquals(2, redis.gets.get());
+        Assert.assertEquals(0, cache.nearSize());
+    }
+
+    /**
+     * 其他节点的失效消息只清除对应key，本节点发出的消息忽略
+     */
+    @Test
+    public void remoteInvalidation() {
+        MapQueryCache redis = new MapQueryCache();
+        NearQueryCache cache = new NearQueryCache(redis, 100, 60000, "test");
+        cache.onSubscribed();
+        cache.put("k1", "f", entry("old"));
+        cache.put("k2", "f", entry("other"));
+        redis.put("k1", "f", entry("new"));
+
+        cache.onInvalidation("another-node|2:k1");
+        Assert.assertArrayEquals(bytes("new"), cache.get("k1", "f").getValue());
+        Assert.assertArrayEquals(bytes("other"), cache.get("k2", "f").getValue());
+        Assert.assertEquals(1, redis.gets.get());
+    }
+
+    /**
+     * 带field的失效消息只清除单个条目
+     */
+    @Test
+    public void remoteFieldInvalidation() {
+        MapQueryCache redis = new MapQueryCache();
+        NearQueryCache cache = new NearQueryCache(redis, 100, 60000, "test");
+        cache.onSubscribed();
+        cache.put("k", "f1", entry("old"));
+        cache.put("k", "f2", entry("other"));
+        redis.put("k", "f1", entry("new"));
+
+        cache.onInvalidation("another-node|" + new CacheField("k", "f1").encode());
+        Assert.assertArrayEquals(bytes("new"), cache.get("k", "f1").getValue());
+        Assert.assertArrayEquals(bytes("other"), cache.get("k", "f2").getValue());
+        Assert.assertEquals(1, redis.gets.get());
+    }
+
+    /**
+     * 一级缓存中的条目按二级缓存的过期时间失效
+     */
+    @Test
+    public void expiredEntryNotServed() {
+        MapQueryCache redis = new MapQueryCache();
+        NearQueryCache cache = new NearQueryCache(redis, 100, 60000, "test");
+        cache.onSubscribed();
+        cache.put("k", "f", new CacheEntry(bytes("v1"), System.currentTimeMillis() - 1));
+
+        Assert.assertNull(cache.get("k", "f"));
+        Assert.assertEquals(1, redis.gets.get());
+    }
+
+    @Test
+    public void entryEncoding() {
+        CacheEntry entry = new CacheEntry(bytes("{\"a\":1}"), 1234567890123L);
+        CacheEntry decoded = CacheEntry.decode(entry.encode());
+        Assert.assertArrayEquals(entry.getValue(), decoded.getValue());
+        Assert.assertEquals(1234567890123L, decoded.getExpireAt());
+        Assert.assertEquals(1234567890123L, decoded.getRefreshAt());
+        CacheEntry refreshing = CacheEntry.decode(new CacheEntry(bytes("v"), 2000, 1000).encode());
+        Assert.assertEquals(1000, refreshing.getRefreshAt());
+        Assert.assertTrue(refreshing.needsRefresh(1500) && !refreshing.isExpired(1500));
+        //旧版本直接写入的查询结果按未命中处理
+        Assert.assertNull(CacheEntry.decode(bytes("{\"a\":1}")));
+    }
+}
@@ -0,0 +1,78 @@
+package com.jason.fabric.pool.cache;
+
+import java.io.IOException;
+
+import com.jason.fabric.pool.utils.MiniRedisServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RedisMissLockTest {
+    private final CacheField field = new CacheField("Jason|mychannel|hospital_recordInfo", "QueryRecord|1");
+    private MiniRedisServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = MiniRedisServer.start();
+        server.connectRedisUtil();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        MiniRedisServer.reconnectRedisUtil();
+        server.close();
+    }
+
+    /**
+     * 锁被持有时获取失败；只有持有者的凭证能释放
+     */
+    @Test
+    public void acquireAndRelease() {
+        RedisMissLock lock = new RedisMissLock(60000);
+        String token = lock.tryAcquire(field);
+        Assert.assertNotNull(token);
+        Assert.assertFalse(token.isEmpty());
+        Assert.assertNull(lock.tryAcquire(field));
+        Assert.assertNotNull(lock.tryAcquire(new CacheField(field.getKey(), "QueryRecord|2")));
+
+        lock.release(field, "other");
+        Assert.assertNull(lock.tryAcquire(field));
+        lock.release(field, token);
+        Assert.assertNotNull(lock.tryAcquire(field));
+    }
+
+    /**
+     * 租约到期后其他进程可以获取，原持有者的释放不删除新的锁
+     */
+    @Test
+    public void expiredLeaseTakenOver() throws InterruptedException {
+        RedisMissLock lock = new RedisMissLock(50);
+        String expired = lock.tryAcquire(field);
+        Assert.assertNotNull(expired);
+        String token = null;
+        long deadline = System.currentTimeMillis() + 5000;
+        while (token == null) {
+            Assert.assertTrue("lease not expired", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+            token = new RedisMissLock(60000).tryAcquire(field);
+        }
+        Assert.assertNotEquals(expired, token);
+
+        lock.release(field, expired);
+        Assert.assertNull(lock.tryAcquire(field));
+    }
+
+    /**
+     * redis不可用时按获取成功处理，返回的空凭证释放时忽略
+     */
+    @Test
+    public void redisUnavailable() throws IOException {
+        server.close();
+        RedisMissLock lock = new RedisMissLock(60000);
+        String token = lock.tryAcquire(field);
+        Assert.assertEquals("", token);
+        lock.release(field, token);
+        lock.release(field, null);
+    }
+}
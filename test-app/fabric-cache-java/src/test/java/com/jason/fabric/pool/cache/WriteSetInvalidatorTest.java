@@ -0,0 +1,134 @@
+package com.jason.fabric.pool.cache;
+
+import java.util.Collections;
+import java.util.concurrent.CompletionException;
+
+import com.jason.fabric.pool.impl.FabricContractConnectCacheImpl;
+import org.hyperledger.fabric.gateway.ContractException;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class WriteSetInvalidatorTest {
+    private static final String CHAINCODE = "hospital_recordInfo";   //测试配置中cacheKeyArg为0
+
+    /**
+     * 一个用户写入账本key后，所有用户依赖该key的缓存失效，依赖其他key的缓存保留
+     */
+    @Test
+    public void invalidatedAcrossUsers() throws Exception {
+        MapQueryCache cache = new MapQueryCache();
+        WriteSetInvalidator invalidator = new WriteSetInvalidator(cache, new MemoryLedgerKeyIndex(60000));
+        CountingConnection peer = new CountingConnection();
+        FabricContractConnectCacheImpl jason = new FabricContractConnectCacheImpl(peer, cache, invalidator, "Jason", "mychannel");
+        FabricContractConnectCacheImpl admin = new FabricContractConnectCacheImpl(peer, cache, invalidator, "Admin", "mychannel");
+
+        jason.query(CHAINCODE, "QueryRecord", "1");
+        admin.query(CHAINCODE, "QueryRecord", "1");
+        admin.query(CHAINCODE, "QueryRecord", "2");
+        Assert.assertEquals(3, peer.queries.get());
+
+        jason.invoke(CHAINCODE, "Save", "1");
+        Assert.assertEquals("r4", jason.query(CHAINCODE, "QueryRecord", "1"));
+        Assert.assertEquals("r5", admin.query(CHAINCODE, "QueryRecord", "1"));
+        Assert.assertEquals("r3", admin.query(CHAINCODE, "QueryRecord", "2"));
+        Assert.assertEquals(5, peer.queries.get());
+    }
+
+    /**
+     * 区块中其他客户端写入的key同样使缓存失效
+     */
+    @Test
+    public void invalidatedByWriteSet() throws Exception {
+        MapQueryCache cache = new MapQueryCache();
+        WriteSetInvalidator invalidator = new WriteSetInvalidator(cache, new MemoryLedgerKeyIndex(60000));
+        CountingConnection peer = new CountingConnection();
+        FabricContractConnectCacheImpl jason = new FabricContractConnectCacheImpl(peer, cache, invalidator, "Jason", "mychannel");
+
+        jason.query(CHAINCODE, "QueryRecord", "1");
+        Assert.assertEquals(1, invalidator.invalidate("mychannel", CHAINCODE, Collections.singleton("1")));
+        Assert.assertEquals("r2", jason.query(CHAINCODE, "QueryRecord", "1"));
+        Assert.assertEquals(0, invalidator.invalidate("othchannel", CHAINCODE, Collections.singleton("1")));
+    }
+
+    /**
+     * 查询peer期间依赖的key被写入，读到的可能是旧值，不保留在缓存中
+     */
+    @Test
+    public void writeDuringQueryNotCached() throws Exception {
+        MapQueryCache cache = new MapQueryCache();
+        WriteSetInvalidator invalidator = new WriteSetInvalidator(cache, new MemoryLedgerKeyIndex(60000));
+        CountingConnection peer = new CountingConnection();
+        FabricContractConnectCacheImpl jason = new FabricContractConnectCacheImpl(peer, cache, invalidator, "Jason", "mychannel");
+
+        peer.onQuery = () -> invalidator.invalidate("mychannel", CHAINCODE, Collections.singleton("1"));
+        jason.query(CHAINCODE, "QueryRecord", "1");
+        peer.onQuery = () -> { };
+        Assert.assertEquals("r2", jason.query(CHAINCODE, "QueryRecord", "1"));
+        Assert.assertEquals("r2", jason.query(CHAINCODE, "QueryRecord", "1"));
+    }
+
+    /**
+     * 查询失败的结果短时间缓存，写入该账本key后失效
+     */
+    @Test
+    public void negativeResultCached() throws Exception {
+        MapQueryCache cache = new MapQueryCache();
+        WriteSetInvalidator invalidator = new WriteSetInvalidator(cache, new MemoryLedgerKeyIndex(60000));
+        CountingConnection peer = new CountingConnection();
+        FabricContractConnectCacheImpl jason = new FabricContractConnectCacheImpl(peer, cache, invalidator, "Jason", "mychannel");
+        peer.failure = CountingConnection.chaincodeError("record 404 does not exist");
+
+        for (int i = 0; i < 3; i++) {
+            try {
+                jason.query(CHAINCODE, "QueryRecord", "404");
+                Assert.fail();
+            } catch (ContractException e) {
+                Assert.assertEquals("record 404 does not exist", e.getMessage());
+                Assert.assertEquals(i > 0, e instanceof CachedContractException);
+            }
+        }
+        try {
+            jason.queryAsync(CHAINCODE, "QueryRecord", "404").join();
+            Assert.fail();
+        } catch (CompletionException e) {
+            Assert.assertEquals(ContractException.class.getName(), ((CachedContractException) e.getCause()).getErrorClass());
+        }
+        Assert.assertEquals(1, peer.queries.get());
+
+        peer.failure = null;
+        jason.invoke(CHAINCODE, "Save", "404");
+        Assert.assertEquals("r2", jason.query(CHAINCODE, "QueryRecord", "404"));
+    }
+
+    /**
+     * 所有peer都不可达时的错误不是chaincode返回的，不缓存，peer恢复后立即查询
+     */
+    @Test
+    public void peerOutageNotCached() throws Exception {
+        MapQueryCache cache = new MapQueryCache();
+        CountingConnection peer = new CountingConnection();
+        FabricContractConnectCacheImpl jason = new FabricContractConnectCacheImpl(peer, cache, "Jason", "mychannel");
+        peer.failure = CountingConnection.peersDown();
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                jason.query(CHAINCODE, "QueryRecord", "405");
+                Assert.fail();
+            } catch (ContractException e) {
+                Assert.assertFalse(e instanceof CachedContractException);
+            }
+        }
+        Assert.assertEquals(2, peer.queries.get());
+
+        peer.failure = null;
+        Assert.assertEquals("r3", jason.query(CHAINCODE, "QueryRecord", "405"));
+    }
+
+    @Test
+    public void fieldEncoding() {
+        CacheField field = new CacheField("Jason:mychannel", "QueryRecord1:2");
+        Assert.assertEquals(field, CacheField.decode(field.encode()));
+        Assert.assertEquals(new CacheField("ab", "c"), CacheField.decode(new CacheField("ab", "c").encode()));
+        Assert.assertNotEquals(new CacheField("ab", "c").encode(), new CacheField("a", "bc").encode());
+    }
+}
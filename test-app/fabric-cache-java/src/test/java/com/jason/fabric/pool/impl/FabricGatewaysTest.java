@@ -0,0 +1,100 @@
+package com.jason.fabric.pool.impl;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hyperledger.fabric.gateway.Gateway;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FabricGatewaysTest {
+
+    /**
+     * 只记录close次数的Gateway
+     */
+    private static Gateway gateway(AtomicInteger closed) {
+        return (Gateway) Proxy.newProxyInstance(Gateway.class.getClassLoader(), new Class<?>[]{Gateway.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("close")) {
+                        closed.incrementAndGet();
+                    }
+                    return method.getName().equals("hashCode") ? System.identityHashCode(proxy) : null;
+                });
+    }
+
+    /**
+     * 一个身份建立Gateway期间，其他身份的acquire和release不被阻塞；同一身份的调用方共享同一次建立
+     */
+    @Test
+    public void slowConnectDoesNotBlockOthers() throws Exception {
+        CountDownLatch connecting = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        AtomicInteger connects = new AtomicInteger();
+        AtomicInteger closed = new AtomicInteger();
+        FabricGateways gateways = new FabricGateways(userName -> {
+            connects.incrementAndGet();
+            if (userName.equals("slow")) {
+                connecting.countDown();
+                try {
+                    proceed.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            return gateway(closed);
+        });
+        CompletableFuture<Gateway> first = CompletableFuture.supplyAsync(() -> acquire(gateways, "slow"));
+        Assert.assertTrue(connecting.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Gateway> second = CompletableFuture.supplyAsync(() -> acquire(gateways, "slow"));
+
+        Gateway fast = gateways.acquire("fast");
+        gateways.release("fast");
+        Assert.assertEquals(1, closed.get());
+        Assert.assertFalse(first.isDone());
+
+        proceed.countDown();
+        Assert.assertSame(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+        Assert.assertNotSame(fast, first.get());
+        Assert.assertEquals(2, connects.get());
+        gateways.release("slow");
+        Assert.assertEquals(1, gateways.size());
+        gateways.release("slow");
+        Assert.assertEquals(0, gateways.size());
+        Assert.assertEquals(2, closed.get());
+    }
+
+    /**
+     * 建立失败时抛出异常且不保留，下次acquire重新建立
+     */
+    @Test
+    public void failedConnectRetried() throws Exception {
+        AtomicInteger connects = new AtomicInteger();
+        FabricGateways gateways = new FabricGateways(userName -> {
+            if (connects.incrementAndGet() == 1) {
+                throw new IOException("peer unreachable");
+            }
+            return gateway(new AtomicInteger());
+        });
+        try {
+            gateways.acquire("test");
+            Assert.fail();
+        } catch (IOException expected) {
+            Assert.assertEquals("peer unreachable", expected.getMessage());
+        }
+        Assert.assertEquals(0, gateways.size());
+        Assert.assertNotNull(gateways.acquire("test"));
+        Assert.assertEquals(2, connects.get());
+    }
+
+    private static Gateway acquire(FabricGateways gateways, String userName) {
+        try {
+            return gateways.acquire(userName);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.jason.fabric.pool.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BinarySerializerTest {
+
+    @Test
+    public void roundTrip() {
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("key", "record1");
+        record.put("name", "病人");
+        record.put("age", 42);
+        record.put("time", Long.MIN_VALUE);
+        record.put("score", -1.5);
+        record.put("closed", true);
+        record.put("notes", null);
+        record.put("raw", new byte[]{1, 2, 3});
+        record.put("tags", new LinkedHashSet<>(Arrays.asList("a", "b")));
+        List<Object> history = new ArrayList<>(Arrays.asList(record, "tail", Integer.MIN_VALUE));
+
+        byte[] bytes = SerializeUtil.serialize(history);
+        Assert.assertTrue(BinarySerializer.isBinary(bytes));
+        @SuppressWarnings("unchecked")
+        List<Object> decoded = (List<Object>) SerializeUtil.unSerialize(bytes);
+        Assert.assertEquals(3, decoded.size());
+        @SuppressWarnings("unchecked")
+        Map<String, Object> decodedRecord = (Map<String, Object>) decoded.get(0);
+        Assert.assertArrayEquals((byte[]) record.remove("raw"), (byte[]) decodedRecord.remove("raw"));
+        Assert.assertEquals(record, decodedRecord);
+        Assert.assertEquals(Arrays.asList(record.keySet().toArray()), Arrays.asList(decodedRecord.keySet().toArray()));
+        Assert.assertEquals(Integer.MIN_VALUE, decoded.get(2));
+    }
+
+    /**
+     * 不支持的类型使用java序列化，java序列化的数据仍可反序列化
+     */
+    @Test
+    public void fallbackToJavaSerialization() {
+        HashMap<String, Object> map = new HashMap<>();
+        map.put("date", new java.util.Date(0));
+        byte[] bytes = SerializeUtil.serialize(map);
+        Assert.assertFalse(BinarySerializer.isBinary(bytes));
+        Assert.assertEquals(map, SerializeUtil.unSerialize(bytes));
+
+        byte[] binary = SerializeUtil.serialize("result");
+        Assert.assertTrue(binary.length < 10);
+        Assert.assertNull(SerializeUtil.unSerialize(Arrays.copyOf(binary, binary.length - 1)));
+    }
+
+    /**
+     * 其他集合类使用java序列化，反序列化后类型不变
+     */
+    @Test
+    public void otherCollectionsKeepType() {
+        TreeMap<String, Integer> sorted = new TreeMap<>();
+        sorted.put("b", 2);
+        sorted.put("a", 1);
+        HashMap<String, Object> hashed = new HashMap<>(sorted);
+        List<Object> values = Arrays.asList(sorted, hashed, new LinkedList<>(Arrays.asList(1, 2)), new TreeSet<>(Arrays.asList("y", "x")),
+                Arrays.asList("fixed"), new ArrayList<>(Collections.singletonList(sorted)));
+        for (Object value : values) {
+            byte[] bytes = SerializeUtil.serialize(value);
+            Assert.assertFalse(value.getClass().getName(), BinarySerializer.isBinary(bytes));
+            Object decoded = SerializeUtil.unSerialize(bytes);
+            Assert.assertEquals(value.getClass(), decoded.getClass());
+            Assert.assertEquals(value, decoded);
+        }
+        Assert.assertEquals(TreeMap.class, ((List<?>) SerializeUtil.unSerialize(SerializeUtil.serialize(values.get(5)))).get(0).getClass());
+    }
+}
@@ -0,0 +1,114 @@
+package com.jason.fabric.pool.utils;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CircuitBreakerTest {
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(200);
+
+    /**
+     * 失败率达到阈值后打开，打开期间拒绝调用
+     */
+    @Test
+    public void opensOnFailureRate() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 10, 10, 50, 90, 100, 60000, 1);
+        for (int i = 0; i < 5; i++) {
+            Assert.assertTrue(breaker.tryAcquire());
+            breaker.onSuccess(FAST);
+            Assert.assertTrue(breaker.tryAcquire());
+            breaker.onFailure();
+        }
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Assert.assertFalse(breaker.tryAcquire());
+        Assert.assertEquals(1, breaker.getOpenCount());
+        Assert.assertEquals(1, breaker.getRejectedCount());
+    }
+
+    /**
+     * 分位延迟超过阈值后打开，窗口内的旧结果被覆盖
+     */
+    @Test
+    public void opensOnLatencyPercentile() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 10, 10, 50, 90, 100, 60000, 1);
+        for (int i = 0; i < 20; i++) {
+            breaker.tryAcquire();
+            breaker.onSuccess(i % 10 == 0 ? SLOW : FAST);
+        }
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        Assert.assertEquals(10, breaker.getSlowRate());
+        breaker.tryAcquire();
+        breaker.onSuccess(SLOW);
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.tryAcquire();
+        breaker.onSuccess(SLOW);
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    /**
+     * 打开时间过后半开，探测全部成功时关闭，探测失败时重新打开
+     */
+    @Test
+    public void halfOpenProbes() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker("test", 4, 2, 50, 90, 100, 20, 2);
+        breaker.tryAcquire();
+        breaker.onFailure();
+        breaker.tryAcquire();
+        breaker.onFailure();
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Thread.sleep(30);
+        Assert.assertTrue(breaker.tryAcquire());
+        Assert.assertTrue(breaker.tryAcquire());
+        Assert.assertFalse(breaker.tryAcquire());
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        breaker.onSuccess(FAST);
+        breaker.onFailure();
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Thread.sleep(30);
+        breaker.tryAcquire();
+        breaker.tryAcquire();
+        breaker.onSuccess(FAST);
+        breaker.onSuccess(FAST);
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        Assert.assertEquals(0, breaker.getFailureRate());
+    }
+
+    /**
+     * 关闭状态下并发记录不加锁，并发写入结束后窗口内的计数与结果一致
+     */
+    @Test
+    public void concurrentRecordsInClosedState() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker("test", 1000, 1000, 50, 90, 100, 60000, 1);
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 20000; i++) {
+                    breaker.tryAcquire();
+                    if (i % 10 == 0) {
+                        breaker.onFailure();
+                    } else {
+                        breaker.onSuccess(FAST);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        Assert.assertTrue(String.valueOf(breaker.getFailureRate()), breaker.getFailureRate() < 50);
+        for (int i = 0; i < 1000; i++) {
+            breaker.tryAcquire();
+            breaker.onSuccess(FAST);
+        }
+        Assert.assertEquals(0, breaker.getFailureRate());
+        for (int i = 0; i < 500; i++) {
+            breaker.tryAcquire();
+            breaker.onFailure();
+        }
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+}
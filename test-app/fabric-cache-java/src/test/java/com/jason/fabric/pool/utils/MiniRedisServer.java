@@ -0,0 +1,674 @@
+package com.jason.fabric.pool.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.jason.fabric.pool.conf.Global;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.util.JedisClusterCRC16;
+
+/**
+ * 进程内的redis替身，只实现RedisUtil用到的少量命令，测试和基准测试(以test-jar引用)覆盖jedis连接池和RESP编解码而不依赖外部redis
+ * 另外模拟集群的槽位迁移和哨兵，用于测试RedisUtil的路由
+ * setOwner后按key操作的命令返回MOVED，CLUSTER SLOTS返回所有槽位属于owner；setMaster后作为哨兵返回主节点地址
+ * 支持：PING AUTH SELECT QUIT HGET HMGET HGETALL HLEN HSET HDEL DEL EXISTS EXPIRE FLUSHALL PUBLISH SUBSCRIBE UNSUBSCRIBE
+ * ZADD ZREM ZRANGEBYSCORE(min max [LIMIT offset count]，不支持开区间和WITHSCORES) SADD SISMEMBER SPOP SMEMBERS PEXPIRE
+ * CLUSTER SLOTS, SENTINEL get-master-addr-by-name
+ * SET(只支持NX和PX) GET EVAL(只支持比较值后删除key的脚本，即RedisMissLock的释放脚本)
+ */
+public final class MiniRedisServer {
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private static volatile MiniRedisServer instance;
+
+    private static final Set<String> KEYED = new HashSet<>(Arrays.asList("GET", "SET", "HGET", "HMGET", "HGETALL", "HLEN", "HSET", "HDEL", "DEL", "EXISTS",
+            "EXPIRE", "PEXPIRE", "SADD", "SISMEMBER", "SPOP", "SMEMBERS", "ZADD", "ZREM", "ZRANGEBYSCORE"));
+
+    //key和field按ISO-8859-1转成字符串，字节与字符一一对应
+    private final Map<String, Map<String, byte[]>> hashes = new ConcurrentHashMap<>();
+    private final Map<String, byte[]> strings = new ConcurrentHashMap<>();
+    private final Map<String, Long> expireAt = new ConcurrentHashMap<>();  //设置了PX的字符串key的过期时间
+    private final Map<String, Map<String, Double>> sortedSets = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> sets = new ConcurrentHashMap<>();
+    private final Map<String, Set<OutputStream>> subscribers = new ConcurrentHashMap<>();
+    private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+    //accept返回后登记客户端与close互斥，close返回后不会再有客户端收到应答
+    private final ReentrantLock clientsLock = new ReentrantLock();
+    private final ServerSocket serverSocket;
+    private boolean closed;
+    private volatile MiniRedisServer owner = this;      //集群中拥有所有槽位的节点
+    private volatile MiniRedisServer master;            //作为哨兵时监控的主节点
+
+    private MiniRedisServer(int port) throws IOException {
+        serverSocket = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::accept, "mini-redis-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * 在随机端口启动
+     */
+    public static MiniRedisServer start() throws IOException {
+        return new MiniRedisServer(0);
+    }
+
+    /**
+     * 在指定端口启动，同一JVM中只启动一次，基准测试的各个fork按配置的cachePort连接
+     */
+    public static MiniRedisServer startOnce(int port) throws IOException {
+        if (instance == null) {
+            synchronized (MiniRedisServer.class) {
+                if (instance == null) {
+                    instance = new MiniRedisServer(port);
+                }
+            }
+        }
+        return instance;
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public String getAddress() {
+        return "127.0.0.1:" + getPort();
+    }
+
+    public void setOwner(MiniRedisServer owner) {
+        this.owner = owner;
+    }
+
+    public void setMaster(MiniRedisServer master) {
+        this.master = master;
+    }
+
+    public Map<String, byte[]> hash(String key) {
+        return hashes.get(key);
+    }
+
+    /**
+     * 停止监听并断开所有客户端
+     */
+    public void close() throws IOException {
+        clientsLock.lock();
+        try {
+            closed = true;
+            serverSocket.close();
+            dropClients();
+        } finally {
+            clientsLock.unlock();
+        }
+    }
+
+    /**
+     * 断开所有客户端，继续接受新连接
+     */
+    public void dropClients() throws IOException {
+        clientsLock.lock();
+        try {
+            for (Socket client : clients) {
+                client.close();
+            }
+        } finally {
+            clientsLock.unlock();
+        }
+    }
+
+    /**
+     * 让RedisUtil以单节点模式连接本服务，供其他包的测试使用，结束后调用reconnectRedisUtil恢复
+     */
+    public void connectRedisUtil() {
+        RedisUtil.connect(RedisMode.STANDALONE, Collections.singleton(HostAndPort.parseString(getAddress())));
+    }
+
+    /**
+     * 让RedisUtil重新连接配置中的cacheURL
+     */
+    public static void reconnectRedisUtil() {
+        Global global = Global.getInstance();
+        RedisUtil.connect(RedisMode.STANDALONE, Collections.singleton(new HostAndPort(global.getCacheURL(), Integer.parseInt(global.getCachePort()))));
+    }
+
+    public void flushAll() {
+        strings.clear();
+        expireAt.clear();
+        hashes.clear();
+        sortedSets.clear();
+        sets.clear();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                clientsLock.lock();
+                try {
+                    if (closed) {
+                        socket.close();
+                        return;
+                    }
+                    clients.add(socket);
+                } finally {
+                    clientsLock.unlock();
+                }
+                socket.setTcpNoDelay(true);
+                Thread client = new Thread(() -> serve(socket), "mini-redis-client");
+                client.setDaemon(true);
+                client.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket;
+             InputStream in = new BufferedInputStream(s.getInputStream());
+             OutputStream out = new BufferedOutputStream(s.getOutputStream())) {
+            try {
+                while (true) {
+                    List<byte[]> command = readCommand(in);
+                    if (command == null) {
+                        return;
+                    }
+                    //订阅连接上的消息由发布者线程写出，应答与消息不能交错
+                    synchronized (out) {
+                        boolean quit = execute(command, out);
+                        //jedis逐条发送并等待应答，没有后续输入时再刷出，兼容pipeline
+                        if (quit || in.available() == 0) {
+                            out.flush();
+                        }
+                        if (quit) {
+                            return;
+                        }
+                    }
+                }
+            } finally {
+                clients.remove(socket);
+                for (Set<OutputStream> outs : subscribers.values()) {
+                    outs.remove(out);
+                }
+            }
+        } catch (IOException e) {
+            //客户端断开
+        }
+    }
+
+    private boolean execute(List<byte[]> command, OutputStream out) throws IOException {
+        String name = new String(command.get(0), StandardCharsets.ISO_8859_1).toUpperCase();
+        MiniRedisServer slotOwner = owner;
+        if (slotOwner != this && KEYED.contains(name)) {
+            error(out, "MOVED " + JedisClusterCRC16.getSlot(command.get(1)) + " 127.0.0.1:" + slotOwner.getPort());
+            return false;
+        }
+        switch (name) {
+            case "PING":
+                simple(out, "PONG");
+                break;
+            case "AUTH":
+            case "SELECT":
+                simple(out, "OK");
+                break;
+            case "QUIT":
+                simple(out, "OK");
+                return true;
+            case "GET":
+                bulk(out, string(key(command, 1)));
+                break;
+            case "SET":
+                set(command, out);
+                break;
+            case "EVAL":
+                //EVAL script 1 key value
+                integer(out, compareAndDelete(key(command, 3), command.get(4)) ? 1 : 0);
+                break;
+            case "HGET": {
+                Map<String, byte[]> hash = hashes.get(key(command, 1));
+                bulk(out, hash == null ? null : hash.get(key(command, 2)));
+                break;
+            }
+            case "HMGET": {
+                Map<String, byte[]> hash = hashes.get(key(command, 1));
+                List<byte[]> values = new ArrayList<>();
+                for (int i = 2; i < command.size(); i++) {
+                    values.add(hash == null ? null : hash.get(key(command, i)));
+                }
+                array(out, values);
+                break;
+            }
+            case "HGETALL": {
+                Map<String, byte[]> hash = hashes.get(key(command, 1));
+                List<byte[]> entries = new ArrayList<>();
+                if (hash != null) {
+                    for (Map.Entry<String, byte[]> entry : hash.entrySet()) {
+                        entries.add(entry.getKey().getBytes(StandardCharsets.ISO_8859_1));
+                        entries.add(entry.getValue());
+                    }
+                }
+                array(out, entries);
+                break;
+            }
+            case "HLEN": {
+                Map<String, byte[]> hash = hashes.get(key(command, 1));
+                integer(out, hash == null ? 0 : hash.size());
+                break;
+            }
+            case "HSET": {
+                Map<String, byte[]> hash = hashes.computeIfAbsent(key(command, 1), k -> new ConcurrentHashMap<>());
+                long added = 0;
+                for (int i = 2; i + 1 < command.size(); i += 2) {
+                    if (hash.put(key(command, i), command.get(i + 1)) == null) {
+                        added++;
+                    }
+                }
+                integer(out, added);
+                break;
+            }
+            case "HDEL": {
+                Map<String, byte[]> hash = hashes.get(key(command, 1));
+                long removed = 0;
+                for (int i = 2; hash != null && i < command.size(); i++) {
+                    if (hash.remove(key(command, i)) != null) {
+                        removed++;
+                    }
+                }
+                integer(out, removed);
+                break;
+            }
+            case "DEL": {
+                long removed = 0;
+                for (int i = 1; i < command.size(); i++) {
+                    expireAt.remove(key(command, i));
+                    if (hashes.remove(key(command, i)) != null | sets.remove(key(command, i)) != null
+                            | strings.remove(key(command, i)) != null) {
+                        removed++;
+                    }
+                }
+                integer(out, removed);
+                break;
+            }
+            case "EXISTS":
+                integer(out, hashes.containsKey(key(command, 1)) ? 1 : 0);
+                break;
+            case "EXPIRE":
+            case "PEXPIRE":
+                integer(out, hashes.containsKey(key(command, 1)) || sets.containsKey(key(command, 1)) ? 1 : 0);
+                break;
+            case "SADD": {
+                Set<String> set = sets.computeIfAbsent(key(command, 1), k -> ConcurrentHashMap.newKeySet());
+                long added = 0;
+                for (int i = 2; i < command.size(); i++) {
+                    if (set.add(key(command, i))) {
+                        added++;
+                    }
+                }
+                integer(out, added);
+                break;
+            }
+            case "SISMEMBER": {
+                Set<String> set = sets.get(key(command, 1));
+                integer(out, set != null && set.contains(key(command, 2)) ? 1 : 0);
+                break;
+            }
+            case "SPOP":
+                spop(command, out);
+                break;
+            case "SMEMBERS": {
+                Set<String> set = sets.get(key(command, 1));
+                List<byte[]> members = new ArrayList<>();
+                if (set != null) {
+                    for (String member : set) {
+                        members.add(member.getBytes(StandardCharsets.ISO_8859_1));
+                    }
+                }
+                array(out, members);
+                break;
+            }
+            case "PUBLISH":
+                integer(out, publish(key(command, 1), command.get(2)));
+                break;
+            case "SUBSCRIBE":
+                for (int i = 1; i < command.size(); i++) {
+                    subscribers.computeIfAbsent(key(command, i), k -> ConcurrentHashMap.newKeySet()).add(out);
+                    pubSubReply(out, "subscribe", command.get(i), i);
+                }
+                break;
+            case "UNSUBSCRIBE":
+                for (int i = 1; i < command.size(); i++) {
+                    Set<OutputStream> outs = subscribers.get(key(command, i));
+                    if (outs != null) {
+                        outs.remove(out);
+                    }
+                    pubSubReply(out, "unsubscribe", command.get(i), command.size() - 1 - i);
+                }
+                break;
+            case "ZADD": {
+                Map<String, Double> zset = sortedSets.computeIfAbsent(key(command, 1), k -> new ConcurrentHashMap<>());
+                long added = 0;
+                for (int i = 2; i + 1 < command.size(); i += 2) {
+                    if (zset.put(key(command, i + 1), Double.parseDouble(key(command, i))) == null) {
+                        added++;
+                    }
+                }
+                integer(out, added);
+                break;
+            }
+            case "ZREM": {
+                Map<String, Double> zset = sortedSets.get(key(command, 1));
+                long removed = 0;
+                for (int i = 2; zset != null && i < command.size(); i++) {
+                    if (zset.remove(key(command, i)) != null) {
+                        removed++;
+                    }
+                }
+                integer(out, removed);
+                break;
+            }
+            case "ZRANGEBYSCORE":
+                zrangeByScore(command, out);
+                break;
+            case "FLUSHALL":
+            case "FLUSHDB":
+                strings.clear();
+                expireAt.clear();
+                hashes.clear();
+                sortedSets.clear();
+                sets.clear();
+                simple(out, "OK");
+                break;
+            case "CLUSTER":
+                //[[0, 16383, [host, port, id]]]
+                reply(out, Collections.singletonList(Arrays.asList(0L, 16383L, Arrays.asList(
+                        "127.0.0.1".getBytes(StandardCharsets.ISO_8859_1), (long) slotOwner.getPort(),
+                        Integer.toString(slotOwner.getPort()).getBytes(StandardCharsets.ISO_8859_1)))));
+                break;
+            case "SENTINEL": {
+                MiniRedisServer monitored = master;
+                if (monitored == null) {
+                    out.write("*-1".getBytes(StandardCharsets.ISO_8859_1));
+                    out.write(CRLF);
+                } else {
+                    array(out, Arrays.asList("127.0.0.1".getBytes(StandardCharsets.ISO_8859_1),
+                            Integer.toString(monitored.getPort()).getBytes(StandardCharsets.ISO_8859_1)));
+                }
+                break;
+            }
+            default:
+                error(out, "ERR unknown command '" + name + "'");
+        }
+        return false;
+    }
+
+    private void zrangeByScore(List<byte[]> command, OutputStream out) throws IOException {
+        Map<String, Double> zset = sortedSets.get(key(command, 1));
+        double min = score(key(command, 2));
+        double max = score(key(command, 3));
+        long offset = 0;
+        long count = Long.MAX_VALUE;
+        if (command.size() >= 7 && "LIMIT".equalsIgnoreCase(key(command, 4))) {
+            offset = Long.parseLong(key(command, 5));
+            count = Long.parseLong(key(command, 6));
+        }
+        List<Map.Entry<String, Double>> matched = new ArrayList<>();
+        if (zset != null) {
+            for (Map.Entry<String, Double> member : zset.entrySet()) {
+                if (member.getValue() >= min && member.getValue() <= max) {
+                    matched.add(member);
+                }
+            }
+        }
+        matched.sort(Map.Entry.comparingByValue());
+        List<byte[]> members = new ArrayList<>();
+        for (int i = (int) Math.min(offset, matched.size()); i < matched.size() && members.size() < count; i++) {
+            members.add(matched.get(i).getKey().getBytes(StandardCharsets.ISO_8859_1));
+        }
+        array(out, members);
+    }
+
+    /**
+     * 带count时返回数组，否则返回单个成员
+     */
+    private void spop(List<byte[]> command, OutputStream out) throws IOException {
+        Set<String> set = sets.get(key(command, 1));
+        long count = command.size() > 2 ? Long.parseLong(key(command, 2)) : 1;
+        List<byte[]> popped = new ArrayList<>();
+        if (set != null) {
+            for (Iterator<String> it = set.iterator(); it.hasNext() && popped.size() < count; ) {
+                String member = it.next();
+                if (set.remove(member)) {
+                    popped.add(member.getBytes(StandardCharsets.ISO_8859_1));
+                }
+            }
+            if (set.isEmpty()) {
+                sets.remove(key(command, 1), set);
+            }
+        }
+        if (command.size() > 2) {
+            array(out, popped);
+        } else {
+            bulk(out, popped.isEmpty() ? null : popped.get(0));
+        }
+    }
+
+    private static void array(OutputStream out, List<byte[]> members) throws IOException {
+        out.write(('*' + Integer.toString(members.size())).getBytes(StandardCharsets.ISO_8859_1));
+        out.write(CRLF);
+        for (byte[] member : members) {
+            bulk(out, member);
+        }
+    }
+
+    private static void reply(OutputStream out, Object value) throws IOException {
+        if (value instanceof Long) {
+            integer(out, (Long) value);
+        } else if (value instanceof byte[]) {
+            bulk(out, (byte[]) value);
+        } else {
+            List<?> values = (List<?>) value;
+            out.write(('*' + Integer.toString(values.size())).getBytes(StandardCharsets.ISO_8859_1));
+            out.write(CRLF);
+            for (Object element : values) {
+                reply(out, element);
+            }
+        }
+    }
+
+    private static void error(OutputStream out, String message) throws IOException {
+        out.write('-');
+        out.write(message.getBytes(StandardCharsets.ISO_8859_1));
+        out.write(CRLF);
+    }
+
+    private static double score(String value) {
+        if ("-inf".equalsIgnoreCase(value)) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        if ("+inf".equalsIgnoreCase(value) || "inf".equalsIgnoreCase(value)) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return Double.parseDouble(value);
+    }
+
+    private long publish(String channel, byte[] message) {
+        Set<OutputStream> outs = subscribers.get(channel);
+        if (outs == null) {
+            return 0;
+        }
+        long received = 0;
+        for (OutputStream subscriber : outs) {
+            synchronized (subscriber) {
+                try {
+                    subscriber.write("*3\r\n".getBytes(StandardCharsets.ISO_8859_1));
+                    bulk(subscriber, "message".getBytes(StandardCharsets.ISO_8859_1));
+                    bulk(subscriber, channel.getBytes(StandardCharsets.ISO_8859_1));
+                    bulk(subscriber, message);
+                    subscriber.flush();
+                    received++;
+                } catch (IOException e) {
+                    outs.remove(subscriber);
+                }
+            }
+        }
+        return received;
+    }
+
+    private static void pubSubReply(OutputStream out, String kind, byte[] channel, long count) throws IOException {
+        out.write("*3\r\n".getBytes(StandardCharsets.ISO_8859_1));
+        bulk(out, kind.getBytes(StandardCharsets.ISO_8859_1));
+        bulk(out, channel);
+        integer(out, count);
+    }
+
+    /**
+     * 读取字符串key，过期的key在读取时删除
+     */
+    private byte[] string(String key) {
+        Long at = expireAt.get(key);
+        if (at != null && at <= System.currentTimeMillis()) {
+            strings.remove(key);
+            expireAt.remove(key);
+            return null;
+        }
+        return strings.get(key);
+    }
+
+    /**
+     * SET key value [NX] [PX milliseconds]，NX时key已存在返回空
+     */
+    private synchronized void set(List<byte[]> command, OutputStream out) throws IOException {
+        String key = key(command, 1);
+        boolean nx = false;
+        long px = 0;
+        for (int i = 3; i < command.size(); i++) {
+            String option = key(command, i).toUpperCase();
+            if (option.equals("NX")) {
+                nx = true;
+            } else if (option.equals("PX")) {
+                px = Long.parseLong(key(command, ++i));
+            }
+        }
+        if (nx && string(key) != null) {
+            bulk(out, null);
+            return;
+        }
+        strings.put(key, command.get(2));
+        if (px > 0) {
+            expireAt.put(key, System.currentTimeMillis() + px);
+        } else {
+            expireAt.remove(key);
+        }
+        simple(out, "OK");
+    }
+
+    /**
+     * 值相同时删除，与SET NX互斥
+     */
+    private synchronized boolean compareAndDelete(String key, byte[] expected) {
+        byte[] value = string(key);
+        if (value == null || !Arrays.equals(value, expected)) {
+            return false;
+        }
+        strings.remove(key);
+        expireAt.remove(key);
+        return true;
+    }
+
+    private static String key(List<byte[]> command, int index) {
+        return new String(command.get(index), StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * 读取一条命令，客户端关闭时返回null；只支持客户端使用的数组+批量字符串格式
+     */
+    private static List<byte[]> readCommand(InputStream in) throws IOException {
+        int first = in.read();
+        if (first == -1) {
+            return null;
+        }
+        if (first != '*') {
+            throw new IOException("unsupported request type: " + (char) first);
+        }
+        int count = (int) readLong(in);
+        List<byte[]> args = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (in.read() != '$') {
+                throw new IOException("bulk string expected");
+            }
+            byte[] arg = new byte[(int) readLong(in)];
+            int offset = 0;
+            while (offset < arg.length) {
+                int n = in.read(arg, offset, arg.length - offset);
+                if (n == -1) {
+                    throw new EOFException();
+                }
+                offset += n;
+            }
+            in.read();
+            in.read();
+            args.add(arg);
+        }
+        return args;
+    }
+
+    private static long readLong(InputStream in) throws IOException {
+        long value = 0;
+        boolean negative = false;
+        int b;
+        while ((b = in.read()) != '\r') {
+            if (b == -1) {
+                throw new EOFException();
+            }
+            if (b == '-') {
+                negative = true;
+            } else {
+                value = value * 10 + (b - '0');
+            }
+        }
+        in.read();
+        return negative ? -value : value;
+    }
+
+    private static void simple(OutputStream out, String value) throws IOException {
+        out.write('+');
+        out.write(value.getBytes(StandardCharsets.ISO_8859_1));
+        out.write(CRLF);
+    }
+
+    private static void integer(OutputStream out, long value) throws IOException {
+        out.write(':');
+        out.write(Long.toString(value).getBytes(StandardCharsets.ISO_8859_1));
+        out.write(CRLF);
+    }
+
+    private static void bulk(OutputStream out, byte[] value) throws IOException {
+        if (value == null) {
+            out.write("$-1".getBytes(StandardCharsets.ISO_8859_1));
+            out.write(CRLF);
+            return;
+        }
+        out.write('$');
+        out.write(Integer.toString(value.length).getBytes(StandardCharsets.ISO_8859_1));
+        out.write(CRLF);
+        out.write(value);
+        out.write(CRLF);
+    }
+}
@@ -0,0 +1,84 @@
+package com.jason.fabric.pool.utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import com.jason.fabric.pool.conf.Global;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+public class RedisMultiplexerTest {
+    private MiniRedisServer redis;
+
+    @Before
+    public void setUp() throws IOException {
+        redis = MiniRedisServer.start();
+        RedisUtil.connect(RedisMode.STANDALONE, Collections.singleton(HostAndPort.parseString(redis.getAddress())));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Global global = Global.getInstance();
+        RedisUtil.connect(RedisMode.STANDALONE, Collections.singleton(new HostAndPort(global.getCacheURL(), Integer.parseInt(global.getCachePort()))));
+        redis.close();
+    }
+
+    /**
+     * 并发提交的命令合并发送，各自拿到自己的结果
+     */
+    @Test
+    public void roundTrip() throws Exception {
+        RedisMultiplexer multiplexer = new RedisMultiplexer();
+        List<CompletableFuture<Long>> writes = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            String field = "f" + i;
+            writes.add(multiplexer.submit(pipeline -> pipeline.hset("k", field, field)::get));
+        }
+        for (CompletableFuture<Long> write : writes) {
+            Assert.assertEquals(1L, (long) write.get());
+        }
+        Assert.assertEquals("f42", multiplexer.execute(pipeline -> pipeline.hget("k", "f42")::get));
+        Assert.assertEquals(100, redis.hash("k").size());
+    }
+
+    /**
+     * 连接断开时所在批次失败，下一批重新连接
+     */
+    @Test
+    public void reconnectAfterFailedBatch() throws Exception {
+        RedisMultiplexer multiplexer = new RedisMultiplexer();
+        multiplexer.execute(pipeline -> pipeline.hset("k", "f", "v")::get);
+        redis.dropClients();
+        try {
+            multiplexer.executeInvalidation(pipeline -> pipeline.hget("k", "f")::get);
+            Assert.fail();
+        } catch (JedisConnectionException expected) {
+        }
+        Assert.assertEquals("v", multiplexer.execute(pipeline -> pipeline.hget("k", "f")::get));
+    }
+
+    /**
+     * 命令中抛出的Error只让所在批次失败，后台线程继续工作
+     */
+    @Test
+    public void errorInBatchKeepsWorker() throws Exception {
+        RedisMultiplexer multiplexer = new RedisMultiplexer();
+        try {
+            multiplexer.executeInvalidation(pipeline -> {
+                throw new AssertionError("broken command");
+            });
+            Assert.fail();
+        } catch (ExecutionException expected) {
+            Assert.assertTrue(expected.getCause() instanceof AssertionError);
+        }
+        Assert.assertEquals(1L, (long) multiplexer.execute(pipeline -> pipeline.hset("k", "f", "v")::get));
+    }
+}
@@ -0,0 +1,128 @@
+package com.jason.fabric.pool.utils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+public class RedisUtilTest {
+    private MiniRedisServer first;
+    private MiniRedisServer second;
+
+    @After
+    public void tearDown() throws IOException {
+        MiniRedisServer.reconnectRedisUtil();
+        if (first != null) {
+            first.close();
+        }
+        if (second != null) {
+            second.close();
+        }
+    }
+
+    /**
+     * 单节点模式下execute和按key操作的旧方法都发往cacheURL
+     */
+    @Test
+    public void standalone() throws IOException {
+        first = MiniRedisServer.start();
+        connect(RedisMode.STANDALONE, first);
+        Assert.assertEquals(1L, (long) RedisUtil.execute("k", pipeline -> pipeline.hset("k", "f", "v")::get));
+        Assert.assertEquals("v", RedisUtil.hget("k", "f"));
+        RedisUtil.hset("k", "g", "w");
+        Assert.assertEquals(2L, (long) RedisUtil.hlen("k"));
+        Assert.assertEquals(0, RedisUtil.slot("k"));
+        Assert.assertFalse(RedisUtil.isCluster());
+    }
+
+    /**
+     * redis返回的错误原样抛出，连接归还后仍可使用；一个pipeline中的多条命令一次返回
+     */
+    @Test
+    public void executePipeline() throws IOException {
+        first = MiniRedisServer.start();
+        connect(RedisMode.STANDALONE, first);
+        try {
+            RedisUtil.execute("k", pipeline -> pipeline.incr("k")::get);
+            Assert.fail();
+        } catch (JedisDataException expected) {
+        }
+        List<String> values = RedisUtil.execute("k", 3, pipeline -> {
+            pipeline.hset("k", "f", "v");
+            pipeline.hset("k", "g", "w");
+            return pipeline.hmget("k", "f", "g")::get;
+        });
+        Assert.assertEquals(Arrays.asList("v", "w"), values);
+    }
+
+    /**
+     * 集群模式下按槽位路由；槽位迁移后收到MOVED，刷新槽位后在新节点上重试，旧方法也发往新节点
+     */
+    @Test
+    public void clusterFollowsRedirect() throws IOException {
+        first = MiniRedisServer.start();
+        second = MiniRedisServer.start();
+        second.setOwner(first);
+        connect(RedisMode.CLUSTER, first);
+        Assert.assertTrue(RedisUtil.isCluster());
+        RedisUtil.execute("k", pipeline -> pipeline.hset("k", "f", "v")::get);
+        Assert.assertEquals("v", value(first, "k", "f"));
+
+        first.setOwner(second);
+        second.setOwner(second);
+        Assert.assertNull(RedisUtil.execute("k", pipeline -> pipeline.hget("k", "f")::get));
+        RedisUtil.execute("k", pipeline -> pipeline.hset("k", "f", "w")::get);
+        Assert.assertEquals("w", value(second, "k", "f"));
+        RedisUtil.hset("k", "g", "x");
+        Assert.assertEquals("x", value(second, "k", "g"));
+        Assert.assertNull(first.hash("k").get("g"));
+    }
+
+    /**
+     * 启动时哨兵没有返回主节点，访问失败而不是空指针；主节点可用后按间隔重新发现
+     */
+    @Test
+    public void sentinelRediscoversMaster() throws Exception {
+        first = MiniRedisServer.start();
+        second = MiniRedisServer.start();
+        connect(RedisMode.SENTINEL, first);
+        try {
+            RedisUtil.hlen("k");
+            Assert.fail();
+        } catch (JedisConnectionException expected) {
+        }
+
+        first.setMaster(second);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (true) {
+            try {
+                RedisUtil.executeInvalidation("k", pipeline -> pipeline.hset("k", "f", "v")::get);
+                break;
+            } catch (JedisConnectionException e) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw e;
+                }
+                Thread.sleep(100);
+            }
+        }
+        Assert.assertEquals("v", value(second, "k", "f"));
+        Assert.assertEquals(second.getPort(), RedisUtil.currentNode().getPort());
+    }
+
+    private static void connect(RedisMode mode, MiniRedisServer server) {
+        RedisUtil.connect(mode, Collections.singleton(HostAndPort.parseString(server.getAddress())));
+    }
+
+    private static String value(MiniRedisServer server, String key, String field) {
+        byte[] value = server.hash(key) == null ? null : server.hash(key).get(field);
+        return value == null ? null : new String(value, StandardCharsets.ISO_8859_1);
+    }
+}
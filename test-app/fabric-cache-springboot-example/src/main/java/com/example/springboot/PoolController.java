@@ -2,26 +2,59 @@ package com.example.springboot;
 
 import com.example.springboot.entity.ReqInvoke;
 import com.example.springboot.entity.ReqQuery;
+import com.example.springboot.entity.ReqQueryBatch;
 import com.example.springboot.entity.ReqWallet;
 import com.example.springboot.utils.FabricCacheUtil;
-import com.jason.fabric.pool.FabricGatewayPool;
-import com.jason.fabric.pool.api.FabricConnection;
+import com.jason.fabric.pool.CacheWarmer;
+import com.jason.fabric.pool.ConnectionMetrics;
+import com.jason.fabric.pool.FabricConnectionHandle;
+import com.jason.fabric.pool.FabricPoolRegistry;
+import com.jason.fabric.pool.PoolStats;
+import com.jason.fabric.pool.api.QueryResult;
+import com.jason.fabric.pool.api.QuerySpec;
+import com.jason.fabric.pool.cache.AccessProfile;
+import com.jason.fabric.pool.cache.CacheCoherence;
+import com.jason.fabric.pool.cache.CacheRefresher;
+import com.jason.fabric.pool.cache.CoherenceMetrics;
+import com.jason.fabric.pool.cache.ProfiledQuery;
+import com.jason.fabric.pool.cache.RefreshMetrics;
+import com.jason.fabric.pool.conf.Global;
+import com.jason.fabric.pool.utils.CircuitBreaker;
+import com.jason.fabric.pool.utils.RedisUtil;
 import com.jason.fabric.pool.utils.WalletUtil;
-import org.apache.commons.pool2.ObjectPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
+import java.net.InetAddress;
 import java.net.URISyntaxException;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.security.InvalidKeyException;
 import java.security.cert.CertificateException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
 
 @RestController
 public class PoolController {
 	private static final Logger logger = LoggerFactory.getLogger(PoolController.class);
+	private static final long ASYNC_TIMEOUT_MARGIN = 10000;
 
 	/**
 	 * 1. 添加一个钱包
@@ -67,13 +100,14 @@ public class PoolController {
 	 * }
 	 * @return
 	 */
-	@RequestMapping("/query")
-	public String query(@RequestBody ReqQuery reqQuery) {
-		try {
-			FabricConnection connection = FabricCacheUtil.getConnect(reqQuery.getUserName(), reqQuery.getChannelName());
-			return connection.query(reqQuery.getChainCode(), reqQuery.getFnc(),reqQuery.getArgs());
+	@RequestMapping(value = "/query", produces = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<?> query(@RequestBody ReqQuery reqQuery) {
+		try (FabricConnectionHandle connection = FabricCacheUtil.getConnect(reqQuery.getUserName(), reqQuery.getChannelName())) {
+			//直接返回chaincode原始字节，不做字符串解码和再编码
+			return ResponseEntity.ok(connection.queryBytes(reqQuery.getChainCode(), reqQuery.getFnc(),reqQuery.getArgs()));
 		} catch (Exception e) {
-			return "获取失败！"+e.getMessage();
+			logger.warn("query failed", e);
+			return queryError(e);
 		}
 	}
 
@@ -83,11 +117,227 @@ public class PoolController {
 	 */
 	@RequestMapping("/invoke")
 	public String invoke(@RequestBody ReqInvoke reqInvoke) {
-		try {
-			FabricConnection connection = FabricCacheUtil.getConnect(reqInvoke.getUserName(), reqInvoke.getChannelName());
+		try (FabricConnectionHandle connection = FabricCacheUtil.getConnect(reqInvoke.getUserName(), reqInvoke.getChannelName())) {
 			return connection.invoke(reqInvoke.getChainCode(), reqInvoke.getFnc(),reqInvoke.getArgs());
 		} catch (Exception e) {
 			return "获取异常！"+e.getMessage();
 		}
 	}
+
+	/**
+	 * 4. 异步查询，请求参数同/query，查询期间不占用servlet线程
+	 * @return
+	 */
+	@RequestMapping(value = "/queryAsync", produces = MediaType.APPLICATION_JSON_VALUE)
+	public DeferredResult<ResponseEntity<?>> queryAsync(@RequestBody ReqQuery reqQuery) {
+		long timeout = asyncTimeout();
+		DeferredResult<ResponseEntity<?>> deferredResult = new DeferredResult<>(timeout,
+				queryError(new TimeoutException("等待超过" + timeout + "毫秒")));
+		FabricPoolRegistry.getInstance().queryAsync(reqQuery.getUserName(), reqQuery.getChannelName(),
+				reqQuery.getChainCode(), reqQuery.getFnc(), reqQuery.getArgs()).whenComplete((result, e) -> {
+			if (e != null) {
+				deferredResult.setResult(queryError(rootCause(e)));
+			} else {
+				deferredResult.setResult(ResponseEntity.ok(result));
+			}
+		});
+		return deferredResult;
+	}
+
+	/**
+	 * 5. 异步修改，请求参数同/invoke，连接在交易发送后即归还，收到提交事件后响应
+	 * @return
+	 */
+	@RequestMapping("/invokeAsync")
+	public DeferredResult<String> invokeAsync(@RequestBody ReqInvoke reqInvoke) {
+		long timeout = asyncTimeout();
+		DeferredResult<String> deferredResult = new DeferredResult<>(timeout, "获取异常！等待超过" + timeout + "毫秒");
+		FabricPoolRegistry.getInstance().invokeAsync(reqInvoke.getUserName(), reqInvoke.getChannelName(),
+				reqInvoke.getChainCode(), reqInvoke.getFnc(), reqInvoke.getArgs()).whenComplete((result, e) -> {
+			if (e != null) {
+				deferredResult.setResult("获取异常！"+rootCause(e).getMessage());
+			} else {
+				deferredResult.setResult(new String(result, StandardCharsets.UTF_8));
+			}
+		});
+		return deferredResult;
+	}
+
+	/**
+	 * 6. 连接池统计
+	 * @return
+	 */
+	@RequestMapping("/poolStats")
+	public Map<String, PoolStats> poolStats() {
+		return FabricPoolRegistry.getInstance().getAllStats();
+	}
+
+	/**
+	 * 7. 调用统计
+	 * @return
+	 */
+	@RequestMapping("/metrics")
+	public Map<String, ConnectionMetrics> metrics() {
+		return FabricPoolRegistry.getInstance().getAllMetrics();
+	}
+
+	/**
+	 * 8. 区块失效统计
+	 * @return
+	 */
+	@RequestMapping("/coherence")
+	public Map<String, CoherenceMetrics> coherence() {
+		return CacheCoherence.getInstance().getMetrics();
+	}
+
+	/**
+	 * 9. 后台刷新统计
+	 * @return
+	 */
+	@RequestMapping("/refreshMetrics")
+	public RefreshMetrics refreshMetrics() {
+		return CacheRefresher.getInstance().getMetrics();
+	}
+
+	/**
+	 * 10. 批量查询，缓存一次读取，未命中的查询并行发往peer，结果按请求顺序返回
+	 * 请求参数例：
+	 * {
+	 *     "userName":"test",
+	 *     "channelName":"mychannel",
+	 *     "queries":[
+	 *         {"chainCode":"hospital_recordInfo","fnc":"QueryRecord","args":["110121"]},
+	 *         {"chainCode":"hospital_recordInfo","fnc":"QueryRecord","args":["110122"]}
+	 *     ]
+	 * }
+	 * queries为空时返回400
+	 * @return
+	 */
+	@RequestMapping("/queryBatch")
+	public ResponseEntity<List<Map<String, String>>> queryBatch(@RequestBody ReqQueryBatch reqQueryBatch) {
+		if (reqQueryBatch.getQueries() == null || reqQueryBatch.getQueries().isEmpty()) {
+			Map<String, String> item = new LinkedHashMap<>();
+			item.put("error", "queries不能为空");
+			return ResponseEntity.badRequest().body(Collections.singletonList(item));
+		}
+		List<QuerySpec> specs = new ArrayList<>();
+		for (ReqQueryBatch.Query query : reqQueryBatch.getQueries()) {
+			specs.add(QuerySpec.of(query.getChainCode(), query.getFnc(), query.getArgs()));
+		}
+		List<Map<String, String>> resp = new ArrayList<>();
+		try {
+			for (QueryResult result : FabricPoolRegistry.getInstance().queryAll(reqQueryBatch.getUserName(), reqQueryBatch.getChannelName(), specs)) {
+				Map<String, String> item = new LinkedHashMap<>();
+				if (result.isSuccess()) {
+					item.put("result", result.getString());
+				} else {
+					item.put("error", "获取失败！"+result.getError().getMessage());
+				}
+				resp.add(item);
+			}
+		} catch (Exception e) {
+			logger.warn("query batch failed", e);
+			Map<String, String> item = new LinkedHashMap<>();
+			item.put("error", "获取失败！"+e.getMessage());
+			resp.add(item);
+		}
+		return ResponseEntity.ok(resp);
+	}
+
+	/**
+	 * 11. redis熔断状态，未开启cacheBreaker时为空
+	 * @return
+	 */
+	@RequestMapping("/cacheBreaker")
+	public CircuitBreaker cacheBreaker() {
+		return RedisUtil.getBreaker();
+	}
+
+	/**
+	 * 12. 访问画像中最热的查询，limit为返回的个数；包含各用户的查询参数，只允许本机访问
+	 * @return
+	 */
+	@RequestMapping("/warmProfile")
+	public ResponseEntity<List<ProfiledQuery>> warmProfile(@RequestParam(defaultValue = "100") int limit, HttpServletRequest request) {
+		if (!isLocal(request)) {
+			return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+		}
+		return ResponseEntity.ok(AccessProfile.getInstance().top(limit));
+	}
+
+	/**
+	 * 13. 导出缓存快照到warmSnapshotFile，返回导出的条目数；只允许本机访问
+	 * @return
+	 */
+	@RequestMapping("/exportSnapshot")
+	public ResponseEntity<String> exportSnapshot(HttpServletRequest request) {
+		if (!isLocal(request)) {
+			return ResponseEntity.status(HttpStatus.FORBIDDEN).body("只允许本机访问");
+		}
+		String file = Global.getInstance().getWarmSnapshotFile();
+		if (file.isEmpty()) {
+			return ResponseEntity.ok("未配置warmSnapshotFile");
+		}
+		try {
+			return ResponseEntity.ok("导出" + CacheWarmer.getInstance().exportSnapshot(Paths.get(file)) + "条");
+		} catch (IOException | RuntimeException e) {
+			logger.warn("export cache snapshot failed", e);
+			return ResponseEntity.ok("导出失败！" + e.getMessage());
+		}
+	}
+
+	/**
+	 * 14. 从warmSnapshotFile导入缓存快照，返回导入的条目数；只允许本机访问
+	 * @return
+	 */
+	@RequestMapping("/importSnapshot")
+	public ResponseEntity<String> importSnapshot(HttpServletRequest request) {
+		if (!isLocal(request)) {
+			return ResponseEntity.status(HttpStatus.FORBIDDEN).body("只允许本机访问");
+		}
+		String file = Global.getInstance().getWarmSnapshotFile();
+		if (file.isEmpty()) {
+			return ResponseEntity.ok("未配置warmSnapshotFile");
+		}
+		try {
+			return ResponseEntity.ok("导入" + CacheWarmer.getInstance().importSnapshot(Paths.get(file)) + "条");
+		} catch (IOException | RuntimeException e) {
+			logger.warn("import cache snapshot failed", e);
+			return ResponseEntity.ok("导入失败！" + e.getMessage());
+		}
+	}
+
+	/**
+	 * 访问画像和快照包含各用户的查询参数(如病人编号)和缓存内容，只接受来自本机的请求；
+	 * 经同一台机器上的反向代理转发的请求也来自本机，此时需在代理上禁止外部访问这些url
+	 */
+	private static boolean isLocal(HttpServletRequest request) {
+		try {
+			return InetAddress.getByName(request.getRemoteAddr()).isLoopbackAddress();
+		} catch (UnknownHostException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * 查询失败时返回500，错误与成功的结果一样为JSON：{"error":"获取失败！..."}
+	 */
+	private static ResponseEntity<Map<String, String>> queryError(Throwable e) {
+		return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).contentType(MediaType.APPLICATION_JSON)
+				.body(Collections.singletonMap("error", "获取失败！" + e.getMessage()));
+	}
+
+	/**
+	 * 异步请求的超时，比等待提交事件的asyncCommitTimeout长，提交超时时返回提交结果而不是servlet容器默认的超时(Tomcat为30秒)
+	 */
+	private static long asyncTimeout() {
+		return Global.getInstance().getAsyncCommitTimeout() + ASYNC_TIMEOUT_MARGIN;
+	}
+
+	private static Throwable rootCause(Throwable e) {
+		while ((e instanceof CompletionException || e instanceof ExecutionException) && e.getCause() != null) {
+			e = e.getCause();
+		}
+		return e;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,36 @@
+package com.example.springboot.config;
+
+import com.jason.fabric.pool.CacheWarmer;
+import com.jason.fabric.pool.WarmUpResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Configuration;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+
+/**
+ * 启动时预热缓存：ApplicationRunner执行完毕后spring boot才进入ACCEPTING_TRAFFIC就绪状态，
+ * 因此预热完成(或超过warmTimeoutMillis)前服务不会被判定为就绪；停止时保存访问画像
+ */
+@Configuration
+public class CacheWarmUpConfig implements ApplicationRunner {
+	private static final Logger logger = LoggerFactory.getLogger(CacheWarmUpConfig.class);
+
+	@Override
+	public void run(ApplicationArguments args) {
+		WarmUpResult result = CacheWarmer.getInstance().warmUp();
+		logger.info("cache warm up finished: {}", result);
+	}
+
+	@PreDestroy
+	public void saveProfile() {
+		try {
+			CacheWarmer.getInstance().saveProfile();
+		} catch (IOException e) {
+			logger.warn("save access profile failed", e);
+		}
+	}
+}
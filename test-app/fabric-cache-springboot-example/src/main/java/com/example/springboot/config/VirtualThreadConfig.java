@@ -0,0 +1,34 @@
+package com.example.springboot.config;
+
+import com.jason.fabric.pool.conf.Global;
+import com.jason.fabric.pool.utils.ThreadPoolUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * fabric-cache.properties中virtualThreads=true时，tomcat的每个请求都在虚拟线程中执行，
+ * 阻塞的evaluateTransaction、submitTransaction调用不再受限于servlet线程池大小
+ */
+@Configuration
+public class VirtualThreadConfig {
+	private static final Logger logger = LoggerFactory.getLogger(VirtualThreadConfig.class);
+
+	@Bean
+	public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+		return protocolHandler -> {
+			if (!Global.getInstance().isVirtualThreads()) {
+				return;
+			}
+			ExecutorService executor = ThreadPoolUtil.newVirtualThreadExecutor();
+			if (executor != null) {
+				logger.info("tomcat requests run on virtual threads");
+				protocolHandler.setExecutor(executor);
+			}
+		};
+	}
+}
@@ -0,0 +1,64 @@
+package com.example.springboot.entity;
+
+import java.io.Serializable;
+import java.util.List;
+
+public class ReqQueryBatch implements Serializable {
+    private String userName;
+    private String channelName;
+    private List<Query> queries;
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public void setUserName(String userName) {
+        this.userName = userName;
+    }
+
+    public String getChannelName() {
+        return channelName;
+    }
+
+    public void setChannelName(String channelName) {
+        this.channelName = channelName;
+    }
+
+    public List<Query> getQueries() {
+        return queries;
+    }
+
+    public void setQueries(List<Query> queries) {
+        this.queries = queries;
+    }
+
+    public static class Query implements Serializable {
+        private String chainCode;
+        private String fnc;
+        private String[] args;
+
+        public String getChainCode() {
+            return chainCode;
+        }
+
+        public void setChainCode(String chainCode) {
+            this.chainCode = chainCode;
+        }
+
+        public String getFnc() {
+            return fnc;
+        }
+
+        public void setFnc(String fnc) {
+            this.fnc = fnc;
+        }
+
+        public String[] getArgs() {
+            return args;
+        }
+
+        public void setArgs(String[] args) {
+            this.args = args;
+        }
+    }
+}
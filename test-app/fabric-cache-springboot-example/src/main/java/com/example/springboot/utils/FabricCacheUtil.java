@@ -1,18 +1,17 @@
 package com.example.springboot.utils;
 
-import com.jason.fabric.pool.FabricGatewayPool;
-import com.jason.fabric.pool.api.FabricConnection;
-import org.apache.commons.pool2.ObjectPool;
+import com.jason.fabric.pool.FabricConnectionHandle;
+import com.jason.fabric.pool.FabricPoolRegistry;
 
 public class FabricCacheUtil {
 
     /**
-     * 获取fabric 缓存网络
+     * 获取fabric 缓存网络，连接池按用户和通道复用
+     * 使用完毕后需要close()归还连接，推荐配合try-with-resources使用
      * @return
      * @throws Exception
      */
-    public static FabricConnection getConnect(String userName,String channel) throws Exception {
-        ObjectPool<FabricConnection>  fGWP = new FabricGatewayPool(userName, channel);
-        return fGWP.borrowObject();
+    public static FabricConnectionHandle getConnect(String userName,String channel) throws Exception {
+        return FabricPoolRegistry.getInstance().borrow(userName, channel);
     }
 }